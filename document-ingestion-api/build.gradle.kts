@@ -2,6 +2,7 @@ plugins {
     java
     id("io.quarkus")
     id("org.jooq.jooq-codegen-gradle") version "3.21.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -84,3 +85,8 @@ tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
     options.compilerArgs.add("-parameters")
 }
+
+jmh {
+    jmhVersion = "1.37"
+    // the persistence benchmarks write to the dev database from start-db.sh, see their class docs
+}
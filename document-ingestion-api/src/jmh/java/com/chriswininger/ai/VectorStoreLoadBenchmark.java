@@ -0,0 +1,138 @@
+package com.chriswininger.ai;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Writing 2,000 bge-m3 sized vectors into {@code vector_store}: the langchain4j
+ * {@link PgVectorEmbeddingStore} one {@code add} at a time and with {@code addAll}, against the
+ * {@link PgVectorBulkLoader} copying them in with the HNSW index kept up to date and with it
+ * dropped and rebuilt. Scores are rows per second.
+ * <p>
+ * Runs against the dev database from {@code start-db.sh} with the migrations applied;
+ * {@code -Djdbc.url}, {@code -Djdbc.user} and {@code -Djdbc.password} point it elsewhere. The rows
+ * are removed after every iteration. A rebuild indexes the whole table, so its score falls as
+ * {@code vector_store} grows. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VectorStoreLoadBenchmark {
+
+    private static final int ROWS = 2_000;
+    private static final int DIMENSION = 1024;
+    private static final String BENCHMARK_KEY = "benchmark";
+    private static final String BENCHMARK = "VectorStoreLoadBenchmark";
+
+    private EmbeddingStore<TextSegment> embeddingStore;
+    private PgVectorBulkLoader copyLoader;
+    private PgVectorBulkLoader rebuildingLoader;
+    private List<Embedding> embeddings;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setup() {
+        final PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(System.getProperty("jdbc.url", "jdbc:postgresql://localhost:5436/document-ingestion-db"));
+        dataSource.setUser(System.getProperty("jdbc.user", "postgres"));
+        dataSource.setPassword(System.getProperty("jdbc.password", "xxx"));
+
+        embeddingStore = PgVectorEmbeddingStore.datasourceBuilder()
+                .datasource(dataSource)
+                .table("vector_store")
+                .dimension(DIMENSION)
+                .createTable(false)
+                .build();
+        copyLoader = new PgVectorBulkLoader(dataSource, 0, "1GB", 4);
+        rebuildingLoader = new PgVectorBulkLoader(dataSource, 1, "1GB", 4);
+
+        final Random random = new Random(42);
+        final String text = "Ishmael watches the Pequod leave Nantucket; Queequeg sharpens his harpoon. ".repeat(27);
+        embeddings = new ArrayList<>(ROWS);
+        segments = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            embeddings.add(Embedding.from(unitVector(random)));
+            segments.add(TextSegment.from(text, new Metadata()
+                    .put(BENCHMARK_KEY, BENCHMARK)
+                    .put("sectionId", (long) i)
+                    .put("chapterId", 1L)
+                    .put("documentId", 1L)
+                    .put("bookTitle", "Moby-Dick")
+                    .put("chapterLabel", "Chapter 1")));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeRows() {
+        embeddingStore.removeAll(metadataKey(BENCHMARK_KEY).isEqualTo(BENCHMARK));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public String pgVectorStoreAdd() {
+        String lastId = null;
+        for (int i = 0; i < ROWS; i++) {
+            lastId = embeddingStore.add(embeddings.get(i), segments.get(i));
+        }
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<String> pgVectorStoreAddAll() {
+        return embeddingStore.addAll(embeddings, segments);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<String> copy() throws Exception {
+        return copyLoader.load(embeddings, segments);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<String> copyRebuildingIndex() throws Exception {
+        return rebuildingLoader.load(embeddings, segments);
+    }
+
+    private static float[] unitVector(final Random random) {
+        final float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        final float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
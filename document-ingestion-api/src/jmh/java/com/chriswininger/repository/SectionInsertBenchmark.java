@@ -0,0 +1,144 @@
+package com.chriswininger.repository;
+
+import com.chriswininger.db.generated.Tables;
+import com.chriswininger.db.generated.tables.records.SectionsRecord;
+import org.jooq.CloseableDSLContext;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the sections of a 2,000-section book: a {@code store()} per row with autocommit, the
+ * way imports used to, versus {@link SectionRepository#insertAll} in one transaction. Scores are
+ * rows per second.
+ * <p>
+ * Runs against a real PostgreSQL, by default the dev database from {@code start-db.sh} with the
+ * migrations applied; {@code -Djdbc.url}, {@code -Djdbc.user} and {@code -Djdbc.password} point it
+ * elsewhere. Each trial writes into a throwaway document that is deleted afterwards. Run with
+ * {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SectionInsertBenchmark {
+
+    private static final int SECTIONS = 2_000;
+
+    private CloseableDSLContext dsl;
+    private SectionRepository sectionRepository;
+    private long documentId;
+    private long chapterId;
+    private List<Section> sections;
+
+    @Setup
+    public void setup() {
+        dsl = DSL.using(
+                System.getProperty("jdbc.url", "jdbc:postgresql://localhost:5436/document-ingestion-db"),
+                System.getProperty("jdbc.user", "postgres"),
+                System.getProperty("jdbc.password", "xxx"));
+        sectionRepository = new SectionRepository(dsl);
+
+        documentId = dsl.insertInto(Tables.DOCUMENTS)
+                .set(Tables.DOCUMENTS.TITLE, "SectionInsertBenchmark")
+                .set(Tables.DOCUMENTS.TYPE, "book")
+                .returningResult(Tables.DOCUMENTS.ID)
+                .fetchOne(Tables.DOCUMENTS.ID);
+        chapterId = dsl.insertInto(Tables.CHAPTERS)
+                .set(Tables.CHAPTERS.DOCUMENT_ID, documentId)
+                .set(Tables.CHAPTERS.CHAPTER_TITLE, "Chapter 1")
+                .set(Tables.CHAPTERS.SEQUENCE, 0)
+                .returningResult(Tables.CHAPTERS.ID)
+                .fetchOne(Tables.CHAPTERS.ID);
+
+        // about the size of a chunk and its summary
+        final String fullText = "Ishmael watches the Pequod leave Nantucket; Queequeg sharpens his harpoon. ".repeat(27);
+        final String summary = "Ahab nails a gold doubloon to the mast for whoever first sights the white whale. ".repeat(4);
+        sections = new ArrayList<>(SECTIONS);
+        for (int i = 0; i < SECTIONS; i++) {
+            sections.add(new Section(
+                    i,
+                    summary,
+                    new String[] {"Ishmael", "Queequeg", "Ahab", "Starbuck"},
+                    fullText,
+                    new String[] {"Who is section " + i + " about?", "What happens to the Pequod in section " + i + "?"}));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSections() {
+        dsl.deleteFrom(Tables.SECTIONS)
+                .where(Tables.SECTIONS.CHAPTER_ID.eq(chapterId))
+                .execute();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dsl.deleteFrom(Tables.DOCUMENTS)
+                .where(Tables.DOCUMENTS.ID.eq(documentId))
+                .execute();
+        dsl.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public long storePerRow() {
+        long lastId = 0;
+        for (final Section section : sections) {
+            final SectionsRecord record = section.toRecord(dsl, chapterId);
+            record.store();
+            lastId = record.getId();
+        }
+        return lastId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public List<Long> insertAllInTransaction() {
+        return dsl.transactionResult(configuration -> {
+            final DSLContext tx = configuration.dsl();
+            final List<SectionsRecord> records = new ArrayList<>(sections.size());
+            for (final Section section : sections) {
+                records.add(section.toRecord(tx, chapterId));
+            }
+            return sectionRepository.insertAll(tx, records);
+        });
+    }
+
+    private record Section(
+            int sequence,
+            String summary,
+            String[] characters,
+            String fullText,
+            String[] possibleQuestionsThisAnswers
+    ) {
+        SectionsRecord toRecord(final DSLContext dsl, final long chapterId) {
+            final SectionsRecord record = dsl.newRecord(Tables.SECTIONS);
+            record.setChapterId(chapterId);
+            record.setSequence(sequence);
+            record.setSummary(summary);
+            record.setCharacters(characters);
+            record.setFullText(fullText);
+            record.setPossibleQuestionsThisAnswers(possibleQuestionsThisAnswers);
+            return record;
+        }
+    }
+}
@@ -7,6 +7,8 @@ package com.chriswininger.db.generated;
 import com.chriswininger.db.generated.tables.BookMetadata;
 import com.chriswininger.db.generated.tables.Chapters;
 import com.chriswininger.db.generated.tables.Documents;
+import com.chriswininger.db.generated.tables.ImportCheckpoints;
+import com.chriswininger.db.generated.tables.ImportRuns;
 import com.chriswininger.db.generated.tables.Sections;
 
 import java.util.Arrays;
@@ -46,6 +48,16 @@ public class DefaultSchema extends SchemaImpl {
      */
     public final Documents DOCUMENTS = Documents.DOCUMENTS;
 
+    /**
+     * The table <code>import_checkpoints</code>.
+     */
+    public final ImportCheckpoints IMPORT_CHECKPOINTS = ImportCheckpoints.IMPORT_CHECKPOINTS;
+
+    /**
+     * The table <code>import_runs</code>.
+     */
+    public final ImportRuns IMPORT_RUNS = ImportRuns.IMPORT_RUNS;
+
     /**
      * The table <code>sections</code>.
      */
@@ -70,6 +82,8 @@ public class DefaultSchema extends SchemaImpl {
             BookMetadata.BOOK_METADATA,
             Chapters.CHAPTERS,
             Documents.DOCUMENTS,
+            ImportCheckpoints.IMPORT_CHECKPOINTS,
+            ImportRuns.IMPORT_RUNS,
             Sections.SECTIONS
         );
     }
@@ -6,6 +6,8 @@ package com.chriswininger.db.generated;
 
 import com.chriswininger.db.generated.tables.BookMetadata;
 import com.chriswininger.db.generated.tables.Chapters;
+import com.chriswininger.db.generated.tables.ImportCheckpoints;
+import com.chriswininger.db.generated.tables.ImportRuns;
 import com.chriswininger.db.generated.tables.Sections;
 
 import org.jooq.Index;
@@ -26,5 +28,7 @@ public class Indexes {
 
     public static final Index IDX_BOOK_METADATA_DOCUMENT_ID = Internal.createIndex(DSL.name("idx_book_metadata_document_id"), BookMetadata.BOOK_METADATA, new OrderField[] { BookMetadata.BOOK_METADATA.DOCUMENT_ID }, false);
     public static final Index IDX_CHAPTERS_DOCUMENT_ID = Internal.createIndex(DSL.name("idx_chapters_document_id"), Chapters.CHAPTERS, new OrderField[] { Chapters.CHAPTERS.DOCUMENT_ID }, false);
+    public static final Index IDX_IMPORT_CHECKPOINTS_RUN_STAGE = Internal.createIndex(DSL.name("idx_import_checkpoints_run_stage"), ImportCheckpoints.IMPORT_CHECKPOINTS, new OrderField[] { ImportCheckpoints.IMPORT_CHECKPOINTS.IMPORT_RUN_ID, ImportCheckpoints.IMPORT_CHECKPOINTS.STAGE }, true);
+    public static final Index IDX_IMPORT_RUNS_CONTENT_HASH = Internal.createIndex(DSL.name("idx_import_runs_content_hash"), ImportRuns.IMPORT_RUNS, new OrderField[] { ImportRuns.IMPORT_RUNS.CONTENT_HASH }, false);
     public static final Index IDX_SECTIONS_CHAPTER_ID = Internal.createIndex(DSL.name("idx_sections_chapter_id"), Sections.SECTIONS, new OrderField[] { Sections.SECTIONS.CHAPTER_ID }, false);
 }
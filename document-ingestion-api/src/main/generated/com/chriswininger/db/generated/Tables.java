@@ -7,6 +7,8 @@ package com.chriswininger.db.generated;
 import com.chriswininger.db.generated.tables.BookMetadata;
 import com.chriswininger.db.generated.tables.Chapters;
 import com.chriswininger.db.generated.tables.Documents;
+import com.chriswininger.db.generated.tables.ImportCheckpoints;
+import com.chriswininger.db.generated.tables.ImportRuns;
 import com.chriswininger.db.generated.tables.Sections;
 
 
@@ -31,6 +33,16 @@ public class Tables {
      */
     public static final Documents DOCUMENTS = Documents.DOCUMENTS;
 
+    /**
+     * The table <code>import_checkpoints</code>.
+     */
+    public static final ImportCheckpoints IMPORT_CHECKPOINTS = ImportCheckpoints.IMPORT_CHECKPOINTS;
+
+    /**
+     * The table <code>import_runs</code>.
+     */
+    public static final ImportRuns IMPORT_RUNS = ImportRuns.IMPORT_RUNS;
+
     /**
      * The table <code>sections</code>.
      */
@@ -8,6 +8,7 @@ import com.chriswininger.db.generated.DefaultSchema;
 import com.chriswininger.db.generated.Keys;
 import com.chriswininger.db.generated.tables.BookMetadata.BookMetadataPath;
 import com.chriswininger.db.generated.tables.Chapters.ChaptersPath;
+import com.chriswininger.db.generated.tables.ImportRuns.ImportRunsPath;
 import com.chriswininger.db.generated.tables.records.DocumentsRecord;
 
 import java.time.OffsetDateTime;
@@ -113,6 +114,11 @@ public class Documents extends TableImpl<DocumentsRecord> {
      */
     public final TableField<DocumentsRecord, String[]> POSSIBLE_QUESTIONS_THIS_ANSWERS = createField(DSL.name("possible_questions_this_answers"), SQLDataType.CLOB.array(), this, "");
 
+    /**
+     * The column <code>documents.importing</code>.
+     */
+    public final TableField<DocumentsRecord, Boolean> IMPORTING = createField(DSL.name("importing"), SQLDataType.BOOLEAN.nullable(false).defaultValue(DSL.field(DSL.raw("false"), SQLDataType.BOOLEAN)), this, "");
+
     private Documents(Name alias, Table<DocumentsRecord> aliased) {
         this(alias, aliased, (Field<?>[]) null, null);
     }
@@ -215,6 +221,18 @@ public class Documents extends TableImpl<DocumentsRecord> {
         return _chapters;
     }
 
+    private transient ImportRunsPath _importRuns;
+
+    /**
+     * Get the implicit to-many join path to the <code>import_runs</code> table
+     */
+    public ImportRunsPath importRuns() {
+        if (_importRuns == null)
+            _importRuns = new ImportRunsPath(this, null, Keys.CONSTRAINT_E6.getInverseKey());
+
+        return _importRuns;
+    }
+
     @Override
     public Documents as(String alias) {
         return new Documents(DSL.name(alias), this);
@@ -174,6 +174,20 @@ public class DocumentsRecord extends UpdatableRecordImpl<DocumentsRecord> {
         return (String[]) get(10);
     }
 
+    /**
+     * Setter for <code>documents.importing</code>.
+     */
+    public void setImporting(Boolean value) {
+        set(11, value);
+    }
+
+    /**
+     * Getter for <code>documents.importing</code>.
+     */
+    public Boolean getImporting() {
+        return (Boolean) get(11);
+    }
+
     // -------------------------------------------------------------------------
     // Primary key information
     // -------------------------------------------------------------------------
@@ -197,7 +211,7 @@ public class DocumentsRecord extends UpdatableRecordImpl<DocumentsRecord> {
     /**
      * Create a detached, initialised DocumentsRecord
      */
-    public DocumentsRecord(Long id, String title, String type, String summary, String[] characters, String fullText, OffsetDateTime createdAt, OffsetDateTime updatedAt, Integer yearPublished, String authorName, String[] possibleQuestionsThisAnswers) {
+    public DocumentsRecord(Long id, String title, String type, String summary, String[] characters, String fullText, OffsetDateTime createdAt, OffsetDateTime updatedAt, Integer yearPublished, String authorName, String[] possibleQuestionsThisAnswers, Boolean importing) {
         super(Documents.DOCUMENTS);
 
         setId(id);
@@ -211,6 +225,7 @@ public class DocumentsRecord extends UpdatableRecordImpl<DocumentsRecord> {
         setYearPublished(yearPublished);
         setAuthorName(authorName);
         setPossibleQuestionsThisAnswers(possibleQuestionsThisAnswers);
+        setImporting(importing);
         resetTouchedOnNotNull();
     }
 }
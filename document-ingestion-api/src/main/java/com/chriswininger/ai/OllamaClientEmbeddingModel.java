@@ -0,0 +1,53 @@
+package com.chriswininger.ai;
+
+import com.chriswininger.ollama.OllamaEmbeddingClient;
+import com.chriswininger.ollama.OllamaEmbeddings;
+import com.chriswininger.ollama.OllamaFutures;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * langchain4j {@link EmbeddingModel} over the ollama-client {@link OllamaEmbeddingClient}, so
+ * {@code embedAll} is a few batched {@code /api/embed} requests on the shared transport and the
+ * vectors reach {@link Embedding} as the {@code float[]} they were parsed into.
+ */
+public class OllamaClientEmbeddingModel implements EmbeddingModel {
+
+    private final OllamaEmbeddingClient client;
+
+    public OllamaClientEmbeddingModel(final OllamaEmbeddingClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(final List<TextSegment> textSegments) {
+        final OllamaEmbeddings embeddings;
+        try {
+            embeddings = OllamaFutures.await(client.embedAllAsync(textSegments.stream().map(TextSegment::text).toList()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while embedding", e);
+        }
+
+        final List<Embedding> result = new ArrayList<>(embeddings.count());
+        for (final float[] vector : embeddings.vectors()) {
+            result.add(new Embedding(vector));
+        }
+        return Response.from(result, new TokenUsage(Math.toIntExact(embeddings.promptTokens())));
+    }
+
+    @Override
+    public String modelName() {
+        return client.modelName();
+    }
+}
@@ -1,9 +1,9 @@
 package com.chriswininger.ai;
 
+import com.chriswininger.ollama.OllamaEmbeddingClient;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
-import dev.langchain4j.model.ollama.OllamaEmbeddingModel;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -19,9 +19,6 @@ public class OllamaModelProducer {
     @ConfigProperty(name = "ollama.model-name")
     String modelName;
 
-    @ConfigProperty(name = "ollama.embedding-model-name")
-    String embeddingModelName;
-
     @ConfigProperty(name = "ollama.timeout-seconds", defaultValue = "120")
     long timeoutSeconds;
 
@@ -36,13 +33,10 @@ public class OllamaModelProducer {
                 .build();
     }
 
+    // batched /api/embed on the shared transport, rather than langchain4j's one request per segment
     @Produces
     @ApplicationScoped
-    public EmbeddingModel embeddingModel() {
-        return OllamaEmbeddingModel.builder()
-                .baseUrl(baseUrl)
-                .modelName(embeddingModelName)
-                .timeout(Duration.ofSeconds(timeoutSeconds))
-                .build();
+    public EmbeddingModel embeddingModel(final OllamaEmbeddingClient ollamaEmbeddingClient) {
+        return new OllamaClientEmbeddingModel(ollamaEmbeddingClient);
     }
 }
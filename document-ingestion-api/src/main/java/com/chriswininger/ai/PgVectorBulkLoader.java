@@ -0,0 +1,213 @@
+package com.chriswininger.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import javax.sql.DataSource;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes embeddings into {@code vector_store} with a binary {@code COPY} rather than the
+ * {@code INSERT}s of the langchain4j store, in the same layout so they read back through it.
+ * <p>
+ * The HNSW index is otherwise updated row by row as the rows go in. A load of at least
+ * {@code vector-store.bulk-load.rebuild-index-min-rows} rows drops it first and builds it again
+ * afterwards with {@code CREATE INDEX CONCURRENTLY}, given
+ * {@code vector-store.bulk-load.maintenance-work-mem} and
+ * {@code vector-store.bulk-load.parallel-workers}. Searches fall back to a sequential scan until
+ * the new index is in.
+ */
+@ApplicationScoped
+public class PgVectorBulkLoader {
+
+    private static final Logger LOG = Logger.getLogger(PgVectorBulkLoader.class);
+
+    private static final String TABLE = "vector_store";
+    // the name PostgreSQL gave the unnamed index of V9__enable_vector_extensions.sql
+    private static final String HNSW_INDEX = "vector_store_embedding_idx";
+    private static final String COPY_SQL =
+            "COPY " + TABLE + " (embedding_id, embedding, text, metadata) FROM STDIN (FORMAT binary)";
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int COPY_BUFFER_BYTES = 256 * 1024;
+
+    private final DataSource dataSource;
+    private final long rebuildIndexMinRows;
+    private final String maintenanceWorkMem;
+    private final int parallelWorkers;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // one load at a time may drop and rebuild the index
+    private final Object indexLock = new Object();
+
+    /**
+     * @param rebuildIndexMinRows loads of at least this many rows rebuild the HNSW index, 0 never does
+     */
+    public PgVectorBulkLoader(
+            final DataSource dataSource,
+            @ConfigProperty(name = "vector-store.bulk-load.rebuild-index-min-rows", defaultValue = "0")
+            final long rebuildIndexMinRows,
+            @ConfigProperty(name = "vector-store.bulk-load.maintenance-work-mem", defaultValue = "1GB")
+            final String maintenanceWorkMem,
+            @ConfigProperty(name = "vector-store.bulk-load.parallel-workers", defaultValue = "4")
+            final int parallelWorkers
+    ) {
+        this.dataSource = dataSource;
+        this.rebuildIndexMinRows = rebuildIndexMinRows;
+        this.maintenanceWorkMem = maintenanceWorkMem;
+        this.parallelWorkers = parallelWorkers;
+    }
+
+    /**
+     * Copies the embeddings in, {@code embeddings} and {@code segments} pair up by position
+     *
+     * @return the ids the rows were stored under, in order
+     */
+    public List<String> load(final List<Embedding> embeddings, final List<TextSegment> segments)
+            throws SQLException, IOException {
+        if (embeddings.size() != segments.size()) {
+            throw new IllegalArgumentException(
+                    embeddings.size() + " embeddings for " + segments.size() + " segments");
+        }
+        if (rebuildIndexMinRows <= 0 || embeddings.size() < rebuildIndexMinRows) {
+            return copy(embeddings, segments);
+        }
+
+        synchronized (indexLock) {
+            execute("DROP INDEX CONCURRENTLY IF EXISTS " + HNSW_INDEX);
+            final List<String> ids;
+            try {
+                ids = copy(embeddings, segments);
+            } catch (SQLException | IOException | RuntimeException e) {
+                // the index goes back either way, a failure to build it must not hide why the copy failed
+                try {
+                    buildIndex();
+                } catch (SQLException | RuntimeException buildFailure) {
+                    e.addSuppressed(buildFailure);
+                }
+                throw e;
+            }
+            buildIndex();
+            return ids;
+        }
+    }
+
+    private List<String> copy(final List<Embedding> embeddings, final List<TextSegment> segments)
+            throws SQLException, IOException {
+        final long startedNanos = System.nanoTime();
+        final List<String> ids = new ArrayList<>(embeddings.size());
+        try (Connection connection = dataSource.getConnection()) {
+            final PGCopyOutputStream copy = new PGCopyOutputStream(
+                    connection.unwrap(PGConnection.class), COPY_SQL, COPY_BUFFER_BYTES);
+            try {
+                final DataOutputStream out = new DataOutputStream(copy);
+                out.write(COPY_SIGNATURE);
+                out.writeInt(0);
+                out.writeInt(0);
+                for (int i = 0; i < embeddings.size(); i++) {
+                    final UUID id = UUID.randomUUID();
+                    writeRow(out, id, embeddings.get(i).vector(), segments.get(i));
+                    ids.add(id.toString());
+                }
+                out.writeShort(-1);
+                out.flush();
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        }
+
+        LOG.infof("(PgVectorBulkLoader) copied %d rows into %s in %d ms", ids.size(), TABLE,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        return ids;
+    }
+
+    private void writeRow(final DataOutputStream out, final UUID id, final float[] vector, final TextSegment segment)
+            throws IOException {
+        out.writeShort(4);
+
+        out.writeInt(16);
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+
+        // pgvector's binary form: dimensions, an unused int16, then the floats
+        out.writeInt(4 + 4 * vector.length);
+        out.writeShort(vector.length);
+        out.writeShort(0);
+        for (final float value : vector) {
+            out.writeFloat(value);
+        }
+
+        writeText(out, segment.text());
+        writeText(out, metadataJson(segment));
+    }
+
+    private static void writeText(final DataOutputStream out, final String text) throws IOException {
+        if (Objects.isNull(text)) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // the langchain4j store writes every metadata value as a string, filters and reads expect that
+    private String metadataJson(final TextSegment segment) throws JsonProcessingException {
+        final Map<String, String> values = new LinkedHashMap<>();
+        segment.metadata().toMap().forEach((key, value) -> values.put(key, String.valueOf(value)));
+        return objectMapper.writeValueAsString(values);
+    }
+
+    private void buildIndex() throws SQLException {
+        final long startedNanos = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute("SET maintenance_work_mem = '" + maintenanceWorkMem.replace("'", "''") + "'");
+            statement.execute("SET max_parallel_maintenance_workers = " + parallelWorkers);
+            try {
+                statement.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + HNSW_INDEX
+                        + " ON " + TABLE + " USING hnsw (embedding vector_cosine_ops)");
+            } catch (SQLException e) {
+                // a failed concurrent build leaves an invalid index behind, the next rebuild starts clean
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + HNSW_INDEX);
+                throw e;
+            } finally {
+                statement.execute("RESET maintenance_work_mem");
+                statement.execute("RESET max_parallel_maintenance_workers");
+            }
+        }
+
+        LOG.infof("(PgVectorBulkLoader) rebuilt %s in %d ms", HNSW_INDEX,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+    }
+
+    private void execute(final String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute(sql);
+        }
+    }
+}
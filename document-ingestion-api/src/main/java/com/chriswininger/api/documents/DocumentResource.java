@@ -5,7 +5,8 @@ import com.chriswininger.api.documents.dto.ImportedBookResult;
 import com.chriswininger.api.documents.dto.requests.DocumentResponse;
 import com.chriswininger.api.documents.dto.requests.SubmitDocumentRequest;
 import com.chriswininger.api.documents.services.ChapterService;
-import com.chriswininger.api.documents.services.ImportBookService;
+import com.chriswininger.api.documents.services.ImportJob;
+import com.chriswininger.api.documents.services.ImportJobService;
 import com.chriswininger.db.generated.Tables;
 import com.chriswininger.db.generated.tables.records.DocumentsRecord;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -38,17 +39,17 @@ public class DocumentResource {
 
     private final ChapterService chapterService;
 
-    private final ImportBookService importBookService;
+    private final ImportJobService importJobService;
 
     private final DSLContext dsl;
 
     public DocumentResource(
             final ChapterService chapterService,
-            final ImportBookService importBookService,
+            final ImportJobService importJobService,
             final DSLContext dsl
     ) {
         this.chapterService = chapterService;
-        this.importBookService = importBookService;
+        this.importJobService = importJobService;
         this.dsl = dsl;
     }
 
@@ -62,6 +63,7 @@ public class DocumentResource {
         LOG.infof("GET /documents (include_full_text=%b)", includeFullText);
 
         return dsl.selectFrom(Tables.DOCUMENTS)
+                .where(Tables.DOCUMENTS.IMPORTING.isFalse())
                 .fetch()
                 .map(record -> toDocumentResponse(record, includeFullText));
     }
@@ -78,6 +80,7 @@ public class DocumentResource {
 
         final DocumentsRecord record = dsl.selectFrom(Tables.DOCUMENTS)
                 .where(Tables.DOCUMENTS.ID.eq(id))
+                .and(Tables.DOCUMENTS.IMPORTING.isFalse())
                 .fetchOne();
 
         if (record == null) {
@@ -125,21 +128,21 @@ public class DocumentResource {
         });
     }
 
-    // TODO: We should include a chapter title in our chapter table and also an index, to let us
-    // track sequence
+    /**
+     * Imports the book and answers once it is done. It goes through the same queue as
+     * {@code /import-jobs}, which is the better fit for anything longer than a short story.
+     */
     @POST
     @Path("/submit-document")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(operationId = "submitDocument")
     public ImportedBookResult submitDocument(SubmitDocumentRequest request) throws IOException, InterruptedException {
-        final String bookContents = request.document();
-        LOG.infof("POST /rest/v1/submit-document — document size: %d bytes", bookContents.length());
-
-        final Pattern chapterSplitPattern = getChapterSplitPattern(request);
+        LOG.infof("POST /rest/v1/submit-document — document size: %d bytes", request.document().length());
 
+        final ImportJob job = ImportJobResource.submit(importJobService, request);
         try {
-            return importBookService.importBook(bookContents, chapterSplitPattern);
+            return job.await();
         } catch (IllegalArgumentException e) {
             throw new BadRequestException(e.getMessage(), e);
         }
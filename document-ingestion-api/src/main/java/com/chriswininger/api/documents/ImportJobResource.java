@@ -0,0 +1,137 @@
+package com.chriswininger.api.documents;
+
+import com.chriswininger.api.ApiConstants;
+import com.chriswininger.api.documents.dto.ImportedBookResult;
+import com.chriswininger.api.documents.dto.requests.ImportJobResponse;
+import com.chriswininger.api.documents.dto.requests.SubmitDocumentRequest;
+import com.chriswininger.api.documents.services.ImportJob;
+import com.chriswininger.api.documents.services.ImportJobService;
+import io.smallrye.mutiny.Multi;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.ResponseStatus;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Book imports as background jobs: submitting returns the job straight away, its progress can be
+ * polled or followed as Server-Sent Events, and it can be cancelled. A cancelled or failed import
+ * resumes from its checkpoints when the same book is submitted again.
+ */
+@Path(ApiConstants.BASE_REST_V1)
+public class ImportJobResource {
+
+    private static final Logger LOG = Logger.getLogger(ImportJobResource.class);
+
+    private final ImportJobService importJobService;
+
+    public ImportJobResource(final ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    @POST
+    @Path("/import-jobs")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ResponseStatus(202)
+    @Operation(operationId = "submitImportJob")
+    public ImportJobResponse submitImportJob(final SubmitDocumentRequest request) {
+        LOG.infof("POST /import-jobs — '%s', document size: %d bytes",
+                request.documentTitle(), request.document().length());
+
+        return submit(importJobService, request).toResponse();
+    }
+
+    @GET
+    @Path("/import-jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "listImportJobs")
+    public List<ImportJobResponse> listImportJobs() {
+        return importJobService.list().stream()
+                .map(ImportJob::toResponse)
+                .toList();
+    }
+
+    @GET
+    @Path("/import-jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getImportJob")
+    public ImportJobResponse getImportJob(@PathParam("id") final String id) {
+        return findJob(id).toResponse();
+    }
+
+    @GET
+    @Path("/import-jobs/{id}/result")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getImportJobResult")
+    public ImportedBookResult getImportJobResult(@PathParam("id") final String id) {
+        final ImportJob job = findJob(id);
+        final ImportedBookResult result = job.result();
+        if (Objects.isNull(result)) {
+            throw new ClientErrorException("Import job " + id + " is " + job.status(), Response.Status.CONFLICT);
+        }
+        return result;
+    }
+
+    @GET
+    @Path("/import-jobs/{id}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "streamImportJobEvents")
+    public Multi<ImportJobResponse> streamImportJobEvents(@PathParam("id") final String id) {
+        return importJobService.progress(findJob(id));
+    }
+
+    @DELETE
+    @Path("/import-jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "cancelImportJob")
+    public ImportJobResponse cancelImportJob(@PathParam("id") final String id) {
+        LOG.infof("DELETE /import-jobs/%s", id);
+
+        final ImportJob job = findJob(id);
+        importJobService.cancel(job);
+        return job.toResponse();
+    }
+
+    /**
+     * Submits the request's book, turning a full queue into 429 Too Many Requests
+     */
+    static ImportJob submit(final ImportJobService importJobService, final SubmitDocumentRequest request) {
+        final Pattern chapterSplitPattern;
+        try {
+            chapterSplitPattern = Objects.isNull(request.chapterSplitPattern())
+                    ? null
+                    : Pattern.compile(request.chapterSplitPattern());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+
+        try {
+            return importJobService.submit(request.documentTitle(), request.document(), chapterSplitPattern);
+        } catch (RejectedExecutionException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.TOO_MANY_REQUESTS, e);
+        }
+    }
+
+    private ImportJob findJob(final String id) {
+        return importJobService.find(id)
+                .orElseThrow(() -> new NotFoundException("Import job not found: " + id));
+    }
+}
@@ -2,12 +2,12 @@ package com.chriswininger.api.documents.dto;
 
 import com.chriswininger.api.dto.inferenceresults.ChapterSummaryResult;
 
-import java.util.List;
-
+/**
+ * @param chapterId the persisted chapter, its text and sections are read from there
+ */
 public record ChapterSummary(
         int sequence,
         ChapterSummaryResult chapterSummaryResult,
         String chapterTitle,
-        String fullChapterText,
-        List<Segment> segments
+        Long chapterId
 ) {}
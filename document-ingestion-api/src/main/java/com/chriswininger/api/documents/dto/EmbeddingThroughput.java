@@ -0,0 +1,10 @@
+package com.chriswininger.api.documents.dto;
+
+/**
+ * How fast an import embedded its sections; chapters restored from checkpoints are not counted
+ *
+ * @param sections          embedded by this attempt
+ * @param millis            from the first chapter's embedding starting to the last one finishing
+ * @param sectionsPerSecond {@code sections} over {@code millis}, 0 when nothing was embedded
+ */
+public record EmbeddingThroughput(int sections, long millis, double sectionsPerSecond) {}
@@ -1,11 +1,21 @@
 package com.chriswininger.api.documents.dto;
 
+import com.chriswininger.api.documents.pipeline.CriticalPath;
 import com.chriswininger.api.dto.inferenceresults.BookSummaryResult;
 
 import java.util.List;
 
+/**
+ * @param importRunId  the import run, resubmitting the book after a failure resumes it
+ * @param criticalPath the chain of import tasks that bounded how long the import took
+ * @param embedding    sections embedded per second
+ */
 public record ImportedBookResult(
+        Long importRunId,
+        Long documentId,
         BookSummaryResult bookSummary,
         BookMetadataAnalysis bookMetadataAnalysis,
-        List<ChapterSummary> chapterSummaries
+        List<ChapterSummary> chapterSummaries,
+        CriticalPath criticalPath,
+        EmbeddingThroughput embedding
 ) {}
@@ -0,0 +1,25 @@
+package com.chriswininger.api.documents.dto.requests;
+
+import java.time.OffsetDateTime;
+
+/**
+ * @param stagesDone  import tasks finished so far, restored checkpoints included
+ * @param stagesTotal import tasks in all, 0 until the first one finishes
+ * @param lastStage   the import task that finished most recently
+ * @param etaSeconds  time left at the rate tasks have been finishing, {@code null} unless running
+ */
+public record ImportJobResponse(
+        String id,
+        String status,
+        String documentTitle,
+        OffsetDateTime submittedAt,
+        OffsetDateTime startedAt,
+        OffsetDateTime finishedAt,
+        int stagesDone,
+        int stagesTotal,
+        String lastStage,
+        Long etaSeconds,
+        Long importRunId,
+        Long documentId,
+        String error
+) {}
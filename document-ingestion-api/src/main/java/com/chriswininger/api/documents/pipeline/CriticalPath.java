@@ -0,0 +1,29 @@
+package com.chriswininger.api.documents.pipeline;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The chain of tasks that bounded a {@link TaskGraph} run: shortening anything else would not
+ * have made it finish sooner
+ *
+ * @param totalMillis from the start of the run to the last task finishing
+ * @param steps       in order, each the last task the next one waited for
+ */
+public record CriticalPath(long totalMillis, List<Step> steps) {
+
+    /**
+     * @param startedAtMillis when the task started running, from the start of the run
+     * @param waitedMillis    ready but waiting for a permit of its group
+     * @param ranMillis       how long the task itself took
+     */
+    public record Step(String task, long startedAtMillis, long waitedMillis, long ranMillis) {}
+
+    @Override
+    public String toString() {
+        return "%d ms: %s".formatted(totalMillis, steps.stream()
+                .map(step -> "%s %d ms".formatted(step.task(), step.ranMillis())
+                        + (step.waitedMillis() > 0 ? " (+%d ms waiting)".formatted(step.waitedMillis()) : ""))
+                .collect(Collectors.joining(" -> ")));
+    }
+}
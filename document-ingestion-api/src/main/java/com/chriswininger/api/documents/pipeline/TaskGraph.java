@@ -0,0 +1,256 @@
+package com.chriswininger.api.documents.pipeline;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dependency graph of tasks that runs every task as soon as the tasks it depends on are done,
+ * each on its own virtual thread.
+ * <p>
+ * Tasks can be put in a named group with a permit limit, so for example no more than a few
+ * chapters are summarized at once while cheap tasks (chunking, persisting) are never held up
+ * behind them. The first task to fail interrupts the ones still running, nothing that depends on
+ * it is started, and {@link #run()} rethrows its exception. Interrupting the thread in
+ * {@link #run()} stops the graph the same way.
+ * <p>
+ * Every task is timed; {@link #run()} returns the {@link CriticalPath}, the chain of tasks each
+ * of which was the last thing the next one waited for, which is what bounds the whole run.
+ * <p>
+ * A task is dropped once it has run, along with whatever it captured, and its result once every
+ * task depending on it has finished, so a long run only holds what is still to be used. Results
+ * read after {@link #run()} must be {@link Node#retain() retained}.
+ */
+public final class TaskGraph {
+
+    private static final Logger LOG = Logger.getLogger(TaskGraph.class);
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Told about each task as it completes, with how many of the graph's tasks have
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void taskFinished(String task, int finished, int tasks);
+    }
+
+    private static final Listener NO_LISTENER = (task, finished, tasks) -> {};
+
+    private final String name;
+    private final List<Node<?>> nodes = new ArrayList<>();
+    private final Map<String, Semaphore> groups = new HashMap<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private Listener listener = NO_LISTENER;
+
+    public TaskGraph(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * At most {@code permits} tasks of {@code group} run at the same time
+     */
+    public TaskGraph limit(final String group, final int permits) {
+        groups.put(group, new Semaphore(Math.max(1, permits)));
+        return this;
+    }
+
+    public TaskGraph listener(final Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public <T> Node<T> add(final String name, final Task<T> task, final Node<?>... dependencies) {
+        return add(name, null, task, dependencies);
+    }
+
+    /**
+     * @param group the {@link #limit} group the task counts against, or {@code null} for none
+     */
+    public <T> Node<T> add(final String name, final String group, final Task<T> task, final Node<?>... dependencies) {
+        final Node<T> node = new Node<>(name, group, task, List.of(dependencies));
+        for (final Node<?> dependency : dependencies) {
+            dependency.unfinishedDependents.incrementAndGet();
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Runs every task and waits for all of them
+     */
+    public CriticalPath run() throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(name + "-task-", 0).factory())) {
+            // nodes are added after their dependencies, so those futures already exist
+            for (final Node<?> node : nodes) {
+                node.schedule(executor, groups.get(node.group));
+                node.future.whenComplete((value, error) -> {
+                    if (Objects.isNull(error)) {
+                        listener.taskFinished(node.name, finished.incrementAndGet(), nodes.size());
+                    } else if (failure.compareAndSet(null, unwrap(error))) {
+                        LOG.warnf("(TaskGraph) %s: %s failed, stopping: %s", name, node.name, unwrap(error));
+                        executor.shutdownNow();
+                    }
+                });
+            }
+
+            try {
+                CompletableFuture.allOf(nodes.stream().map(node -> node.future).toArray(CompletableFuture[]::new)).get();
+            } catch (ExecutionException | CancellationException ignored) {
+                // the first failure is rethrown below
+            } catch (InterruptedException e) {
+                if (failure.compareAndSet(null, e)) {
+                    LOG.warnf("(TaskGraph) %s: interrupted, stopping", name);
+                }
+                executor.shutdownNow();
+            }
+        }
+
+        final Throwable error = failure.get();
+        if (Objects.nonNull(error)) {
+            switch (error) {
+                case IOException io -> throw io;
+                case InterruptedException interrupted -> throw interrupted;
+                case RuntimeException runtime -> throw runtime;
+                case Error fatal -> throw fatal;
+                default -> throw new IllegalStateException(error);
+            }
+        }
+
+        return criticalPath(start);
+    }
+
+    // walk back from the task that finished last, each time to the dependency that finished last
+    private CriticalPath criticalPath(final long start) {
+        final List<CriticalPath.Step> steps = new ArrayList<>();
+        Node<?> node = nodes.stream().max(Comparator.comparingLong(n -> n.endNanos)).orElse(null);
+        final long end = Objects.isNull(node) ? start : node.endNanos;
+        while (Objects.nonNull(node)) {
+            steps.addFirst(new CriticalPath.Step(
+                    node.name,
+                    millis(node.startNanos - start),
+                    millis(node.startNanos - node.readyNanos),
+                    millis(node.endNanos - node.startNanos)));
+            node = node.dependencies.stream().max(Comparator.comparingLong(n -> n.endNanos)).orElse(null);
+        }
+        return new CriticalPath(millis(end - start), steps);
+    }
+
+    private static long millis(final long nanos) {
+        return nanos / 1_000_000L;
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && Objects.nonNull(cause.getCause())) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * A task in the graph, its result is available to the tasks that depend on it
+     */
+    public static final class Node<T> {
+        private final String name;
+        private final String group;
+        private final List<Node<?>> dependencies;
+        private final AtomicInteger unfinishedDependents = new AtomicInteger();
+        private Task<T> task;
+        private CompletableFuture<Void> future;
+        private volatile T value;
+        private volatile boolean released;
+        private boolean retained;
+        private volatile long readyNanos;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        private Node(final String name, final String group, final Task<T> task, final List<Node<?>> dependencies) {
+            this.name = name;
+            this.group = group;
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Keeps the result after the tasks depending on it have finished, to read it after
+         * {@link TaskGraph#run()}
+         */
+        public Node<T> retain() {
+            retained = true;
+            return this;
+        }
+
+        /**
+         * The task's result, only to be called from a task that depends on this one or, if
+         * {@link #retain() retained}, after the run
+         */
+        public T get() {
+            if (Objects.isNull(future) || !future.isDone()) {
+                throw new IllegalStateException(name + " has not finished");
+            }
+            future.join();
+            if (released) {
+                throw new IllegalStateException(name + " was released, every task depending on it has finished");
+            }
+            return value;
+        }
+
+        private void dependentFinished() {
+            if (unfinishedDependents.decrementAndGet() == 0 && !retained) {
+                released = true;
+                value = null;
+            }
+        }
+
+        private void schedule(final ExecutorService executor, final Semaphore permits) {
+            final CompletableFuture<?>[] before = dependencies.stream()
+                    .map(dependency -> dependency.future)
+                    .toArray(CompletableFuture[]::new);
+
+            future = CompletableFuture.allOf(before).thenRunAsync(() -> {
+                readyNanos = System.nanoTime();
+                try {
+                    if (Objects.nonNull(permits)) {
+                        permits.acquire();
+                    }
+                    try {
+                        startNanos = System.nanoTime();
+                        value = task.run();
+                    } finally {
+                        endNanos = System.nanoTime();
+                        task = null;
+                        if (Objects.nonNull(permits)) {
+                            permits.release();
+                        }
+                        dependencies.forEach(Node::dependentFinished);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.chriswininger.api.documents.services;
 
 import com.chriswininger.api.documents.dto.BookMetadataAnalysis;
 import com.chriswininger.api.dto.inferenceresults.BookMetadataAnalysisResult;
-import com.chriswininger.ollama.OllamaApiService;
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.InferenceStrategy;
+import com.chriswininger.ollama.OllamaPriority;
+import com.chriswininger.ollama.OllamaPrompt;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.splitter.DocumentBySentenceSplitter;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
@@ -27,7 +31,9 @@ public class BookMetaExtractionService {
 
     private final ChapterService chapterService;
 
-    private final OllamaApiService ollamaApiService;
+    private final InferenceClient inferenceClient;
+
+    private final InferenceStrategy inferenceStrategy;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -129,12 +135,39 @@ public class BookMetaExtractionService {
             - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
     """.trim();
 
+    private static final String SYSTEM_PROMPT_SINGLE_PASS = """
+        You are a document analysis assistant. You will be given text from the front of a book
+        (copyright page, introduction, forward) and from the back of it (publisher information,
+        index, postscript). Either may also contain a bit of the first or last chapter; ignore
+        that. Analyze both and respond with a JSON object.
+
+        Provide the following fields:
+        ```
+        %s
+        ```
+
+        Rules:
+        - hasSummaryInformation: whether the text actually contains front or back matter such as
+          title, author, introductions, or publisher information.
+        - yearPublished: when the book was written.
+        - summary: interesting information about the book -- historical context, facts about the
+          author, whether the book is part of a series and other such information.
+        - characters: any character the front or back matter mentions.
+        - possibleQuestionsThisAnswers: natural questions a curious reader might have that this
+          material directly answers, including ones specific to this book such as
+          "What is {title} about?" or "What books did {author} write?".
+        - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
+        """.trim();
+
     public BookMetaExtractionService(
             final ChapterService chapterService,
-            final OllamaApiService ollamaApiService
+            final InferenceClient inferenceClient,
+            @ConfigProperty(name = "ollama.inference.strategy", defaultValue = "two-pass")
+            final InferenceStrategy inferenceStrategy
     ) {
         this.chapterService = chapterService;
-        this.ollamaApiService = ollamaApiService;
+        this.inferenceClient = inferenceClient.withStage("book-metadata").withPriority(OllamaPriority.BULK);
+        this.inferenceStrategy = inferenceStrategy;
     }
 
     public BookMetadataAnalysis extractMetaDataFromTheBook(
@@ -142,9 +175,43 @@ public class BookMetaExtractionService {
             final Pattern chapterSplitter
     ) throws IOException, InterruptedException {
         final String frontText = extractFrontText(fullBook, chapterSplitter);
-        final String frontAnalysis = analyzeFrontText(frontText);
-
         final String backText = takeSentencesFromBack(fullBook, 40);
+
+        final BookMetadataAnalysisResult result = inferenceStrategy == InferenceStrategy.SINGLE_PASS
+                ? analyzeSinglePass(frontText, backText)
+                : analyzeTwoPass(frontText, backText);
+
+        return new BookMetadataAnalysis(frontText, backText, result);
+    }
+
+    private BookMetadataAnalysisResult analyzeSinglePass(
+            final String frontText,
+            final String backText
+    ) throws IOException, InterruptedException {
+        final OllamaPrompt userMessage = OllamaPrompt.format("""
+                ===== Front of the book ======
+                %s
+                ==============================
+
+                ===== Back of the book ======
+                %s
+                ==============================
+                """, frontText, backText).trim();
+
+        return inferenceClient.callOllamaSinglePass(
+                SYSTEM_PROMPT_SINGLE_PASS.formatted(inferenceClient.buildExampleJson(BookMetadataAnalysisResult.class)),
+                userMessage,
+                true,
+                BookMetadataAnalysisResult.class,
+                result -> !result.summary().isBlank(),
+                () -> analyzeTwoPass(frontText, backText));
+    }
+
+    private BookMetadataAnalysisResult analyzeTwoPass(
+            final String frontText,
+            final String backText
+    ) throws IOException, InterruptedException {
+        final String frontAnalysis = analyzeFrontText(frontText);
         final String backAnalysis = analyzeBackText(backText, frontAnalysis);
 
         final String userMessage = """
@@ -159,11 +226,9 @@ public class BookMetaExtractionService {
                 Based on the above analyses of both front and back please respond with structured JSON.
         """.formatted(frontAnalysis, backAnalysis).trim();
 
-        final BookMetadataAnalysisResult result = ollamaApiService.callOllamaStructuredResponse(
-                SYSTEM_MESSAGE_STRUCTURE.formatted(ollamaApiService.buildExampleJson(BookMetadataAnalysisResult.class)),
+        return inferenceClient.callOllamaStructuredResponse(
+                SYSTEM_MESSAGE_STRUCTURE.formatted(inferenceClient.buildExampleJson(BookMetadataAnalysisResult.class)),
                 userMessage, true, BookMetadataAnalysisResult.class);
-
-        return new BookMetadataAnalysis(frontText, backText, result);
     }
 
     private String extractFrontText(
@@ -183,31 +248,31 @@ public class BookMetaExtractionService {
     private String analyzeFrontText(
             final String frontText
     ) throws IOException, InterruptedException {
-        final String userMessage = """
+        final OllamaPrompt userMessage = OllamaPrompt.format("""
                 First half of the book containing the intro and possibly a bit of the first chapter. Focus only on
                 the contents before the start of the first chapter.
                 
                 =======================
                 %s
                 =======================
-                """.formatted(frontText).trim();
-        return ollamaApiService.callOllamaPlainTextResponse(SYSTEM_PROMPT_FRONT, userMessage, true);
+                """, frontText).trim();
+        return inferenceClient.callOllamaPlainTextResponse(SYSTEM_PROMPT_FRONT, userMessage, true);
     }
 
     private String analyzeBackText(
             final String backText, final String frontAnalysis
     ) throws IOException, InterruptedException {
         final String systemMessage = SYSTEM_PROMPT_BACK.formatted(frontAnalysis);
-        final String userMessage = """
+        final OllamaPrompt userMessage = OllamaPrompt.format("""
                 Back half of the book containing postscript, publisher information, etc. This may also contain a bit of
                 the final chapter. Focus only on the contents before the start of the first chapter.
 
                 =======================
                 %s
                 =======================
-                """.formatted(backText);
+                """, backText);
 
-        return ollamaApiService.callOllamaPlainTextResponse(systemMessage, userMessage, true);
+        return inferenceClient.callOllamaPlainTextResponse(systemMessage, userMessage, true);
     }
 
     private String takeSentencesFromFront(final String fullBook, int count) {
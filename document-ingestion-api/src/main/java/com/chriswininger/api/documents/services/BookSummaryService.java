@@ -1,20 +1,29 @@
 package com.chriswininger.api.documents.services;
 
 import com.chriswininger.api.dto.inferenceresults.BookSummaryResult;
-import com.chriswininger.ollama.OllamaApiService;
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.InferenceStrategy;
+import com.chriswininger.ollama.OllamaChatResult;
+import com.chriswininger.ollama.OllamaPriority;
+import com.chriswininger.ollama.OllamaPrompt;
+import com.chriswininger.ollama.OllamaStreamListener;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @ApplicationScoped
 public class BookSummaryService {
     private static final Logger LOG = Logger.getLogger(BookSummaryService.class);
 
-    private final OllamaApiService ollamaApiService;
+    private static final int PROGRESS_LOG_EVERY_CHARS = 2_000;
+
+    private final InferenceClient inferenceClient;
+    private final int maxOutputChars;
+    private final InferenceStrategy inferenceStrategy;
 
     private static final String SYSTEM_PROMPT_UNSTRUCTURED = """
         You are a literary analysis assistant. You will be given a summary of the front and back
@@ -73,13 +82,59 @@ public class BookSummaryService {
         - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
         """.trim();
 
-    public BookSummaryService(final OllamaApiService ollamaApiService) {
-        this.ollamaApiService = ollamaApiService;
+    private static final String SYSTEM_PROMPT_SINGLE_PASS = """
+        You are a literary analysis assistant. You will be given a summary of the front and back
+        of a book along with summaries of each chapter. Analyze the entire book and respond with
+        a JSON object.
+
+        Provide the following fields:
+        ```
+        %s
+        ```
+
+        Rules:
+        - summary: a thorough summary of the book as a whole, synthesizing the front/back matter
+          and all chapter summaries. Cover the major themes, plot arc, key arguments, and overall
+          narrative as a cohesive overview, not a chapter-by-chapter recap.
+        - title, authorName, publisher, yearPublished: as given by the front/back matter.
+        - characters: every character (person, creature, or named entity) across the entire
+          book, each listed once.
+        - possibleQuestionsThisAnswers: general ("What is this book about?") and specific
+          questions a curious reader might have that the book as a whole answers.
+        - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
+        """.trim();
+
+    public BookSummaryService(
+            final InferenceClient inferenceClient,
+            @ConfigProperty(name = "ollama.stream.max-output-chars") final int maxOutputChars,
+            @ConfigProperty(name = "ollama.inference.strategy", defaultValue = "two-pass")
+            final InferenceStrategy inferenceStrategy
+    ) {
+        this.inferenceClient = inferenceClient.withStage("book-summary").withPriority(OllamaPriority.BULK);
+        this.maxOutputChars = maxOutputChars;
+        this.inferenceStrategy = inferenceStrategy;
     }
 
     public BookSummaryResult summarizeBook(
             final String frontBackSummary,
             final List<String> chapterSummaries
+    ) throws IOException, InterruptedException {
+        if (inferenceStrategy == InferenceStrategy.SINGLE_PASS) {
+            return inferenceClient.callOllamaSinglePass(
+                    SYSTEM_PROMPT_SINGLE_PASS.formatted(inferenceClient.buildExampleJson(BookSummaryResult.class)),
+                    buildAnalysisUserMessage(frontBackSummary, chapterSummaries),
+                    true,
+                    BookSummaryResult.class,
+                    result -> !result.summary().isBlank(),
+                    () -> summarizeTwoPass(frontBackSummary, chapterSummaries));
+        }
+
+        return summarizeTwoPass(frontBackSummary, chapterSummaries);
+    }
+
+    private BookSummaryResult summarizeTwoPass(
+            final String frontBackSummary,
+            final List<String> chapterSummaries
     ) throws IOException, InterruptedException {
         final String plainTextSummary = summarizeUnstructured(frontBackSummary, chapterSummaries);
 
@@ -92,11 +147,27 @@ public class BookSummaryService {
             final String frontBackSummary,
             final List<String> chapterSummaries
     ) throws IOException, InterruptedException {
-        final String chaptersBlock = IntStream.range(0, chapterSummaries.size())
-                .mapToObj(i -> "--- Chapter %d ---\n%s".formatted(i + 1, chapterSummaries.get(i)))
-                .collect(Collectors.joining("\n\n"));
+        final OllamaPrompt userMessage = buildAnalysisUserMessage(frontBackSummary, chapterSummaries);
 
-        final String userMessage = """
+        // the whole-book pass is the longest generation in an import, stream it so progress shows in the log
+        final OllamaChatResult result = inferenceClient.callOllamaPlainTextResponseStreaming(
+                SYSTEM_PROMPT_UNSTRUCTURED, userMessage, true, maxOutputChars,
+                OllamaStreamListener.progressLogger("summarizeBook", PROGRESS_LOG_EVERY_CHARS));
+
+        return result.content();
+    }
+
+    private OllamaPrompt buildAnalysisUserMessage(
+            final String frontBackSummary,
+            final List<String> chapterSummaries
+    ) {
+        final List<CharSequence> chaptersBlock = new ArrayList<>(chapterSummaries.size() * 2);
+        for (int i = 0; i < chapterSummaries.size(); i++) {
+            chaptersBlock.add((i == 0 ? "" : "\n\n") + "--- Chapter " + (i + 1) + " ---\n");
+            chaptersBlock.add(chapterSummaries.get(i));
+        }
+
+        return OllamaPrompt.format("""
                 ===== Front/Back Summary =====
                 %s
                 ==============================
@@ -106,9 +177,7 @@ public class BookSummaryService {
                 ==============================
 
                 Based on all of the above, produce a comprehensive analysis of the entire book.
-                """.formatted(frontBackSummary, chaptersBlock).trim();
-
-        return ollamaApiService.callOllamaPlainTextResponse(SYSTEM_PROMPT_UNSTRUCTURED, userMessage, true);
+                """, frontBackSummary, OllamaPrompt.of(chaptersBlock)).trim();
     }
 
     private BookSummaryResult summarizeStructured(
@@ -122,8 +191,8 @@ public class BookSummaryService {
                 Based on the above analysis please respond with structured JSON.
                 """.formatted(plainTextSummary).trim();
 
-        return ollamaApiService.callOllamaStructuredResponse(
-                SYSTEM_PROMPT_STRUCTURED.formatted(ollamaApiService.buildExampleJson(BookSummaryResult.class)),
+        return inferenceClient.callOllamaStructuredResponse(
+                SYSTEM_PROMPT_STRUCTURED.formatted(inferenceClient.buildExampleJson(BookSummaryResult.class)),
                 userMessage, true, BookSummaryResult.class);
     }
 }
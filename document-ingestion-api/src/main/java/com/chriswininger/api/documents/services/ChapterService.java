@@ -4,6 +4,7 @@ import com.chriswininger.api.dto.inferenceresults.ChapterSummaryResult;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,7 +19,7 @@ public class ChapterService {
         this.chapterSummaryAiService = chapterSummaryAiService;
     }
 
-    public ChapterSummaryResult summarizeChapter(final Chapter chapter) {
+    public ChapterSummaryResult summarizeChapter(final Chapter chapter) throws IOException, InterruptedException {
         return chapterSummaryAiService.summarize(chapter.label(), chapter.content());
     }
 
@@ -1,23 +1,28 @@
 package com.chriswininger.api.documents.services;
 
 import com.chriswininger.api.dto.inferenceresults.ChapterSummaryResult;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.InferenceStrategy;
+import com.chriswininger.ollama.OllamaPriority;
+import com.chriswininger.ollama.OllamaPrompt;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.*;
-
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Summarizes a chapter through the {@link InferenceClient}, as bulk work, so chapter summaries go
+ * to whichever backend {@code inference.backend} selects and share its pool, retries, caching and
+ * coalescing with the other import stages.
+ */
 @ApplicationScoped
 public class ChapterSummaryAiServiceDirect {
+    private static final Logger LOG = Logger.getLogger(ChapterSummaryAiServiceDirect.class);
 
     private static final String SUMMARIZE_SYSTEM_PROMPT = """
             You are a literary analysis assistant. You will be given a chapter from a book,
@@ -46,145 +51,90 @@ public class ChapterSummaryAiServiceDirect {
             You are a data formatting assistant. You will be given a plain-text literary analysis
             that contains a SUMMARY, a list of CHARACTERS, and a list of POSSIBLE QUESTIONS.
 
-            Your job is to convert this text into a JSON object with exactly these three keys:
-              "summary": string,
-              "characters": array of strings,
-              "possibleQuestionsThisAnswers": array of strings
+            Your job is to convert this text into a JSON object.
+
+            Provide the following fields:
+            ```
+            %s
+            ```
 
             Rules:
             - Do not add, remove, or rephrase any content. Faithfully convert what is given.
             - Each character should appear exactly once in the array.
             - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.""";
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    @ConfigProperty(name = "ollama.base-url")
-    String baseUrl;
-
-    @ConfigProperty(name = "ollama.model-name")
-    String modelName;
-
-    @ConfigProperty(name = "ollama.timeout-seconds", defaultValue = "300")
-    int timeoutSeconds;
+    private static final String SINGLE_PASS_SYSTEM_PROMPT = """
+            You are a literary analysis assistant. You will be given a chapter from a book,
+            including its heading and full text. Analyze it and respond with a JSON object.
 
-    public ChapterSummaryResult summarize(final String label, final String content) {
-        try {
-            // Pass 1: summarize into plain text (avoids structured-output repetition loops)
-            final String plainTextSummary = summarizePlainText(label, content);
+            Provide the following fields:
+            ```
+            %s
+            ```
 
-            // Pass 2: convert the plain-text analysis into structured JSON
-            final String structurePayload = buildStructurePayload(plainTextSummary);
-            final String structureResponse = callOllama(structurePayload);
-            return parseResponse(structureResponse);
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("Failed to call Ollama API", e);
-        }
-    }
+            Rules:
+            - summary: a concise paragraph summarizing the key events, ideas, or arguments of
+              this chapter, focusing on what happens and why it matters to the narrative.
+            - characters: every character (person, creature, or named entity) who appears or is
+              meaningfully mentioned, each listed only once under their fullest name.
+            - possibleQuestionsThisAnswers: natural questions a curious reader might have that
+              this chapter directly answers, e.g. "Who is Captain Aubrey?"
+            - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.""";
 
-    private String summarizePlainText(final String label, final String content) throws IOException, InterruptedException {
-        final String payload = buildSummarizePayload(label, content);
-        final String responseBody = callOllama(payload);
+    private final InferenceClient inferenceClient;
+    private final InferenceStrategy inferenceStrategy;
 
-        final JsonNode outer = objectMapper.readTree(responseBody);
-        return outer.path("message").path("content").asText();
+    public ChapterSummaryAiServiceDirect(
+            final InferenceClient inferenceClient,
+            @ConfigProperty(name = "ollama.inference.strategy", defaultValue = "two-pass")
+            final InferenceStrategy inferenceStrategy
+    ) {
+        this.inferenceClient = inferenceClient.withStage("chapter-summary").withPriority(OllamaPriority.BULK);
+        this.inferenceStrategy = inferenceStrategy;
     }
 
-    private String callOllama(final String payload) throws IOException, InterruptedException {
-        final HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
-
-        final HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/api/chat"))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(timeoutSeconds))
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
-
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Ollama returned HTTP " + response.statusCode() + ": " + response.body());
+    public ChapterSummaryResult summarize(final String label, final String content)
+            throws IOException, InterruptedException {
+        final OllamaPrompt userMessage = OllamaPrompt.of("Chapter heading: ", label, "\n\nChapter text:\n", content);
+
+        final ChapterSummaryResult result;
+        if (inferenceStrategy == InferenceStrategy.SINGLE_PASS) {
+            result = inferenceClient.callOllamaSinglePass(
+                    SINGLE_PASS_SYSTEM_PROMPT.formatted(inferenceClient.buildExampleJson(ChapterSummaryResult.class)),
+                    userMessage,
+                    true,
+                    ChapterSummaryResult.class,
+                    summary -> !summary.summary().isBlank(),
+                    () -> summarizeTwoPass(label, userMessage));
+        } else {
+            result = summarizeTwoPass(label, userMessage);
         }
 
-        return response.body();
-    }
-
-    // Pass 1 payload: plain-text summarization (no structured format constraint)
-    private String buildSummarizePayload(final String label, final String content) throws IOException {
-        final String userMessage = "Chapter heading: " + label + "\n\nChapter text:\n" + content;
-
-        final ObjectNode root = objectMapper.createObjectNode();
-        root.put("model", modelName);
-        root.put("stream", false);
-
-        // options
-        final ObjectNode options = root.putObject("options");
-        options.put("num_ctx", 65536);
-
-        // === Messages ===
-        final ArrayNode messages = root.putArray("messages");
-        final ObjectNode systemMsg = messages.addObject();
-        systemMsg.put("role", "system");
-        systemMsg.put("content", SUMMARIZE_SYSTEM_PROMPT);
-        final ObjectNode userMsg = messages.addObject();
-        userMsg.put("role", "user");
-        userMsg.put("content", userMessage);
-        // === End Messages ===
-
-        return objectMapper.writeValueAsString(root);
+        return deduplicateCharacters(result);
     }
 
-    // Pass 2 payload: convert plain-text summary into structured JSON
-    private String buildStructurePayload(final String plainTextSummary) throws IOException {
-        final ObjectNode root = objectMapper.createObjectNode();
-        root.put("model", modelName);
-        root.put("stream", false);
-
-        // === format ===
-        final ObjectNode format = root.putObject("format");
-        format.put("type", "object");
-        // format -> properties
-        final ObjectNode properties = format.putObject("properties");
-        // format -> properties -> summary
-        properties.putObject("summary").put("type", "string");
-        // format -> properties -> characters
-        final ObjectNode chars = properties.putObject("characters");
-        chars.put("type", "array");
-        chars.putObject("items").put("type", "string");
-        // format -> properties -> possibleQuestionsThisAnswers
-        final ObjectNode questions = properties.putObject("possibleQuestionsThisAnswers");
-        questions.put("type", "array");
-        questions.putObject("items").put("type", "string");
-        // === end format ===
-
-        // options
-        final ObjectNode options = root.putObject("options");
-        options.put("num_ctx", 65536);
-
-        // === Messages ===
-        final ArrayNode messages = root.putArray("messages");
-        final ObjectNode systemMsg = messages.addObject();
-        systemMsg.put("role", "system");
-        systemMsg.put("content", STRUCTURE_SYSTEM_PROMPT);
-        final ObjectNode userMsg = messages.addObject();
-        userMsg.put("role", "user");
-        userMsg.put("content", plainTextSummary);
-        // === End Messages ===
-
-        root.putArray("tools");
-
-        return objectMapper.writeValueAsString(root);
+    private ChapterSummaryResult summarizeTwoPass(final String label, final OllamaPrompt userMessage)
+            throws IOException, InterruptedException {
+        // Pass 1: summarize into plain text (avoids structured-output repetition loops)
+        final String plainTextSummary = inferenceClient.callOllamaPlainTextResponse(
+                SUMMARIZE_SYSTEM_PROMPT, userMessage, true);
+        LOG.infof("(summarize) %s plain-text pass complete, running structured pass", label);
+
+        // Pass 2: convert the plain-text analysis into structured JSON
+        return inferenceClient.callOllamaStructuredResponse(
+                STRUCTURE_SYSTEM_PROMPT.formatted(inferenceClient.buildExampleJson(ChapterSummaryResult.class)),
+                plainTextSummary,
+                true,
+                ChapterSummaryResult.class);
     }
 
-    private ChapterSummaryResult parseResponse(final String responseBody) throws IOException {
-        final JsonNode outer = objectMapper.readTree(responseBody);
-        final String innerJson = outer.path("message").path("content").asText();
-        final ChapterSummaryResult chapterSummary = objectMapper.readValue(innerJson, ChapterSummaryResult.class);
+    private static ChapterSummaryResult deduplicateCharacters(final ChapterSummaryResult chapterSummary) {
+        if (Objects.isNull(chapterSummary.characters())) {
+            return chapterSummary;
+        }
 
-        // deduplicate characters
-        final Set<String> deduplicatedCharacters = new HashSet<>(
+        final Set<String> deduplicatedCharacters = new LinkedHashSet<>(
                 chapterSummary.characters().stream().map(String::toLowerCase).toList());
-        return chapterSummary.withCharacters(deduplicatedCharacters.stream().toList());
+        return chapterSummary.withCharacters(List.copyOf(deduplicatedCharacters));
     }
 }
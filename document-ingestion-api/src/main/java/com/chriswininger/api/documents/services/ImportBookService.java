@@ -2,8 +2,12 @@ package com.chriswininger.api.documents.services;
 
 import com.chriswininger.api.documents.dto.BookMetadataAnalysis;
 import com.chriswininger.api.documents.dto.ChapterSummary;
+import com.chriswininger.api.documents.dto.EmbeddingThroughput;
 import com.chriswininger.api.documents.dto.ImportedBookResult;
 import com.chriswininger.api.documents.dto.Segment;
+import com.chriswininger.api.documents.pipeline.CriticalPath;
+import com.chriswininger.api.documents.pipeline.TaskGraph;
+import com.chriswininger.api.documents.pipeline.TaskGraph.Node;
 import com.chriswininger.api.dto.inferenceresults.BookMetadataAnalysisResult;
 import com.chriswininger.api.dto.inferenceresults.BookSummaryResult;
 import com.chriswininger.api.dto.inferenceresults.ChapterSummaryResult;
@@ -13,15 +17,31 @@ import com.chriswininger.db.generated.Tables;
 import com.chriswininger.db.generated.tables.records.BookMetadataRecord;
 import com.chriswininger.db.generated.tables.records.ChaptersRecord;
 import com.chriswininger.db.generated.tables.records.DocumentsRecord;
+import com.chriswininger.db.generated.tables.records.ImportRunsRecord;
 import com.chriswininger.db.generated.tables.records.SectionsRecord;
+import com.chriswininger.ollama.OllamaResidencyManager;
+import com.chriswininger.repository.ImportRunRepository;
+import com.chriswininger.repository.SectionRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.jooq.DSLContext;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -29,110 +49,340 @@ import java.util.stream.Collectors;
 public class ImportBookService {
     private static final Logger LOG = Logger.getLogger(ImportBookService.class);
 
+    // the TaskGraph group chapter and segment summarization count against
+    private static final String CHAPTER_WORK = "chapter";
+    // persisting chapters whose vectors come from a checkpoint, one at a time so one chapter's are read at once
+    private static final String RESTORED_VECTORS = "restored-vectors";
+    private static final String UNTITLED = "Untitled";
+
+    private static final TypeReference<BookMetadataAnalysis> METADATA = new TypeReference<>() {};
+    private static final TypeReference<ChapterSummaryResult> CHAPTER_SUMMARY = new TypeReference<>() {};
+    private static final TypeReference<BookSummaryResult> BOOK_SUMMARY = new TypeReference<>() {};
+    private static final TypeReference<List<Segment>> SEGMENTS = new TypeReference<>() {};
+    private static final TypeReference<List<float[]>> VECTORS = new TypeReference<>() {};
+    private static final TypeReference<Long> ID = new TypeReference<>() {};
+    private static final TypeReference<Integer> COUNT = new TypeReference<>() {};
+
     private final BookMetaExtractionService bookMetaExtractionService;
     private final ChapterService chapterService;
     private final BookSummaryService bookSummaryService;
     private final SegmentSummaryService segmentSummaryService;
+    private final DocumentChunkerService documentChunkerService;
     private final DSLContext dsl;
     private final VectorStoreService vectorStoreService;
+    private final OllamaResidencyManager residency;
+    private final ImportRunRepository importRuns;
+    private final SectionRepository sectionRepository;
+    // runs in progress in this process, any other unfinished run can be resumed
+    private final Set<Long> activeRuns = ConcurrentHashMap.newKeySet();
+
+    @ConfigProperty(name = "ollama.model-name")
+    String modelName;
+
+    @ConfigProperty(name = "ollama.residency.pin-during-import", defaultValue = "true")
+    boolean pinDuringImport;
+
+    @ConfigProperty(name = "import.chapter-workers", defaultValue = "1")
+    int chapterWorkers;
 
     public ImportBookService(
             final BookMetaExtractionService bookMetaExtractionService,
             final ChapterService chapterService,
             final BookSummaryService bookSummaryService,
             final SegmentSummaryService segmentSummaryService,
+            final DocumentChunkerService documentChunkerService,
             final DSLContext dsl,
-            final VectorStoreService vectorStoreService
+            final VectorStoreService vectorStoreService,
+            final OllamaResidencyManager residency,
+            final ImportRunRepository importRuns,
+            final SectionRepository sectionRepository
     ) {
         this.bookMetaExtractionService = bookMetaExtractionService;
         this.chapterService = chapterService;
         this.bookSummaryService = bookSummaryService;
         this.segmentSummaryService = segmentSummaryService;
+        this.documentChunkerService = documentChunkerService;
         this.dsl = dsl;
         this.vectorStoreService = vectorStoreService;
+        this.residency = residency;
+        this.importRuns = importRuns;
+        this.sectionRepository = sectionRepository;
     }
 
+    /**
+     * Imports a book as a {@link TaskGraph}, so work that does not depend on each other overlaps:
+     * chapters are chunked and their segment text embedded while they are still being summarized,
+     * and each chapter is persisted as soon as its summary is in rather than after the book
+     * summary. Only the segment summaries wait for the book summary. The document row is written
+     * once the front and back matter is read and completed with the book summary later.
+     * <p>
+     * Every stage's output is checkpointed in an import run as it completes, and a finished
+     * chapter's text, segments and embeddings are let go once its sections are written. When an
+     * import of the same book with the same split pattern failed or was cut off by a restart, it
+     * is resumed: completed stages are restored rather than run again.
+     */
     public ImportedBookResult importBook(
             final String bookContents,
             final Pattern chapterSplitPattern
     ) throws IOException, InterruptedException {
-        LOG.infof("(importBook) Summarizing based on front and back of book");
-        final var bookMetaDataSummary = bookMetaExtractionService.extractMetaDataFromTheBook(bookContents, chapterSplitPattern);
-        LOG.infof("(importBook) bookMetaDataSummary %s", bookMetaDataSummary);
+        return importBook(bookContents, chapterSplitPattern, (task, finished, tasks) -> {});
+    }
+
+    /**
+     * @param progress told about each import task as it completes
+     */
+    public ImportedBookResult importBook(
+            final String bookContents,
+            final Pattern chapterSplitPattern,
+            final TaskGraph.Listener progress
+    ) throws IOException, InterruptedException {
+        final long importRunId = startRun(bookContents, chapterSplitPattern);
+        // held for the whole graph, summarization runs until the last segment
+        try (OllamaResidencyManager.Pin pin = pinSummarizationModel()) {
+            final ImportedBookResult result = runImport(importRunId, bookContents, chapterSplitPattern, progress);
+            publishDocument(result.documentId());
+            importRuns.updateStatus(importRunId, ImportRunRepository.Status.COMPLETED, null);
+            importRuns.deleteCheckpoints(importRunId);
+            return result;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            importRuns.updateStatus(importRunId, ImportRunRepository.Status.FAILED, String.valueOf(e));
+            throw e;
+        } finally {
+            activeRuns.remove(importRunId);
+        }
+    }
+
+    // synchronized so two submissions of the same book never pick up the same failed run
+    private synchronized long startRun(final String bookContents, final Pattern chapterSplitPattern) {
+        final String splitPattern = Objects.nonNull(chapterSplitPattern) ? chapterSplitPattern.pattern() : null;
+        final String contentHash = contentHash(bookContents, splitPattern);
+
+        final ImportRunsRecord run = importRuns.findResumable(contentHash, activeRuns)
+                .map(previous -> {
+                    LOG.infof("(importBook) resuming import run id=%d (%s: %s)",
+                            previous.getId(), previous.getStatus(), previous.getError());
+                    importRuns.updateStatus(previous.getId(), ImportRunRepository.Status.RUNNING, null);
+                    return previous;
+                })
+                .orElseGet(() -> importRuns.insert(contentHash, splitPattern));
+        activeRuns.add(run.getId());
+        return run.getId();
+    }
+
+    private OllamaResidencyManager.Pin pinSummarizationModel() {
+        return pinDuringImport ? residency.pin(modelName) : OllamaResidencyManager.Pin.none();
+    }
 
-        final var chapters = chapterService.splitIntoChapters(bookContents, chapterSplitPattern);
-        LOG.infof("(importBook) num chapters: %d", chapters.size());
+    private ImportedBookResult runImport(
+            final long importRunId,
+            final String bookContents,
+            final Pattern chapterSplitPattern,
+            final TaskGraph.Listener progress
+    ) throws IOException, InterruptedException {
+        final ImportCheckpoints checkpoints = new ImportCheckpoints(importRuns, dsl, importRunId);
+        final TaskGraph graph = new TaskGraph("import")
+                .limit(CHAPTER_WORK, chapterWorkers)
+                .limit(RESTORED_VECTORS, 1)
+                .listener(progress);
+        final EmbeddingMeter embeddingMeter = new EmbeddingMeter();
+
+        final Node<BookMetadataAnalysis> metadata = graph.add("metadata",
+                checkpoints.stage("metadata", METADATA, () -> {
+                    LOG.infof("(importBook) Summarizing based on front and back of book");
+                    final var bookMetaDataSummary = bookMetaExtractionService.extractMetaDataFromTheBook(bookContents, chapterSplitPattern);
+                    LOG.infof("(importBook) bookMetaDataSummary %s", bookMetaDataSummary);
+                    return bookMetaDataSummary;
+                })).retain();
+        final Node<Long> document = graph.add("persist-document",
+                checkpoints.persist("persist-document", ID,
+                        tx -> insertDocument(tx, importRunId, metadata.get(), bookContents)),
+                metadata).retain();
+
+        final List<ChapterNodes> chapters = addChapters(graph, checkpoints, embeddingMeter, document, bookContents,
+                chapterSplitPattern);
+
+        final List<Node<?>> bookSummaryInputs = new ArrayList<>();
+        chapters.forEach(chapter -> bookSummaryInputs.add(chapter.summary()));
+        bookSummaryInputs.add(metadata);
+        final Node<BookSummaryResult> bookSummary = graph.add("book-summary",
+                checkpoints.stage("book-summary", BOOK_SUMMARY, () -> {
+                    final String frontBackSummary = metadata.get().bookMetadataAnalysisResult().summary();
+                    final List<String> chapterSummaryTexts = chapters.stream()
+                            .map(chapter -> chapter.summary().get().summary())
+                            .toList();
+                    return bookSummaryService.summarizeBook(frontBackSummary, chapterSummaryTexts);
+                }), bookSummaryInputs.toArray(Node<?>[]::new)).retain();
+        graph.add("persist-book-summary",
+                checkpoints.persist("persist-book-summary", COUNT,
+                        tx -> updateDocument(tx, document.get(), bookSummary.get())),
+                document, bookSummary);
 
-        final List<Chapter> summarizedChapters = new ArrayList<>();
-        final List<ChapterSummaryResult> chapterSummaryResults = new ArrayList<>();
         for (int i = 0; i < chapters.size(); i++) {
-            final long startTime = System.currentTimeMillis();
-            if ("Intro".equals(chapters.get(i).label())) {
+            final ChapterNodes chapter = chapters.get(i);
+            if (Objects.isNull(chapter.chunks())) {
                 continue;
             }
 
-            LOG.infof("==== Start Summarizing Chapter: [%s] -> %s =====", i, chapters.get(i).label());
-            final var chpSummary = chapterService.summarizeChapter(chapters.get(i));
-            LOG.infof("Done Summarizing Chapter: %s -- %s -> took %s ms",
-                    i, chapters.get(i).label(), System.currentTimeMillis() - startTime);
-            LOG.infof("summary: '%s'", chpSummary);
-            LOG.info("=============================");
-
-            summarizedChapters.add(chapters.get(i));
-            chapterSummaryResults.add(chpSummary);
+            final int sequence = i;
+            final String segmentsStage = "segments-" + i;
+            final String embedStage = "embed-" + i;
+            final Node<List<Segment>> chapterSegments = graph.add(segmentsStage, CHAPTER_WORK,
+                    checkpoints.stage(segmentsStage, SEGMENTS, () -> {
+                        LOG.infof("==== Start Segment Summarization: chapter %d -> %s =====", sequence, chapter.label());
+                        final List<Segment> result = segmentSummaryService.summarizeChunks(
+                                chapter.chunks().get(), chapter.summary().get(), bookSummary.get());
+                        LOG.infof("Done Segment Summarization: chapter %d -> %d segments", sequence, result.size());
+                        return result;
+                    }), chapter.chunks(), chapter.summary(), bookSummary);
+            final boolean vectorsRestored = Objects.isNull(chapter.embeddings());
+            final List<Node<?>> persistInputs = new ArrayList<>(List.of(
+                    document, chapter.chapterId(), bookSummary, chapterSegments));
+            if (!vectorsRestored) {
+                persistInputs.add(chapter.embeddings());
+            }
+            graph.add("persist-sections-" + i, vectorsRestored ? RESTORED_VECTORS : null,
+                    checkpoints.persist("persist-sections-" + i, COUNT, tx -> {
+                        if (checkpoints.resuming()) {
+                            // an attempt that failed part way through may have stored some of the vectors
+                            vectorStoreService.removeChapter(chapter.chapterId().get());
+                        }
+                        final List<float[]> vectors = vectorsRestored
+                                ? checkpoints.restore(embedStage, VECTORS)
+                                : chapter.embeddings().get();
+                        return insertSections(tx, document.get(), chapter.chapterId().get(), chapter.label(),
+                                bookSummary.get(), chapterSegments.get(), vectors);
+                    }, embedStage, segmentsStage),
+                    persistInputs.toArray(Node<?>[]::new));
         }
 
-        final String frontBackSummary = bookMetaDataSummary.bookMetadataAnalysisResult().summary();
-        final List<String> chapterSummaryTexts = chapterSummaryResults.stream()
-                .map(ChapterSummaryResult::summary)
-                .toList();
-
-        final var bookSummary = bookSummaryService.summarizeBook(frontBackSummary, chapterSummaryTexts);
-
-        final List<ChapterSummary> chapterSummaries = new ArrayList<>();
-        for (int i = 0; i < summarizedChapters.size(); i++) {
-            LOG.infof("==== Start Segment Summarization: chapter %d -> %s =====",
-                    i, summarizedChapters.get(i).label());
-            final List<Segment> segments = segmentSummaryService.summarizeSegments(
-                    summarizedChapters.get(i).content(), chapterSummaryResults.get(i), bookSummary);
-            LOG.infof("Done Segment Summarization: chapter %d -> %d segments", i, segments.size());
+        final CriticalPath criticalPath = graph.run();
+        final EmbeddingThroughput embedding = embeddingMeter.throughput();
+        LOG.infof("(importBook) document id=%d imported (%d stages restored from checkpoints), critical path %s",
+                document.get(), checkpoints.restored(), criticalPath);
+        LOG.infof("(importBook) embedded %d sections in %d ms (%.1f sections/s)",
+                embedding.sections(), embedding.millis(), embedding.sectionsPerSecond());
 
+        final List<ChapterSummary> chapterSummaries = new ArrayList<>(chapters.size());
+        for (int i = 0; i < chapters.size(); i++) {
+            final ChapterNodes chapter = chapters.get(i);
             chapterSummaries.add(new ChapterSummary(
                     i,
-                    chapterSummaryResults.get(i),
-                    summarizedChapters.get(i).label(),
-                    summarizedChapters.get(i).content(),
-                    segments
+                    chapter.summary().get(),
+                    chapter.label(),
+                    chapter.chapterId().get()
             ));
         }
 
-        final var result = new ImportedBookResult(bookSummary, bookMetaDataSummary, chapterSummaries);
+        return new ImportedBookResult(importRunId, document.get(), bookSummary.get(), metadata.get(), chapterSummaries,
+                criticalPath, embedding);
+    }
+
+    /**
+     * Adds each chapter's summary, chunking and embedding, and persisting. The chapters are only
+     * referenced from their tasks, so a chapter's text can go once those have run. A chapter whose
+     * sections an earlier attempt already wrote only gets its summary and id restored.
+     */
+    private List<ChapterNodes> addChapters(
+            final TaskGraph graph,
+            final ImportCheckpoints checkpoints,
+            final EmbeddingMeter embeddingMeter,
+            final Node<Long> document,
+            final String bookContents,
+            final Pattern chapterSplitPattern
+    ) {
+        final var allChapters = chapterService.splitIntoChapters(bookContents, chapterSplitPattern);
+        LOG.infof("(importBook) num chapters: %d", allChapters.size());
 
-        persistImportedBook(result, bookContents);
+        final List<Chapter> chapters = allChapters.stream()
+                .filter(chapter -> !"Intro".equals(chapter.label()))
+                .toList();
 
-        return result;
+        // sequences come from the chapter's position, never from the order the work finishes in
+        final List<ChapterNodes> nodes = new ArrayList<>(chapters.size());
+        for (int i = 0; i < chapters.size(); i++) {
+            final int sequence = i;
+            final Chapter chapter = chapters.get(i);
+
+            final String summaryStage = "chapter-summary-" + i;
+            final Node<ChapterSummaryResult> summary = graph.add(summaryStage, CHAPTER_WORK,
+                    checkpoints.stage(summaryStage, CHAPTER_SUMMARY, () -> summarizeChapter(sequence, chapter))).retain();
+            final Node<Long> chapterId = graph.add("persist-chapter-" + i,
+                    checkpoints.persist("persist-chapter-" + i, ID,
+                            tx -> insertChapter(tx, document.get(), sequence, chapter, summary.get())),
+                    document, summary).retain();
+
+            if (checkpoints.has("persist-sections-" + i)) {
+                nodes.add(new ChapterNodes(chapter.label(), summary, chapterId, null, null));
+                continue;
+            }
+
+            final Node<List<String>> chunks = graph.add("chunk-" + i,
+                    () -> documentChunkerService.chunkText(chapter.content()));
+            // vectors an earlier attempt computed are read when the chapter's sections are written
+            final Node<List<float[]>> embeddings = checkpoints.has("embed-" + i)
+                    ? null
+                    : graph.add("embed-" + i,
+                            checkpoints.stage("embed-" + i, VECTORS,
+                                    () -> embedChunks(sequence, chunks.get(), embeddingMeter)),
+                            chunks);
+            nodes.add(new ChapterNodes(chapter.label(), summary, chapterId, chunks, embeddings));
+        }
+        return nodes;
+    }
+
+    /**
+     * Embeds a chapter's chunks with a few batched requests. Chapters embed while others are still
+     * being summarized or written, so one chapter's vectors are stored while the next is embedded.
+     */
+    private List<float[]> embedChunks(final int sequence, final List<String> chunks, final EmbeddingMeter meter) {
+        final long startedNanos = System.nanoTime();
+        final List<Embedding> embeddings = vectorStoreService.embedAll(chunks);
+        final long finishedNanos = System.nanoTime();
+        meter.record(chunks.size(), startedNanos, finishedNanos);
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(finishedNanos - startedNanos);
+        LOG.infof("(importBook) embedded %d sections of chapter %d in %d ms (%.1f sections/s)",
+                chunks.size(), sequence, millis, chunks.size() / Math.max(1e-3, millis / 1000.0));
+        return embeddings.stream().map(Embedding::vector).toList();
+    }
+
+    private ChapterSummaryResult summarizeChapter(final int sequence, final Chapter chapter)
+            throws IOException, InterruptedException {
+        final long startTime = System.currentTimeMillis();
+        LOG.infof("==== Start Summarizing Chapter: [%s] -> %s =====", sequence, chapter.label());
+        final var chpSummary = chapterService.summarizeChapter(chapter);
+        LOG.infof("Done Summarizing Chapter: %s -- %s -> took %s ms",
+                sequence, chapter.label(), System.currentTimeMillis() - startTime);
+        LOG.infof("summary: '%s'", chpSummary);
+        LOG.info("=============================");
+        return chpSummary;
     }
 
-    private void persistImportedBook(final ImportedBookResult result, final String bookContents) {
-        final BookSummaryResult bookSummary = result.bookSummary();
-        final BookMetadataAnalysis metaAnalysis = result.bookMetadataAnalysis();
+    /**
+     * Writes the document, titled from the front matter until the book summary is in, and its
+     * book metadata
+     */
+    private Long insertDocument(
+            final DSLContext tx,
+            final long importRunId,
+            final BookMetadataAnalysis metaAnalysis,
+            final String bookContents
+    ) {
         final BookMetadataAnalysisResult metaResult = metaAnalysis.bookMetadataAnalysisResult();
 
-        final DocumentsRecord doc = dsl.newRecord(Tables.DOCUMENTS);
-        doc.setTitle(bookSummary.title());
+        final DocumentsRecord doc = tx.newRecord(Tables.DOCUMENTS);
+        doc.setTitle(Objects.requireNonNullElse(metaResult.title(), UNTITLED));
         doc.setType("book");
-        doc.setSummary(bookSummary.summary());
-        doc.setCharacters(toArray(bookSummary.characters()));
         doc.setFullText(bookContents);
-        doc.setYearPublished(bookSummary.yearPublished() != null ? bookSummary.yearPublished().intValue() : null);
-        doc.setAuthorName(bookSummary.authorName());
-        doc.setPossibleQuestionsThisAnswers(toArray(bookSummary.possibleQuestionsThisAnswers()));
+        doc.setAuthorName(metaResult.authorName());
+        // hidden from the document APIs and search until the import completes, see publishDocument
+        doc.setImporting(true);
         doc.store();
 
         final Long documentId = doc.getId();
         LOG.infof("(persistImportedBook) inserted document id=%d", documentId);
 
-        final BookMetadataRecord meta = dsl.newRecord(Tables.BOOK_METADATA);
+        final BookMetadataRecord meta = tx.newRecord(Tables.BOOK_METADATA);
         meta.setDocumentId(documentId);
         meta.setSummary(metaResult.summary());
         meta.setTitle(metaResult.title());
@@ -148,51 +398,121 @@ public class ImportBookService {
 
         LOG.infof("(persistImportedBook) inserted book_metadata id=%d", meta.getId());
 
-        for (final ChapterSummary chapter : result.chapterSummaries()) {
-            final ChapterSummaryResult chpResult = chapter.chapterSummaryResult();
-
-            final ChaptersRecord chpRecord = dsl.newRecord(Tables.CHAPTERS);
-            chpRecord.setDocumentId(documentId);
-            chpRecord.setChapterTitle(chapter.chapterTitle());
-            chpRecord.setSequence(chapter.sequence());
-            chpRecord.setSummary(chpResult.summary());
-            chpRecord.setCharacters(toArray(chpResult.characters()));
-            chpRecord.setFullText(chapter.fullChapterText());
-            chpRecord.setPossibleQuestionsThisAnswers(toArray(chpResult.possibleQuestionsThisAnswers()));
-            chpRecord.store();
-
-            final Long chapterId = chpRecord.getId();
-            LOG.infof("(persistImportedBook) inserted chapter id=%d (sequence=%d)", chapterId, chapter.sequence());
-
-            for (final Segment segment : chapter.segments()) {
-                final SegmentSummaryResult segResult = segment.segmentSummary();
-
-                final SectionsRecord secRecord = dsl.newRecord(Tables.SECTIONS);
-                secRecord.setChapterId(chapterId);
-                secRecord.setSequence(segment.sequence());
-                secRecord.setSummary(segResult.summary());
-                secRecord.setCharacters(toArray(segResult.characters()));
-                secRecord.setFullText(segment.fullSegment());
-                secRecord.setPossibleQuestionsThisAnswers(toArray(segResult.possibleQuestionsThisAnswers()));
-                secRecord.store();
-
-                final Metadata metadata = new Metadata()
-                        .put("sectionId", secRecord.getId())
-                        .put("chapterId", chapterId)
-                        .put("documentId", documentId)
-                        .put("bookTitle", bookSummary.title())
-                        .put("chapterLabel", chapter.chapterTitle())
-                        .put("characters", toJsonArray(segResult.characters()))
-                        .put("possibleQuestionsThisAnswers", toJsonArray(segResult.possibleQuestionsThisAnswers()));
-
-                vectorStoreService.storeVector(segment.fullSegment(), metadata);
-            }
+        importRuns.updateDocumentId(tx, importRunId, documentId);
+        return documentId;
+    }
+
+    /**
+     * Makes the document visible once every stage has completed, so a run that failed and is
+     * never resumed leaves nothing half imported behind in the document APIs and search
+     */
+    private void publishDocument(final Long documentId) {
+        dsl.update(Tables.DOCUMENTS)
+                .set(Tables.DOCUMENTS.IMPORTING, false)
+                .where(Tables.DOCUMENTS.ID.eq(documentId))
+                .execute();
+        LOG.infof("(persistImportedBook) published document id=%d", documentId);
+    }
 
-            LOG.infof("(persistImportedBook) inserted %d sections for chapter id=%d",
-                    chapter.segments().size(), chapterId);
+    private int updateDocument(final DSLContext tx, final Long documentId, final BookSummaryResult bookSummary) {
+        final int updated = tx.update(Tables.DOCUMENTS)
+                .set(Tables.DOCUMENTS.TITLE, Objects.requireNonNullElse(bookSummary.title(), UNTITLED))
+                .set(Tables.DOCUMENTS.SUMMARY, bookSummary.summary())
+                .set(Tables.DOCUMENTS.CHARACTERS, toArray(bookSummary.characters()))
+                .set(Tables.DOCUMENTS.YEAR_PUBLISHED,
+                        bookSummary.yearPublished() != null ? bookSummary.yearPublished().intValue() : null)
+                .set(Tables.DOCUMENTS.AUTHOR_NAME, bookSummary.authorName())
+                .set(Tables.DOCUMENTS.POSSIBLE_QUESTIONS_THIS_ANSWERS, toArray(bookSummary.possibleQuestionsThisAnswers()))
+                .where(Tables.DOCUMENTS.ID.eq(documentId))
+                .execute();
+
+        LOG.infof("(persistImportedBook) updated document id=%d with the book summary", documentId);
+        return updated;
+    }
+
+    private Long insertChapter(
+            final DSLContext tx,
+            final Long documentId,
+            final int sequence,
+            final Chapter chapter,
+            final ChapterSummaryResult chpResult
+    ) {
+        final ChaptersRecord chpRecord = tx.newRecord(Tables.CHAPTERS);
+        chpRecord.setDocumentId(documentId);
+        chpRecord.setChapterTitle(chapter.label());
+        chpRecord.setSequence(sequence);
+        chpRecord.setSummary(chpResult.summary());
+        chpRecord.setCharacters(toArray(chpResult.characters()));
+        chpRecord.setFullText(chapter.content());
+        chpRecord.setPossibleQuestionsThisAnswers(toArray(chpResult.possibleQuestionsThisAnswers()));
+        chpRecord.store();
+
+        final Long chapterId = chpRecord.getId();
+        LOG.infof("(persistImportedBook) inserted chapter id=%d (sequence=%d)", chapterId, sequence);
+        return chapterId;
+    }
+
+    private int insertSections(
+            final DSLContext tx,
+            final Long documentId,
+            final Long chapterId,
+            final String chapterLabel,
+            final BookSummaryResult bookSummary,
+            final List<Segment> segments,
+            final List<float[]> embeddings
+    ) {
+        final List<SectionsRecord> records = new ArrayList<>(segments.size());
+        for (final Segment segment : segments) {
+            final SegmentSummaryResult segResult = segment.segmentSummary();
+
+            final SectionsRecord secRecord = tx.newRecord(Tables.SECTIONS);
+            secRecord.setChapterId(chapterId);
+            secRecord.setSequence(segment.sequence());
+            secRecord.setSummary(segResult.summary());
+            secRecord.setCharacters(toArray(segResult.characters()));
+            secRecord.setFullText(segment.fullSegment());
+            secRecord.setPossibleQuestionsThisAnswers(toArray(segResult.possibleQuestionsThisAnswers()));
+            records.add(secRecord);
         }
+        final List<Long> sectionIds = sectionRepository.insertAll(tx, records);
+
+        final List<Embedding> vectors = new ArrayList<>(segments.size());
+        final List<TextSegment> textSegments = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            final SegmentSummaryResult segResult = segment.segmentSummary();
+
+            final Metadata metadata = new Metadata()
+                    .put("sectionId", sectionIds.get(i))
+                    .put("chapterId", chapterId)
+                    .put("documentId", documentId)
+                    .put("bookTitle", bookSummary.title())
+                    .put("chapterLabel", chapterLabel)
+                    .put("characters", toJsonArray(segResult.characters()))
+                    .put("possibleQuestionsThisAnswers", toJsonArray(segResult.possibleQuestionsThisAnswers()));
+
+            // segments are the chunks in order, embedded before their summaries were in
+            vectors.add(Embedding.from(embeddings.get(segment.sequence())));
+            textSegments.add(TextSegment.from(segment.fullSegment(), metadata));
+        }
+        // the vector store commits on its own connection, a failure after this is covered by the
+        // removeChapter on resume
+        vectorStoreService.storeVectors(vectors, textSegments);
+
+        LOG.infof("(persistImportedBook) inserted %d sections for chapter id=%d", segments.size(), chapterId);
+        return segments.size();
+    }
 
-        LOG.infof("(persistImportedBook) persistence complete for document id=%d", documentId);
+    private static String contentHash(final String bookContents, final String splitPattern) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(splitPattern).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(bookContents.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     private static String[] toArray(final List<String> list) {
@@ -206,4 +526,41 @@ public class ImportBookService {
                 .collect(Collectors.joining(","));
         return "[" + items + "]";
     }
+
+    /**
+     * Spans the chapters' embedding, which runs concurrently, from the first one starting to the
+     * last one finishing
+     */
+    private static final class EmbeddingMeter {
+
+        private int sections;
+        private long firstStartedNanos = Long.MAX_VALUE;
+        private long lastFinishedNanos = Long.MIN_VALUE;
+
+        synchronized void record(final int count, final long startedNanos, final long finishedNanos) {
+            sections += count;
+            firstStartedNanos = Math.min(firstStartedNanos, startedNanos);
+            lastFinishedNanos = Math.max(lastFinishedNanos, finishedNanos);
+        }
+
+        synchronized EmbeddingThroughput throughput() {
+            if (sections == 0) {
+                return new EmbeddingThroughput(0, 0, 0);
+            }
+            final long nanos = Math.max(1, lastFinishedNanos - firstStartedNanos);
+            return new EmbeddingThroughput(sections, TimeUnit.NANOSECONDS.toMillis(nanos), sections / (nanos / 1e9));
+        }
+    }
+
+    /**
+     * A chapter's nodes; {@code chunks} and {@code embeddings} are {@code null} when its sections
+     * were written by an earlier attempt, {@code embeddings} alone when its vectors were saved by one
+     */
+    private record ChapterNodes(
+            String label,
+            Node<ChapterSummaryResult> summary,
+            Node<Long> chapterId,
+            Node<List<String>> chunks,
+            Node<List<float[]>> embeddings
+    ) {}
 }
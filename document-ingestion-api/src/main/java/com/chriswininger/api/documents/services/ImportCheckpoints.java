@@ -0,0 +1,126 @@
+package com.chriswininger.api.documents.services;
+
+import com.chriswininger.api.documents.pipeline.TaskGraph;
+import com.chriswininger.repository.ImportRunRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Saves the output of each import stage as it completes, as JSON in {@code import_checkpoints},
+ * and gives it back in place of running the stage again when a failed import is resumed.
+ * <p>
+ * Only the names of the saved stages are read up front, a stage's output when the stage is
+ * reached or it is {@link #restore restored}. It is handed straight on, so a resumed import
+ * holds one chapter's vectors at a time rather than the whole book's.
+ */
+final class ImportCheckpoints {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ImportRunRepository importRuns;
+    private final DSLContext dsl;
+    private final long importRunId;
+    private final Set<String> saved;
+    private final boolean resuming;
+    private final AtomicInteger restored = new AtomicInteger();
+
+    ImportCheckpoints(final ImportRunRepository importRuns, final DSLContext dsl, final long importRunId) {
+        this.importRuns = importRuns;
+        this.dsl = dsl;
+        this.importRunId = importRunId;
+        this.saved = ConcurrentHashMap.newKeySet();
+        this.saved.addAll(importRuns.findCheckpointStages(importRunId));
+        this.resuming = !saved.isEmpty();
+    }
+
+    /**
+     * Whether this run picks up an earlier attempt
+     */
+    boolean resuming() {
+        return resuming;
+    }
+
+    /**
+     * Whether {@code stage} completed in an earlier attempt
+     */
+    boolean has(final String stage) {
+        return saved.contains(stage);
+    }
+
+    /**
+     * Stages whose output came from a checkpoint rather than from running them
+     */
+    int restored() {
+        return restored.get();
+    }
+
+    /**
+     * {@code task}, unless {@code stage} has a checkpoint, its output checkpointed once it has run
+     */
+    <T> TaskGraph.Task<T> stage(final String stage, final TypeReference<T> type, final TaskGraph.Task<T> task) {
+        return () -> {
+            if (saved.remove(stage)) {
+                return restore(stage, type);
+            }
+
+            final T output = task.run();
+            importRuns.insertCheckpoint(dsl, importRunId, stage, objectMapper.writeValueAsString(output));
+            return output;
+        };
+    }
+
+    /**
+     * Like {@link #stage}, for a stage that writes rows: {@code write} gets a transaction its rows
+     * commit in together with the checkpoint, so a stage is either fully persisted and skipped on
+     * resume, or not at all
+     *
+     * @param supersedes checkpoints of earlier stages this one makes unnecessary, dropped when it commits
+     */
+    <T> TaskGraph.Task<T> persist(
+            final String stage,
+            final TypeReference<T> type,
+            final Function<DSLContext, T> write,
+            final String... supersedes
+    ) {
+        return () -> {
+            if (saved.remove(stage)) {
+                return restore(stage, type);
+            }
+
+            return dsl.transactionResult(configuration -> {
+                final DSLContext tx = DSL.using(configuration);
+                final T output = write.apply(tx);
+                importRuns.insertCheckpoint(tx, importRunId, stage, objectMapper.writeValueAsString(output));
+                if (supersedes.length > 0) {
+                    importRuns.deleteCheckpoints(tx, importRunId, List.of(supersedes));
+                }
+                return output;
+            });
+        };
+    }
+
+    /**
+     * The output {@code stage} checkpointed, read now, for a stage that is not run as a task of its own
+     */
+    <T> T restore(final String stage, final TypeReference<T> type) {
+        final String checkpoint = importRuns.findCheckpoint(importRunId, stage)
+                .orElseThrow(() -> new IllegalStateException("checkpoint of " + stage + " is gone"));
+        saved.remove(stage);
+        restored.incrementAndGet();
+        try {
+            return objectMapper.readValue(checkpoint, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("checkpoint of " + stage + " does not read back", e);
+        }
+    }
+}
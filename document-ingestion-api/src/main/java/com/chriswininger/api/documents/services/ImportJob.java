@@ -0,0 +1,243 @@
+package com.chriswininger.api.documents.services;
+
+import com.chriswininger.api.documents.dto.ImportedBookResult;
+import com.chriswininger.api.documents.dto.requests.ImportJobResponse;
+import com.chriswininger.api.documents.pipeline.TaskGraph;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A book import submitted to the {@link ImportJobService}: where it is in its lifecycle, how far
+ * the import has got, and the progress streams following it.
+ * <p>
+ * Every change is pushed to the subscribers as a whole {@link ImportJobResponse}, and the streams
+ * complete once the job has finished, failed or been cancelled.
+ */
+public final class ImportJob implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(ImportJob.class);
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    @FunctionalInterface
+    interface Work {
+        ImportedBookResult run(TaskGraph.Listener progress) throws IOException, InterruptedException;
+    }
+
+    private final String id;
+    private final String documentTitle;
+    private final OffsetDateTime submittedAt = OffsetDateTime.now();
+    private final CompletableFuture<ImportedBookResult> done = new CompletableFuture<>();
+    private final List<MultiEmitter<? super ImportJobResponse>> subscribers = new ArrayList<>();
+
+    // dropped once run, it holds the book's text
+    private Work work;
+    private Status status = Status.QUEUED;
+    private OffsetDateTime startedAt;
+    private OffsetDateTime finishedAt;
+    private long startedNanos;
+    private int stagesDone;
+    private int stagesTotal;
+    private String lastStage;
+    private String error;
+    private Thread runner;
+    private boolean cancelRequested;
+
+    ImportJob(final String id, final String documentTitle, final Work work) {
+        this.id = id;
+        this.documentTitle = documentTitle;
+        this.work = work;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public synchronized Status status() {
+        return status;
+    }
+
+    public synchronized OffsetDateTime finishedAt() {
+        return finishedAt;
+    }
+
+    public OffsetDateTime submittedAt() {
+        return submittedAt;
+    }
+
+    @Override
+    public void run() {
+        final Work current;
+        synchronized (this) {
+            if (status != Status.QUEUED) {
+                // cancelled while it waited in the queue
+                return;
+            }
+            current = work;
+            work = null;
+            status = Status.RUNNING;
+            startedAt = OffsetDateTime.now();
+            startedNanos = System.nanoTime();
+            runner = Thread.currentThread();
+            publish();
+        }
+
+        try {
+            finish(current.run(this::stageFinished), null);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            finish(null, e);
+        }
+    }
+
+    /**
+     * Takes a queued job out of the running, or interrupts a running one
+     *
+     * @return false if the job had already finished
+     */
+    public synchronized boolean cancel() {
+        switch (status) {
+            case QUEUED -> {
+                LOG.infof("(ImportJob) %s cancelled while queued", id);
+                work = null;
+                status = Status.CANCELLED;
+                finishedAt = OffsetDateTime.now();
+                done.cancel(false);
+                publish();
+                return true;
+            }
+            case RUNNING -> {
+                LOG.infof("(ImportJob) %s cancelling", id);
+                cancelRequested = true;
+                runner.interrupt();
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Waits for the job and returns the import's result, or throws what the import failed with
+     */
+    public ImportedBookResult await() throws IOException, InterruptedException {
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException io -> throw io;
+                case InterruptedException interrupted -> throw interrupted;
+                case RuntimeException runtime -> throw runtime;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * The import's result, once the job has completed
+     */
+    public ImportedBookResult result() {
+        return done.isDone() && !done.isCompletedExceptionally() ? done.join() : null;
+    }
+
+    /**
+     * Sends the job's state to {@code emitter} now and on every change until the job is over
+     */
+    public synchronized void subscribe(final MultiEmitter<? super ImportJobResponse> emitter) {
+        emitter.emit(toResponse());
+        if (terminal()) {
+            emitter.complete();
+            return;
+        }
+        subscribers.add(emitter);
+        emitter.onTermination(() -> unsubscribe(emitter));
+    }
+
+    public synchronized ImportJobResponse toResponse() {
+        final ImportedBookResult result = result();
+        return new ImportJobResponse(
+                id,
+                status.name(),
+                documentTitle,
+                submittedAt,
+                startedAt,
+                finishedAt,
+                stagesDone,
+                stagesTotal,
+                lastStage,
+                etaSeconds(),
+                Objects.nonNull(result) ? result.importRunId() : null,
+                Objects.nonNull(result) ? result.documentId() : null,
+                error
+        );
+    }
+
+    private synchronized void unsubscribe(final MultiEmitter<? super ImportJobResponse> emitter) {
+        subscribers.remove(emitter);
+    }
+
+    private synchronized void stageFinished(final String stage, final int finished, final int tasks) {
+        if (status != Status.RUNNING) {
+            return;
+        }
+        stagesDone = finished;
+        stagesTotal = tasks;
+        lastStage = stage;
+        publish();
+    }
+
+    private synchronized void finish(final ImportedBookResult result, final Exception failure) {
+        runner = null;
+        finishedAt = OffsetDateTime.now();
+        if (Objects.isNull(failure)) {
+            status = Status.COMPLETED;
+            done.complete(result);
+        } else {
+            status = cancelRequested ? Status.CANCELLED : Status.FAILED;
+            error = cancelRequested ? null : String.valueOf(failure);
+            done.completeExceptionally(failure);
+        }
+        LOG.infof("(ImportJob) %s %s", id, status);
+        publish();
+    }
+
+    private boolean terminal() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    // rate of the tasks finished so far, checkpoints restored on a resume make it optimistic at first
+    private Long etaSeconds() {
+        if (status != Status.RUNNING || stagesDone == 0) {
+            return null;
+        }
+        final double elapsedSeconds = (System.nanoTime() - startedNanos) / 1e9;
+        return Math.round(elapsedSeconds / stagesDone * (stagesTotal - stagesDone));
+    }
+
+    private void publish() {
+        final ImportJobResponse response = toResponse();
+        for (final MultiEmitter<? super ImportJobResponse> emitter : List.copyOf(subscribers)) {
+            emitter.emit(response);
+            if (terminal()) {
+                emitter.complete();
+            }
+        }
+        if (terminal()) {
+            subscribers.clear();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.chriswininger.api.documents.services;
+
+import com.chriswininger.api.documents.dto.requests.ImportJobResponse;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Runs book imports as background jobs.
+ * <p>
+ * At most {@code import.max-concurrent-imports} imports run at once. Further submissions wait in
+ * a queue of {@code import.max-queued-imports} and anything past that is turned away with a
+ * {@link RejectedExecutionException}, rather than piling up imports that each hold a whole book
+ * and compete for the same inference slots. Finished jobs are kept for
+ * {@code import.jobs.retention-minutes} so their status and result can still be read.
+ */
+@ApplicationScoped
+public class ImportJobService {
+
+    private static final Logger LOG = Logger.getLogger(ImportJobService.class);
+
+    private final ImportBookService importBookService;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "import.max-concurrent-imports", defaultValue = "1")
+    int maxConcurrentImports;
+
+    @ConfigProperty(name = "import.max-queued-imports", defaultValue = "8")
+    int maxQueuedImports;
+
+    @ConfigProperty(name = "import.jobs.retention-minutes", defaultValue = "1440")
+    long retentionMinutes;
+
+    private ThreadPoolExecutor executor;
+
+    public ImportJobService(final ImportBookService importBookService) {
+        this.importBookService = importBookService;
+    }
+
+    @PostConstruct
+    void start() {
+        final int workers = Math.max(1, maxConcurrentImports);
+        final BlockingQueue<Runnable> queue = maxQueuedImports > 0
+                ? new ArrayBlockingQueue<>(maxQueuedImports)
+                : new SynchronousQueue<>();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofVirtual().name("import-job-", 0).factory());
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues an import of the book, it starts as soon as one of the import slots is free
+     *
+     * @throws RejectedExecutionException when every slot is busy and the queue is full
+     */
+    public ImportJob submit(final String documentTitle, final String bookContents, final Pattern chapterSplitPattern) {
+        evictFinished();
+
+        final ImportJob job = new ImportJob(UUID.randomUUID().toString(), documentTitle,
+                progress -> importBookService.importBook(bookContents, chapterSplitPattern, progress));
+        jobs.put(job.id(), job);
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id());
+            LOG.warnf("(ImportJobService) rejected import of '%s': %d running, %d queued",
+                    documentTitle, executor.getActiveCount(), executor.getQueue().size());
+            throw new RejectedExecutionException(String.format(
+                    "%d imports are running and %d more are queued, try again later",
+                    executor.getActiveCount(), executor.getQueue().size()), e);
+        }
+
+        LOG.infof("(ImportJobService) submitted import job %s for '%s' (%d queued)",
+                job.id(), documentTitle, executor.getQueue().size());
+        return job;
+    }
+
+    public Optional<ImportJob> find(final String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Every job still kept, oldest first
+     */
+    public List<ImportJob> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(ImportJob::submittedAt))
+                .toList();
+    }
+
+    /**
+     * Cancels the job, freeing its queue slot if it has not started
+     *
+     * @return false if it had already finished
+     */
+    public boolean cancel(final ImportJob job) {
+        final boolean cancelled = job.cancel();
+        executor.remove(job);
+        return cancelled;
+    }
+
+    /**
+     * The job's state now and on every change until it is over. Only the latest state is kept
+     * for a slow subscriber.
+     */
+    public Multi<ImportJobResponse> progress(final ImportJob job) {
+        return Multi.createFrom().<ImportJobResponse>emitter(job::subscribe, BackPressureStrategy.LATEST);
+    }
+
+    private void evictFinished() {
+        final OffsetDateTime cutoff = OffsetDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> {
+            final OffsetDateTime finishedAt = job.finishedAt();
+            return Objects.nonNull(finishedAt) && finishedAt.isBefore(cutoff);
+        });
+    }
+}
@@ -4,22 +4,35 @@ import com.chriswininger.api.documents.dto.Segment;
 import com.chriswininger.api.dto.inferenceresults.BookSummaryResult;
 import com.chriswininger.api.dto.inferenceresults.ChapterSummaryResult;
 import com.chriswininger.api.dto.inferenceresults.SegmentSummaryResult;
-import com.chriswininger.ollama.OllamaApiService;
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.InferenceStrategy;
+import com.chriswininger.ollama.OllamaFutures;
+import com.chriswininger.ollama.OllamaPriority;
+import com.chriswininger.ollama.OllamaPrompt;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @ApplicationScoped
 public class SegmentSummaryService {
     private static final Logger LOG = Logger.getLogger(SegmentSummaryService.class);
 
-    private final OllamaApiService ollamaApiService;
+    private final InferenceClient inferenceClient;
 
     private final DocumentChunkerService documentChunkerService;
 
+    private final InferenceStrategy inferenceStrategy;
+
+    // shared by every chapter being segmented, so chapter workers together stay inside the transport's queue
+    private final Semaphore pendingSegmentSummaries;
+
     private static final String SYSTEM_PROMPT_UNSTRUCTURED = """
         You are a literary analysis assistant. You will be given a segment of text from a chapter
         of a book, along with context about the book and the chapter it belongs to. Your task is
@@ -63,12 +76,39 @@ public class SegmentSummaryService {
         - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
         """.trim();
 
+    private static final String SYSTEM_PROMPT_SINGLE_PASS = """
+        You are a literary analysis assistant. You will be given a segment of text from a chapter
+        of a book, along with context about the book and the chapter it belongs to. Analyze the
+        segment and respond with a JSON object.
+
+        Provide the following fields:
+        ```
+        %s
+        ```
+
+        Rules:
+        - summary: a concise paragraph on the key events, ideas, or arguments in this segment and
+          why they matter to the narrative. Use the book and chapter context to inform your
+          understanding, but only summarize what appears in the segment itself.
+        - characters: every character (person, creature, or named entity) who appears or is
+          meaningfully mentioned in this segment, each listed once under their fullest name.
+        - possibleQuestionsThisAnswers: natural questions a curious reader might have that this
+          segment directly answers.
+        - Respond with ONLY the JSON object. No markdown, no explanation, no code fences.
+        """.trim();
+
     public SegmentSummaryService(
-            final OllamaApiService ollamaApiService,
-            final DocumentChunkerService documentChunkerService
+            final InferenceClient inferenceClient,
+            final DocumentChunkerService documentChunkerService,
+            @ConfigProperty(name = "ollama.inference.strategy", defaultValue = "two-pass")
+            final InferenceStrategy inferenceStrategy,
+            @ConfigProperty(name = "import.max-pending-segment-summaries", defaultValue = "64")
+            final int maxPendingSegmentSummaries
     ) {
-        this.ollamaApiService = ollamaApiService;
+        this.inferenceClient = inferenceClient.withStage("segment-summary").withPriority(OllamaPriority.BULK);
         this.documentChunkerService = documentChunkerService;
+        this.inferenceStrategy = inferenceStrategy;
+        this.pendingSegmentSummaries = new Semaphore(maxPendingSegmentSummaries);
     }
 
     public List<Segment> summarizeSegments(
@@ -79,12 +119,49 @@ public class SegmentSummaryService {
         final List<String> chunks = documentChunkerService.chunkText(text);
         LOG.infof("(summarizeSegments) chunked text into %d segments", chunks.size());
 
+        return summarizeChunks(chunks, chapterSummary, bookSummary);
+    }
+
+    /**
+     * As {@link #summarizeSegments}, for text that has already been chunked
+     */
+    public List<Segment> summarizeChunks(
+            final List<String> chunks,
+            final ChapterSummaryResult chapterSummary,
+            final BookSummaryResult bookSummary
+    ) throws IOException, InterruptedException {
+        // segments are independent of each other, so queue them up to import.max-pending-segment-summaries at
+        // a time and let the transport bound concurrency; queueing a whole book could overflow its per-host queue
+        final List<CompletableFuture<SegmentSummaryResult>> pending = new ArrayList<>();
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < chunks.size() && !failed.get(); i++) {
+            final int segmentNumber = i + 1;
+            try {
+                pendingSegmentSummaries.acquire();
+            } catch (InterruptedException e) {
+                pending.forEach(f -> f.cancel(true));
+                throw e;
+            }
+            final CompletableFuture<SegmentSummaryResult> summary =
+                    summarizeSegmentAsync(chunks.get(i), chapterSummary, bookSummary);
+            // awaitAll cancels what it was given, so that has to reach the request itself
+            pending.add(OllamaFutures.cancelling(summary.whenComplete((result, error) -> {
+                pendingSegmentSummaries.release();
+                if (error == null) {
+                    LOG.infof("(summarizeSegments) segment %d of %d summary: %s",
+                            segmentNumber, chunks.size(), result);
+                } else {
+                    // the chapter has failed, stop queueing; awaitAll reports it and cancels the rest
+                    failed.set(true);
+                }
+            }), summary));
+        }
+
+        final List<SegmentSummaryResult> summaries = OllamaFutures.awaitAll(pending);
+
         final List<Segment> results = new ArrayList<>();
         for (int i = 0; i < chunks.size(); i++) {
-            LOG.infof("(summarizeSegments) summarizing segment %d of %d", i + 1, chunks.size());
-            final var summary = summarizeSegment(chunks.get(i), chapterSummary, bookSummary);
-            LOG.infof("(summarizeSegments) summary: %s", summary);
-            results.add(new Segment(i, chunks.get(i), summary));
+            results.add(new Segment(i, chunks.get(i), summaries.get(i)));
         }
 
         return results;
@@ -95,18 +172,69 @@ public class SegmentSummaryService {
             final ChapterSummaryResult chapterSummary,
             final BookSummaryResult bookSummary
     ) throws IOException, InterruptedException {
-        final String plainTextAnalysis = summarizeUnstructured(segmentText, chapterSummary, bookSummary);
+        return OllamaFutures.await(summarizeSegmentAsync(segmentText, chapterSummary, bookSummary));
+    }
 
-        LOG.infof("(summarizeSegment) unstructured pass complete, running structured pass");
+    private CompletableFuture<SegmentSummaryResult> summarizeSegmentAsync(
+            final String segmentText,
+            final ChapterSummaryResult chapterSummary,
+            final BookSummaryResult bookSummary
+    ) {
+        if (inferenceStrategy == InferenceStrategy.SINGLE_PASS) {
+            return summarizeSinglePass(segmentText, chapterSummary, bookSummary);
+        }
 
-        return summarizeStructured(plainTextAnalysis);
+        return summarizeTwoPass(segmentText, chapterSummary, bookSummary);
     }
 
-    private String summarizeUnstructured(
+    private CompletableFuture<SegmentSummaryResult> summarizeSinglePass(
             final String segmentText,
             final ChapterSummaryResult chapterSummary,
             final BookSummaryResult bookSummary
-    ) throws IOException, InterruptedException {
+    ) {
+        final String systemPrompt;
+        try {
+            systemPrompt = SYSTEM_PROMPT_SINGLE_PASS.formatted(inferenceClient.buildExampleJson(SegmentSummaryResult.class));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return inferenceClient.callOllamaSinglePassAsync(
+                systemPrompt,
+                buildAnalysisUserMessage(segmentText, chapterSummary, bookSummary),
+                true,
+                SegmentSummaryResult.class,
+                result -> !result.summary().isBlank(),
+                () -> summarizeTwoPass(segmentText, chapterSummary, bookSummary));
+    }
+
+    private CompletableFuture<SegmentSummaryResult> summarizeTwoPass(
+            final String segmentText,
+            final ChapterSummaryResult chapterSummary,
+            final BookSummaryResult bookSummary
+    ) {
+        return OllamaFutures.thenCompose(summarizeUnstructured(segmentText, chapterSummary, bookSummary),
+                plainTextAnalysis -> {
+                    LOG.infof("(summarizeSegment) unstructured pass complete, running structured pass");
+                    return summarizeStructured(plainTextAnalysis);
+                });
+    }
+
+    private CompletableFuture<String> summarizeUnstructured(
+            final String segmentText,
+            final ChapterSummaryResult chapterSummary,
+            final BookSummaryResult bookSummary
+    ) {
+        final OllamaPrompt userMessage = buildAnalysisUserMessage(segmentText, chapterSummary, bookSummary);
+
+        return inferenceClient.callOllamaPlainTextResponseAsync(SYSTEM_PROMPT_UNSTRUCTURED, userMessage, true);
+    }
+
+    private OllamaPrompt buildAnalysisUserMessage(
+            final String segmentText,
+            final ChapterSummaryResult chapterSummary,
+            final BookSummaryResult bookSummary
+    ) {
         final String chapterCharacters = chapterSummary.characters() != null
                 ? String.join(", ", chapterSummary.characters())
                 : "none identified";
@@ -119,7 +247,7 @@ public class SegmentSummaryService {
                 ? String.join(", ", bookSummary.characters())
                 : "none identified";
 
-        final String userMessage = """
+        return OllamaPrompt.format("""
                 ===== Book Context =====
                 Title: %s
                 Author: %s
@@ -140,7 +268,7 @@ public class SegmentSummaryService {
 
                 Based on the segment text above, and using the book and chapter context to \
                 inform your understanding, produce an analysis of this segment.
-                """.formatted(
+                """,
                 bookSummary.title(),
                 bookSummary.authorName(),
                 bookSummary.summary(),
@@ -150,13 +278,11 @@ public class SegmentSummaryService {
                 chapterQuestions,
                 segmentText
         ).trim();
-
-        return ollamaApiService.callOllamaPlainTextResponse(SYSTEM_PROMPT_UNSTRUCTURED, userMessage, true);
     }
 
-    private SegmentSummaryResult summarizeStructured(
+    private CompletableFuture<SegmentSummaryResult> summarizeStructured(
             final String plainTextAnalysis
-    ) throws IOException, InterruptedException {
+    ) {
         final String userMessage = """
                 ===== Segment Analysis =====
                 %s
@@ -165,8 +291,14 @@ public class SegmentSummaryService {
                 Based on the above analysis please respond with structured JSON.
                 """.formatted(plainTextAnalysis).trim();
 
-        return ollamaApiService.callOllamaStructuredResponse(
-                SYSTEM_PROMPT_STRUCTURED.formatted(ollamaApiService.buildExampleJson(SegmentSummaryResult.class)),
-                userMessage, true, SegmentSummaryResult.class);
+        final String systemPrompt;
+        try {
+            systemPrompt = SYSTEM_PROMPT_STRUCTURED.formatted(inferenceClient.buildExampleJson(SegmentSummaryResult.class));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return inferenceClient.callOllamaStructuredResponseAsync(
+                systemPrompt, userMessage, true, SegmentSummaryResult.class);
     }
 }
@@ -0,0 +1,92 @@
+package com.chriswininger.api.inference;
+
+import com.chriswininger.api.ApiConstants;
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaBackendStats;
+import com.chriswininger.ollama.OllamaResidencyManager;
+import com.chriswininger.ollama.OllamaResidentModel;
+import com.chriswininger.ollama.OllamaResponseCache;
+import com.chriswininger.ollama.OllamaResponseCacheStats;
+import com.chriswininger.ollama.OllamaStageMetrics;
+import com.chriswininger.ollama.OllamaTransport;
+import com.chriswininger.ollama.OllamaTransportStats;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+@Path(ApiConstants.BASE_REST_V1 + "/inference")
+public class InferenceResource {
+
+    private static final Logger LOG = Logger.getLogger(InferenceResource.class);
+
+    private final OllamaTransport ollamaTransport;
+    private final OllamaBackendPool ollamaBackendPool;
+    private final OllamaResponseCache ollamaResponseCache;
+    private final InferenceClient inferenceClient;
+    private final OllamaResidencyManager ollamaResidencyManager;
+
+    public InferenceResource(
+            final OllamaTransport ollamaTransport,
+            final OllamaBackendPool ollamaBackendPool,
+            final OllamaResponseCache ollamaResponseCache,
+            final InferenceClient inferenceClient,
+            final OllamaResidencyManager ollamaResidencyManager
+    ) {
+        this.ollamaTransport = ollamaTransport;
+        this.ollamaBackendPool = ollamaBackendPool;
+        this.ollamaResponseCache = ollamaResponseCache;
+        this.inferenceClient = inferenceClient;
+        this.ollamaResidencyManager = ollamaResidencyManager;
+    }
+
+    @GET
+    @Path("/transport")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getTransportStats")
+    public OllamaTransportStats getTransportStats() {
+        LOG.infof("GET /inference/transport");
+        return ollamaTransport.stats();
+    }
+
+    @GET
+    @Path("/backends")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getBackendStats")
+    public List<OllamaBackendStats> getBackendStats() {
+        LOG.infof("GET /inference/backends");
+        return ollamaBackendPool.stats();
+    }
+
+    @GET
+    @Path("/cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getResponseCacheStats")
+    public OllamaResponseCacheStats getResponseCacheStats() {
+        LOG.infof("GET /inference/cache");
+        return ollamaResponseCache.stats();
+    }
+
+    @GET
+    @Path("/generations")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getGenerationMetrics")
+    public List<OllamaStageMetrics> getGenerationMetrics() {
+        LOG.infof("GET /inference/generations");
+        return inferenceClient.generationMetrics().snapshot();
+    }
+
+    @GET
+    @Path("/models")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(operationId = "getResidentModels")
+    public List<OllamaResidentModel> getResidentModels() {
+        LOG.infof("GET /inference/models");
+        return ollamaResidencyManager.resident();
+    }
+}
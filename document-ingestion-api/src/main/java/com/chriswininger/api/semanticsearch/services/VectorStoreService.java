@@ -1,6 +1,8 @@
 package com.chriswininger.api.semanticsearch.services;
 
+import com.chriswininger.ai.PgVectorBulkLoader;
 import com.chriswininger.api.semanticsearch.dto.requests.SemanticSearchMatchResponse;
+import com.chriswininger.repository.DocumentRepository;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
@@ -11,7 +13,11 @@ import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.filter.Filter;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
 import java.util.List;
 
 import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
@@ -29,19 +35,80 @@ public class VectorStoreService {
 
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final EmbeddingModel embeddingModel;
+    private final PgVectorBulkLoader bulkLoader;
+    private final DocumentRepository documentRepository;
+
+    @ConfigProperty(name = "vector-store.bulk-load.enabled", defaultValue = "true")
+    boolean bulkLoad;
 
     public VectorStoreService(
             final EmbeddingStore<TextSegment> embeddingStore,
-            final EmbeddingModel embeddingModel
+            final EmbeddingModel embeddingModel,
+            final PgVectorBulkLoader bulkLoader,
+            final DocumentRepository documentRepository
     ) {
         this.embeddingStore = embeddingStore;
         this.embeddingModel = embeddingModel;
+        this.bulkLoader = bulkLoader;
+        this.documentRepository = documentRepository;
     }
 
     public void storeVector(final String text, final Metadata metadata) {
-        final TextSegment segment = TextSegment.from(text, metadata);
-        final Embedding embedding = embeddingModel.embed(segment).content();
-        embeddingStore.add(embedding, segment);
+        storeVector(embed(text), text, metadata);
+    }
+
+    /**
+     * Embeds {@code text} without storing it, for callers that only know the metadata later
+     */
+    public Embedding embed(final String text) {
+        return embeddingModel.embed(text).content();
+    }
+
+    /**
+     * Embeds the texts with {@code embedAll}, a few batched requests bounded by
+     * {@code ollama.embedding.max-batch-tokens} and {@code ollama.embedding.max-batch-inputs}
+     * rather than one request per text
+     *
+     * @return the embeddings in the order of {@code texts}
+     */
+    public List<Embedding> embedAll(final List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        return embeddingModel.embedAll(texts.stream().map(TextSegment::from).toList()).content();
+    }
+
+    public void storeVector(final Embedding embedding, final String text, final Metadata metadata) {
+        embeddingStore.add(embedding, TextSegment.from(text, metadata));
+    }
+
+    /**
+     * Stores the vectors in one batch, {@code embeddings} and {@code segments} pair up by position.
+     * With {@code vector-store.bulk-load.enabled} the batch is written with a binary {@code COPY}.
+     */
+    public void storeVectors(final List<Embedding> embeddings, final List<TextSegment> segments) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        if (!bulkLoad) {
+            embeddingStore.addAll(embeddings, segments);
+            return;
+        }
+
+        try {
+            bulkLoader.load(embeddings, segments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Bulk load into the vector store failed", e);
+        }
+    }
+
+    /**
+     * Removes every vector stored for the chapter's sections
+     */
+    public void removeChapter(final Long chapterId) {
+        embeddingStore.removeAll(metadataKey(METADATA_CHAPTER_ID).isEqualTo(chapterId));
     }
 
     public List<SemanticSearchMatchResponse> search(
@@ -73,8 +140,15 @@ public class VectorStoreService {
     private Filter buildMetadataFilter(final Long documentId, final Long chapterId) {
         Filter filter = null;
 
+        // sections of an import that has not completed are stored but not searchable yet
+        final List<Long> importing = documentRepository.findImportingIds();
+        if (!importing.isEmpty()) {
+            filter = metadataKey(METADATA_DOCUMENT_ID).isNotIn(importing);
+        }
+
         if (documentId != null) {
-            filter = metadataKey(METADATA_DOCUMENT_ID).isEqualTo(documentId);
+            final Filter documentFilter = metadataKey(METADATA_DOCUMENT_ID).isEqualTo(documentId);
+            filter = filter == null ? documentFilter : filter.and(documentFilter);
         }
         if (chapterId != null) {
             final Filter chapterFilter = metadataKey(METADATA_CHAPTER_ID).isEqualTo(chapterId);
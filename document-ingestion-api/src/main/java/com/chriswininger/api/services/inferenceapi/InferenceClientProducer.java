@@ -0,0 +1,66 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.InferenceClient;
+import com.chriswininger.ollama.OllamaApiService;
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaContextSizer;
+import com.chriswininger.ollama.OllamaResidencyManager;
+import com.chriswininger.ollama.OllamaResiliencePolicy;
+import com.chriswininger.ollama.OllamaResponseCache;
+import com.chriswininger.ollama.OllamaTransport;
+import com.chriswininger.ollama.OpenAiCompatibleInferenceClient;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@ApplicationScoped
+public class InferenceClientProducer {
+
+    private static final Logger LOG = Logger.getLogger(InferenceClientProducer.class);
+
+    @Produces
+    @ApplicationScoped
+    public InferenceClient inferenceClient(
+            final OllamaTransport ollamaTransport,
+            final OllamaBackendPool ollamaBackendPool,
+            final OllamaResponseCache ollamaResponseCache,
+            final OllamaResidencyManager ollamaResidencyManager,
+            final OllamaContextSizer ollamaContextSizer,
+            final OllamaResiliencePolicy ollamaResiliencePolicy,
+            @ConfigProperty(name = "inference.backend", defaultValue = "ollama") final String backend,
+            @ConfigProperty(name = "ollama.model-name", defaultValue = "gemma4:e2b") final String modelName,
+            @ConfigProperty(name = "ollama.timeout-seconds", defaultValue = "300") final int timeoutSeconds,
+            @ConfigProperty(name = "inference.openai.base-urls") final Optional<List<String>> openAiBaseUrls,
+            @ConfigProperty(name = "inference.openai.model-name") final Optional<String> openAiModelName,
+            @ConfigProperty(name = "inference.openai.api-key") final Optional<String> openAiApiKey,
+            @ConfigProperty(name = "ollama.backends.breaker-failure-threshold", defaultValue = "5")
+            final int breakerFailureThreshold,
+            @ConfigProperty(name = "ollama.backends.breaker-open-seconds", defaultValue = "30")
+            final int breakerOpenSeconds,
+            @ConfigProperty(name = "com.chriswininger.model.request-logging", defaultValue = "false")
+            final boolean verboseRequestLogging
+    ) {
+        return switch (backend) {
+            case "ollama" -> new OllamaApiService(
+                    ollamaBackendPool, modelName, ollamaContextSizer, timeoutSeconds, verboseRequestLogging,
+                    ollamaResponseCache, ollamaResidencyManager, ollamaResiliencePolicy);
+            case "openai" -> {
+                final List<String> baseUrls = openAiBaseUrls.orElseThrow(() ->
+                        new IllegalStateException("inference.openai.base-urls is required for inference.backend=openai"));
+                LOG.infof("(InferenceClientProducer) chat inference goes to OpenAI-compatible servers %s", baseUrls);
+                // never probed (these servers have no /api/tags), so there is nothing to close
+                final OllamaBackendPool pool = new OllamaBackendPool(ollamaTransport, baseUrls, null,
+                        breakerFailureThreshold, Duration.ofSeconds(breakerOpenSeconds));
+                yield new OpenAiCompatibleInferenceClient(pool, openAiModelName.orElse(modelName), timeoutSeconds,
+                        openAiApiKey.orElse(null), verboseRequestLogging);
+            }
+            default -> throw new IllegalArgumentException(
+                    "Unknown inference.backend '%s', expected ollama or openai".formatted(backend));
+        };
+    }
+}
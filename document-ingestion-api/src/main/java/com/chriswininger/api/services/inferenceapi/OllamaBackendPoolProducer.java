@@ -0,0 +1,35 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaTransport;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+
+@ApplicationScoped
+public class OllamaBackendPoolProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaBackendPool ollamaBackendPool(
+            final OllamaTransport ollamaTransport,
+            @ConfigProperty(name = "ollama.base-urls") final List<String> baseUrls,
+            @ConfigProperty(name = "ollama.backends.probe-interval-seconds", defaultValue = "30")
+            final int probeIntervalSeconds,
+            @ConfigProperty(name = "ollama.backends.breaker-failure-threshold", defaultValue = "5")
+            final int breakerFailureThreshold,
+            @ConfigProperty(name = "ollama.backends.breaker-open-seconds", defaultValue = "30")
+            final int breakerOpenSeconds
+    ) {
+        return new OllamaBackendPool(ollamaTransport, baseUrls, Duration.ofSeconds(probeIntervalSeconds),
+                breakerFailureThreshold, Duration.ofSeconds(breakerOpenSeconds));
+    }
+
+    public void close(@Disposes final OllamaBackendPool ollamaBackendPool) {
+        ollamaBackendPool.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.CalibratedTokenCounter;
+import com.chriswininger.ollama.OllamaContextSizer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class OllamaContextSizerProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaContextSizer ollamaContextSizer(
+            @ConfigProperty(name = "ollama.num-ctx", defaultValue = "65536") final long maxNumCtx,
+            @ConfigProperty(name = "ollama.num-ctx-min", defaultValue = "4096") final long minNumCtx,
+            @ConfigProperty(name = "ollama.num-ctx-reserved-output-tokens", defaultValue = "4096")
+            final long reservedOutputTokens
+    ) {
+        return new OllamaContextSizer(new CalibratedTokenCounter(), minNumCtx, maxNumCtx, reservedOutputTokens);
+    }
+}
@@ -0,0 +1,29 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.CalibratedTokenCounter;
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaEmbeddingClient;
+import com.chriswininger.ollama.OllamaResidencyManager;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+@ApplicationScoped
+public class OllamaEmbeddingClientProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaEmbeddingClient ollamaEmbeddingClient(
+            final OllamaBackendPool ollamaBackendPool,
+            final OllamaResidencyManager ollamaResidencyManager,
+            @ConfigProperty(name = "ollama.embedding-model-name") final String embeddingModelName,
+            @ConfigProperty(name = "ollama.timeout-seconds", defaultValue = "300") final int timeoutSeconds,
+            @ConfigProperty(name = "ollama.embedding.max-batch-tokens", defaultValue = "16384")
+            final long maxBatchTokens,
+            @ConfigProperty(name = "ollama.embedding.max-batch-inputs", defaultValue = "256")
+            final int maxBatchInputs
+    ) {
+        return new OllamaEmbeddingClient(ollamaBackendPool, embeddingModelName, timeoutSeconds, ollamaResidencyManager,
+                new CalibratedTokenCounter(), maxBatchTokens, maxBatchInputs);
+    }
+}
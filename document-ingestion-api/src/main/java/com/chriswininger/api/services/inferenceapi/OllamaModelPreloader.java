@@ -0,0 +1,46 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.OllamaResidencyManager;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Loads the configured models when the application starts, so the first import does not wait on
+ * a cold load. Startup does not block on it, and a backend that is down only logs a warning.
+ */
+@ApplicationScoped
+public class OllamaModelPreloader {
+
+    private static final Logger LOG = Logger.getLogger(OllamaModelPreloader.class);
+
+    private final OllamaResidencyManager ollamaResidencyManager;
+
+    @ConfigProperty(name = "ollama.residency.preload", defaultValue = "true")
+    boolean preload;
+
+    @ConfigProperty(name = "ollama.residency.preload-models")
+    List<String> preloadModels;
+
+    public OllamaModelPreloader(final OllamaResidencyManager ollamaResidencyManager) {
+        this.ollamaResidencyManager = ollamaResidencyManager;
+    }
+
+    void onStart(@Observes final StartupEvent event) {
+        if (!preload) {
+            return;
+        }
+
+        for (final String model : preloadModels) {
+            LOG.infof("(OllamaModelPreloader) preloading %s", model);
+            ollamaResidencyManager.warmUp(model).exceptionally(e -> {
+                LOG.warnf("(OllamaModelPreloader) could not preload %s: %s", model, e);
+                return null;
+            });
+        }
+    }
+}
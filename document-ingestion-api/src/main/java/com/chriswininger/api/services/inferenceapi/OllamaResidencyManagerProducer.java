@@ -0,0 +1,34 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaResidencyManager;
+import com.chriswininger.ollama.OllamaResidencyManager.RequestClass;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ApplicationScoped
+public class OllamaResidencyManagerProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaResidencyManager ollamaResidencyManager(
+            final OllamaBackendPool ollamaBackendPool,
+            @ConfigProperty(name = "ollama.model-name") final String modelName,
+            @ConfigProperty(name = "ollama.embedding-model-name") final String embeddingModelName,
+            @ConfigProperty(name = "ollama.keep-alive.chat", defaultValue = "30m") final Duration chatKeepAlive,
+            @ConfigProperty(name = "ollama.keep-alive.embedding", defaultValue = "5m") final Duration embeddingKeepAlive,
+            @ConfigProperty(name = "ollama.residency.load-timeout-seconds", defaultValue = "300")
+            final int loadTimeoutSeconds
+    ) {
+        return new OllamaResidencyManager(
+                ollamaBackendPool,
+                Map.of(RequestClass.CHAT, chatKeepAlive, RequestClass.EMBEDDING, embeddingKeepAlive),
+                Duration.ofSeconds(loadTimeoutSeconds))
+                .register(modelName, RequestClass.CHAT)
+                .register(embeddingModelName, RequestClass.EMBEDDING);
+    }
+}
@@ -0,0 +1,35 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.OllamaResiliencePolicy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+
+@ApplicationScoped
+public class OllamaResiliencePolicyProducer {
+
+    private static final Logger LOG = Logger.getLogger(OllamaResiliencePolicyProducer.class);
+
+    @Produces
+    @ApplicationScoped
+    public OllamaResiliencePolicy ollamaResiliencePolicy(
+            @ConfigProperty(name = "ollama.retry.max-attempts", defaultValue = "3") final int maxAttempts,
+            @ConfigProperty(name = "ollama.retry.base-backoff-ms", defaultValue = "500") final long baseBackoffMs,
+            @ConfigProperty(name = "ollama.retry.max-backoff-ms", defaultValue = "10000") final long maxBackoffMs,
+            @ConfigProperty(name = "ollama.hedge.percentile", defaultValue = "0") final double hedgePercentile,
+            @ConfigProperty(name = "ollama.hedge.min-delay-ms", defaultValue = "1000") final long hedgeMinDelayMs
+    ) {
+        final OllamaResiliencePolicy policy = OllamaResiliencePolicy.builder()
+                .maxAttempts(maxAttempts)
+                .baseBackoff(Duration.ofMillis(baseBackoffMs))
+                .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                .hedgePercentile(hedgePercentile)
+                .minHedgeDelay(Duration.ofMillis(hedgeMinDelayMs))
+                .build();
+        LOG.infof("(OllamaResiliencePolicyProducer) %s", policy);
+        return policy;
+    }
+}
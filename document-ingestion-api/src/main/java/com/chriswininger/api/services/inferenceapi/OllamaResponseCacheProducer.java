@@ -0,0 +1,35 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.DiskResponseCache;
+import com.chriswininger.ollama.OllamaResponseCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@ApplicationScoped
+public class OllamaResponseCacheProducer {
+
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    @Produces
+    @ApplicationScoped
+    public OllamaResponseCache ollamaResponseCache(
+            @ConfigProperty(name = "ollama.cache.enabled", defaultValue = "false") final boolean enabled,
+            @ConfigProperty(name = "ollama.cache.directory") final Path directory,
+            @ConfigProperty(name = "ollama.cache.max-size-mb", defaultValue = "1024") final long maxSizeMb
+    ) throws IOException {
+        if (!enabled) {
+            return OllamaResponseCache.disabled();
+        }
+
+        return DiskResponseCache.open(directory, maxSizeMb * BYTES_PER_MB);
+    }
+
+    public void close(@Disposes final OllamaResponseCache ollamaResponseCache) {
+        ollamaResponseCache.close();
+    }
+}
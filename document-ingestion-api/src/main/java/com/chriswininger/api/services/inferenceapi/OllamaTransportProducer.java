@@ -0,0 +1,60 @@
+package com.chriswininger.api.services.inferenceapi;
+
+import com.chriswininger.ollama.OllamaPriority;
+import com.chriswininger.ollama.OllamaTransport;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@ApplicationScoped
+public class OllamaTransportProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaTransport ollamaTransport(
+            @ConfigProperty(name = "ollama.http.connect-timeout-seconds", defaultValue = "30")
+            final int connectTimeoutSeconds,
+            @ConfigProperty(name = "ollama.http.keep-alive-seconds", defaultValue = "300")
+            final int keepAliveSeconds,
+            @ConfigProperty(name = "ollama.http.max-connections-per-host", defaultValue = "8")
+            final int maxConnectionsPerHost,
+            @ConfigProperty(name = "ollama.http.max-queued-requests-per-host", defaultValue = "1024")
+            final int maxQueuedRequestsPerHost,
+            @ConfigProperty(name = "ollama.http.version", defaultValue = "HTTP_1_1")
+            final HttpClient.Version version,
+            @ConfigProperty(name = "ollama.http.adaptive-concurrency", defaultValue = "false")
+            final boolean adaptiveConcurrency,
+            @ConfigProperty(name = "ollama.http.min-connections-per-host", defaultValue = "1")
+            final int minConnectionsPerHost,
+            @ConfigProperty(name = "ollama.priority.weight.interactive", defaultValue = "8")
+            final int interactiveWeight,
+            @ConfigProperty(name = "ollama.priority.weight.normal", defaultValue = "3")
+            final int normalWeight,
+            @ConfigProperty(name = "ollama.priority.weight.bulk", defaultValue = "1")
+            final int bulkWeight,
+            @ConfigProperty(name = "ollama.priority.starvation-seconds", defaultValue = "60")
+            final int starvationSeconds
+    ) {
+        return OllamaTransport.builder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .keepAlive(Duration.ofSeconds(keepAliveSeconds))
+                .maxConnectionsPerHost(maxConnectionsPerHost)
+                .maxQueuedRequestsPerHost(maxQueuedRequestsPerHost)
+                .version(version)
+                .adaptiveConcurrency(adaptiveConcurrency)
+                .minConnectionsPerHost(minConnectionsPerHost)
+                .priorityWeight(OllamaPriority.INTERACTIVE, interactiveWeight)
+                .priorityWeight(OllamaPriority.NORMAL, normalWeight)
+                .priorityWeight(OllamaPriority.BULK, bulkWeight)
+                .starvationThreshold(Duration.ofSeconds(starvationSeconds))
+                .build();
+    }
+
+    public void close(@Disposes final OllamaTransport ollamaTransport) {
+        ollamaTransport.close();
+    }
+}
@@ -17,8 +17,13 @@ public class DocumentRepository {
         this.dsl = dsl;
     }
 
+    /**
+     * Every document except those still being imported
+     */
     public List<DocumentsRecord> findAll() {
-        return dsl.selectFrom(Tables.DOCUMENTS).fetch();
+        return dsl.selectFrom(Tables.DOCUMENTS)
+                .where(Tables.DOCUMENTS.IMPORTING.isFalse())
+                .fetch();
     }
 
     public Optional<DocumentsRecord> findById(long id) {
@@ -27,6 +32,16 @@ public class DocumentRepository {
                 .fetchOptional();
     }
 
+    /**
+     * Documents an import has written but not completed, including those of failed imports
+     */
+    public List<Long> findImportingIds() {
+        return dsl.select(Tables.DOCUMENTS.ID)
+                .from(Tables.DOCUMENTS)
+                .where(Tables.DOCUMENTS.IMPORTING.isTrue())
+                .fetch(Tables.DOCUMENTS.ID);
+    }
+
     public DocumentsRecord insert(DocumentsRecord record) {
         return dsl.insertInto(Tables.DOCUMENTS)
                 .set(record)
@@ -0,0 +1,127 @@
+package com.chriswininger.repository;
+
+import com.chriswininger.db.generated.Tables;
+import com.chriswininger.db.generated.tables.records.ImportRunsRecord;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Book import runs and the stage outputs (checkpoints) each has completed, so an import that
+ * failed part way can pick up where it stopped.
+ */
+@ApplicationScoped
+public class ImportRunRepository {
+
+    public enum Status {
+        RUNNING,
+        FAILED,
+        COMPLETED
+    }
+
+    private final DSLContext dsl;
+
+    public ImportRunRepository(final DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    public Optional<ImportRunsRecord> findById(long id) {
+        return dsl.selectFrom(Tables.IMPORT_RUNS)
+                .where(Tables.IMPORT_RUNS.ID.eq(id))
+                .fetchOptional();
+    }
+
+    /**
+     * The latest run of the same content that did not complete, leaving out runs in progress in
+     * {@code active}. A run still marked running but not in {@code active} was cut off by a restart.
+     */
+    public Optional<ImportRunsRecord> findResumable(String contentHash, Collection<Long> active) {
+        return dsl.selectFrom(Tables.IMPORT_RUNS)
+                .where(Tables.IMPORT_RUNS.CONTENT_HASH.eq(contentHash))
+                .and(Tables.IMPORT_RUNS.STATUS.ne(Status.COMPLETED.name()))
+                .and(active.isEmpty() ? DSL.noCondition() : Tables.IMPORT_RUNS.ID.notIn(active))
+                .orderBy(Tables.IMPORT_RUNS.ID.desc())
+                .limit(1)
+                .fetchOptional();
+    }
+
+    public ImportRunsRecord insert(String contentHash, String chapterSplitPattern) {
+        return dsl.insertInto(Tables.IMPORT_RUNS)
+                .set(Tables.IMPORT_RUNS.CONTENT_HASH, contentHash)
+                .set(Tables.IMPORT_RUNS.CHAPTER_SPLIT_PATTERN, chapterSplitPattern)
+                .set(Tables.IMPORT_RUNS.STATUS, Status.RUNNING.name())
+                .returning()
+                .fetchOne();
+    }
+
+    public int updateStatus(long id, Status status, String error) {
+        return dsl.update(Tables.IMPORT_RUNS)
+                .set(Tables.IMPORT_RUNS.STATUS, status.name())
+                .set(Tables.IMPORT_RUNS.ERROR, error)
+                .set(Tables.IMPORT_RUNS.UPDATED_AT, OffsetDateTime.now())
+                .where(Tables.IMPORT_RUNS.ID.eq(id))
+                .execute();
+    }
+
+    /**
+     * Records the run's document, with {@code tx} so it commits together with the document
+     */
+    public int updateDocumentId(DSLContext tx, long id, long documentId) {
+        return tx.update(Tables.IMPORT_RUNS)
+                .set(Tables.IMPORT_RUNS.DOCUMENT_ID, documentId)
+                .set(Tables.IMPORT_RUNS.UPDATED_AT, OffsetDateTime.now())
+                .where(Tables.IMPORT_RUNS.ID.eq(id))
+                .execute();
+    }
+
+    /**
+     * The stages the run has checkpoints for, without their outputs
+     */
+    public Set<String> findCheckpointStages(long importRunId) {
+        return dsl.select(Tables.IMPORT_CHECKPOINTS.STAGE)
+                .from(Tables.IMPORT_CHECKPOINTS)
+                .where(Tables.IMPORT_CHECKPOINTS.IMPORT_RUN_ID.eq(importRunId))
+                .fetchSet(Tables.IMPORT_CHECKPOINTS.STAGE);
+    }
+
+    /**
+     * A stage's checkpoint output, read one stage at a time since a chapter's vectors run to megabytes
+     */
+    public Optional<String> findCheckpoint(long importRunId, String stage) {
+        return dsl.select(Tables.IMPORT_CHECKPOINTS.OUTPUT)
+                .from(Tables.IMPORT_CHECKPOINTS)
+                .where(Tables.IMPORT_CHECKPOINTS.IMPORT_RUN_ID.eq(importRunId))
+                .and(Tables.IMPORT_CHECKPOINTS.STAGE.eq(stage))
+                .fetchOptional(Tables.IMPORT_CHECKPOINTS.OUTPUT);
+    }
+
+    /**
+     * Saves a stage's output, with {@code tx} so a stage that writes rows commits them together
+     * with its checkpoint
+     */
+    public int insertCheckpoint(DSLContext tx, long importRunId, String stage, String output) {
+        return tx.insertInto(Tables.IMPORT_CHECKPOINTS)
+                .set(Tables.IMPORT_CHECKPOINTS.IMPORT_RUN_ID, importRunId)
+                .set(Tables.IMPORT_CHECKPOINTS.STAGE, stage)
+                .set(Tables.IMPORT_CHECKPOINTS.OUTPUT, output)
+                .execute();
+    }
+
+    public int deleteCheckpoints(DSLContext tx, long importRunId, Collection<String> stages) {
+        return tx.deleteFrom(Tables.IMPORT_CHECKPOINTS)
+                .where(Tables.IMPORT_CHECKPOINTS.IMPORT_RUN_ID.eq(importRunId))
+                .and(Tables.IMPORT_CHECKPOINTS.STAGE.in(stages))
+                .execute();
+    }
+
+    public int deleteCheckpoints(long importRunId) {
+        return dsl.deleteFrom(Tables.IMPORT_CHECKPOINTS)
+                .where(Tables.IMPORT_CHECKPOINTS.IMPORT_RUN_ID.eq(importRunId))
+                .execute();
+    }
+}
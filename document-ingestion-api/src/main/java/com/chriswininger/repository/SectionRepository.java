@@ -5,12 +5,19 @@ import com.chriswininger.db.generated.tables.records.SectionsRecord;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.jooq.DSLContext;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @ApplicationScoped
 public class SectionRepository {
 
+    // six bind values a row, well under PostgreSQL's 65,535 per statement
+    static final int INSERT_BATCH_ROWS = 1000;
+
     private final DSLContext dsl;
 
     public SectionRepository(final DSLContext dsl) {
@@ -40,6 +47,48 @@ public class SectionRepository {
                 .fetchOne();
     }
 
+    /**
+     * Inserts the sections with multi-row {@code INSERT ... RETURNING} statements, one per
+     * {@value #INSERT_BATCH_ROWS} rows, rather than a round trip per row.
+     *
+     * @return the generated ids, in the order of {@code records}. PostgreSQL does not promise to
+     * return the rows in the order of the values, so each id is matched back to its section by
+     * chapter and sequence, which must not repeat within {@code records}.
+     */
+    public List<Long> insertAll(final DSLContext tx, final List<SectionsRecord> records) {
+        final Set<SectionKey> keys = new HashSet<>();
+        for (final SectionsRecord record : records) {
+            if (!keys.add(SectionKey.of(record))) {
+                throw new IllegalArgumentException("section %d of chapter %d is listed more than once"
+                        .formatted(record.getSequence(), record.getChapterId()));
+            }
+        }
+
+        final Map<SectionKey, Long> ids = new HashMap<>(records.size());
+        for (int from = 0; from < records.size(); from += INSERT_BATCH_ROWS) {
+            var insert = tx.insertInto(Tables.SECTIONS,
+                    Tables.SECTIONS.CHAPTER_ID,
+                    Tables.SECTIONS.SEQUENCE,
+                    Tables.SECTIONS.SUMMARY,
+                    Tables.SECTIONS.CHARACTERS,
+                    Tables.SECTIONS.FULL_TEXT,
+                    Tables.SECTIONS.POSSIBLE_QUESTIONS_THIS_ANSWERS);
+            for (final SectionsRecord record : records.subList(from, Math.min(records.size(), from + INSERT_BATCH_ROWS))) {
+                insert = insert.values(
+                        record.getChapterId(),
+                        record.getSequence(),
+                        record.getSummary(),
+                        record.getCharacters(),
+                        record.getFullText(),
+                        record.getPossibleQuestionsThisAnswers());
+            }
+            insert.returningResult(Tables.SECTIONS.ID, Tables.SECTIONS.CHAPTER_ID, Tables.SECTIONS.SEQUENCE)
+                    .fetch()
+                    .forEach(row -> ids.put(new SectionKey(row.value2(), row.value3()), row.value1()));
+        }
+        return records.stream().map(record -> ids.get(SectionKey.of(record))).toList();
+    }
+
     public int update(SectionsRecord record) {
         return dsl.update(Tables.SECTIONS)
                 .set(record)
@@ -52,4 +101,10 @@ public class SectionRepository {
                 .where(Tables.SECTIONS.ID.eq(id))
                 .execute();
     }
+
+    private record SectionKey(long chapterId, int sequence) {
+        static SectionKey of(final SectionsRecord record) {
+            return new SectionKey(record.getChapterId(), record.getSequence());
+        }
+    }
 }
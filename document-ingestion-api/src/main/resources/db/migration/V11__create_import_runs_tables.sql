@@ -0,0 +1,22 @@
+CREATE TABLE import_runs (
+    id                    BIGSERIAL PRIMARY KEY,
+    document_id           BIGINT REFERENCES documents(id) ON DELETE SET NULL,
+    content_hash          VARCHAR(64) NOT NULL,
+    chapter_split_pattern TEXT,
+    status                VARCHAR(32) NOT NULL,
+    error                 TEXT,
+    created_at            TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    updated_at            TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_import_runs_content_hash ON import_runs(content_hash);
+
+CREATE TABLE import_checkpoints (
+    id            BIGSERIAL PRIMARY KEY,
+    import_run_id BIGINT NOT NULL REFERENCES import_runs(id) ON DELETE CASCADE,
+    stage         VARCHAR(255) NOT NULL,
+    output        TEXT NOT NULL,
+    created_at    TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE UNIQUE INDEX idx_import_checkpoints_run_stage ON import_checkpoints(import_run_id, stage);
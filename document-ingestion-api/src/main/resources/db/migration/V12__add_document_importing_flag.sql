@@ -0,0 +1,3 @@
+-- a document is written early in a book import and stays hidden until the import completes
+ALTER TABLE documents
+    ADD COLUMN importing BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,200 @@
+package com.chriswininger.api.documents.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout(10)
+class TaskGraphTest {
+
+    @Test
+    void run_startsEachTaskAfterItsDependenciesFinish() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        final TaskGraph graph = new TaskGraph("order");
+
+        final TaskGraph.Node<Integer> a = graph.add("a", () -> {
+            Thread.sleep(30);
+            order.add("a");
+            return 1;
+        });
+        final TaskGraph.Node<Integer> b = graph.add("b", () -> {
+            order.add("b");
+            return 2;
+        });
+        final TaskGraph.Node<Integer> sum = graph.add("sum", () -> {
+            order.add("sum");
+            return a.get() + b.get();
+        }, a, b).retain();
+
+        graph.run();
+
+        assertEquals(3, sum.get());
+        assertEquals(3, order.size());
+        assertEquals("sum", order.getLast());
+    }
+
+    @Test
+    void limit_neverRunsMoreTasksOfTheGroupThanItsPermits() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+        final CountDownLatch ungroupedRan = new CountDownLatch(1);
+        final TaskGraph graph = new TaskGraph("limit").limit("summaries", 2);
+
+        for (int i = 0; i < 8; i++) {
+            graph.add("summary-" + i, "summaries", () -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                // would never finish if the ungrouped task were held up behind the group
+                ungroupedRan.await();
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+        graph.add("chunk", () -> {
+            ungroupedRan.countDown();
+            return null;
+        });
+
+        graph.run();
+
+        assertEquals(2, mostRunning.get());
+    }
+
+    @Test
+    void run_failingTask_interruptsTheRunningTasksAndSkipsItsDependents() {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final AtomicBoolean slowInterrupted = new AtomicBoolean();
+        final AtomicBoolean dependentRan = new AtomicBoolean();
+        final IOException failure = new IOException("backend went away");
+        final TaskGraph graph = new TaskGraph("failure");
+
+        graph.add("slow", () -> {
+            slowStarted.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                slowInterrupted.set(true);
+                throw e;
+            }
+            return null;
+        });
+        final TaskGraph.Node<Object> failing = graph.add("failing", () -> {
+            slowStarted.await();
+            throw failure;
+        });
+        graph.add("dependent", () -> {
+            dependentRan.set(true);
+            return null;
+        }, failing);
+
+        final IOException thrown = assertThrows(IOException.class, graph::run);
+
+        assertSame(failure, thrown);
+        assertTrue(slowInterrupted.get());
+        assertFalse(dependentRan.get());
+    }
+
+    @Test
+    void run_failingTaskWithRuntimeException_rethrowsIt() {
+        final TaskGraph graph = new TaskGraph("runtime");
+        graph.add("failing", () -> {
+            throw new IllegalArgumentException("no chapters");
+        });
+
+        final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, graph::run);
+
+        assertEquals("no chapters", thrown.getMessage());
+    }
+
+    @Test
+    void run_interrupted_stopsTheTasksAndThrowsInterruptedException() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean taskInterrupted = new AtomicBoolean();
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final TaskGraph graph = new TaskGraph("interrupt");
+        graph.add("slow", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                taskInterrupted.set(true);
+                throw e;
+            }
+            return null;
+        });
+
+        final Thread runner = Thread.ofVirtual().start(() -> {
+            try {
+                graph.run();
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        started.await();
+        runner.interrupt();
+        runner.join();
+
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertTrue(taskInterrupted.get());
+    }
+
+    @Test
+    void get_afterTheLastDependentFinishes_isReleasedUnlessRetained() throws Exception {
+        final AtomicReference<String> readByDependent = new AtomicReference<>();
+        final TaskGraph graph = new TaskGraph("release");
+
+        final TaskGraph.Node<String> text = graph.add("text", () -> "chapter text");
+        final TaskGraph.Node<String> kept = graph.add("kept", () -> "summary").retain();
+        graph.add("first", () -> text.get().length(), text, kept);
+        graph.add("second", () -> {
+            readByDependent.set(text.get());
+            return null;
+        }, text);
+
+        graph.run();
+
+        assertEquals("chapter text", readByDependent.get());
+        final IllegalStateException released = assertThrows(IllegalStateException.class, text::get);
+        assertTrue(released.getMessage().contains("was released"));
+        assertEquals("summary", kept.get());
+    }
+
+    @Test
+    void run_returnsTheChainOfTasksThatBoundedIt() throws Exception {
+        final TaskGraph graph = new TaskGraph("critical-path");
+
+        final TaskGraph.Node<Object> quick = graph.add("quick", () -> {
+            Thread.sleep(10);
+            return null;
+        });
+        final TaskGraph.Node<Object> slow = graph.add("slow", () -> {
+            Thread.sleep(150);
+            return null;
+        });
+        graph.add("last", () -> {
+            Thread.sleep(10);
+            return null;
+        }, quick, slow);
+
+        final CriticalPath criticalPath = graph.run();
+
+        assertEquals(List.of("slow", "last"), criticalPath.steps().stream().map(CriticalPath.Step::task).toList());
+        assertTrue(criticalPath.steps().getFirst().ranMillis() >= 150);
+        assertTrue(criticalPath.totalMillis() >= 160);
+    }
+}
@@ -0,0 +1,106 @@
+package com.chriswininger.api.documents.services;
+
+import com.chriswininger.db.generated.Tables;
+import com.chriswininger.repository.DevDatabase;
+import com.chriswininger.repository.ImportRunRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Against the dev database, see {@link DevDatabase}; each test works in an import run of its own
+ * that is deleted afterwards, along with its checkpoints.
+ */
+class ImportCheckpointsTest {
+
+    private static final TypeReference<List<float[]>> VECTORS = new TypeReference<>() {};
+    private static final TypeReference<Long> ID = new TypeReference<>() {};
+    private static final TypeReference<Integer> COUNT = new TypeReference<>() {};
+
+    private DSLContext dsl;
+    private ImportRunRepository importRuns;
+    private long importRunId;
+
+    @BeforeEach
+    void setUp() {
+        dsl = DSL.using(DevDatabase.dataSource(), SQLDialect.POSTGRES);
+        importRuns = new ImportRunRepository(dsl);
+        importRunId = importRuns.insert("ImportCheckpointsTest-" + UUID.randomUUID(), null).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dsl != null) {
+            dsl.deleteFrom(Tables.IMPORT_RUNS)
+                    .where(Tables.IMPORT_RUNS.ID.eq(importRunId))
+                    .execute();
+        }
+    }
+
+    @Test
+    void persistThenResume_restoresTheOutputsWithoutRunningTheStages() throws Exception {
+        final ImportCheckpoints first = new ImportCheckpoints(importRuns, dsl, importRunId);
+        assertFalse(first.resuming());
+        first.stage("embed-0", VECTORS, () -> List.of(new float[] {0.25f, -0.5f})).run();
+        first.persist("persist-chapter-0", ID, tx -> 42L).run();
+
+        final ImportCheckpoints resumed = new ImportCheckpoints(importRuns, dsl, importRunId);
+
+        assertTrue(resumed.resuming());
+        assertTrue(resumed.has("embed-0"));
+        assertEquals(42L, resumed.persist("persist-chapter-0", ID, tx -> fail("persisted again")).run());
+        final List<float[]> vectors = resumed.stage("embed-0", VECTORS, () -> fail("embedded again")).run();
+        assertArrayEquals(new float[] {0.25f, -0.5f}, vectors.getFirst());
+        assertEquals(2, resumed.restored());
+    }
+
+    @Test
+    void restore_readsTheStageWhenAskedFor() throws Exception {
+        new ImportCheckpoints(importRuns, dsl, importRunId)
+                .stage("embed-3", VECTORS, () -> List.of(new float[] {1f})).run();
+        final ImportCheckpoints resumed = new ImportCheckpoints(importRuns, dsl, importRunId);
+
+        assertArrayEquals(new float[] {1f}, resumed.restore("embed-3", VECTORS).getFirst());
+        assertFalse(resumed.has("embed-3"));
+        assertThrows(IllegalStateException.class, () -> resumed.restore("embed-4", VECTORS));
+    }
+
+    @Test
+    void persist_dropsTheCheckpointsItSupersedesWhenItCommits() throws Exception {
+        final ImportCheckpoints checkpoints = new ImportCheckpoints(importRuns, dsl, importRunId);
+        checkpoints.stage("embed-0", VECTORS, () -> List.of(new float[] {1f})).run();
+        checkpoints.stage("segments-0", new TypeReference<List<String>>() {}, () -> List.of("segment")).run();
+        checkpoints.stage("embed-1", VECTORS, () -> List.of(new float[] {2f})).run();
+
+        checkpoints.persist("persist-sections-0", COUNT, tx -> 1, "embed-0", "segments-0").run();
+
+        assertEquals(Set.of("persist-sections-0", "embed-1"), importRuns.findCheckpointStages(importRunId));
+    }
+
+    @Test
+    void persist_failedWrite_keepsNoCheckpointAndTheSupersededOnes() throws Exception {
+        final ImportCheckpoints checkpoints = new ImportCheckpoints(importRuns, dsl, importRunId);
+        checkpoints.stage("embed-0", VECTORS, () -> List.of(new float[] {1f})).run();
+
+        assertThrows(IllegalStateException.class, () -> checkpoints.persist("persist-sections-0", COUNT, tx -> {
+            throw new IllegalStateException("sections did not go in");
+        }, "embed-0").run());
+
+        assertEquals(Set.of("embed-0"), importRuns.findCheckpointStages(importRunId));
+    }
+}
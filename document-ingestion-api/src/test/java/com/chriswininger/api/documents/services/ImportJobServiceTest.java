@@ -0,0 +1,160 @@
+package com.chriswininger.api.documents.services;
+
+import com.chriswininger.api.documents.dto.ImportedBookResult;
+import com.chriswininger.api.documents.pipeline.TaskGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout(10)
+class ImportJobServiceTest {
+
+    private final StubImportBookService importBookService = new StubImportBookService();
+    private ImportJobService service;
+
+    @AfterEach
+    void tearDown() {
+        importBookService.finish.countDown();
+        service.stop();
+    }
+
+    @Test
+    void submit_whenEveryImportSlotIsBusyAndTheQueueIsFull_rejects() throws Exception {
+        start(1, 1, 60);
+        final ImportJob running = service.submit("Moby-Dick", "Call me Ishmael.", null);
+        importBookService.awaitStarted();
+        final ImportJob queued = service.submit("Typee", "Our ship was the Dolly.", null);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> service.submit("Omoo", "It was the middle of a bright tropical afternoon.", null));
+
+        assertEquals(Set.of(running, queued), Set.copyOf(service.list()));
+        importBookService.finish.countDown();
+        running.await();
+        queued.await();
+        assertEquals(2, importBookService.imports.get());
+    }
+
+    @Test
+    void cancel_queuedJob_neverRunsItAndFreesItsQueueSlot() throws Exception {
+        start(1, 1, 60);
+        final ImportJob running = service.submit("Moby-Dick", "Call me Ishmael.", null);
+        importBookService.awaitStarted();
+        final ImportJob queued = service.submit("Typee", "Our ship was the Dolly.", null);
+
+        assertTrue(service.cancel(queued));
+
+        assertEquals(ImportJob.Status.CANCELLED, queued.status());
+        assertThrows(CancellationException.class, queued::await);
+        final ImportJob next = service.submit("Omoo", "It was the middle of a bright tropical afternoon.", null);
+        importBookService.finish.countDown();
+        running.await();
+        next.await();
+        assertEquals(2, importBookService.imports.get());
+        assertEquals(ImportJob.Status.CANCELLED, queued.status());
+    }
+
+    @Test
+    void cancel_runningJob_interruptsTheImport() throws Exception {
+        start(1, 1, 60);
+        final ImportJob running = service.submit("Moby-Dick", "Call me Ishmael.", null);
+        importBookService.awaitStarted();
+
+        assertTrue(service.cancel(running));
+
+        assertThrows(InterruptedException.class, running::await);
+        assertTrue(importBookService.interrupted.get());
+        assertEquals(ImportJob.Status.CANCELLED, running.status());
+        assertNull(running.toResponse().error());
+        assertFalse(service.cancel(running), "already over");
+    }
+
+    @Test
+    void submit_evictsJobsFinishedLongerAgoThanTheRetention() throws Exception {
+        start(1, 1, 0);
+        importBookService.finish.countDown();
+        final ImportJob finished = service.submit("Moby-Dick", "Call me Ishmael.", null);
+        finished.await();
+        Thread.sleep(5);
+
+        final ImportJob next = service.submit("Typee", "Our ship was the Dolly.", null);
+
+        assertTrue(service.find(finished.id()).isEmpty());
+        assertTrue(service.find(next.id()).isPresent());
+    }
+
+    @Test
+    void submit_keepsJobsFinishedWithinTheRetention() throws Exception {
+        start(1, 1, 60);
+        importBookService.finish.countDown();
+        final ImportJob finished = service.submit("Moby-Dick", "Call me Ishmael.", null);
+        finished.await();
+
+        service.submit("Typee", "Our ship was the Dolly.", null);
+
+        assertEquals(ImportJob.Status.COMPLETED, service.find(finished.id()).orElseThrow().status());
+        assertEquals(2L, finished.toResponse().documentId());
+    }
+
+    private void start(final int maxConcurrentImports, final int maxQueuedImports, final long retentionMinutes) {
+        service = new ImportJobService(importBookService);
+        service.maxConcurrentImports = maxConcurrentImports;
+        service.maxQueuedImports = maxQueuedImports;
+        service.retentionMinutes = retentionMinutes;
+        service.start();
+    }
+
+    /**
+     * Imports nothing: each import waits until {@link #finish} is counted down
+     */
+    private static final class StubImportBookService extends ImportBookService {
+        private final CountDownLatch finish = new CountDownLatch(1);
+        private final Semaphore started = new Semaphore(0);
+        private final AtomicInteger imports = new AtomicInteger();
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+
+        private StubImportBookService() {
+            super(null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public ImportedBookResult importBook(
+                final String bookContents,
+                final Pattern chapterSplitPattern,
+                final TaskGraph.Listener progress
+        ) throws IOException, InterruptedException {
+            imports.incrementAndGet();
+            started.release();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            progress.taskFinished("persist-book-summary", 1, 1);
+            return new ImportedBookResult(1L, 2L, null, null, List.of(), null, null);
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(started.tryAcquire(5, TimeUnit.SECONDS), "the import never started");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.chriswininger.api.semanticsearch.services;
+
+import com.chriswininger.ai.PgVectorBulkLoader;
+import com.chriswininger.api.semanticsearch.dto.requests.SemanticSearchMatchResponse;
+import com.chriswininger.repository.DevDatabase;
+import com.chriswininger.repository.DocumentRepository;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vectors copied in by the {@link PgVectorBulkLoader} read back through the langchain4j
+ * {@link PgVectorEmbeddingStore}. Against the dev database, see {@link DevDatabase}; the rows are
+ * written under negative document and chapter ids no import uses and removed afterwards.
+ */
+class VectorStoreServiceBulkLoadTest {
+
+    private static final int DIMENSION = 1024;
+    // every phrase embeds to the first axis
+    private static final float[] QUERY = axis(0);
+
+    private DataSource dataSource;
+    private EmbeddingStore<TextSegment> embeddingStore;
+    private long documentId;
+    private long chapterId;
+    private long otherChapterId;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = DevDatabase.dataSource();
+        embeddingStore = PgVectorEmbeddingStore.datasourceBuilder()
+                .datasource(dataSource)
+                .table("vector_store")
+                .dimension(DIMENSION)
+                .createTable(false)
+                .build();
+        documentId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2);
+        chapterId = documentId;
+        otherChapterId = documentId - 1;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (embeddingStore != null) {
+            embeddingStore.removeAll(metadataKey("documentId").isEqualTo(documentId));
+        }
+    }
+
+    @Test
+    void storeVectors_copiedRows_areFoundBySearchAndRemovedByChapter() {
+        final VectorStoreService service = service(new PgVectorBulkLoader(dataSource, 0, "64MB", 1));
+
+        service.storeVectors(
+                List.of(Embedding.from(QUERY), Embedding.from(normalize(QUERY, axis(1))), Embedding.from(axis(2))),
+                List.of(segment("Call me Ishmael.", 1, chapterId),
+                        segment("Some years ago.", 2, chapterId),
+                        segment("Never mind how long.", 3, otherChapterId)));
+
+        // the third is orthogonal to the query, under search's minimum score
+        final List<SemanticSearchMatchResponse> matches = service.search("who is the narrator?", documentId, null, 10);
+        assertEquals(List.of("Call me Ishmael.", "Some years ago."),
+                matches.stream().map(SemanticSearchMatchResponse::text).toList());
+        final SemanticSearchMatchResponse best = matches.getFirst();
+        assertEquals(1.0, best.score(), 1e-4);
+        assertEquals(1L, best.sectionId());
+        assertEquals(chapterId, best.chapterId());
+        assertEquals(documentId, best.documentId());
+        assertEquals("Moby-Dick", best.bookTitle());
+        assertEquals("Chapter " + chapterId, best.chapterLabel());
+
+        service.removeChapter(chapterId);
+
+        assertEquals(List.of(), service.search("who is the narrator?", documentId, chapterId, 10));
+        assertEquals(1, embeddingStore.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(axis(2)))
+                .filter(metadataKey("documentId").isEqualTo(documentId))
+                .build()).matches().size());
+    }
+
+    @Test
+    void storeVectors_rebuildingTheIndex_leavesItInPlace() throws SQLException {
+        final VectorStoreService service = service(new PgVectorBulkLoader(dataSource, 1, "64MB", 1));
+
+        service.storeVectors(List.of(Embedding.from(QUERY)), List.of(segment("Call me Ishmael.", 1, chapterId)));
+
+        assertEquals(1, service.search("who is the narrator?", documentId, null, 10).size());
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet index = statement.executeQuery("SELECT indisvalid FROM pg_index"
+                     + " WHERE indexrelid = 'vector_store_embedding_idx'::regclass")) {
+            assertTrue(index.next() && index.getBoolean(1), "the HNSW index is back and valid");
+        }
+    }
+
+    private VectorStoreService service(final PgVectorBulkLoader bulkLoader) {
+        final VectorStoreService service = new VectorStoreService(embeddingStore, new FixedEmbeddingModel(),
+                bulkLoader, new DocumentRepository(DSL.using(dataSource, SQLDialect.POSTGRES)));
+        service.bulkLoad = true;
+        return service;
+    }
+
+    private TextSegment segment(final String text, final long sectionId, final long chapterId) {
+        return TextSegment.from(text, new Metadata()
+                .put("sectionId", sectionId)
+                .put("chapterId", chapterId)
+                .put("documentId", documentId)
+                .put("bookTitle", "Moby-Dick")
+                .put("chapterLabel", "Chapter " + chapterId));
+    }
+
+    private static float[] axis(final int dimension) {
+        final float[] vector = new float[DIMENSION];
+        vector[dimension] = 1f;
+        return vector;
+    }
+
+    private static float[] normalize(final float[] a, final float[] b) {
+        final float[] sum = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            sum[i] = a[i] + b[i];
+            norm += sum[i] * sum[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            sum[i] /= (float) Math.sqrt(norm);
+        }
+        return sum;
+    }
+
+    private static final class FixedEmbeddingModel implements EmbeddingModel {
+        @Override
+        public Response<List<Embedding>> embedAll(final List<TextSegment> textSegments) {
+            return Response.from(textSegments.stream().map(segment -> Embedding.from(QUERY)).toList());
+        }
+    }
+}
@@ -58,7 +58,7 @@ class ChapterServiceTest {
     }
 
     @Test
-    void summarizeChapter_shouldProduceASummaryOfAShortChapter() {
+    void summarizeChapter_shouldProduceASummaryOfAShortChapter() throws IOException, InterruptedException {
         final var chp = chapterService.summarizeChapter(new Chapter("Chapter 1", """
                 The platform was empty except for Marcus and the hum of fluorescent lights that couldn't decide whether to flicker or die.
                 
@@ -91,7 +91,7 @@ class ChapterServiceTest {
     }
 
     @Test
-    void summarizeChapter_shouldProduceASummaryOfALongChapter() throws IOException {
+    void summarizeChapter_shouldProduceASummaryOfALongChapter() throws IOException, InterruptedException {
         String content = new String(
                 getClass().getClassLoader().getResourceAsStream("long-chapter-example.txt").readAllBytes(),
                 StandardCharsets.UTF_8
@@ -162,7 +162,7 @@ class ChapterServiceTest {
     }
 
     @Test
-    void summarizeChapters_shouldDynamicChaptersInResourceDir() throws IOException, URISyntaxException {
+    void summarizeChapters_shouldDynamicChaptersInResourceDir() throws IOException, URISyntaxException, InterruptedException {
         final var testDocumentsUrl = getClass().getClassLoader().getResource("testDocuments");
         final var testDocumentsDir = Paths.get(testDocumentsUrl.toURI());
 
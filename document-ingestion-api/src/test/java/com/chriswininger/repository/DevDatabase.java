@@ -0,0 +1,32 @@
+package com.chriswininger.repository;
+
+import org.junit.jupiter.api.Assumptions;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The dev database from {@code start-db.sh} with the migrations applied, for tests of code that
+ * only means something against a real PostgreSQL. {@code -Djdbc.url}, {@code -Djdbc.user} and
+ * {@code -Djdbc.password} point it elsewhere; the tests are skipped when it is not running.
+ */
+public final class DevDatabase {
+
+    private DevDatabase() {}
+
+    public static DataSource dataSource() {
+        final PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(System.getProperty("jdbc.url", "jdbc:postgresql://localhost:5436/document-ingestion-db"));
+        dataSource.setUser(System.getProperty("jdbc.user", "postgres"));
+        dataSource.setPassword(System.getProperty("jdbc.password", "xxx"));
+
+        try (Connection ignored = dataSource.getConnection()) {
+            return dataSource;
+        } catch (SQLException e) {
+            Assumptions.abort("dev database not reachable, start it with start-db.sh: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.chriswininger.repository;
+
+import com.chriswininger.db.generated.Tables;
+import com.chriswininger.db.generated.tables.records.ChaptersRecord;
+import com.chriswininger.db.generated.tables.records.DocumentsRecord;
+import com.chriswininger.db.generated.tables.records.SectionsRecord;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Against the dev database, see {@link DevDatabase}; each test writes under a document of its own,
+ * still flagged as importing so nothing lists it, that is deleted afterwards.
+ */
+class SectionRepositoryTest {
+
+    private DSLContext dsl;
+    private SectionRepository sections;
+    private Long documentId;
+
+    @BeforeEach
+    void setUp() {
+        dsl = DSL.using(DevDatabase.dataSource(), SQLDialect.POSTGRES);
+        sections = new SectionRepository(dsl);
+        final DocumentsRecord document = dsl.newRecord(Tables.DOCUMENTS);
+        document.setTitle("SectionRepositoryTest");
+        document.setImporting(true);
+        document.store();
+        documentId = document.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (documentId != null) {
+            dsl.deleteFrom(Tables.DOCUMENTS)
+                    .where(Tables.DOCUMENTS.ID.eq(documentId))
+                    .execute();
+        }
+    }
+
+    @Test
+    void insertAll_returnsEachSectionsIdInTheOrderGiven() {
+        final long first = chapter(1);
+        final long second = chapter(2);
+        final List<SectionsRecord> records = new ArrayList<>();
+        // more than one statement's worth, listed out of sequence and across chapters
+        for (int sequence = SectionRepository.INSERT_BATCH_ROWS + 5; sequence > 0; sequence--) {
+            records.add(section(sequence % 2 == 0 ? first : second, sequence));
+        }
+
+        final List<Long> ids = dsl.transactionResult(configuration -> sections.insertAll(configuration.dsl(), records));
+
+        assertEquals(records.size(), new HashSet<>(ids).size());
+        for (int i = 0; i < records.size(); i++) {
+            final SectionsRecord stored = sections.findById(ids.get(i)).orElseThrow();
+            assertEquals(records.get(i).getChapterId(), stored.getChapterId());
+            assertEquals(records.get(i).getSequence(), stored.getSequence());
+            assertEquals(records.get(i).getFullText(), stored.getFullText());
+        }
+    }
+
+    @Test
+    void insertAll_sameChapterAndSequenceTwice_isRejected() {
+        final long chapterId = chapter(1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> sections.insertAll(dsl, List.of(section(chapterId, 0), section(chapterId, 0))));
+        assertEquals(List.of(), sections.findByChapterId(chapterId));
+    }
+
+    private long chapter(final int sequence) {
+        final ChaptersRecord chapter = dsl.newRecord(Tables.CHAPTERS);
+        chapter.setDocumentId(documentId);
+        chapter.setSequence(sequence);
+        chapter.store();
+        return chapter.getId();
+    }
+
+    private SectionsRecord section(final long chapterId, final int sequence) {
+        final SectionsRecord section = dsl.newRecord(Tables.SECTIONS);
+        section.setChapterId(chapterId);
+        section.setSequence(sequence);
+        section.setFullText("chapter %d, section %d".formatted(chapterId, sequence));
+        return section;
+    }
+}
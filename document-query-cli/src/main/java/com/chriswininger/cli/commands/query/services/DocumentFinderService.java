@@ -5,11 +5,14 @@ import com.chriswininger.cli.commands.query.dto.PossibleDocumentsResult;
 import com.chriswininger.cli.services.DocumentIngestionApiService;
 import com.chriswininger.client.model.DocumentResponse;
 import com.chriswininger.ollama.OllamaApiService;
+import com.chriswininger.ollama.OllamaFutures;
+import com.chriswininger.ollama.OllamaPriority;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
@@ -65,7 +68,7 @@ public class DocumentFinderService {
             final OllamaApiService ollamaApiService
     ) {
         this.documentIngestionApiService = documentIngestionApiService;
-        this.ollamaApiService = ollamaApiService;
+        this.ollamaApiService = ollamaApiService.withStage("document-finder").withPriority(OllamaPriority.INTERACTIVE);
     }
 
     public List<PossibleDocument> findPossibleDocumentsForQuery(final String query)
@@ -95,10 +98,17 @@ public class DocumentFinderService {
             final String query,
             final List<DocumentResponse> documents
     ) throws IOException, InterruptedException {
+        // documents are evaluated independently, so fan them all out and let the transport bound concurrency
+        final List<CompletableFuture<String>> evaluations = documents.stream()
+                .map(doc -> evaluateDocumentUnstructured(query, doc))
+                .toList();
+        final List<String> responses = OllamaFutures.awaitAll(evaluations);
+
         final StringBuilder block = new StringBuilder();
 
-        for (final DocumentResponse doc : documents) {
-            final String response = evaluateDocumentUnstructured(query, doc);
+        for (int i = 0; i < documents.size(); i++) {
+            final DocumentResponse doc = documents.get(i);
+            final String response = responses.get(i);
             LOG.infof("Document %d (%s) evaluation:\n%s", doc.getId(), doc.getTitle(), response);
 
             block.append("===== Document (ID: %d, Title: %s) =====\n".formatted(doc.getId(), doc.getTitle()));
@@ -109,12 +119,12 @@ public class DocumentFinderService {
         return block.toString().trim();
     }
 
-    private String evaluateDocumentUnstructured(
+    private CompletableFuture<String> evaluateDocumentUnstructured(
             final String query,
             final DocumentResponse doc
-    ) throws IOException, InterruptedException {
+    ) {
         final String userMessage = buildUserMessage(query, doc);
-        return ollamaApiService.callOllamaPlainTextResponse(
+        return ollamaApiService.callOllamaPlainTextResponseAsync(
                 SYSTEM_PROMPT,
                 userMessage,
                 false
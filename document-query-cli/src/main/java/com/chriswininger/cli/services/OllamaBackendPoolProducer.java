@@ -0,0 +1,30 @@
+package com.chriswininger.cli.services;
+
+import com.chriswininger.ollama.OllamaBackendPool;
+import com.chriswininger.ollama.OllamaTransport;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+
+@ApplicationScoped
+public class OllamaBackendPoolProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaBackendPool ollamaBackendPool(
+            final OllamaTransport ollamaTransport,
+            @ConfigProperty(name = "ollama.base-urls") final List<String> baseUrls,
+            @ConfigProperty(name = "ollama.backends.probe-interval-seconds", defaultValue = "30")
+            final int probeIntervalSeconds
+    ) {
+        return new OllamaBackendPool(ollamaTransport, baseUrls, Duration.ofSeconds(probeIntervalSeconds));
+    }
+
+    public void close(@Disposes final OllamaBackendPool ollamaBackendPool) {
+        ollamaBackendPool.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.chriswininger.cli.services;
+
+import com.chriswininger.ollama.OllamaTransport;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@ApplicationScoped
+public class OllamaTransportProducer {
+
+    @Produces
+    @ApplicationScoped
+    public OllamaTransport ollamaTransport(
+            @ConfigProperty(name = "ollama.http.connect-timeout-seconds", defaultValue = "30")
+            final int connectTimeoutSeconds,
+            @ConfigProperty(name = "ollama.http.keep-alive-seconds", defaultValue = "300")
+            final int keepAliveSeconds,
+            @ConfigProperty(name = "ollama.http.max-connections-per-host", defaultValue = "8")
+            final int maxConnectionsPerHost,
+            @ConfigProperty(name = "ollama.http.max-queued-requests-per-host", defaultValue = "1024")
+            final int maxQueuedRequestsPerHost,
+            @ConfigProperty(name = "ollama.http.version", defaultValue = "HTTP_1_1")
+            final HttpClient.Version version,
+            @ConfigProperty(name = "ollama.http.adaptive-concurrency", defaultValue = "false")
+            final boolean adaptiveConcurrency,
+            @ConfigProperty(name = "ollama.http.min-connections-per-host", defaultValue = "1")
+            final int minConnectionsPerHost
+    ) {
+        return OllamaTransport.builder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .keepAlive(Duration.ofSeconds(keepAliveSeconds))
+                .maxConnectionsPerHost(maxConnectionsPerHost)
+                .maxQueuedRequestsPerHost(maxQueuedRequestsPerHost)
+                .version(version)
+                .adaptiveConcurrency(adaptiveConcurrency)
+                .minConnectionsPerHost(minConnectionsPerHost)
+                .build();
+    }
+
+    public void close(@Disposes final OllamaTransport ollamaTransport) {
+        ollamaTransport.close();
+    }
+}
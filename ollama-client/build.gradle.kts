@@ -1,5 +1,6 @@
 plugins {
     `java-library`
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -29,3 +30,9 @@ tasks.withType<JavaCompile> {
 tasks.test {
     useJUnitPlatform()
 }
+
+jmh {
+    jmhVersion = "1.37"
+    // bytes allocated per operation, for the response parsing benchmark
+    profilers.add("gc")
+}
@@ -0,0 +1,113 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a chapter-sized structured reply (about 100 KB of content) off the wire: the whole body
+ * as a String, a tree, the content as a second String and then the record, versus
+ * {@link ChatResponseSubscriber} binding the record from 16 KB chunks as they arrive.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler is on, {@code gc.alloc.rate.norm} is the bytes
+ * allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatResponseBenchmark {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final Flow.Subscription NO_BACKPRESSURE = new Flow.Subscription() {
+        @Override
+        public void request(final long n) {}
+
+        @Override
+        public void cancel() {}
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectReader recordReader;
+    private byte[] body;
+    private List<ByteBuffer> chunks;
+
+    @Setup
+    public void setup() throws Exception {
+        final Class<? extends Record> recordClass = InferenceSchemaFixtures.recordClass("chapter");
+        recordReader = objectMapper.readerFor(recordClass);
+
+        final List<String> questions = new ArrayList<>();
+        final StringBuilder summary = new StringBuilder();
+        while (summary.length() < 90_000) {
+            summary.append("Ishmael watches the \"Pequod\" leave Nantucket; Queequeg sharpens his harpoon. ");
+            if (questions.size() < 200) {
+                questions.add("What does chapter " + questions.size() + " reveal about Ahab?");
+            }
+        }
+        final ObjectNode content = objectMapper.createObjectNode();
+        content.put("summary", summary.toString());
+        content.putPOJO("characters", List.of("Ishmael", "Queequeg", "Ahab", "Starbuck", "Stubb", "Flask"));
+        content.putPOJO("possibleQuestionsThisAnswers", questions);
+
+        final ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", "gemma3:27b");
+        response.putObject("message")
+                .put("role", "assistant")
+                .put("content", objectMapper.writeValueAsString(content));
+        response.put("done", true);
+        response.put("total_duration", 90_000_000_000L);
+        response.put("prompt_eval_count", 30_000);
+        response.put("eval_count", 25_000);
+        body = objectMapper.writeValueAsBytes(response);
+
+        chunks = new ArrayList<>();
+        for (int i = 0; i < body.length; i += CHUNK_SIZE) {
+            chunks.add(ByteBuffer.wrap(body, i, Math.min(CHUNK_SIZE, body.length - i)).slice());
+        }
+    }
+
+    /**
+     * What {@code postChat} used to do with {@code BodyHandlers.ofString()}
+     */
+    @Benchmark
+    public Object treeThenString() throws Exception {
+        final String text = new String(body, StandardCharsets.UTF_8);
+        final JsonNode outer = objectMapper.readTree(text);
+        OllamaGenerationStats.fromJson(outer);
+        return recordReader.readValue(outer.path("message").path("content").asText());
+    }
+
+    @Benchmark
+    public Object streaming() throws Exception {
+        final ChatResponseSubscriber<Object> subscriber = new ChatResponseSubscriber<>(
+                objectMapper.getFactory(), ChatResponseReader.ContentBinder.json(recordReader), false);
+        subscriber.onSubscribe(NO_BACKPRESSURE);
+        for (final ByteBuffer chunk : chunks) {
+            subscriber.onNext(List.of(chunk.duplicate()));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join().result().content();
+    }
+}
@@ -0,0 +1,79 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of the schema work around one structured call (format block into the payload,
+ * example JSON for the prompt, parsing the reply), compiled fresh each time versus served from
+ * {@link InferenceSchemaRegistry}.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InferenceSchemaBenchmark {
+
+    @Param({"segment", "chapter", "book"})
+    public String result;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private InferenceSchemaRegistry registry;
+    private Class<? extends Record> recordClass;
+    private String response;
+
+    @Setup
+    public void setup() {
+        registry = new InferenceSchemaRegistry(objectMapper);
+        recordClass = InferenceSchemaFixtures.recordClass(result);
+        response = InferenceSchemaFixtures.sampleResponse(result);
+        registry.schemaFor(recordClass);
+    }
+
+    /**
+     * What every structured call used to do: reflect the format block and example, build a
+     * fresh reader, and serialize the format tree as part of the payload.
+     */
+    @Benchmark
+    public void reflectPerCall(final Blackhole blackhole) throws Exception {
+        final ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("model", "bench");
+        payload.set("format", InferenceSchema.buildFormatBlock(objectMapper, recordClass));
+
+        blackhole.consume(objectMapper.writeValueAsString(payload));
+        blackhole.consume(objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(InferenceSchema.buildExampleNode(objectMapper, recordClass)));
+        blackhole.consume(objectMapper.readerFor(recordClass).readValue(response));
+    }
+
+    @Benchmark
+    public void registry(final Blackhole blackhole) throws Exception {
+        final InferenceSchema<? extends Record> schema = registry.schemaFor(recordClass);
+
+        final ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("model", "bench");
+        payload.putRawValue("format", schema.formatRawValue());
+
+        blackhole.consume(objectMapper.writeValueAsString(payload));
+        blackhole.consume(schema.exampleJson());
+        blackhole.consume(schema.read(response));
+    }
+}
@@ -0,0 +1,84 @@
+package com.chriswininger.ollama;
+
+import java.util.List;
+
+/**
+ * Copies of the document-ingestion-api result records, kept here so the benchmarks exercise the
+ * same shapes without depending on the application module.
+ */
+final class InferenceSchemaFixtures {
+
+    private InferenceSchemaFixtures() {}
+
+    record SegmentSummaryResult(
+            @InferenceDescription("A concise summary of this segment's content.")
+            String summary,
+
+            @InferenceDescription("A list of characters who appear or are mentioned in this segment.")
+            List<String> characters,
+
+            @InferenceDescription("A list of questions a curious reader might have that are directly answered by this segment.")
+            List<String> possibleQuestionsThisAnswers
+    ) {}
+
+    record ChapterSummaryResult(
+            @InferenceDescription("A concise summary of the chapter's content")
+            String summary,
+
+            @InferenceDescription("Names of characters who appear or are mentioned in this chapter")
+            List<String> characters,
+
+            @InferenceDescription("Questions that a reader might have that this chapter answers")
+            List<String> possibleQuestionsThisAnswers
+    ) {}
+
+    record BookSummaryResult(
+            @InferenceDescription("A summary of the book.")
+            String summary,
+
+            @InferenceDescription("The books full title.")
+            String title,
+
+            @InferenceDescription("The Author's name")
+            String authorName,
+
+            @InferenceDescription("The publisher.")
+            String publisher,
+
+            @InferenceDescription("The year the book was published.")
+            Long yearPublished,
+
+            @InferenceDescription("A list of any character you will find in the book, based on the back of the book.")
+            List<String> characters,
+
+            @InferenceDescription("A list of questions a curious reader might have that are directly answered by the material analyzed.")
+            List<String> possibleQuestionsThisAnswers
+    ) {}
+
+    static Class<? extends Record> recordClass(final String name) {
+        return switch (name) {
+            case "segment" -> SegmentSummaryResult.class;
+            case "chapter" -> ChapterSummaryResult.class;
+            case "book" -> BookSummaryResult.class;
+            default -> throw new IllegalArgumentException("Unknown fixture " + name);
+        };
+    }
+
+    static String sampleResponse(final String name) {
+        final String common = """
+                "summary": "Ishmael signs on to the Pequod and meets its strange crew.",
+                "characters": ["Ishmael", "Queequeg", "Ahab", "Starbuck"],
+                "possibleQuestionsThisAnswers": ["Who is Queequeg?", "Why does Ishmael go to sea?"]
+                """;
+        return switch (name) {
+            case "book" -> """
+                    {%s,
+                    "title": "Moby-Dick; or, The Whale",
+                    "authorName": "Herman Melville",
+                    "publisher": "Harper & Brothers",
+                    "yearPublished": 1851}
+                    """.formatted(common);
+            default -> "{" + common + "}";
+        };
+    }
+}
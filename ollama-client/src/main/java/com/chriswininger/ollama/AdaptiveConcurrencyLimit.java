@@ -0,0 +1,101 @@
+package com.chriswininger.ollama;
+
+/**
+ * Works out how many concurrent generations one Ollama host should be given, from what its
+ * finished generations report. Gradient style, after Netflix's concurrency-limits Gradient2:
+ * <ul>
+ *     <li>time to first token per prompt token is tracked as a short and a long moving average;
+ *     when the short one rises above the long one, requests are queueing on the server (or prefill
+ *     is being starved) and the limit shrinks in proportion</li>
+ *     <li>aggregate decode throughput (tokens/s per request times concurrency) is compared to the
+ *     best recently seen; a clear fall means the GPU is thrashing and the limit backs off</li>
+ *     <li>otherwise the limit grows by roughly its square root per sample, but only while callers
+ *     are actually using most of it</li>
+ *     <li>timeouts and 503s cut it multiplicatively</li>
+ * </ul>
+ * Every change is smoothed and clamped to {@code [minLimit, maxLimit]}.
+ */
+class AdaptiveConcurrencyLimit {
+
+    private static final double SHORT_WEIGHT = 0.5;
+    private static final double LONG_WEIGHT = 0.01;
+    // latency may rise this much over the long-term average before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double THROUGHPUT_DECAY = 0.99;
+    private static final double THRASH_RATIO = 0.75;
+    private static final double THRASH_BACKOFF = 0.9;
+    private static final double DROP_BACKOFF = 0.75;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private double shortLatency;
+    private double longLatency;
+    private double bestThroughput;
+
+    AdaptiveConcurrencyLimit(final int minLimit, final int maxLimit, final int initialLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = clamp(initialLimit);
+    }
+
+    /**
+     * @param latencyPerPromptToken time to first token divided by prompt tokens, in nanoseconds
+     * @param decodeTokensPerSecond the finished generation's own decode rate, 0 when unknown
+     * @param concurrency           generations running on the host while this one was
+     * @return the new limit
+     */
+    synchronized int onSample(
+            final double latencyPerPromptToken,
+            final double decodeTokensPerSecond,
+            final int concurrency
+    ) {
+        if (shortLatency == 0d) {
+            shortLatency = latencyPerPromptToken;
+            longLatency = latencyPerPromptToken;
+        } else {
+            shortLatency += SHORT_WEIGHT * (latencyPerPromptToken - shortLatency);
+            longLatency += LONG_WEIGHT * (latencyPerPromptToken - longLatency);
+        }
+
+        // after a period of overload the long average lags high, let it recover faster so the next
+        // overload is noticed
+        if (longLatency > 2 * shortLatency) {
+            longLatency *= 0.95;
+        }
+
+        final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+
+        if (decodeTokensPerSecond > 0d) {
+            final double throughput = decodeTokensPerSecond * Math.max(1, concurrency);
+            bestThroughput = Math.max(throughput, bestThroughput * THROUGHPUT_DECAY);
+            if (throughput < bestThroughput * THRASH_RATIO) {
+                newLimit = Math.min(newLimit, limit * THRASH_BACKOFF);
+            }
+        }
+
+        if (newLimit > limit && concurrency < limit / 2) {
+            // callers are not using the room they have, no evidence more would help
+            newLimit = limit;
+        }
+
+        limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+        return limit();
+    }
+
+    synchronized int onDrop() {
+        limit = clamp(limit * DROP_BACKOFF);
+        return limit();
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    private double clamp(final double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
@@ -0,0 +1,60 @@
+package com.chriswininger.ollama;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size direct buffers for request bodies, reused from one request to the next. Direct so
+ * the socket write does not copy them again; pooled because allocating direct memory is slow.
+ * Only up to {@code maxRetained} idle buffers are kept, any beyond that are left to the GC.
+ */
+final class ByteBufferPool {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ByteBufferPool SHARED = new ByteBufferPool(BUFFER_SIZE, 64);
+
+    private final int bufferSize;
+    private final int maxRetained;
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    ByteBufferPool(final int bufferSize, final int maxRetained) {
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+    }
+
+    static ByteBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * An empty buffer in write mode
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = idle.poll();
+        if (Objects.isNull(buffer)) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        idleCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    void release(final ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxRetained) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(buffer);
+    }
+
+    int idle() {
+        return idleCount.get();
+    }
+}
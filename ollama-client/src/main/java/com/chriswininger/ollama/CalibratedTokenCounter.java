@@ -0,0 +1,54 @@
+package com.chriswininger.ollama;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts tokens from characters per token, calibrated per model against the
+ * {@code prompt_eval_count} Ollama reports for the prompts actually sent.
+ * <p>
+ * Until a model has been seen it assumes {@value #DEFAULT_CHARS_PER_TOKEN} characters per token,
+ * which over-counts English text for the common tokenizers. After that it keeps the densest ratio
+ * observed: a prompt partly served from Ollama's prompt cache reports fewer tokens than it has,
+ * so the lowest ratio is the one closest to the truth, and over-counting only costs a larger
+ * bucket while under-counting truncates the prompt.
+ */
+public class CalibratedTokenCounter implements TokenCounter {
+
+    static final double DEFAULT_CHARS_PER_TOKEN = 3.0;
+
+    private static final double MIN_CHARS_PER_TOKEN = 1.0;
+    private static final double MAX_CHARS_PER_TOKEN = 6.0;
+    // small prompts are dominated by the chat template's own tokens
+    private static final long MIN_SAMPLE_TOKENS = 256;
+
+    private final Map<String, Double> charsPerToken = new ConcurrentHashMap<>();
+
+    @Override
+    public long count(final String model, final CharSequence text) {
+        final double ratio = charsPerToken.getOrDefault(OllamaBackend.normalizeModel(model), DEFAULT_CHARS_PER_TOKEN);
+        return (long) Math.ceil(text.length() / ratio);
+    }
+
+    @Override
+    public void observe(final String model, final long promptChars, final long promptTokens) {
+        if (promptTokens < MIN_SAMPLE_TOKENS) {
+            return;
+        }
+
+        final double observed = Math.clamp((double) promptChars / promptTokens, MIN_CHARS_PER_TOKEN, MAX_CHARS_PER_TOKEN);
+        charsPerToken.merge(OllamaBackend.normalizeModel(model), observed, Math::min);
+    }
+
+    /**
+     * Only once the model has been calibrated, the default ratio is a guess
+     */
+    @Override
+    public boolean accurate(final String model) {
+        return charsPerToken.containsKey(OllamaBackend.normalizeModel(model));
+    }
+
+    double charsPerToken(final String model) {
+        return charsPerToken.getOrDefault(OllamaBackend.normalizeModel(model), DEFAULT_CHARS_PER_TOKEN);
+    }
+}
@@ -0,0 +1,247 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Pulls what a caller needs out of a non-streamed {@code /api/chat} response token by token,
+ * without building a tree or copying {@code message.content} into a String first.
+ * <p>
+ * {@code message.content} is handed to a {@link ContentBinder} straight from the parser's text
+ * buffer, so a structured reply is bound into its record in one step. Everything else but
+ * {@code message.thinking}, {@code error} and the timing fields is skipped. Tokens can be fed
+ * from a blocking parser ({@link #read(JsonFactory, String, ContentBinder)}) or, a chunk at a
+ * time, from a non-blocking one ({@link ChatResponseSubscriber}).
+ * <p>
+ * Failures are kept until {@link #result()} is called, so a reply whose content does not bind
+ * surfaces as the binder's own exception rather than as a failed exchange.
+ */
+final class ChatResponseReader<T> {
+
+    /**
+     * Turns the unescaped text of {@code message.content} into the caller's value, reading it
+     * from a parser positioned on the string
+     */
+    @FunctionalInterface
+    interface ContentBinder<T> {
+        T bind(JsonParser parser) throws IOException;
+
+        static ContentBinder<String> text() {
+            return JsonParser::getText;
+        }
+
+        /**
+         * Binds the content as JSON, reading it in place from the parser's text buffer instead of
+         * first joining it into one array or String
+         */
+        static <R> ContentBinder<R> json(final ObjectReader reader) {
+            return parser -> {
+                final TextSegments segments = new TextSegments();
+                parser.getText(segments);
+                return reader.readValue(segments.reader());
+            };
+        }
+    }
+
+    /**
+     * What the reader made of the response
+     *
+     * @param body the raw response, only kept when the reader was asked to retain it
+     */
+    record ChatResponse<T>(T content, String thinking, OllamaGenerationStats stats, String body) {}
+
+    private static final int TOP_LEVEL = 1;
+    private static final int MESSAGE_LEVEL = 2;
+    private static final JsonFactory EMPTY_CONTENT = new JsonFactory();
+
+    private final ContentBinder<T> binder;
+
+    private int depth;
+    private boolean started;
+    private boolean inMessage;
+    private String field;
+
+    private boolean contentSeen;
+    private T content;
+    private IOException contentError;
+    private String thinking = "";
+    private String error;
+    private long totalDuration;
+    private long loadDuration;
+    private long promptEvalCount;
+    private long promptEvalDuration;
+    private long evalCount;
+    private long evalDuration;
+
+    private RuntimeException failure;
+    private String body;
+
+    ChatResponseReader(final ContentBinder<T> binder) {
+        this.binder = binder;
+    }
+
+    /**
+     * A reader standing for a non-200 response, {@link #result()} throws with the server's message
+     */
+    static <T> ChatResponseReader<T> httpError(final int statusCode, final String body) {
+        final ChatResponseReader<T> reader = new ChatResponseReader<>(null);
+        reader.failure = new OllamaHttpException(statusCode, body);
+        return reader;
+    }
+
+    /**
+     * Reads a complete response held in memory, such as one replayed from the response cache
+     */
+    static <T> ChatResponseReader<T> read(
+            final JsonFactory jsonFactory,
+            final String body,
+            final ContentBinder<T> binder
+    ) throws IOException {
+        final ChatResponseReader<T> reader = new ChatResponseReader<>(binder);
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            reader.consume(parser);
+        }
+        reader.finish();
+        return reader;
+    }
+
+    /**
+     * Consumes tokens until the parser runs out of input (a non-blocking parser returns
+     * {@link JsonToken#NOT_AVAILABLE}) or the response object ends
+     */
+    void consume(final JsonParser parser) throws IOException {
+        JsonToken token;
+        while (!complete() && Objects.nonNull(token = parser.nextToken()) && token != JsonToken.NOT_AVAILABLE) {
+            onToken(parser, token);
+        }
+    }
+
+    void finish() throws IOException {
+        if (!complete()) {
+            throw new EOFException("Ollama response ended before the JSON object was complete");
+        }
+        if (!contentSeen) {
+            try (JsonParser empty = EMPTY_CONTENT.createParser("\"\"")) {
+                empty.nextToken();
+                bindContent(empty);
+            }
+        }
+    }
+
+    void retainBody(final String body) {
+        this.body = body;
+    }
+
+    /**
+     * @throws IOException      what the content binder threw, e.g. a structured reply that does
+     *                          not match its record
+     * @throws RuntimeException for a non-200 response or an {@code error} in the body
+     */
+    ChatResponse<T> result() throws IOException {
+        final OllamaGenerationStats stats = stats();
+        if (Objects.nonNull(contentError)) {
+            throw contentError;
+        }
+
+        return new ChatResponse<>(content, thinking, stats, body);
+    }
+
+    /**
+     * The generation's timing, available even when the content did not bind
+     *
+     * @throws RuntimeException for a non-200 response or an {@code error} in the body
+     */
+    OllamaGenerationStats stats() {
+        if (Objects.nonNull(failure)) {
+            throw failure;
+        }
+        if (Objects.nonNull(error)) {
+            throw new RuntimeException("Ollama returned an error: " + error);
+        }
+
+        return new OllamaGenerationStats(
+                totalDuration, loadDuration, promptEvalCount, promptEvalDuration, evalCount, evalDuration);
+    }
+
+    /**
+     * Whether the response object has been read to its end
+     */
+    boolean complete() {
+        return started && depth == 0;
+    }
+
+    private void onToken(final JsonParser parser, final JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                started = true;
+                depth++;
+                if (depth == MESSAGE_LEVEL && token == JsonToken.START_OBJECT && "message".equals(field)) {
+                    inMessage = true;
+                }
+            }
+            case END_OBJECT, END_ARRAY -> {
+                if (depth == MESSAGE_LEVEL) {
+                    inMessage = false;
+                }
+                depth--;
+            }
+            case FIELD_NAME -> {
+                if (depth == TOP_LEVEL || (inMessage && depth == MESSAGE_LEVEL)) {
+                    field = parser.currentName();
+                }
+            }
+            case VALUE_STRING -> {
+                if (inMessage && depth == MESSAGE_LEVEL) {
+                    onMessageString(parser);
+                } else if (depth == TOP_LEVEL && "error".equals(field)) {
+                    error = parser.getText();
+                }
+            }
+            case VALUE_NUMBER_INT -> {
+                if (depth == TOP_LEVEL) {
+                    onTopLevelNumber(parser.getLongValue());
+                }
+            }
+            default -> {
+                // booleans, nulls and floats carry nothing we read
+            }
+        }
+    }
+
+    private void onMessageString(final JsonParser parser) throws IOException {
+        if ("content".equals(field)) {
+            contentSeen = true;
+            bindContent(parser);
+        } else if ("thinking".equals(field)) {
+            thinking = parser.getText();
+        }
+    }
+
+    private void bindContent(final JsonParser parser) {
+        try {
+            content = binder.bind(parser);
+        } catch (IOException e) {
+            contentError = e;
+        }
+    }
+
+    private void onTopLevelNumber(final long value) {
+        switch (field) {
+            case "total_duration" -> totalDuration = value;
+            case "load_duration" -> loadDuration = value;
+            case "prompt_eval_count" -> promptEvalCount = value;
+            case "prompt_eval_duration" -> promptEvalDuration = value;
+            case "eval_count" -> evalCount = value;
+            case "eval_duration" -> evalDuration = value;
+            default -> {
+                // other counters are not tracked
+            }
+        }
+    }
+}
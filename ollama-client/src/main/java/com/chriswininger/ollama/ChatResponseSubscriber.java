@@ -0,0 +1,138 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Feeds a response body into a {@link ChatResponseReader} through Jackson's non-blocking parser
+ * as the chunks arrive. Nothing waits on a stream, so the same subscriber serves blocking and
+ * async calls without tying up an HttpClient thread, and no copy of the whole body is made unless
+ * it is retained for the response cache.
+ */
+final class ChatResponseSubscriber<T> implements HttpResponse.BodySubscriber<ChatResponseReader<T>> {
+
+    private final ChatResponseReader<T> reader;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final ByteArrayOutputStream retained;
+    private final CompletableFuture<ChatResponseReader<T>> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    /**
+     * @param retainBody keep the raw bytes too, for callers that cache the response
+     */
+    ChatResponseSubscriber(
+            final JsonFactory jsonFactory,
+            final ChatResponseReader.ContentBinder<T> binder,
+            final boolean retainBody
+    ) {
+        this.reader = new ChatResponseReader<>(binder);
+        try {
+            this.parser = jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        this.retained = retainBody ? new ByteArrayOutputStream() : null;
+    }
+
+    /**
+     * A handler that reads 200 responses with a new subscriber and turns anything else into a
+     * reader whose {@link ChatResponseReader#result()} throws with the server's message
+     */
+    static <T> HttpResponse.BodyHandler<ChatResponseReader<T>> handler(
+            final JsonFactory jsonFactory,
+            final ChatResponseReader.ContentBinder<T> binder,
+            final boolean retainBody
+    ) {
+        return responseInfo -> responseInfo.statusCode() == 200
+                ? new ChatResponseSubscriber<>(jsonFactory, binder, retainBody)
+                : HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        body -> ChatResponseReader.httpError(responseInfo.statusCode(), body));
+    }
+
+    @Override
+    public CompletionStage<ChatResponseReader<T>> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> buffers) {
+        if (result.isDone()) {
+            return;
+        }
+
+        try {
+            for (final ByteBuffer buffer : buffers) {
+                if (Objects.nonNull(retained)) {
+                    retain(buffer.duplicate());
+                }
+                if (reader.complete()) {
+                    // trailing whitespace after the object
+                    continue;
+                }
+                // the reader drains every token after each feed, so the parser always wants more here
+                feeder.feedInput(buffer);
+                reader.consume(parser);
+            }
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+
+        try {
+            feeder.endOfInput();
+            reader.consume(parser);
+            reader.finish();
+            if (Objects.nonNull(retained)) {
+                reader.retainBody(retained.toString(StandardCharsets.UTF_8));
+            }
+            result.complete(reader);
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void retain(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            retained.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        retained.writeBytes(bytes);
+    }
+}
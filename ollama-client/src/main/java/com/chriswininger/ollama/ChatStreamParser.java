@@ -0,0 +1,135 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Consumes Ollama's {@code stream: true} NDJSON response line by line, forwarding thinking and
+ * content deltas to a listener as they arrive and completing {@link #outcome()} with the
+ * assembled result once the final {@code done: true} chunk has been read.
+ */
+class ChatStreamParser implements Flow.Subscriber<String> {
+
+    private final ObjectMapper objectMapper;
+    private final OllamaStreamListener listener;
+    private final int maxOutputChars;
+
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder thinking = new StringBuilder();
+    private final CompletableFuture<OllamaChatResult> outcome = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+    private OllamaGenerationStats stats;
+    private ObjectNode finalChunk;
+
+    ChatStreamParser(
+            final ObjectMapper objectMapper,
+            final OllamaStreamListener listener,
+            final int maxOutputChars
+    ) {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        this.maxOutputChars = maxOutputChars;
+    }
+
+    CompletableFuture<OllamaChatResult> outcome() {
+        return outcome;
+    }
+
+    /**
+     * Feeds a complete non-streamed response body through the parser as if it were the only chunk
+     */
+    void replay(final String body) {
+        onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {}
+
+            @Override
+            public void cancel() {}
+        });
+        onNext(body);
+        onComplete();
+    }
+
+    /**
+     * The streamed generation in the shape of a non-streamed {@code /api/chat} response, available
+     * once {@link #outcome()} has completed normally
+     */
+    String assembledBody() {
+        final ObjectNode body = finalChunk.deepCopy();
+        final ObjectNode message = body.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content.toString());
+        if (!thinking.isEmpty()) {
+            message.put("thinking", thinking.toString());
+        }
+        return body.toString();
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final String line) {
+        if (outcome.isDone() || line.isBlank()) {
+            return;
+        }
+
+        try {
+            final JsonNode chunk = objectMapper.readTree(line);
+
+            if (chunk.hasNonNull("error")) {
+                throw new RuntimeException("Ollama returned error: " + chunk.path("error").asText());
+            }
+
+            final JsonNode message = chunk.path("message");
+            final String thinkingDelta = message.path("thinking").asText("");
+            if (!thinkingDelta.isEmpty()) {
+                thinking.append(thinkingDelta);
+                listener.onThinking(thinkingDelta);
+            }
+
+            final String contentDelta = message.path("content").asText("");
+            if (!contentDelta.isEmpty()) {
+                content.append(contentDelta);
+                listener.onContent(contentDelta);
+            }
+
+            if (content.length() + thinking.length() > maxOutputChars) {
+                throw new OllamaOutputLimitException(maxOutputChars);
+            }
+
+            if (chunk.path("done").asBoolean(false)) {
+                finalChunk = (ObjectNode) chunk;
+                stats = OllamaGenerationStats.fromJson(chunk);
+                listener.onComplete(stats);
+            }
+        } catch (IOException | RuntimeException e) {
+            // stop reading; the caller cancels the exchange once the outcome fails
+            outcome.completeExceptionally(e);
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        outcome.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (stats == null) {
+            outcome.completeExceptionally(new IOException("Ollama stream ended before the final chunk"));
+            return;
+        }
+        outcome.complete(new OllamaChatResult(content.toString(), thinking.toString(), stats));
+    }
+}
@@ -0,0 +1,385 @@
+package com.chriswininger.ollama;
+
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * {@link OllamaResponseCache} kept in a directory on local disk.
+ * <p>
+ * Responses are deflated and appended to {@code responses.log}; an in-memory index in LRU order
+ * maps each key to its record. Once the live entries exceed {@code maxBytes} the least recently
+ * used are dropped from the index, and when dead records make the log twice the cap it is
+ * rewritten with only the live ones. The index is saved to {@code responses.idx} on close and
+ * after compaction; if it is missing or does not match the log, the log is scanned instead, and
+ * a torn record at its tail (from a crash mid-write) is cut off.
+ * <p>
+ * Record layout: magic, 32-byte key, raw length, stored length, CRC32 of the stored bytes, then
+ * the stored bytes.
+ */
+public class DiskResponseCache implements OllamaResponseCache {
+
+    private static final Logger LOG = Logger.getLogger(DiskResponseCache.class);
+
+    private static final int RECORD_MAGIC = 0x4F524331;
+    private static final int INDEX_MAGIC = 0x4F524931;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = Integer.BYTES + KEY_BYTES + Integer.BYTES * 3;
+    private static final String LOG_FILE = "responses.log";
+    private static final String INDEX_FILE = "responses.idx";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // access ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private FileChannel log;
+    private long logBytes;
+    private long liveBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private DiskResponseCache(final Path directory, final long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public static DiskResponseCache open(final Path directory, final long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        Files.createDirectories(directory);
+
+        final DiskResponseCache cache = new DiskResponseCache(directory, maxBytes);
+        cache.load();
+
+        LOG.infof("(DiskResponseCache) opened %s: %d entries, %d live / %d log bytes, cap %d",
+                directory, cache.index.size(), cache.liveBytes, cache.logBytes, maxBytes);
+        return cache;
+    }
+
+    @Override
+    public synchronized Optional<String> get(final String key) {
+        final Entry entry = index.get(key);
+        if (entry == null) {
+            misses++;
+            return Optional.empty();
+        }
+
+        try {
+            final String body = read(entry);
+            hits++;
+            return Optional.of(body);
+        } catch (IOException | DataFormatException e) {
+            LOG.warnf("(DiskResponseCache) dropping unreadable entry %s: %s", key, e);
+            remove(key);
+            misses++;
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public synchronized void put(final String key, final String responseBody) {
+        if (index.get(key) != null) {
+            // same request, same answer: just mark it recently used
+            return;
+        }
+
+        final byte[] raw = responseBody.getBytes(StandardCharsets.UTF_8);
+        final byte[] stored = deflate(raw);
+        final int recordBytes = HEADER_BYTES + stored.length;
+
+        if (recordBytes > maxBytes) {
+            return;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(stored);
+
+        final ByteBuffer record = ByteBuffer.allocate(recordBytes)
+                .putInt(RECORD_MAGIC)
+                .put(HexFormat.of().parseHex(key))
+                .putInt(raw.length)
+                .putInt(stored.length)
+                .putInt((int) crc.getValue())
+                .put(stored)
+                .flip();
+
+        try {
+            final long offset = logBytes;
+            writeFully(log, record, offset);
+            logBytes += recordBytes;
+
+            index.put(key, new Entry(offset, stored.length, raw.length));
+            liveBytes += recordBytes;
+
+            evictOverCap();
+            if (logBytes > 2 * maxBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to response cache " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized OllamaResponseCacheStats stats() {
+        return new OllamaResponseCacheStats(true, index.size(), liveBytes, logBytes, maxBytes, hits, misses, evictions);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writeIndex();
+            log.close();
+        } catch (IOException e) {
+            LOG.warnf("(DiskResponseCache) could not save index for %s: %s", directory, e);
+        }
+    }
+
+    private void evictOverCap() {
+        final Iterator<Map.Entry<String, Entry>> eldest = index.entrySet().iterator();
+        while (liveBytes > maxBytes && eldest.hasNext()) {
+            liveBytes -= eldest.next().getValue().recordBytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(final String key) {
+        final Entry previous = index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.recordBytes();
+        }
+    }
+
+    private String read(final Entry entry) throws IOException, DataFormatException {
+        final ByteBuffer record = ByteBuffer.allocate(entry.recordBytes());
+        readFully(log, record, entry.offset());
+        record.flip();
+
+        if (record.getInt() != RECORD_MAGIC) {
+            throw new IOException("bad record magic at " + entry.offset());
+        }
+        record.position(record.position() + KEY_BYTES + Integer.BYTES * 2);
+        final int expectedCrc = record.getInt();
+
+        final byte[] stored = new byte[entry.storedLength()];
+        record.get(stored);
+
+        final CRC32 crc = new CRC32();
+        crc.update(stored);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("checksum mismatch at " + entry.offset());
+        }
+
+        return new String(inflate(stored, entry.rawLength()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the log with only the live records, least recently used first, then swaps it in
+     */
+    private void compact() throws IOException {
+        final Path compacted = directory.resolve(LOG_FILE + ".compact");
+        final LinkedHashMap<String, Entry> moved = new LinkedHashMap<>();
+
+        long offset = 0;
+        try (FileChannel out = FileChannel.open(compacted,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (final Map.Entry<String, Entry> live : index.entrySet()) {
+                final Entry entry = live.getValue();
+                final ByteBuffer record = ByteBuffer.allocate(entry.recordBytes());
+                readFully(log, record, entry.offset());
+                record.flip();
+                writeFully(out, record, offset);
+
+                moved.put(live.getKey(), new Entry(offset, entry.storedLength(), entry.rawLength()));
+                offset += entry.recordBytes();
+            }
+            out.force(true);
+        }
+
+        log.close();
+        Files.move(compacted, directory.resolve(LOG_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = openLog();
+
+        LOG.infof("(DiskResponseCache) compacted %s from %d to %d bytes", directory, logBytes, offset);
+
+        index.clear();
+        index.putAll(moved);
+        logBytes = offset;
+        liveBytes = offset;
+        writeIndex();
+    }
+
+    private void load() throws IOException {
+        log = openLog();
+        logBytes = log.size();
+
+        if (!readIndex()) {
+            scanLog();
+        }
+        evictOverCap();
+    }
+
+    private boolean readIndex() {
+        final Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return false;
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getLong() != logBytes) {
+                return false;
+            }
+
+            final int count = buffer.getInt();
+            final byte[] key = new byte[KEY_BYTES];
+            for (int i = 0; i < count; i++) {
+                buffer.get(key);
+                final Entry entry = new Entry(buffer.getLong(), buffer.getInt(), buffer.getInt());
+                index.put(HexFormat.of().formatHex(key), entry);
+                liveBytes += entry.recordBytes();
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warnf("(DiskResponseCache) ignoring unreadable index in %s: %s", directory, e);
+            index.clear();
+            liveBytes = 0;
+            return false;
+        }
+    }
+
+    private void scanLog() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        final byte[] key = new byte[KEY_BYTES];
+        long offset = 0;
+
+        while (offset + HEADER_BYTES <= logBytes) {
+            header.clear();
+            readFully(log, header, offset);
+            header.flip();
+
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            header.get(key);
+            final int rawLength = header.getInt();
+            final int storedLength = header.getInt();
+            final Entry entry = new Entry(offset, storedLength, rawLength);
+
+            if (storedLength < 0 || offset + entry.recordBytes() > logBytes) {
+                break;
+            }
+
+            remove(HexFormat.of().formatHex(key));
+            index.put(HexFormat.of().formatHex(key), entry);
+            liveBytes += entry.recordBytes();
+            offset += entry.recordBytes();
+        }
+
+        if (offset < logBytes) {
+            LOG.warnf("(DiskResponseCache) truncating torn tail of %s at %d of %d bytes", LOG_FILE, offset, logBytes);
+            log.truncate(offset);
+            logBytes = offset;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES
+                + index.size() * (KEY_BYTES + Long.BYTES + Integer.BYTES * 2));
+        buffer.putInt(INDEX_MAGIC).putLong(logBytes).putInt(index.size());
+        for (final Map.Entry<String, Entry> live : index.entrySet()) {
+            buffer.put(HexFormat.of().parseHex(live.getKey()))
+                    .putLong(live.getValue().offset())
+                    .putInt(live.getValue().storedLength())
+                    .putInt(live.getValue().rawLength());
+        }
+
+        final Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+        Files.write(tmp, buffer.array());
+        Files.move(tmp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static byte[] deflate(final byte[] raw) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+            deflating.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(final byte[] stored, final int rawLength) throws DataFormatException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            final byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                final int read = inflater.inflate(raw, length, rawLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated deflate stream");
+                }
+                length += read;
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of " + LOG_FILE + " at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private record Entry(long offset, int storedLength, int rawLength) {
+        int recordBytes() {
+            return HEADER_BYTES + storedLength;
+        }
+    }
+}
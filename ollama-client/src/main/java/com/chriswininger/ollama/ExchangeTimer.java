@@ -0,0 +1,47 @@
+package com.chriswininger.ollama;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+/**
+ * Times one exchange from the moment the client starts sending the request body (so any wait
+ * for a transport slot is excluded) until the response headers arrive.
+ */
+final class ExchangeTimer {
+
+    private volatile long sentNanos;
+    private volatile long headersNanos;
+
+    HttpRequest.BodyPublisher publisher(final HttpRequest.BodyPublisher delegate) {
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return delegate.contentLength();
+            }
+
+            @Override
+            public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+                sentNanos = System.nanoTime();
+                delegate.subscribe(subscriber);
+            }
+        };
+    }
+
+    <T> HttpResponse.BodyHandler<T> handler(final HttpResponse.BodyHandler<T> delegate) {
+        return responseInfo -> {
+            headersNanos = System.nanoTime();
+            return delegate.apply(responseInfo);
+        };
+    }
+
+    /**
+     * @return nanoseconds from sending to headers, or -1 if either has not happened
+     */
+    long timeToHeadersNanos() {
+        final long sent = sentNanos;
+        final long headers = headersNanos;
+        return sent == 0L || headers == 0L ? -1L : headers - sent;
+    }
+}
@@ -0,0 +1,280 @@
+package com.chriswininger.ollama;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps the number of concurrent exchanges and queues the rest, one queue per
+ * {@link OllamaPriority}.
+ * <p>
+ * Permits are handed out as futures so async callers never block a thread while waiting;
+ * cancelling a pending permit future removes it from the queue.
+ * <p>
+ * A freed permit goes to the class with the lowest virtual finish time, which advances by
+ * {@code 1 / weight} for every permit the class gets (stride scheduling, a simple form of
+ * weighted fair queueing). A class that was idle starts from the current virtual time rather than
+ * from where it left off, so it cannot bank credit while nobody competes with it. Within a class
+ * requests stay FIFO. A waiter older than the starvation threshold is served first regardless.
+ */
+class InFlightLimiter {
+
+    private static final OllamaPriority[] PRIORITIES = OllamaPriority.values();
+
+    private final int maxQueued;
+    private final double[] strides = new double[PRIORITIES.length];
+    private final long starvationNanos;
+    private final LongSupplier clock;
+
+    private final List<Deque<Waiter>> waiters = new ArrayList<>(PRIORITIES.length);
+    private final double[] finishTimes = new double[PRIORITIES.length];
+    private final ClassCounters[] counters = new ClassCounters[PRIORITIES.length];
+    private double virtualTime;
+    private int queued;
+    private int limit;
+    private int inUse;
+    private long completed;
+    private long rejected;
+
+    InFlightLimiter(final int limit, final int maxQueued) {
+        this(limit, maxQueued, Map.of(), Duration.ofSeconds(60), System::nanoTime);
+    }
+
+    /**
+     * @param weights             per class, a class not given keeps its
+     *                            {@link OllamaPriority#defaultWeight()}
+     * @param starvationThreshold a waiter older than this is served next whatever its class
+     */
+    InFlightLimiter(
+            final int limit,
+            final int maxQueued,
+            final Map<OllamaPriority, Integer> weights,
+            final Duration starvationThreshold,
+            final LongSupplier clock
+    ) {
+        this.limit = limit;
+        this.maxQueued = maxQueued;
+        this.starvationNanos = starvationThreshold.toNanos();
+        this.clock = clock;
+        for (final OllamaPriority priority : PRIORITIES) {
+            final int weight = weights.getOrDefault(priority, priority.defaultWeight());
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight for " + priority + " must be at least 1");
+            }
+            strides[priority.ordinal()] = 1d / weight;
+            waiters.add(new ArrayDeque<>());
+            counters[priority.ordinal()] = new ClassCounters();
+        }
+    }
+
+    CompletableFuture<Void> acquire() {
+        return acquire(OllamaPriority.NORMAL);
+    }
+
+    CompletableFuture<Void> acquire(final OllamaPriority priority) {
+        synchronized (this) {
+            if (inUse < limit && queued == 0) {
+                inUse++;
+                counters[priority.ordinal()].granted++;
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (queued >= maxQueued) {
+                rejected++;
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many queued Ollama requests (limit %d)".formatted(maxQueued)));
+            }
+
+            final Deque<Waiter> queue = waiters.get(priority.ordinal());
+            if (queue.isEmpty()) {
+                finishTimes[priority.ordinal()] = Math.max(finishTimes[priority.ordinal()], virtualTime);
+            }
+            final Waiter waiter = new Waiter(new CompletableFuture<>(), priority, clock.getAsLong());
+            queue.addLast(waiter);
+            queued++;
+            waiter.permit().whenComplete((ignored, error) -> {
+                if (waiter.permit().isCancelled()) {
+                    synchronized (this) {
+                        if (queue.remove(waiter)) {
+                            queued--;
+                        }
+                    }
+                }
+            });
+            return waiter.permit();
+        }
+    }
+
+    void acquireBlocking() throws InterruptedException {
+        acquireBlocking(OllamaPriority.NORMAL);
+    }
+
+    void acquireBlocking(final OllamaPriority priority) throws InterruptedException {
+        final CompletableFuture<Void> permit = acquire(priority);
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            // if the permit was granted while we were being interrupted, give it back
+            if (!permit.cancel(false)) {
+                release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    void release() {
+        final List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            inUse--;
+            completed++;
+            granted = grantPermits();
+        }
+        completeOutsideLock(granted);
+    }
+
+    void setLimit(final int limit) {
+        final List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            this.limit = limit;
+            granted = grantPermits();
+        }
+        completeOutsideLock(granted);
+    }
+
+    synchronized int limit() {
+        return limit;
+    }
+
+    synchronized int inUse() {
+        return inUse;
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    synchronized long completed() {
+        return completed;
+    }
+
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    /**
+     * Queue depth and waits per class so far
+     */
+    synchronized Map<OllamaPriority, ClassCounters> counters() {
+        final Map<OllamaPriority, ClassCounters> snapshot = new EnumMap<>(OllamaPriority.class);
+        for (final OllamaPriority priority : PRIORITIES) {
+            final ClassCounters copy = counters[priority.ordinal()].copy();
+            copy.waiting = waiters.get(priority.ordinal()).size();
+            snapshot.put(priority, copy);
+        }
+        return snapshot;
+    }
+
+    // caller must hold the monitor
+    private List<CompletableFuture<Void>> grantPermits() {
+        final List<CompletableFuture<Void>> granted = new ArrayList<>();
+        final long now = clock.getAsLong();
+        while (inUse < limit && queued > 0) {
+            final Waiter waiter = waiters.get(nextClass(now)).pollFirst();
+            queued--;
+            inUse++;
+
+            final ClassCounters classCounters = counters[waiter.priority().ordinal()];
+            final long waited = now - waiter.enqueuedAt();
+            classCounters.granted++;
+            classCounters.waitNanos += waited;
+            classCounters.maxWaitNanos = Math.max(classCounters.maxWaitNanos, waited);
+            if (waited >= starvationNanos) {
+                classCounters.starved++;
+            }
+            granted.add(waiter.permit());
+        }
+        return granted;
+    }
+
+    // caller must hold the monitor, and at least one queue must be non-empty
+    private int nextClass(final long now) {
+        int oldest = -1;
+        int fairest = -1;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            final Waiter head = waiters.get(i).peekFirst();
+            if (Objects.isNull(head)) {
+                continue;
+            }
+            if (now - head.enqueuedAt() >= starvationNanos
+                    && (oldest < 0 || head.enqueuedAt() < waiters.get(oldest).getFirst().enqueuedAt())) {
+                oldest = i;
+            }
+            // ties go to the more urgent class, the lower ordinal
+            if (fairest < 0 || finishTimes[i] < finishTimes[fairest]) {
+                fairest = i;
+            }
+        }
+
+        final int chosen = oldest >= 0 ? oldest : fairest;
+        virtualTime = Math.max(virtualTime, finishTimes[chosen]);
+        finishTimes[chosen] += strides[chosen];
+        return chosen;
+    }
+
+    // completing a waiter runs its dependent stages, so never do it while holding the monitor
+    private void completeOutsideLock(final List<CompletableFuture<Void>> granted) {
+        for (final CompletableFuture<Void> waiter : granted) {
+            if (!waiter.complete(null)) {
+                // waiter gave up (cancelled) before its turn came, hand the permit on
+                final List<CompletableFuture<Void>> next;
+                synchronized (this) {
+                    inUse--;
+                    next = grantPermits();
+                }
+                completeOutsideLock(next);
+            }
+        }
+    }
+
+    private record Waiter(CompletableFuture<Void> permit, OllamaPriority priority, long enqueuedAt) {}
+
+    /**
+     * Running totals for one class; a permit granted without queueing counts with no wait
+     */
+    static final class ClassCounters {
+        int waiting;
+        long granted;
+        long starved;
+        long waitNanos;
+        long maxWaitNanos;
+
+        ClassCounters copy() {
+            final ClassCounters copy = new ClassCounters();
+            copy.waiting = waiting;
+            copy.granted = granted;
+            copy.starved = starved;
+            copy.waitNanos = waitNanos;
+            copy.maxWaitNanos = maxWaitNanos;
+            return copy;
+        }
+
+        void add(final ClassCounters other) {
+            waiting += other.waiting;
+            granted += other.granted;
+            starved += other.starved;
+            waitNanos += other.waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, other.maxWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Chat inference as the ingestion services use it, independent of the server behind it:
+ * {@link OllamaApiService} for Ollama's {@code /api/chat}, {@link OpenAiCompatibleInferenceClient}
+ * for an OpenAI-compatible {@code /v1/chat/completions} such as llama.cpp's server or vLLM.
+ * <p>
+ * The method names predate the second implementation and are kept so callers did not have to
+ * change. Structured calls constrain the reply to the JSON schema {@link #buildFormatBlock} builds
+ * for the record, however the server expresses that.
+ */
+public interface InferenceClient {
+
+    /**
+     * A view whose calls are recorded under {@code stage} in {@link #generationMetrics()}
+     */
+    InferenceClient withStage(String stage);
+
+    /**
+     * A view whose calls queue for the transport as {@code priority}
+     */
+    InferenceClient withPriority(OllamaPriority priority);
+
+    OllamaGenerationMetrics generationMetrics();
+
+    default String callOllamaPlainTextResponse(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think
+    ) throws IOException, InterruptedException {
+        return callOllamaPlainTextResponseWithStats(systemPrompt, userMessage, think).content();
+    }
+
+    /**
+     * As {@link #callOllamaPlainTextResponse}, also returning the thinking text and the server's
+     * generation stats
+     */
+    default OllamaChatResult callOllamaPlainTextResponseWithStats(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think
+    ) throws IOException, InterruptedException {
+        return OllamaFutures.await(callOllamaPlainTextResponseWithStatsAsync(systemPrompt, userMessage, think));
+    }
+
+    /**
+     * Async variant of {@link #callOllamaPlainTextResponse}. Cancelling the returned future (or
+     * completing it via {@code orTimeout}) withdraws the request or aborts the exchange.
+     */
+    default CompletableFuture<String> callOllamaPlainTextResponseAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think
+    ) {
+        return OllamaFutures.thenApply(
+                callOllamaPlainTextResponseWithStatsAsync(systemPrompt, userMessage, think), OllamaChatResult::content);
+    }
+
+    /**
+     * Async variant of {@link #callOllamaPlainTextResponseWithStats}
+     */
+    CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseWithStatsAsync(
+            CharSequence systemPrompt,
+            CharSequence userMessage,
+            boolean think
+    );
+
+    /**
+     * Streams a plain-text generation, handing thinking and content deltas to {@code listener} as
+     * they are produced. The generation is aborted with an {@link OllamaOutputLimitException}
+     * once thinking plus content exceed {@code maxOutputChars}.
+     */
+    CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseStreamingAsync(
+            CharSequence systemPrompt,
+            CharSequence userMessage,
+            boolean think,
+            int maxOutputChars,
+            OllamaStreamListener listener
+    );
+
+    /**
+     * Blocking variant of {@link #callOllamaPlainTextResponseStreamingAsync}
+     */
+    default OllamaChatResult callOllamaPlainTextResponseStreaming(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final int maxOutputChars,
+            final OllamaStreamListener listener
+    ) throws IOException, InterruptedException {
+        return OllamaFutures.await(
+                callOllamaPlainTextResponseStreamingAsync(systemPrompt, userMessage, think, maxOutputChars, listener));
+    }
+
+    default <T extends Record> T callOllamaStructuredResponse(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass
+    ) throws IOException, InterruptedException {
+        return callOllamaStructuredResponseWithStats(systemPrompt, userMessage, think, recordClass).value();
+    }
+
+    /**
+     * As {@link #callOllamaStructuredResponse}, also returning the thinking text and the server's
+     * generation stats
+     */
+    default <T extends Record> OllamaStructuredResult<T> callOllamaStructuredResponseWithStats(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass
+    ) throws IOException, InterruptedException {
+        return OllamaFutures.await(
+                callOllamaStructuredResponseWithStatsAsync(systemPrompt, userMessage, think, recordClass));
+    }
+
+    /**
+     * Async variant of {@link #callOllamaStructuredResponse}. Cancelling the returned future (or
+     * completing it via {@code orTimeout}) withdraws the request or aborts the exchange.
+     */
+    default <T extends Record> CompletableFuture<T> callOllamaStructuredResponseAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass
+    ) {
+        return OllamaFutures.thenApply(
+                callOllamaStructuredResponseWithStatsAsync(systemPrompt, userMessage, think, recordClass),
+                OllamaStructuredResult::value);
+    }
+
+    /**
+     * Async variant of {@link #callOllamaStructuredResponseWithStats}
+     */
+    <T extends Record> CompletableFuture<OllamaStructuredResult<T>> callOllamaStructuredResponseWithStatsAsync(
+            CharSequence systemPrompt,
+            CharSequence userMessage,
+            boolean think,
+            Class<T> recordClass
+    );
+
+    /**
+     * One format-constrained call that produces {@code recordClass} directly, for
+     * {@link InferenceStrategy#SINGLE_PASS}. If the reply does not parse, leaves a field out, or
+     * fails {@code validator}, {@code fallback} (normally the two-pass flow) produces the result
+     * instead. Transport and HTTP errors are not retried through the fallback. Both outcomes are
+     * counted per stage in {@link #generationMetrics()}.
+     */
+    <T extends Record> T callOllamaSinglePass(
+            CharSequence systemPrompt,
+            CharSequence userMessage,
+            boolean think,
+            Class<T> recordClass,
+            Predicate<T> validator,
+            Fallback<T> fallback
+    ) throws IOException, InterruptedException;
+
+    /**
+     * Async variant of {@link #callOllamaSinglePass}
+     */
+    <T extends Record> CompletableFuture<T> callOllamaSinglePassAsync(
+            CharSequence systemPrompt,
+            CharSequence userMessage,
+            boolean think,
+            Class<T> recordClass,
+            Predicate<T> validator,
+            Supplier<CompletableFuture<T>> fallback
+    );
+
+    <T extends Record> InferenceSchema<T> schemaFor(Class<T> recordClass);
+
+    default <T extends Record> T parseToOutput(final Class<T> recordClass, final String json)
+            throws JsonProcessingException {
+        return schemaFor(recordClass).read(json);
+    }
+
+    default String buildExampleJson(final Class<? extends Record> recordClass) throws JsonProcessingException {
+        return schemaFor(recordClass).exampleJson();
+    }
+
+    default ObjectNode buildFormatBlock(final Class<? extends Record> recordClass) {
+        return schemaFor(recordClass).format();
+    }
+
+    /**
+     * The flow a single-pass call falls back to
+     */
+    @FunctionalInterface
+    interface Fallback<T> {
+        T call() throws IOException, InterruptedException;
+    }
+}
@@ -4,10 +4,11 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
 import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.RECORD_COMPONENT;
 import static java.lang.annotation.ElementType.TYPE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
-@Target({FIELD, TYPE})
+@Target({FIELD, RECORD_COMPONENT, TYPE})
 @Retention(RUNTIME)
 /*
 Decorate fields in a record, allowing us to build the format block
@@ -0,0 +1,250 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Everything a structured call needs for one record class, worked out once: the Ollama
+ * {@code format} block, the example JSON shown to the model, and a prebuilt reader for the reply.
+ * <p>
+ * Instances are immutable and safe to share between threads; get them from
+ * {@link InferenceSchemaRegistry} rather than compiling them per call.
+ */
+public final class InferenceSchema<T extends Record> {
+
+    private final Class<T> recordClass;
+    private final ObjectNode format;
+    private final SerializedString formatJson;
+    private final String exampleJson;
+    private final ObjectReader reader;
+    private final List<RecordComponent> components;
+
+    private InferenceSchema(
+            final Class<T> recordClass,
+            final ObjectNode format,
+            final String formatJson,
+            final String exampleJson,
+            final ObjectReader reader
+    ) {
+        this.recordClass = recordClass;
+        this.format = format;
+        this.formatJson = new SerializedString(formatJson);
+        this.exampleJson = exampleJson;
+        this.reader = reader;
+        this.components = Arrays.stream(recordClass.getRecordComponents())
+                .filter(component -> !component.getType().isPrimitive())
+                .toList();
+    }
+
+    static <T extends Record> InferenceSchema<T> compile(final ObjectMapper objectMapper, final Class<T> recordClass) {
+        final ObjectNode format = buildFormatBlock(objectMapper, recordClass);
+
+        try {
+            return new InferenceSchema<>(
+                    recordClass,
+                    format,
+                    objectMapper.writeValueAsString(format),
+                    objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(buildExampleNode(objectMapper, recordClass)),
+                    objectMapper.readerFor(recordClass)
+            );
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not compile inference schema for " + recordClass.getName(), e);
+        }
+    }
+
+    public Class<T> recordClass() {
+        return recordClass;
+    }
+
+    /**
+     * A copy of the format block, free to modify
+     */
+    public ObjectNode format() {
+        return format.deepCopy();
+    }
+
+    /**
+     * The serialized format block as a raw value, for splicing into a request tree without
+     * re-serializing the schema. Its encoded bytes are cached after the first write.
+     */
+    public RawValue formatRawValue() {
+        return new RawValue(formatJson);
+    }
+
+    public String formatJson() {
+        return formatJson.getValue();
+    }
+
+    public String exampleJson() {
+        return exampleJson;
+    }
+
+    public T read(final String json) throws JsonProcessingException {
+        return reader.readValue(json);
+    }
+
+    /**
+     * Binds the record straight from a response's content, see {@link ChatResponseReader}
+     */
+    ChatResponseReader.ContentBinder<T> binder() {
+        return ChatResponseReader.ContentBinder.json(reader);
+    }
+
+    /**
+     * The components of {@code value} the model left out, every component is required by the
+     * format block so anything listed here means the reply does not match the schema
+     */
+    public List<String> missingFields(final T value) {
+        final List<String> missing = new ArrayList<>();
+        for (final RecordComponent component : components) {
+            if (Objects.isNull(accessValue(component, value))) {
+                missing.add(component.getName());
+            }
+        }
+        return missing;
+    }
+
+    private static Object accessValue(final RecordComponent component, final Record value) {
+        final Method accessor = component.getAccessor();
+        try {
+            return accessor.invoke(value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not read " + component.getName() + " of " + value.getClass().getName(), e);
+        }
+    }
+
+    static ObjectNode buildExampleNode(final ObjectMapper objectMapper, final Class<? extends Record> recordClass) {
+        final ObjectNode node = objectMapper.createObjectNode();
+
+        for (RecordComponent component : recordClass.getRecordComponents()) {
+            final String name = component.getName();
+            final Class<?> type = component.getType();
+            final Type genericType = component.getGenericType();
+
+            setExampleValue(objectMapper, node, name, type, genericType);
+        }
+
+        return node;
+    }
+
+    private static void setExampleValue(
+            final ObjectMapper objectMapper,
+            final ObjectNode parent,
+            final String fieldName,
+            final Class<?> type,
+            final Type genericType
+    ) {
+        if (type == String.class) {
+            parent.put(fieldName, "string");
+        } else if (type == Long.class || type == long.class) {
+            parent.put(fieldName, 0L);
+        } else if (type == Integer.class || type == int.class) {
+            parent.put(fieldName, 0);
+        } else if (type == Double.class || type == double.class
+                || type == Float.class || type == float.class) {
+            parent.put(fieldName, 0.0);
+        } else if (type == Boolean.class || type == boolean.class) {
+            parent.put(fieldName, false);
+        } else if (type == List.class || type == Set.class) {
+            final ArrayNode arr = parent.putArray(fieldName);
+            if (genericType instanceof ParameterizedType pt) {
+                final Class<?> elementType = (Class<?>) pt.getActualTypeArguments()[0];
+                if (elementType.isRecord()) {
+                    @SuppressWarnings("unchecked")
+                    final Class<? extends Record> nested = (Class<? extends Record>) elementType;
+                    arr.add(buildExampleNode(objectMapper, nested));
+                } else {
+                    arr.add(getExamplePrimitive(elementType));
+                }
+            }
+        } else if (type.isRecord()) {
+            @SuppressWarnings("unchecked")
+            final Class<? extends Record> nested = (Class<? extends Record>) type;
+            parent.set(fieldName, buildExampleNode(objectMapper, nested));
+        } else {
+            parent.put(fieldName, "string");
+        }
+    }
+
+    private static String getExamplePrimitive(final Class<?> type) {
+        if (type == Long.class || type == long.class
+                || type == Integer.class || type == int.class) {
+            return "0";
+        } else if (type == Boolean.class || type == boolean.class) {
+            return "false";
+        }
+        return "string";
+    }
+
+    static ObjectNode buildFormatBlock(final ObjectMapper objectMapper, final Class<? extends Record> recordClass) {
+        final ObjectNode format = objectMapper.createObjectNode();
+        format.put("type", "object");
+        final ObjectNode properties = format.putObject("properties");
+        final ArrayNode required = format.putArray("required");
+
+        for (RecordComponent component : recordClass.getRecordComponents()) {
+            final String name = component.getName();
+            final ObjectNode prop = properties.putObject(name);
+
+            mapType(objectMapper, prop, component.getType(), component.getGenericType());
+
+            final InferenceDescription desc = component.getAnnotation(InferenceDescription.class);
+            if (desc != null && desc.value().length > 0) {
+                prop.put("description", String.join(" ", desc.value()));
+            }
+
+            required.add(name);
+        }
+
+        return format;
+    }
+
+    private static void mapType(
+            final ObjectMapper objectMapper,
+            final ObjectNode prop,
+            final Class<?> type,
+            final Type genericType
+    ) {
+        if (type == String.class) {
+            prop.put("type", "string");
+        } else if (type == Long.class || type == long.class
+                || type == Integer.class || type == int.class) {
+            prop.put("type", "integer");
+        } else if (type == Double.class || type == double.class
+                || type == Float.class || type == float.class) {
+            prop.put("type", "number");
+        } else if (type == Boolean.class || type == boolean.class) {
+            prop.put("type", "boolean");
+        } else if (type == List.class || type == Set.class) {
+            prop.put("type", "array");
+            final ObjectNode items = prop.putObject("items");
+            if (genericType instanceof ParameterizedType pt) {
+                final Class<?> elementType = (Class<?>) pt.getActualTypeArguments()[0];
+                mapType(objectMapper, items, elementType, elementType);
+            }
+        } else if (type.isRecord()) {
+            @SuppressWarnings("unchecked")
+            final Class<? extends Record> nested = (Class<? extends Record>) type;
+            prop.setAll(buildFormatBlock(objectMapper, nested));
+        } else {
+            prop.put("type", "string");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each structured-output record class into an {@link InferenceSchema} on first use and
+ * hands out the same instance afterwards, so reflection over record components and
+ * {@link InferenceDescription}s happens once per class rather than once per call.
+ */
+public class InferenceSchemaRegistry {
+
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, InferenceSchema<?>> schemas = new ConcurrentHashMap<>();
+
+    public InferenceSchemaRegistry(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Record> InferenceSchema<T> schemaFor(final Class<T> recordClass) {
+        return (InferenceSchema<T>) schemas.computeIfAbsent(recordClass, c -> InferenceSchema.compile(objectMapper, recordClass));
+    }
+
+    public int size() {
+        return schemas.size();
+    }
+}
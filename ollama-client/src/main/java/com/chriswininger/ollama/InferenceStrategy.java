@@ -0,0 +1,18 @@
+package com.chriswininger.ollama;
+
+/**
+ * How a structured result is produced
+ */
+public enum InferenceStrategy {
+    /**
+     * A free text analysis first, then a second call that converts it to JSON. Slower, but the
+     * analysis is never squeezed through the format grammar.
+     */
+    TWO_PASS,
+
+    /**
+     * One format-constrained call that produces the record directly, falling back to
+     * {@link #TWO_PASS} when the reply does not validate
+     */
+    SINGLE_PASS
+}
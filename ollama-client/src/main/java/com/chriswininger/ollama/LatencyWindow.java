@@ -0,0 +1,44 @@
+package com.chriswininger.ollama;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/**
+ * The latencies of the last few calls of one stage, for picking a hedge delay. A chapter summary
+ * and a title lookup take very different times, so each stage keeps its own.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private final int minSamples;
+    private int next;
+    private int size;
+
+    LatencyWindow(final int capacity, final int minSamples) {
+        this.samples = new long[capacity];
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(final long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    /**
+     * Empty until the window has seen enough calls for the figure to mean something
+     */
+    OptionalLong percentile(final double percentile) {
+        final long[] sorted;
+        synchronized (this) {
+            if (size < minSamples) {
+                return OptionalLong.empty();
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+        return OptionalLong.of(sorted[Math.clamp(index, 0, sorted.length - 1)]);
+    }
+}
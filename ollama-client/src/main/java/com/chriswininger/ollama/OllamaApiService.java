@@ -1,287 +1,870 @@
 package com.chriswininger.ollama;
 
+import com.chriswininger.ollama.ChatResponseReader.ChatResponse;
+import com.chriswininger.ollama.ChatResponseReader.ContentBinder;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.jboss.logging.Logger;
 
 import java.io.IOException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.RecordComponent;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-
-public class OllamaApiService {
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class OllamaApiService implements InferenceClient {
 
     private static final Logger LOG = Logger.getLogger(OllamaApiService.class);
 
-    private final String baseUrl;
+    private static final String DEFAULT_STAGE = "default";
+    // recent calls per stage the hedge delay is taken from, and how many it needs first
+    private static final int LATENCY_WINDOW_SIZE = 256;
+    private static final int LATENCY_WINDOW_MIN_SAMPLES = 20;
+
+    private final OllamaBackendPool backends;
+    private final OllamaTransport transport;
+    private final OllamaResponseCache responseCache;
+    private final OllamaResidencyManager residency;
     private final String modelName;
-    private final long numCtx;
+    private final OllamaContextSizer contextSizer;
     private final int timeoutSeconds;
     private final boolean verboseRequestLogging;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String stage;
+    private final OllamaPriority priority;
+    private final ObjectMapper objectMapper;
+    private final InferenceSchemaRegistry schemas;
+    private final OllamaGenerationMetrics generationMetrics;
+    private final OllamaResiliencePolicy resilience;
+    private final Map<String, LatencyWindow> latencies;
+    private final SingleFlight<FlightKey, Object> flights;
+
+    public OllamaApiService(
+            final String baseUrl,
+            final String modelName,
+            final long numCtx,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging
+    ) {
+        this(OllamaTransport.defaultTransport(), baseUrl, modelName, numCtx, timeoutSeconds, verboseRequestLogging);
+    }
 
     public OllamaApiService(
+            final OllamaTransport transport,
             final String baseUrl,
             final String modelName,
             final long numCtx,
             final int timeoutSeconds,
             final boolean verboseRequestLogging
     ) {
-        this.baseUrl = baseUrl;
+        this(OllamaBackendPool.single(transport, baseUrl), modelName, numCtx, timeoutSeconds, verboseRequestLogging);
+    }
+
+    /**
+     * Routes every call to one of the pool's backends, see {@link OllamaBackendPool}
+     */
+    public OllamaApiService(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final long numCtx,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging
+    ) {
+        this(backends, modelName, numCtx, timeoutSeconds, verboseRequestLogging, OllamaResponseCache.disabled());
+    }
+
+    /**
+     * As above, answering repeated requests from {@code responseCache} when their payload is
+     * byte-for-byte identical to one already served
+     */
+    public OllamaApiService(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final long numCtx,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging,
+            final OllamaResponseCache responseCache
+    ) {
+        this(backends, modelName, numCtx, timeoutSeconds, verboseRequestLogging, responseCache,
+                OllamaResidencyManager.unmanaged());
+    }
+
+    /**
+     * As above, sending the {@code keep_alive} {@code residency} has for the model with every call
+     */
+    public OllamaApiService(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final long numCtx,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging,
+            final OllamaResponseCache responseCache,
+            final OllamaResidencyManager residency
+    ) {
+        this(backends, modelName, OllamaContextSizer.upTo(numCtx), timeoutSeconds, verboseRequestLogging,
+                responseCache, residency);
+    }
+
+    /**
+     * As above, sizing {@code num_ctx} per call with {@code contextSizer} rather than up to a
+     * plain maximum
+     */
+    public OllamaApiService(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final OllamaContextSizer contextSizer,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging,
+            final OllamaResponseCache responseCache,
+            final OllamaResidencyManager residency
+    ) {
+        this(backends, modelName, contextSizer, timeoutSeconds, verboseRequestLogging, responseCache, residency,
+                OllamaResiliencePolicy.none());
+    }
+
+    /**
+     * As above, retrying and hedging calls as {@code resilience} says
+     */
+    public OllamaApiService(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final OllamaContextSizer contextSizer,
+            final int timeoutSeconds,
+            final boolean verboseRequestLogging,
+            final OllamaResponseCache responseCache,
+            final OllamaResidencyManager residency,
+            final OllamaResiliencePolicy resilience
+    ) {
+        this.backends = backends;
+        this.transport = backends.transport();
+        this.responseCache = responseCache;
+        this.residency = residency;
         this.modelName = modelName;
-        this.numCtx = numCtx;
+        this.contextSizer = contextSizer;
         this.timeoutSeconds = timeoutSeconds;
         this.verboseRequestLogging = verboseRequestLogging;
+        this.stage = DEFAULT_STAGE;
+        this.priority = OllamaPriority.NORMAL;
+        this.objectMapper = new ObjectMapper();
+        this.schemas = new InferenceSchemaRegistry(objectMapper);
+        this.generationMetrics = new OllamaGenerationMetrics();
+        this.resilience = resilience;
+        this.latencies = new ConcurrentHashMap<>();
+        this.flights = new SingleFlight<>();
     }
 
-    public String callOllamaPlainTextResponse(
-            final String systemPrompt,
-            final String userMessage,
+    private OllamaApiService(final OllamaApiService source, final String stage, final OllamaPriority priority) {
+        this.backends = source.backends;
+        this.transport = source.transport;
+        this.responseCache = source.responseCache;
+        this.residency = source.residency;
+        this.modelName = source.modelName;
+        this.contextSizer = source.contextSizer;
+        this.timeoutSeconds = source.timeoutSeconds;
+        this.verboseRequestLogging = source.verboseRequestLogging;
+        this.stage = stage;
+        this.priority = priority;
+        this.objectMapper = source.objectMapper;
+        this.schemas = source.schemas;
+        this.generationMetrics = source.generationMetrics;
+        this.resilience = source.resilience;
+        this.latencies = source.latencies;
+        this.flights = source.flights;
+    }
+
+    /**
+     * A view of this service whose calls are recorded under {@code stage} in
+     * {@link #generationMetrics()}. Everything else (backends, cache, schemas, metrics) is shared.
+     */
+    @Override
+    public OllamaApiService withStage(final String stage) {
+        return new OllamaApiService(this, stage, priority);
+    }
+
+    /**
+     * A view of this service whose calls queue for the transport as {@code priority}, see
+     * {@link OllamaPriority}. The stage is kept.
+     */
+    @Override
+    public OllamaApiService withPriority(final OllamaPriority priority) {
+        return new OllamaApiService(this, stage, priority);
+    }
+
+    @Override
+    public OllamaGenerationMetrics generationMetrics() {
+        return generationMetrics;
+    }
+
+    /**
+     * The request waits for a free slot on the shared {@link OllamaTransport} without holding a
+     * thread; cancelling the returned future (or completing it via {@code orTimeout}) withdraws
+     * the request or aborts the exchange.
+     */
+    @Override
+    public CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseWithStatsAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
             final boolean think
-    ) throws IOException, InterruptedException {
-        final String payload = buildPayload(systemPrompt, userMessage, think, null);
+    ) {
+        final ChatPayload payload;
+        try {
+            payload = buildPayload(systemPrompt, userMessage, think, null, false);
+        } catch (IOException | OllamaContextOverflowException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
         if (verboseRequestLogging) {
-            LOG.infof("OLLAMA request payload\n\n==========\n%s\n===========", payload);
+            LOG.infof("OLLAMA request payload\n\n==========\n%s\n===========", payload.body());
         }
 
-        final HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
-
-        final HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/api/chat"))
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofSeconds(timeoutSeconds))
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
+        return postChatAsync(payload, ContentBinder.text(), response -> toChatResult(response, think), true);
+    }
 
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Streams a plain-text generation, handing thinking and content deltas to {@code listener} as
+     * Ollama produces them instead of waiting for the whole body.
+     * <p>
+     * The generation is aborted with an {@link OllamaOutputLimitException} once thinking plus
+     * content exceed {@code maxOutputChars}, which bounds memory and stops a model stuck in a
+     * repetition loop early. Note the request timeout only covers the wait for the first byte;
+     * bound the total time with {@code orTimeout} on the returned future if needed.
+     */
+    @Override
+    public CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseStreamingAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final int maxOutputChars,
+            final OllamaStreamListener listener
+    ) {
+        final ChatPayload payload;
+        try {
+            payload = buildPayload(systemPrompt, userMessage, think, null, true);
+        } catch (IOException | OllamaContextOverflowException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Ollama returned HTTP " + response.statusCode() + ": " + response.body());
+        if (verboseRequestLogging) {
+            LOG.infof("OLLAMA request payload\n\n==========\n%s\n===========", payload.body());
         }
 
-        final var body = response.body();
+        return postChatStreaming(payload, new ChatStreamParser(objectMapper, listener, maxOutputChars));
+    }
 
-        final JsonNode outer = objectMapper.readTree(body);
+    @Override
+    public <T extends Record> CompletableFuture<OllamaStructuredResult<T>> callOllamaStructuredResponseWithStatsAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass
+    ) {
+        return structuredAsync(systemPrompt, userMessage, think, recordClass, true);
+    }
 
-        if (think) {
-            final String thinking = outer.path("message").path("thinking").asText();
-            LOG.debugf("""
-                    ===== Thinking ====
-                    %s
-                    ===================
-                    """, thinking);
+    private <T extends Record> CompletableFuture<OllamaStructuredResult<T>> structuredAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass,
+            final boolean retryParseErrors
+    ) {
+        final ChatPayload payload;
+        try {
+            payload = buildPayload(systemPrompt, userMessage, think, schemas.schemaFor(recordClass), false);
+        } catch (IOException | OllamaContextOverflowException e) {
+            return CompletableFuture.failedFuture(e);
         }
 
-        return outer.path("message").path("content").asText();
+        if (verboseRequestLogging) {
+            LOG.infof("OLLAMA request payload\n\n==========\n%s\n===========", payload.body());
+        }
+
+        return postChatAsync(payload, schemas.schemaFor(recordClass).binder(),
+                response -> toStructuredResult(response, think), retryParseErrors);
     }
 
-    public <T extends Record> T callOllamaStructuredResponse(
-            final String systemPrompt,
-            final String userMessage,
+    /**
+     * A reply that does not parse goes to the fallback rather than being retried.
+     */
+    @Override
+    public <T extends Record> T callOllamaSinglePass(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
             final boolean think,
-            final Class<T> recordClass
+            final Class<T> recordClass,
+            final Predicate<T> validator,
+            final Fallback<T> fallback
     ) throws IOException, InterruptedException {
-        final ObjectNode format = buildFormatBlock(recordClass);
-        final String payload = buildPayload(systemPrompt, userMessage, think, format);
+        return singlePass(recordClass, validator).call(
+                () -> OllamaFutures.await(structuredAsync(systemPrompt, userMessage, think, recordClass, false)).value(),
+                fallback);
+    }
 
-        if (verboseRequestLogging) {
-            LOG.infof("OLLAMA request payload\n\n==========\n%s\n===========", payload);
+    @Override
+    public <T extends Record> CompletableFuture<T> callOllamaSinglePassAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass,
+            final Predicate<T> validator,
+            final Supplier<CompletableFuture<T>> fallback
+    ) {
+        return singlePass(recordClass, validator).callAsync(
+                OllamaFutures.thenApply(structuredAsync(systemPrompt, userMessage, think, recordClass, false),
+                        OllamaStructuredResult::value),
+                fallback);
+    }
+
+    private <T extends Record> SinglePassFlow<T> singlePass(final Class<T> recordClass, final Predicate<T> validator) {
+        return new SinglePassFlow<>(schemas.schemaFor(recordClass), validator, generationMetrics, modelName, stage);
+    }
+
+    private OllamaChatResult toChatResult(final ChatResponse<String> response, final boolean think) {
+        if (think) {
+            logThinking(response.thinking());
         }
 
-        final HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
+        return new OllamaChatResult(response.content(), response.thinking(), response.stats());
+    }
+
+    private <T extends Record> OllamaStructuredResult<T> toStructuredResult(
+            final ChatResponse<T> response,
+            final boolean think
+    ) {
+        if (think) {
+            logThinking(response.thinking());
+        }
+
+        return new OllamaStructuredResult<>(response.content(), response.thinking(), response.stats());
+    }
 
-        final HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/api/chat"))
+    private void logThinking(final String thinking) {
+        LOG.debugf("""
+                ===== Thinking ====
+                %s
+                ===================
+                """, thinking);
+    }
+
+    private HttpRequest buildChatRequest(final OllamaBackend backend, final ChatPayload payload, final ExchangeTimer timer) {
+        // keep_alive goes in here rather than in buildPayload so the cache key does not depend on residency
+        final HttpRequest.BodyPublisher body = payload.body().publisher(residency.keepAliveField(modelName));
+        return HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + "/api/chat"))
                 .header("Content-Type", "application/json")
                 .timeout(Duration.ofSeconds(timeoutSeconds))
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .POST(timer.publisher(body))
                 .build();
+    }
 
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Records a finished non-streamed generation in the metrics and reports it to the transport.
+     * The headers of a non-streamed response only arrive once generation is done, so decode time
+     * is taken off to approximate the time to first token.
+     */
+    private void recordGeneration(
+            final ChatPayload payload,
+            final HttpRequest request,
+            final ExchangeTimer timer,
+            final OllamaGenerationStats stats
+    ) {
+        recordStats(payload, stats);
 
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Ollama returned HTTP " + response.statusCode() + ": " + response.body());
+        final long timeToHeaders = timer.timeToHeadersNanos();
+        if (timeToHeaders >= 0) {
+            transport.onGeneration(request.uri(), Math.max(0L, timeToHeaders - stats.evalDuration()), stats);
         }
+    }
 
-        final var body = response.body();
-
-        final JsonNode outer = objectMapper.readTree(body);
+    private void recordStats(final ChatPayload payload, final OllamaGenerationStats stats) {
+        generationMetrics.record(modelName, stage, stats);
+        contextSizer.observe(modelName, payload.promptChars(), stats.promptEvalCount());
+        LOG.debugf("(OllamaApiService) %s/%s: %d prompt tokens at %.1f/s, %d tokens at %.1f/s, load %d ms",
+                modelName, stage, stats.promptEvalCount(), stats.prefillTokensPerSecond(),
+                stats.evalCount(), stats.decodeTokensPerSecond(), stats.loadDuration() / 1_000_000L);
+    }
 
-        LOG.info("!!! body: " + outer);
-        if (think) {
-            final String thinking = outer.path("message").path("thinking").asText();
-            LOG.debugf("""
-                    ===== Thinking ====
-                    %s
-                    ===================
-                    """, thinking);
+    /**
+     * Answers from the response cache if it can, otherwise shares the reply of an identical call
+     * already in flight or sends the request.
+     *
+     * @param retryParseErrors whether a reply that does not bind is worth another attempt; not for
+     *                         single-pass calls, whose fallback is the better recovery
+     */
+    private <C, R> CompletableFuture<R> postChatAsync(
+            final ChatPayload payload,
+            final ContentBinder<C> binder,
+            final Function<ChatResponse<C>, R> mapper,
+            final boolean retryParseErrors
+    ) {
+        final String cacheKey = payload.cacheKey();
+        final Optional<String> cached = cachedBody(cacheKey);
+        if (cached.isPresent()) {
+            payload.body().release();
+            try {
+                return CompletableFuture.completedFuture(
+                        mapper.apply(ChatResponseReader.read(objectMapper.getFactory(), cached.get(), binder).result()));
+            } catch (IOException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
 
-        final String jsonResp = outer.path("message").path("content").asText();
-        return parseToOutput(recordClass, jsonResp);
+        return coalesced(payload.flightKey(retryParseErrors, stage, priority),
+                () -> new ChatCall<>(payload, binder, mapper, retryParseErrors).start(),
+                () -> {
+                    payload.body().release();
+                    generationMetrics.recordDeduplicated(modelName, stage);
+                });
     }
 
-    public <T extends Record> T parseToOutput(final Class<T> recordClass, final String json) throws JsonProcessingException {
-        return objectMapper.readerFor(recordClass).readValue(json);
+    /**
+     * Shares one call between identical requests in flight at the same time, see {@link SingleFlight}.
+     * The key pins the result type, so the cast holds. It also pins the stage and priority: a caller
+     * never waits behind a lower-priority call's place in the transport queue, and each stage's
+     * generation stats count its own calls.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> CompletableFuture<R> coalesced(
+            final FlightKey key,
+            final Supplier<CompletableFuture<R>> call,
+            final Runnable onShared
+    ) {
+        return ((SingleFlight<FlightKey, R>) (SingleFlight<FlightKey, ?>) flights).call(key, call, onShared);
     }
 
-    public String buildExampleJson(Class<? extends Record> recordClass) throws JsonProcessingException {
-        return objectMapper.writerWithDefaultPrettyPrinter()
-                .writeValueAsString(buildExampleNode(recordClass));
+    /**
+     * One exchange with {@code backend}. Cancelling or timing out the returned future aborts it.
+     */
+    private <C, R> CompletableFuture<R> exchangeAsync(
+            final OllamaBackend backend,
+            final ChatPayload payload,
+            final ContentBinder<C> binder,
+            final Function<ChatResponse<C>, R> mapper
+    ) {
+        final String cacheKey = payload.cacheKey();
+        final long start = System.nanoTime();
+        final ExchangeTimer timer = new ExchangeTimer();
+        final HttpRequest request = buildChatRequest(backend, payload, timer);
+
+        final CompletableFuture<HttpResponse<ChatResponseReader<C>>> exchange =
+                transport.sendAsync(request, timer.handler(responseHandler(binder, cacheKey)), priority);
+
+        final CompletableFuture<R> result = exchange.thenApply(response -> {
+            try {
+                final ChatResponse<C> chat = readResponse(payload, request, timer, response.body());
+                cacheBody(cacheKey, chat.body());
+                latencyWindow().record(System.nanoTime() - start);
+                return mapper.apply(chat);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // a dependent stage does not cancel its source, so hand cancellation/timeouts back explicitly
+        result.whenComplete((value, error) -> {
+            backends.release(backend, start, error);
+            if (Objects.nonNull(error)) {
+                exchange.cancel(true);
+            }
+        });
+
+        return result;
     }
 
-    private ObjectNode buildExampleNode(Class<? extends Record> recordClass) {
-        final ObjectNode node = objectMapper.createObjectNode();
+    private LatencyWindow latencyWindow() {
+        return latencies.computeIfAbsent(stage, s -> new LatencyWindow(LATENCY_WINDOW_SIZE, LATENCY_WINDOW_MIN_SAMPLES));
+    }
 
-        for (RecordComponent component : recordClass.getRecordComponents()) {
-            final String name = component.getName();
-            final Class<?> type = component.getType();
-            final java.lang.reflect.Type genericType = component.getGenericType();
+    /**
+     * Failures another attempt may fix. A timeout is not among them: the call already took the
+     * whole timeout, and a hedge is the better answer to a backend that is slow.
+     */
+    private static boolean retryable(final Throwable error, final boolean retryParseErrors) {
+        final Throwable cause = OllamaBackendPool.unwrap(error);
+        if (cause instanceof JsonProcessingException) {
+            return retryParseErrors;
+        }
+        if (cause instanceof OllamaHttpException http) {
+            return http.serverError();
+        }
+        return OllamaBackendPool.isConnectionFailure(cause);
+    }
+
+    /**
+     * Parses the body as it arrives, binding {@code message.content} straight into the caller's
+     * type; the raw body is only kept when there is a cache to put it in
+     */
+    private <C> HttpResponse.BodyHandler<ChatResponseReader<C>> responseHandler(
+            final ContentBinder<C> binder,
+            final String cacheKey
+    ) {
+        return ChatResponseSubscriber.handler(objectMapper.getFactory(), binder, Objects.nonNull(cacheKey));
+    }
 
-            setExampleValue(node, name, type, genericType);
+    // the generation is recorded even when its content then fails to bind
+    private <C> ChatResponse<C> readResponse(
+            final ChatPayload payload,
+            final HttpRequest request,
+            final ExchangeTimer timer,
+            final ChatResponseReader<C> reader
+    ) throws IOException {
+        recordGeneration(payload, request, timer, reader.stats());
+        return reader.result();
+    }
+
+    private CompletableFuture<OllamaChatResult> postChatStreaming(final ChatPayload payload, final ChatStreamParser parser) {
+        final String cacheKey = payload.cacheKey();
+        final Optional<String> cached = cachedBody(cacheKey);
+        if (cached.isPresent()) {
+            payload.body().release();
+            // a cached generation arrives as a single chunk, listeners still see deltas and completion
+            parser.replay(cached.get());
+            return parser.outcome();
         }
 
-        return node;
-    }
-
-    private void setExampleValue(ObjectNode parent, String fieldName, Class<?> type, java.lang.reflect.Type genericType) {
-        if (type == String.class) {
-            parent.put(fieldName, "string");
-        } else if (type == Long.class || type == long.class) {
-            parent.put(fieldName, 0L);
-        } else if (type == Integer.class || type == int.class) {
-            parent.put(fieldName, 0);
-        } else if (type == Double.class || type == double.class
-                || type == Float.class || type == float.class) {
-            parent.put(fieldName, 0.0);
-        } else if (type == Boolean.class || type == boolean.class) {
-            parent.put(fieldName, false);
-        } else if (type == List.class || type == Set.class) {
-            final ArrayNode arr = parent.putArray(fieldName);
-            if (genericType instanceof ParameterizedType pt) {
-                final Class<?> elementType = (Class<?>) pt.getActualTypeArguments()[0];
-                if (elementType.isRecord()) {
-                    @SuppressWarnings("unchecked")
-                    final Class<? extends Record> nested = (Class<? extends Record>) elementType;
-                    arr.add(buildExampleNode(nested));
-                } else {
-                    arr.add(getExamplePrimitive(elementType));
-                }
-            }
-        } else if (type.isRecord()) {
-            @SuppressWarnings("unchecked")
-            final Class<? extends Record> nested = (Class<? extends Record>) type;
-            parent.set(fieldName, buildExampleNode(nested));
-        } else {
-            parent.put(fieldName, "string");
+        final HttpResponse.BodyHandler<Void> bodyHandler = responseInfo -> responseInfo.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(parser)
+                : HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        body -> {
+                            throw new OllamaHttpException(responseInfo.statusCode(), body);
+                        });
+
+        final OllamaBackend backend;
+        try {
+            backend = backends.acquire(modelName);
+        } catch (IllegalStateException e) {
+            payload.body().release();
+            return CompletableFuture.failedFuture(e);
         }
+        final long start = System.nanoTime();
+        final ExchangeTimer timer = new ExchangeTimer();
+        final HttpRequest request = buildChatRequest(backend, payload, timer);
+
+        final CompletableFuture<HttpResponse<Void>> exchange =
+                transport.sendAsync(request, timer.handler(bodyHandler), priority);
+        exchange.whenComplete((response, error) -> payload.body().release());
+        final CompletableFuture<OllamaChatResult> result = parser.outcome();
+
+        exchange.whenComplete((response, error) -> {
+            if (Objects.nonNull(error)) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        // the parser stops reading on an error or the output cap, closing the exchange ends the generation
+        result.whenComplete((value, error) -> {
+            backends.release(backend, start, error);
+            if (Objects.nonNull(error)) {
+                exchange.cancel(true);
+            } else {
+                // a streamed response's headers come with the first chunk, so that is the time to first token
+                recordStats(payload, value.stats());
+                transport.onGeneration(request.uri(), timer.timeToHeadersNanos(), value.stats());
+                cacheBody(cacheKey, parser.assembledBody());
+            }
+        });
+
+        return result;
     }
 
-    private String getExamplePrimitive(Class<?> type) {
-        if (type == Long.class || type == long.class
-                || type == Integer.class || type == int.class) {
-            return "0";
-        } else if (type == Boolean.class || type == boolean.class) {
-            return "false";
+    private Optional<String> cachedBody(final String cacheKey) {
+        if (Objects.isNull(cacheKey)) {
+            return Optional.empty();
+        }
+
+        final Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            LOG.debugf("(OllamaApiService) response cache hit %s", cacheKey);
         }
-        return "string";
+        return cached;
     }
 
-    public ObjectNode buildFormatBlock(Class<? extends Record> recordClass) {
-        final ObjectNode format = objectMapper.createObjectNode();
-        format.put("type", "object");
-        final ObjectNode properties = format.putObject("properties");
-        final ArrayNode required = format.putArray("required");
+    private void cacheBody(final String cacheKey, final String body) {
+        if (Objects.isNull(cacheKey)) {
+            return;
+        }
 
-        for (RecordComponent component : recordClass.getRecordComponents()) {
-            final String name = component.getName();
-            final ObjectNode prop = properties.putObject(name);
+        try {
+            responseCache.put(cacheKey, body);
+        } catch (RuntimeException e) {
+            // a cache that cannot be written must not fail a call that already succeeded
+            LOG.warnf("(OllamaApiService) could not cache response %s: %s", cacheKey, e);
+        }
+    }
+
+    @Override
+    public <T extends Record> InferenceSchema<T> schemaFor(final Class<T> recordClass) {
+        return schemas.schemaFor(recordClass);
+    }
 
-            mapType(prop, component.getType(), component.getGenericType());
+    private ChatPayload buildPayload(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final InferenceSchema<?> schema,
+            final boolean stream
+    ) throws IOException {
+        final long numCtx = contextSizer.numCtxFor(modelName, systemPrompt, userMessage);
+
+        // hashed whether or not there is a cache, identical calls in flight are coalesced on it.
+        // num_ctx is left out of the hash: it moves with calibration, the reply does not
+        final OllamaRequestBody body = OllamaRequestBody.write(true, json -> {
+            json.writeStartObject();
+            json.writeStringField("model", modelName);
+            json.writeBooleanField("stream", stream);
+
+            json.writeObjectFieldStart("options");
+            OllamaRequestBody.writeUnhashed(json, options -> options.writeNumberField("num_ctx", numCtx));
+            if (think) {
+                json.writeBooleanField("think", true);
+            }
+            json.writeEndObject();
 
-            final InferenceDescription desc = component.getAnnotation(InferenceDescription.class);
-            if (desc != null && desc.value().length > 0) {
-                prop.put("description", String.join(" ", desc.value()));
+            if (Objects.nonNull(schema)) {
+                // spliced in pre-serialized, the schema tree is never walked again
+                json.writeFieldName("format");
+                json.writeRawValue(schema.formatJson());
             }
 
-            required.add(name);
+            json.writeArrayFieldStart("messages");
+            writeMessage(json, "system", systemPrompt);
+            writeMessage(json, "user", userMessage);
+            json.writeEndArray();
+
+            json.writeEndObject();
+        });
+
+        return new ChatPayload(body, (long) systemPrompt.length() + userMessage.length(),
+                Objects.isNull(schema) ? String.class : schema.recordClass(), responseCache.enabled());
+    }
+
+    private static void writeMessage(final JsonGenerator json, final String role, final CharSequence content)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("role", role);
+        json.writeFieldName("content");
+        OllamaRequestBody.writeString(json, content);
+        json.writeEndObject();
+    }
+
+    /**
+     * A serialized chat request, with the length of the text it sends the model so the prompt
+     * token count Ollama reports back can calibrate {@link #contextSizer}
+     *
+     * @param resultType what the reply binds to, two calls only share a flight when it matches
+     * @param cached     whether the response cache is consulted and filled for it
+     */
+    private record ChatPayload(OllamaRequestBody body, long promptChars, Class<?> resultType, boolean cached) {
+
+        String cacheKey() {
+            return cached ? body.cacheKey() : null;
         }
 
-        return format;
-    }
-
-    private void mapType(ObjectNode prop, Class<?> type, java.lang.reflect.Type genericType) {
-        if (type == String.class) {
-            prop.put("type", "string");
-        } else if (type == Long.class || type == long.class
-                || type == Integer.class || type == int.class) {
-            prop.put("type", "integer");
-        } else if (type == Double.class || type == double.class
-                || type == Float.class || type == float.class) {
-            prop.put("type", "number");
-        } else if (type == Boolean.class || type == boolean.class) {
-            prop.put("type", "boolean");
-        } else if (type == List.class || type == Set.class) {
-            prop.put("type", "array");
-            final ObjectNode items = prop.putObject("items");
-            if (genericType instanceof ParameterizedType pt) {
-                final Class<?> elementType = (Class<?>) pt.getActualTypeArguments()[0];
-                mapType(items, elementType, elementType);
-            }
-        } else if (type.isRecord()) {
-            @SuppressWarnings("unchecked")
-            final Class<? extends Record> nested = (Class<? extends Record>) type;
-            prop.setAll(buildFormatBlock(nested));
-        } else {
-            prop.put("type", "string");
+        FlightKey flightKey(final boolean retryParseErrors, final String stage, final OllamaPriority priority) {
+            return new FlightKey(body.cacheKey(), resultType, retryParseErrors, stage, priority);
         }
     }
 
-    private String buildPayload(
-            final String systemPrompt,
-            final String userMessage,
-            final boolean think,
-            final ObjectNode format
-    ) throws IOException {
-        final ObjectNode root = objectMapper.createObjectNode();
-        root.put("model", modelName);
-        root.put("stream", false);
+    private record FlightKey(
+            String requestHash,
+            Class<?> resultType,
+            boolean retryParseErrors,
+            String stage,
+            OllamaPriority priority
+    ) {}
+
+    /**
+     * One call through its attempts and hedges. The payload is shared by all of them and goes
+     * back to the pool once the call is over and no exchange is still reading it.
+     */
+    private final class ChatCall<C, R> {
+        private final ChatPayload payload;
+        private final ContentBinder<C> binder;
+        private final Function<ChatResponse<C>, R> mapper;
+        private final boolean retryParseErrors;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+        private int holders = 1;
+
+        private ChatCall(
+                final ChatPayload payload,
+                final ContentBinder<C> binder,
+                final Function<ChatResponse<C>, R> mapper,
+                final boolean retryParseErrors
+        ) {
+            this.payload = payload;
+            this.binder = binder;
+            this.mapper = mapper;
+            this.retryParseErrors = retryParseErrors;
+        }
 
-        final ObjectNode options = root.putObject("options");
-        options.put("num_ctx", numCtx);
+        CompletableFuture<R> start() {
+            result.whenComplete((value, error) -> unhold());
+            attempt(1);
+            return result;
+        }
 
-        if (think) {
-            options.put("think", true);
+        private void attempt(final int number) {
+            if (!hold()) {
+                return;
+            }
+
+            final OllamaBackend primary;
+            try {
+                primary = backends.acquire(modelName);
+            } catch (IllegalStateException e) {
+                unhold();
+                result.completeExceptionally(e);
+                return;
+            }
+
+            final Race race = new Race();
+            race.add(send(primary), false);
+            if (resilience.hedging()) {
+                scheduleHedge(race, primary);
+            }
+            // cancelling or timing out the call aborts whatever is still running
+            result.whenComplete((value, error) -> race.winner.cancel(true));
+
+            race.winner.whenComplete((value, error) -> {
+                if (Objects.isNull(error)) {
+                    result.complete(value);
+                } else if (number < resilience.maxAttempts() && !result.isDone() && retryable(error, retryParseErrors)) {
+                    final long backoff = resilience.backoffNanos(number);
+                    LOG.infof("(OllamaApiService) %s attempt %d of %d failed (%s), retrying in %d ms",
+                            stage, number, resilience.maxAttempts(), OllamaBackendPool.unwrap(error),
+                            backoff / 1_000_000L);
+                    generationMetrics.recordRetry(modelName, stage);
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS).execute(() -> attempt(number + 1));
+                } else {
+                    result.completeExceptionally(OllamaBackendPool.unwrap(error));
+                }
+            });
         }
 
-        if (Objects.nonNull(format)) {
-            root.set("format", format);
+        private void scheduleHedge(final Race race, final OllamaBackend primary) {
+            final OptionalLong percentile = latencyWindow().percentile(resilience.hedgePercentile());
+            if (percentile.isEmpty()) {
+                return;
+            }
+
+            final long delay = Math.max(percentile.getAsLong(), resilience.minHedgeDelay().toNanos());
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                if (race.winner.isDone() || !hold()) {
+                    return;
+                }
+                final Optional<OllamaBackend> other = backends.acquireOther(modelName, primary);
+                if (other.isEmpty()) {
+                    unhold();
+                    return;
+                }
+
+                LOG.debugf("(OllamaApiService) %s call on %s is past p%.0f (%d ms), hedging on %s",
+                        stage, primary.baseUrl(), resilience.hedgePercentile(), delay / 1_000_000L,
+                        other.get().baseUrl());
+                generationMetrics.recordHedge(modelName, stage, false);
+                race.add(send(other.get()), true);
+            });
+        }
+
+        // the caller holds the payload for this exchange, it is given back once the exchange is over
+        private CompletableFuture<R> send(final OllamaBackend backend) {
+            final CompletableFuture<R> exchange = exchangeAsync(backend, payload, binder, mapper);
+            exchange.whenComplete((value, error) -> unhold());
+            return exchange;
+        }
+
+        private synchronized boolean hold() {
+            if (holders == 0) {
+                return false;
+            }
+            holders++;
+            return true;
+        }
+
+        private void unhold() {
+            final boolean free;
+            synchronized (this) {
+                free = --holders == 0;
+            }
+            if (free) {
+                payload.body().release();
+            }
         }
 
-        final ArrayNode messages = root.putArray("messages");
-        final ObjectNode systemMsg = messages.addObject();
-        systemMsg.put("role", "system");
-        systemMsg.put("content", systemPrompt);
-        final ObjectNode userMsg = messages.addObject();
-        userMsg.put("role", "user");
-        userMsg.put("content", userMessage);
+        /**
+         * The first copy of an attempt to succeed wins and the rest are cancelled; the attempt
+         * only fails once every copy has, with the first copy's error
+         */
+        private final class Race {
+            private final CompletableFuture<R> winner = new CompletableFuture<>();
+            private final List<CompletableFuture<R>> copies = new ArrayList<>(2);
+            private Throwable firstError;
+            private int pending;
+            private boolean decided;
+
+            private Race() {
+                winner.whenComplete((value, error) -> cancelCopies());
+            }
+
+            private void add(final CompletableFuture<R> copy, final boolean hedge) {
+                synchronized (this) {
+                    copies.add(copy);
+                    pending++;
+                }
+                if (winner.isDone()) {
+                    copy.cancel(true);
+                }
 
-        return objectMapper.writeValueAsString(root);
+                copy.whenComplete((value, error) -> {
+                    if (Objects.isNull(error)) {
+                        synchronized (this) {
+                            if (decided || winner.isDone()) {
+                                return;
+                            }
+                            decided = true;
+                        }
+                        // counted before the caller sees the result
+                        if (hedge) {
+                            generationMetrics.recordHedge(modelName, stage, true);
+                        }
+                        winner.complete(value);
+                        return;
+                    }
+
+                    final Throwable failure;
+                    synchronized (this) {
+                        firstError = Objects.requireNonNullElse(firstError, error);
+                        failure = --pending == 0 ? firstError : null;
+                    }
+                    if (Objects.nonNull(failure)) {
+                        winner.completeExceptionally(failure);
+                    }
+                });
+            }
+
+            private void cancelCopies() {
+                final List<CompletableFuture<R>> all;
+                synchronized (this) {
+                    all = List.copyOf(copies);
+                }
+                all.forEach(copy -> copy.cancel(true));
+            }
+        }
     }
 }
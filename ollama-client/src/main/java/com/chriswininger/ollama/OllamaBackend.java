@@ -0,0 +1,135 @@
+package com.chriswininger.ollama;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One Ollama server in an {@link OllamaBackendPool}, with the load and health figures the pool
+ * routes on.
+ */
+public final class OllamaBackend {
+
+    // weight of the newest sample in the latency average
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+    private final String baseUrl;
+    private final OllamaCircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean healthy = true;
+    // null until the first successful probe, meaning "might serve anything"
+    private volatile Set<String> models;
+    private volatile String lastError;
+    private double latencyEwmaMillis;
+
+    OllamaBackend(final String baseUrl, final int breakerFailureThreshold, final Duration breakerOpenDuration) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.circuitBreaker = new OllamaCircuitBreaker(breakerFailureThreshold, breakerOpenDuration);
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public boolean healthy() {
+        return healthy;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    boolean serves(final String model) {
+        final Set<String> known = models;
+        return Objects.isNull(known) || known.contains(normalizeModel(model));
+    }
+
+    OllamaCircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    synchronized double latencyEwmaMillis() {
+        return latencyEwmaMillis;
+    }
+
+    void onStart() {
+        inFlight.incrementAndGet();
+    }
+
+    void onSuccess(final long latencyNanos) {
+        inFlight.decrementAndGet();
+        completed.increment();
+        healthy = true;
+        circuitBreaker.onSuccess();
+
+        final double millis = latencyNanos / 1_000_000d;
+        synchronized (this) {
+            latencyEwmaMillis = latencyEwmaMillis == 0d
+                    ? millis
+                    : latencyEwmaMillis + LATENCY_EWMA_WEIGHT * (millis - latencyEwmaMillis);
+        }
+    }
+
+    /**
+     * @param backendFailure the failure was the server's (connection, timeout, 5xx) and counts
+     *                       towards opening its circuit breaker
+     */
+    void onFailure(final Throwable error, final boolean connectionFailure, final boolean backendFailure) {
+        inFlight.decrementAndGet();
+        failed.increment();
+        if (connectionFailure) {
+            markUnhealthy(error);
+        }
+        if (backendFailure) {
+            circuitBreaker.onFailure();
+            lastError = String.valueOf(error);
+        } else {
+            circuitBreaker.onNeutral();
+        }
+    }
+
+    // a hedge that lost, or a caller that gave up, says nothing about the backend
+    void onCancelled() {
+        inFlight.decrementAndGet();
+        circuitBreaker.onNeutral();
+    }
+
+    void onProbe(final Set<String> models) {
+        this.models = models;
+        this.healthy = true;
+        this.lastError = null;
+    }
+
+    void markUnhealthy(final Throwable error) {
+        healthy = false;
+        lastError = String.valueOf(error);
+    }
+
+    OllamaBackendStats stats() {
+        final Set<String> known = models;
+        return new OllamaBackendStats(
+                baseUrl,
+                healthy,
+                circuitBreaker.state().name(),
+                inFlight.get(),
+                completed.sum(),
+                failed.sum(),
+                latencyEwmaMillis(),
+                Objects.isNull(known) ? List.of() : known.stream().sorted().toList(),
+                lastError
+        );
+    }
+
+    /**
+     * Ollama treats a model name without a tag as {@code :latest}
+     */
+    static String normalizeModel(final String model) {
+        return model.contains(":") ? model : model + ":latest";
+    }
+}
@@ -0,0 +1,274 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads requests over several Ollama servers.
+ * <p>
+ * Each call goes to the backend with the fewest outstanding requests (queued or running), among
+ * those that have the requested model, preferring healthy backends and breaking ties on recent
+ * latency. A connection failure marks a backend unhealthy; a periodic {@code /api/tags} probe
+ * brings it back and refreshes the list of models it serves. A backend that keeps failing has its
+ * {@link OllamaCircuitBreaker} opened and gets no requests at all until the breaker lets a trial
+ * through.
+ */
+public class OllamaBackendPool implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(OllamaBackendPool.class);
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    private static final int DEFAULT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final Duration DEFAULT_BREAKER_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final OllamaTransport transport;
+    private final List<OllamaBackend> backends;
+    private final ScheduledExecutorService prober;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param probeInterval how often to probe every backend, or {@code null} to never probe
+     */
+    public OllamaBackendPool(
+            final OllamaTransport transport,
+            final List<String> baseUrls,
+            final Duration probeInterval
+    ) {
+        this(transport, baseUrls, probeInterval, DEFAULT_BREAKER_FAILURE_THRESHOLD, DEFAULT_BREAKER_OPEN_DURATION);
+    }
+
+    /**
+     * @param breakerFailureThreshold failures in a row that open a backend's circuit breaker
+     * @param breakerOpenDuration     how long an open breaker sheds requests before letting a
+     *                                trial through
+     */
+    public OllamaBackendPool(
+            final OllamaTransport transport,
+            final List<String> baseUrls,
+            final Duration probeInterval,
+            final int breakerFailureThreshold,
+            final Duration breakerOpenDuration
+    ) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one Ollama base url is required");
+        }
+
+        this.transport = transport;
+        this.backends = baseUrls.stream()
+                .map(String::trim)
+                .distinct()
+                .map(baseUrl -> new OllamaBackend(baseUrl, breakerFailureThreshold, breakerOpenDuration))
+                .toList();
+
+        if (Objects.nonNull(probeInterval)) {
+            this.prober = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("ollama-backend-probe")
+                    .daemon(true)
+                    .factory());
+            prober.scheduleWithFixedDelay(this::probeAll, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.prober = null;
+        }
+
+        LOG.infof("(OllamaBackendPool) created with backends %s, probeInterval=%s",
+                backends.stream().map(OllamaBackend::baseUrl).toList(), probeInterval);
+    }
+
+    /**
+     * A pool of one that never probes, for callers configured with a single base url
+     */
+    public static OllamaBackendPool single(final OllamaTransport transport, final String baseUrl) {
+        return new OllamaBackendPool(transport, List.of(baseUrl), null);
+    }
+
+    public OllamaTransport transport() {
+        return transport;
+    }
+
+    /**
+     * Picks a backend for {@code model} and counts the request against it. Every acquire must be
+     * paired with a {@link #release}.
+     *
+     * @throws OllamaUnavailableException if every backend serving the model has its breaker open
+     */
+    public OllamaBackend acquire(final String model) {
+        return acquire(model, null)
+                .orElseThrow(() -> new OllamaUnavailableException(model));
+    }
+
+    /**
+     * As {@link #acquire(String)} but never {@code excluded}, for sending a second copy of a
+     * request somewhere else. Empty when there is nowhere else to send it.
+     */
+    public Optional<OllamaBackend> acquireOther(final String model, final OllamaBackend excluded) {
+        return acquire(model, Objects.requireNonNull(excluded));
+    }
+
+    private Optional<OllamaBackend> acquire(final String model, final OllamaBackend excluded) {
+        OllamaBackend best = null;
+        boolean served = false;
+        synchronized (this) {
+            for (final OllamaBackend candidate : backends) {
+                if (!candidate.serves(model) || candidate == excluded) {
+                    continue;
+                }
+                served = true;
+                if (candidate.circuitBreaker().allows() && (Objects.isNull(best) || isBetter(candidate, best))) {
+                    best = candidate;
+                }
+            }
+            if (!served && Objects.isNull(excluded)) {
+                throw new IllegalStateException("No Ollama backend serves model " + model);
+            }
+            if (Objects.isNull(best) || !best.circuitBreaker().tryAcquire()) {
+                return Optional.empty();
+            }
+            best.onStart();
+        }
+
+        if (!best.healthy()) {
+            LOG.warnf("(OllamaBackendPool) no healthy backend serves %s, trying %s anyway", model, best.baseUrl());
+        }
+        return Optional.of(best);
+    }
+
+    /**
+     * @param error {@code null} when the request succeeded
+     */
+    public void release(final OllamaBackend backend, final long startNanos, final Throwable error) {
+        if (Objects.isNull(error)) {
+            backend.onSuccess(System.nanoTime() - startNanos);
+            return;
+        }
+        if (unwrap(error) instanceof CancellationException) {
+            backend.onCancelled();
+            return;
+        }
+
+        final boolean connectionFailure = isConnectionFailure(error);
+        if (connectionFailure && backend.healthy()) {
+            LOG.warnf("(OllamaBackendPool) marking %s unhealthy: %s", backend.baseUrl(), error);
+        }
+
+        final boolean wasOpen = backend.circuitBreaker().state() == OllamaCircuitBreaker.State.OPEN;
+        backend.onFailure(error, connectionFailure, isBackendFailure(error));
+        if (!wasOpen && backend.circuitBreaker().state() == OllamaCircuitBreaker.State.OPEN) {
+            LOG.warnf("(OllamaBackendPool) circuit breaker for %s opened: %s", backend.baseUrl(), error);
+        }
+    }
+
+    List<OllamaBackend> backends() {
+        return backends;
+    }
+
+    public List<OllamaBackendStats> stats() {
+        return backends.stream().map(OllamaBackend::stats).toList();
+    }
+
+    @Override
+    public void close() {
+        if (Objects.nonNull(prober)) {
+            prober.shutdownNow();
+        }
+    }
+
+    private static boolean isBetter(final OllamaBackend candidate, final OllamaBackend current) {
+        if (candidate.healthy() != current.healthy()) {
+            return candidate.healthy();
+        }
+        if (candidate.inFlight() != current.inFlight()) {
+            return candidate.inFlight() < current.inFlight();
+        }
+        return candidate.latencyEwmaMillis() < current.latencyEwmaMillis();
+    }
+
+    /**
+     * Refused or dropped connections mean the box is gone; a request timeout only means it is busy
+     */
+    static boolean isConnectionFailure(final Throwable error) {
+        final Throwable cause = unwrap(error);
+        if (cause instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        return cause instanceof IOException && !(cause instanceof HttpTimeoutException)
+                && !(cause instanceof JsonProcessingException);
+    }
+
+    /**
+     * Failures that are the server's fault rather than the request's or the model's: a dropped
+     * connection, a timeout, or a 5xx
+     */
+    static boolean isBackendFailure(final Throwable error) {
+        final Throwable cause = unwrap(error);
+        if (cause instanceof OllamaHttpException http) {
+            return http.serverError();
+        }
+        return isConnectionFailure(cause) || cause instanceof HttpTimeoutException;
+    }
+
+    static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && Objects.nonNull(error.getCause())
+                ? error.getCause()
+                : error;
+    }
+
+    private void probeAll() {
+        for (final OllamaBackend backend : backends) {
+            try {
+                probe(backend);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (backend.healthy()) {
+                    LOG.warnf("(OllamaBackendPool) probe of %s failed: %s", backend.baseUrl(), e);
+                }
+                backend.markUnhealthy(e);
+            }
+        }
+    }
+
+    // goes straight to the http client so a probe never queues behind long generations
+    private void probe(final OllamaBackend backend) throws IOException, InterruptedException {
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + "/api/tags"))
+                .timeout(PROBE_TIMEOUT)
+                .GET()
+                .build();
+
+        final HttpResponse<String> response = transport.httpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Ollama returned HTTP " + response.statusCode() + " for /api/tags");
+        }
+
+        final Set<String> models = new HashSet<>();
+        for (final JsonNode model : objectMapper.readTree(response.body()).path("models")) {
+            models.add(OllamaBackend.normalizeModel(model.path("name").asText()));
+        }
+
+        if (!backend.healthy()) {
+            LOG.infof("(OllamaBackendPool) %s is back, serving %s", backend.baseUrl(), models);
+        }
+        backend.onProbe(Set.copyOf(models));
+    }
+}
@@ -0,0 +1,20 @@
+package com.chriswininger.ollama;
+
+import java.util.List;
+
+/**
+ * Point-in-time snapshot of one {@link OllamaBackend}
+ *
+ * @param circuit the backend's circuit breaker, {@code CLOSED}, {@code OPEN} or {@code HALF_OPEN}
+ */
+public record OllamaBackendStats(
+        String baseUrl,
+        boolean healthy,
+        String circuit,
+        int inFlight,
+        long completed,
+        long failed,
+        double latencyEwmaMillis,
+        List<String> models,
+        String lastError
+) {}
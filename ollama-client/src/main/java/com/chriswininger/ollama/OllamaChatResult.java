@@ -0,0 +1,10 @@
+package com.chriswininger.ollama;
+
+/**
+ * Content and thinking produced by a chat call, together with the server's generation stats
+ */
+public record OllamaChatResult(
+        String content,
+        String thinking,
+        OllamaGenerationStats stats
+) {}
@@ -0,0 +1,114 @@
+package com.chriswininger.ollama;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to a backend that keeps failing.
+ * <p>
+ * After {@code failureThreshold} failures in a row the breaker opens and the pool routes around
+ * the backend, or fails calls straight away when no other backend serves the model, instead of
+ * letting each one wait out a connect or request timeout. Once {@code openDuration} has passed a
+ * single trial request is let through (half-open); it closes the breaker if it succeeds and
+ * opens it again if it fails.
+ * <p>
+ * Only failures that say something about the backend count: dropped connections, timeouts and
+ * 5xx responses. A reply the model got wrong does not.
+ */
+final class OllamaCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    OllamaCircuitBreaker(final int failureThreshold, final Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    OllamaCircuitBreaker(final int failureThreshold, final Duration openDuration, final LongSupplier clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a request may go to the backend now, without claiming anything
+     */
+    synchronized boolean allows() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> clock.getAsLong() - openedAt >= openNanos;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+
+    /**
+     * Claims the right to send a request, moving an expired open breaker to half-open and taking
+     * its single trial
+     *
+     * @return false if the breaker turns the request away
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * A request that ended without saying anything about the backend (cancelled, or failed on
+     * the model's output) gives back a half-open trial without deciding it
+     */
+    synchronized void onNeutral() {
+        trialInFlight = false;
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,27 @@
+package com.chriswininger.ollama;
+
+/**
+ * Thrown before a request is sent when its prompt plus the room reserved for output cannot fit
+ * the largest {@code num_ctx} allowed. Ollama would otherwise silently drop the start of the
+ * prompt.
+ */
+public class OllamaContextOverflowException extends RuntimeException {
+
+    private final long requiredTokens;
+    private final long maxNumCtx;
+
+    public OllamaContextOverflowException(final long promptTokens, final long reservedOutputTokens, final long maxNumCtx) {
+        super("Prompt needs about %d tokens plus %d reserved for output, more than the maximum num_ctx of %d"
+                .formatted(promptTokens, reservedOutputTokens, maxNumCtx));
+        this.requiredTokens = promptTokens + reservedOutputTokens;
+        this.maxNumCtx = maxNumCtx;
+    }
+
+    public long requiredTokens() {
+        return requiredTokens;
+    }
+
+    public long maxNumCtx() {
+        return maxNumCtx;
+    }
+}
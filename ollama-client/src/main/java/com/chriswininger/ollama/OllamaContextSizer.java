@@ -0,0 +1,104 @@
+package com.chriswininger.ollama;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Picks {@code num_ctx} per request from the size of the prompt instead of always sending the
+ * maximum. Ollama allocates the KV cache for the full {@code num_ctx}, so a short segment prompt
+ * sent with 64K costs VRAM and prefill speed for nothing.
+ * <p>
+ * Sizes are rounded up to a power of two bucket (4K, 8K, 16K, ...). Ollama reloads a model when
+ * {@code num_ctx} changes, and a handful of buckets keeps those reloads rare; raise
+ * {@code minNumCtx} to trade memory for fewer of them.
+ * <p>
+ * A prompt that looks too large is only rejected when the {@link TokenCounter} is
+ * {@linkplain TokenCounter#accurate accurate} for the model. Before that the count is a guess,
+ * so the prompt is sent with the largest {@code num_ctx} instead.
+ */
+public class OllamaContextSizer {
+
+    private static final Logger LOG = Logger.getLogger(OllamaContextSizer.class);
+
+    public static final long DEFAULT_MIN_NUM_CTX = 4096;
+    public static final long DEFAULT_RESERVED_OUTPUT_TOKENS = 4096;
+
+    // role markers and turn delimiters the chat template wraps around each message
+    private static final long TEMPLATE_TOKENS_PER_MESSAGE = 16;
+    // a calibrated count is an estimate, keep some headroom
+    private static final double SAFETY_MARGIN = 1.1;
+
+    private final TokenCounter tokenCounter;
+    private final long minNumCtx;
+    private final long maxNumCtx;
+    private final long reservedOutputTokens;
+
+    /**
+     * @param reservedOutputTokens room kept for the response, thinking included
+     */
+    public OllamaContextSizer(
+            final TokenCounter tokenCounter,
+            final long minNumCtx,
+            final long maxNumCtx,
+            final long reservedOutputTokens
+    ) {
+        if (minNumCtx <= 0 || maxNumCtx < minNumCtx) {
+            throw new IllegalArgumentException(
+                    "Invalid num_ctx range %d..%d".formatted(minNumCtx, maxNumCtx));
+        }
+
+        this.tokenCounter = tokenCounter;
+        this.minNumCtx = minNumCtx;
+        this.maxNumCtx = maxNumCtx;
+        this.reservedOutputTokens = reservedOutputTokens;
+    }
+
+    /**
+     * A sizer that calibrates itself against the server, never going above {@code maxNumCtx}
+     */
+    public static OllamaContextSizer upTo(final long maxNumCtx) {
+        return new OllamaContextSizer(
+                new CalibratedTokenCounter(),
+                Math.min(DEFAULT_MIN_NUM_CTX, maxNumCtx),
+                maxNumCtx,
+                DEFAULT_RESERVED_OUTPUT_TOKENS);
+    }
+
+    /**
+     * The {@code num_ctx} to send for a chat made of {@code messages}
+     *
+     * @throws OllamaContextOverflowException if the messages and the output reservation do not fit,
+     *                                        by an accurate count
+     */
+    public long numCtxFor(final String model, final CharSequence... messages) {
+        long promptTokens = 0;
+        for (final CharSequence message : messages) {
+            promptTokens += tokenCounter.count(model, message) + TEMPLATE_TOKENS_PER_MESSAGE;
+        }
+        promptTokens = (long) Math.ceil(promptTokens * SAFETY_MARGIN);
+
+        final long required = promptTokens + reservedOutputTokens;
+        if (required > maxNumCtx) {
+            if (tokenCounter.accurate(model)) {
+                throw new OllamaContextOverflowException(promptTokens, reservedOutputTokens, maxNumCtx);
+            }
+            LOG.warnf("(OllamaContextSizer) %s prompt estimated at %d tokens plus %d reserved for output, "
+                    + "over num_ctx %d; sending it at the maximum until the estimate is calibrated",
+                    model, promptTokens, reservedOutputTokens, maxNumCtx);
+            return maxNumCtx;
+        }
+
+        long bucket = minNumCtx;
+        while (bucket < required) {
+            bucket *= 2;
+        }
+        return Math.min(bucket, maxNumCtx);
+    }
+
+    public void observe(final String model, final long promptChars, final long promptTokens) {
+        tokenCounter.observe(model, promptChars, promptTokens);
+    }
+
+    public long maxNumCtx() {
+        return maxNumCtx;
+    }
+}
@@ -0,0 +1,242 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Client for Ollama's batched {@code /api/embed}: many inputs per request, vectors back as
+ * {@code float[]}.
+ * <p>
+ * Inputs are split into batches of at most {@code maxBatchTokens} (estimated with the
+ * {@link TokenCounter}) and {@code maxBatchInputs}, so embedding a whole book is a handful of
+ * requests rather than one per section, while no single request grows large enough to time out.
+ * Batches go out together and queue on the shared {@link OllamaTransport} like any other call.
+ * An input longer than the model's context is truncated by Ollama. A batch identical to one
+ * already in flight, such as the same search phrase from two sessions, shares its vectors
+ * instead of being sent again.
+ */
+public class OllamaEmbeddingClient {
+
+    private static final Logger LOG = Logger.getLogger(OllamaEmbeddingClient.class);
+
+    private static final long DEFAULT_MAX_BATCH_TOKENS = 16_384;
+    private static final int DEFAULT_MAX_BATCH_INPUTS = 256;
+
+    private final OllamaBackendPool backends;
+    private final OllamaTransport transport;
+    private final OllamaResidencyManager residency;
+    private final TokenCounter tokenCounter;
+    private final String modelName;
+    private final int timeoutSeconds;
+    private final long maxBatchTokens;
+    private final int maxBatchInputs;
+    private final OllamaPriority priority;
+    private final SingleFlight<String, OllamaEmbeddings> flights;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OllamaEmbeddingClient(final OllamaBackendPool backends, final String modelName, final int timeoutSeconds) {
+        this(backends, modelName, timeoutSeconds, OllamaResidencyManager.unmanaged(), new CalibratedTokenCounter(),
+                DEFAULT_MAX_BATCH_TOKENS, DEFAULT_MAX_BATCH_INPUTS);
+    }
+
+    /**
+     * @param residency      supplies the {@code keep_alive} sent with every request
+     * @param maxBatchTokens estimated tokens per request, a single longer input goes on its own
+     */
+    public OllamaEmbeddingClient(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final int timeoutSeconds,
+            final OllamaResidencyManager residency,
+            final TokenCounter tokenCounter,
+            final long maxBatchTokens,
+            final int maxBatchInputs
+    ) {
+        this(backends, modelName, timeoutSeconds, residency, tokenCounter, maxBatchTokens, maxBatchInputs,
+                OllamaPriority.NORMAL, new SingleFlight<>());
+    }
+
+    private OllamaEmbeddingClient(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final int timeoutSeconds,
+            final OllamaResidencyManager residency,
+            final TokenCounter tokenCounter,
+            final long maxBatchTokens,
+            final int maxBatchInputs,
+            final OllamaPriority priority,
+            final SingleFlight<String, OllamaEmbeddings> flights
+    ) {
+        if (maxBatchTokens < 1 || maxBatchInputs < 1) {
+            throw new IllegalArgumentException("maxBatchTokens and maxBatchInputs must be at least 1");
+        }
+
+        this.backends = backends;
+        this.transport = backends.transport();
+        this.residency = residency;
+        this.tokenCounter = tokenCounter;
+        this.modelName = modelName;
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchInputs = maxBatchInputs;
+        this.priority = priority;
+        this.flights = flights;
+    }
+
+    /**
+     * A view of this client whose requests queue for the transport as {@code priority}
+     */
+    public OllamaEmbeddingClient withPriority(final OllamaPriority priority) {
+        return new OllamaEmbeddingClient(
+                backends, modelName, timeoutSeconds, residency, tokenCounter, maxBatchTokens, maxBatchInputs, priority,
+                flights);
+    }
+
+    public String modelName() {
+        return modelName;
+    }
+
+    /**
+     * Batch requests that were answered by an identical request already in flight rather than sent
+     */
+    public long deduplicatedRequests() {
+        return flights.deduplicated();
+    }
+
+    public float[] embed(final CharSequence input) throws IOException, InterruptedException {
+        return embedAll(List.of(input)).vector(0);
+    }
+
+    public OllamaEmbeddings embedAll(final List<? extends CharSequence> inputs) throws IOException, InterruptedException {
+        return OllamaFutures.await(embedAllAsync(inputs));
+    }
+
+    /**
+     * Async variant of {@link #embedAll}. Cancelling the returned future cancels every batch
+     * still running.
+     */
+    public CompletableFuture<OllamaEmbeddings> embedAllAsync(final List<? extends CharSequence> inputs) {
+        final List<List<? extends CharSequence>> batches = batches(inputs);
+        if (batches.isEmpty()) {
+            return CompletableFuture.completedFuture(OllamaEmbeddings.concat(List.of()));
+        }
+        final List<CompletableFuture<OllamaEmbeddings>> requests = new ArrayList<>(batches.size());
+        for (final List<? extends CharSequence> batch : batches) {
+            requests.add(embedBatch(batch));
+        }
+
+        final CompletableFuture<OllamaEmbeddings> result = CompletableFuture
+                .allOf(requests.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> OllamaEmbeddings.concat(requests.stream().map(CompletableFuture::join).toList()));
+        result.whenComplete((value, error) -> {
+            if (Objects.nonNull(error)) {
+                requests.forEach(request -> request.cancel(true));
+            }
+        });
+        if (batches.size() > 1) {
+            LOG.debugf("(OllamaEmbeddingClient) embedding %d inputs in %d requests", inputs.size(), batches.size());
+        }
+        return result;
+    }
+
+    /**
+     * Consecutive runs of inputs within the token and count limits, in order
+     */
+    List<List<? extends CharSequence>> batches(final List<? extends CharSequence> inputs) {
+        final List<List<? extends CharSequence>> batches = new ArrayList<>();
+        int start = 0;
+        long tokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            final long inputTokens = tokenCounter.count(modelName, inputs.get(i));
+            if (i > start && (tokens + inputTokens > maxBatchTokens || i - start == maxBatchInputs)) {
+                batches.add(inputs.subList(start, i));
+                start = i;
+                tokens = 0;
+            }
+            tokens += inputTokens;
+        }
+        if (start < inputs.size()) {
+            batches.add(inputs.subList(start, inputs.size()));
+        }
+        return batches;
+    }
+
+    private CompletableFuture<OllamaEmbeddings> embedBatch(final List<? extends CharSequence> inputs) {
+        final OllamaRequestBody body;
+        try {
+            body = OllamaRequestBody.write(true, json -> {
+                json.writeStartObject();
+                json.writeStringField("model", modelName);
+                json.writeArrayFieldStart("input");
+                for (final CharSequence input : inputs) {
+                    OllamaRequestBody.writeString(json, input);
+                }
+                json.writeEndArray();
+                json.writeBooleanField("truncate", true);
+                json.writeEndObject();
+            });
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return flights.call(body.cacheKey(), () -> send(body, inputs), body::release);
+    }
+
+    private CompletableFuture<OllamaEmbeddings> send(final OllamaRequestBody body, final List<? extends CharSequence> inputs) {
+        final OllamaBackend backend;
+        try {
+            backend = backends.acquire(modelName);
+        } catch (IllegalStateException e) {
+            body.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        final long start = System.nanoTime();
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + "/api/embed"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .POST(body.publisher(residency.keepAliveField(modelName)))
+                .build();
+
+        final CompletableFuture<HttpResponse<byte[]>> exchange =
+                transport.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray(), priority);
+        exchange.whenComplete((response, error) -> body.release());
+
+        final CompletableFuture<OllamaEmbeddings> result = exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new OllamaHttpException(response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+            }
+            try {
+                final OllamaEmbeddings embeddings = OllamaEmbeddings.read(jsonFactory, response.body(), inputs.size());
+                tokenCounter.observe(modelName, inputs.stream().mapToLong(CharSequence::length).sum(),
+                        embeddings.promptTokens());
+                LOG.debugf("(OllamaEmbeddingClient) %s: %d inputs, %d tokens in %d ms", modelName, inputs.size(),
+                        embeddings.promptTokens(), (System.nanoTime() - start) / 1_000_000L);
+                return embeddings;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // a dependent stage does not cancel its source, so hand cancellation/timeouts back explicitly
+        result.whenComplete((value, error) -> {
+            backends.release(backend, start, error);
+            if (Objects.nonNull(error)) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The vectors {@code /api/embed} returned for a list of inputs, in input order.
+ * <p>
+ * Each vector is parsed straight from the response bytes into its own {@code float[]}; nothing
+ * goes through a {@code List<Double>} or a JSON tree on the way.
+ */
+public final class OllamaEmbeddings {
+
+    private final float[][] vectors;
+    private final int dimension;
+    private final long promptTokens;
+
+    private OllamaEmbeddings(final float[][] vectors, final int dimension, final long promptTokens) {
+        this.vectors = vectors;
+        this.dimension = dimension;
+        this.promptTokens = promptTokens;
+    }
+
+    public int count() {
+        return vectors.length;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Tokens Ollama evaluated for all inputs, after truncation
+     */
+    public long promptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * The vector for input {@code index}. It is not copied, callers must not modify it.
+     */
+    public float[] vector(final int index) {
+        return vectors[index];
+    }
+
+    public List<float[]> vectors() {
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * The batches' vectors one after the other
+     */
+    static OllamaEmbeddings concat(final List<OllamaEmbeddings> batches) {
+        if (batches.size() == 1) {
+            return batches.getFirst();
+        }
+
+        final List<float[]> all = new ArrayList<>();
+        long promptTokens = 0;
+        int dimension = 0;
+        for (final OllamaEmbeddings batch : batches) {
+            if (dimension != 0 && batch.dimension != 0 && batch.dimension != dimension) {
+                throw new IllegalStateException("Embedding batches differ in dimension: " + dimension + " and " + batch.dimension);
+            }
+            all.addAll(batch.vectors());
+            promptTokens += batch.promptTokens;
+            dimension = Math.max(dimension, batch.dimension);
+        }
+        return new OllamaEmbeddings(all.toArray(float[][]::new), dimension, promptTokens);
+    }
+
+    /**
+     * Reads an {@code /api/embed} response body
+     *
+     * @param expected how many inputs were sent, the response must have as many vectors
+     */
+    static OllamaEmbeddings read(final JsonFactory jsonFactory, final byte[] body, final int expected) throws IOException {
+        final float[][] vectors = new float[expected][];
+        int count = 0;
+        int dimension = 0;
+        long promptTokens = 0;
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected an object from /api/embed");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "embeddings" -> {
+                        while (parser.nextToken() == JsonToken.START_ARRAY) {
+                            if (count == expected) {
+                                throw new IOException("More embeddings than the " + expected + " inputs sent");
+                            }
+                            vectors[count] = readVector(parser, dimension);
+                            dimension = vectors[count++].length;
+                        }
+                    }
+                    case "prompt_eval_count" -> promptTokens = parser.getLongValue();
+                    case "error" -> throw new IOException("Ollama embedding failed: " + parser.getText());
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (count != expected) {
+            throw new IOException("Expected " + expected + " embeddings, got " + count);
+        }
+        return new OllamaEmbeddings(vectors, dimension, promptTokens);
+    }
+
+    // parser is on the vector's START_ARRAY; dimension is 0 until the first vector has been read
+    private static float[] readVector(final JsonParser parser, final int dimension) throws IOException {
+        float[] vector = new float[dimension == 0 ? 1024 : dimension];
+        int length = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (length == vector.length) {
+                if (dimension != 0) {
+                    throw new IOException("Embedding longer than the first one's " + dimension + " values");
+                }
+                vector = Arrays.copyOf(vector, vector.length * 2);
+            }
+            vector[length++] = parser.getFloatValue();
+        }
+
+        if (dimension != 0 && length != dimension) {
+            throw new IOException("Embedding has " + length + " values, the first one had " + dimension);
+        }
+        return length == vector.length ? vector : Arrays.copyOf(vector, length);
+    }
+}
@@ -0,0 +1,134 @@
+package com.chriswininger.ollama;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Helpers for callers that fan work out with the async {@link OllamaApiService} methods but
+ * expose a synchronous API themselves.
+ */
+public final class OllamaFutures {
+
+    private OllamaFutures() {}
+
+    /**
+     * Waits for the future and rethrows its failure the way the synchronous client would.
+     * Interrupting the waiting thread cancels the request.
+     */
+    public static <T> T await(final CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Waits for all futures and returns their results in the order given. On the first failure
+     * the remaining requests are cancelled so they stop occupying inference slots.
+     */
+    public static <T> List<T> awaitAll(final List<CompletableFuture<T>> futures) throws IOException, InterruptedException {
+        final CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+        futures.forEach(f -> f.whenComplete((value, error) -> {
+            if (error != null) {
+                all.completeExceptionally(error);
+            }
+        }));
+
+        try {
+            await(all);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        final List<T> results = new ArrayList<>(futures.size());
+        for (final CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * {@code source.thenApply(mapper)}, except that cancelling the result (or timing it out via
+     * {@code orTimeout}) also cancels {@code source}; a plain dependent stage never reaches back
+     * to the request it was built on.
+     */
+    public static <T, R> CompletableFuture<R> thenApply(
+            final CompletableFuture<T> source,
+            final Function<? super T, ? extends R> mapper
+    ) {
+        return cancelling(source.thenApply(mapper), source);
+    }
+
+    /**
+     * {@code source.thenCompose(next)}, except that cancelling the result (or timing it out) also
+     * cancels whichever of {@code source} and the future {@code next} returned is still running
+     */
+    public static <T, R> CompletableFuture<R> thenCompose(
+            final CompletableFuture<T> source,
+            final Function<? super T, ? extends CompletableFuture<R>> next
+    ) {
+        final AtomicReference<CompletableFuture<?>> current = new AtomicReference<>(source);
+        final AtomicReference<CompletableFuture<R>> result = new AtomicReference<>();
+        result.set(source.thenCompose(value -> {
+            final CompletableFuture<R> stage = next.apply(value);
+            current.set(stage);
+            // the result may have been given up on while next was building the stage
+            final CompletableFuture<R> composed = result.get();
+            if (Objects.nonNull(composed) && composed.isCompletedExceptionally()) {
+                stage.cancel(true);
+            }
+            return stage;
+        }));
+        result.get().whenComplete((value, error) -> {
+            if (Objects.nonNull(error)) {
+                current.get().cancel(true);
+            }
+        });
+        return result.get();
+    }
+
+    /**
+     * Hands a failure of {@code dependent}, which is how cancelling it or timing it out shows,
+     * back to {@code source}. Cancelling a source that has already completed does nothing.
+     */
+    public static <T> CompletableFuture<T> cancelling(
+            final CompletableFuture<T> dependent,
+            final CompletableFuture<?> source
+    ) {
+        dependent.whenComplete((value, error) -> {
+            if (Objects.nonNull(error)) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    private static IOException rethrow(final Throwable cause) {
+        final Throwable unwrapped = cause instanceof CompletionException && cause.getCause() != null
+                ? cause.getCause()
+                : cause;
+
+        if (unwrapped instanceof IOException io) {
+            return io;
+        }
+        if (unwrapped instanceof RuntimeException re) {
+            throw re;
+        }
+        if (unwrapped instanceof Error error) {
+            throw error;
+        }
+        throw new CompletionException(unwrapped);
+    }
+}
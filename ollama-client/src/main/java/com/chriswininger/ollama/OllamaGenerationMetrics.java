@@ -0,0 +1,131 @@
+package com.chriswininger.ollama;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates {@link OllamaGenerationStats} per model and calling stage, so it is visible where
+ * import time goes (prefill, decode, or waiting for a model to load).
+ */
+public class OllamaGenerationMetrics {
+
+    // load_duration is a few milliseconds when the model is already resident
+    private static final long MODEL_LOAD_THRESHOLD_NANOS = 500_000_000L;
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final Map<Key, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    public void record(final String model, final String stage, final OllamaGenerationStats stats) {
+        accumulator(model, stage).add(stats);
+    }
+
+    /**
+     * Counts a single-pass structured call, see {@link InferenceStrategy#SINGLE_PASS}
+     *
+     * @param fellBack whether its reply failed validation and the two-pass flow ran instead
+     */
+    public void recordSinglePass(final String model, final String stage, final boolean fellBack) {
+        final Accumulator accumulator = accumulator(model, stage);
+        (fellBack ? accumulator.singlePassFallbacks : accumulator.singlePassSuccesses).increment();
+    }
+
+    /**
+     * Counts a failed attempt that is being tried again, see {@link OllamaResiliencePolicy}
+     */
+    public void recordRetry(final String model, final String stage) {
+        accumulator(model, stage).retries.increment();
+    }
+
+    /**
+     * Counts a hedged copy of a slow call
+     *
+     * @param won whether it is the hedge, not the original, that answered first
+     */
+    public void recordHedge(final String model, final String stage, final boolean won) {
+        final Accumulator accumulator = accumulator(model, stage);
+        (won ? accumulator.hedgeWins : accumulator.hedgedRequests).increment();
+    }
+
+    /**
+     * Counts a call that was answered by an identical call already in flight rather than sent
+     */
+    public void recordDeduplicated(final String model, final String stage) {
+        accumulator(model, stage).deduplicated.increment();
+    }
+
+    public List<OllamaStageMetrics> snapshot() {
+        return accumulators.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(Comparator.comparing(OllamaStageMetrics::model).thenComparing(OllamaStageMetrics::stage))
+                .toList();
+    }
+
+    private Accumulator accumulator(final String model, final String stage) {
+        return accumulators.computeIfAbsent(new Key(model, stage), k -> new Accumulator());
+    }
+
+    private record Key(String model, String stage) {}
+
+    private static class Accumulator {
+        private final LongAdder generations = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder promptEvalNanos = new LongAdder();
+        private final LongAdder evalTokens = new LongAdder();
+        private final LongAdder evalNanos = new LongAdder();
+        private final LongAdder modelLoads = new LongAdder();
+        private final LongAdder loadNanos = new LongAdder();
+        private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0L);
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder singlePassSuccesses = new LongAdder();
+        private final LongAdder singlePassFallbacks = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedgedRequests = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder deduplicated = new LongAdder();
+
+        void add(final OllamaGenerationStats stats) {
+            generations.increment();
+            promptTokens.add(stats.promptEvalCount());
+            promptEvalNanos.add(stats.promptEvalDuration());
+            evalTokens.add(stats.evalCount());
+            evalNanos.add(stats.evalDuration());
+            loadNanos.add(stats.loadDuration());
+            maxLoadNanos.accumulate(stats.loadDuration());
+            totalNanos.add(stats.totalDuration());
+            if (stats.loadDuration() >= MODEL_LOAD_THRESHOLD_NANOS) {
+                modelLoads.increment();
+            }
+        }
+
+        OllamaStageMetrics snapshot(final Key key) {
+            return new OllamaStageMetrics(
+                    key.model(),
+                    key.stage(),
+                    generations.sum(),
+                    promptTokens.sum(),
+                    evalTokens.sum(),
+                    rate(promptTokens.sum(), promptEvalNanos.sum()),
+                    rate(evalTokens.sum(), evalNanos.sum()),
+                    modelLoads.sum(),
+                    loadNanos.sum() / NANOS_PER_MILLI,
+                    maxLoadNanos.get() / NANOS_PER_MILLI,
+                    totalNanos.sum() / NANOS_PER_MILLI,
+                    singlePassSuccesses.sum(),
+                    singlePassFallbacks.sum(),
+                    retries.sum(),
+                    hedgedRequests.sum(),
+                    hedgeWins.sum(),
+                    deduplicated.sum()
+            );
+        }
+
+        private static double rate(final long tokens, final long nanos) {
+            return nanos > 0 ? tokens * NANOS_PER_SECOND / nanos : 0d;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Timing and token counts Ollama reports with a finished generation. Durations are in
+ * nanoseconds, as returned by the server.
+ */
+public record OllamaGenerationStats(
+        long totalDuration,
+        long loadDuration,
+        long promptEvalCount,
+        long promptEvalDuration,
+        long evalCount,
+        long evalDuration
+) {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    public static OllamaGenerationStats fromJson(final JsonNode response) {
+        return new OllamaGenerationStats(
+                response.path("total_duration").asLong(),
+                response.path("load_duration").asLong(),
+                response.path("prompt_eval_count").asLong(),
+                response.path("prompt_eval_duration").asLong(),
+                response.path("eval_count").asLong(),
+                response.path("eval_duration").asLong()
+        );
+    }
+
+    public double prefillTokensPerSecond() {
+        return promptEvalDuration > 0 ? promptEvalCount * NANOS_PER_SECOND / promptEvalDuration : 0d;
+    }
+
+    public double decodeTokensPerSecond() {
+        return evalDuration > 0 ? evalCount * NANOS_PER_SECOND / evalDuration : 0d;
+    }
+}
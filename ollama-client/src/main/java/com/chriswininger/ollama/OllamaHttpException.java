@@ -0,0 +1,23 @@
+package com.chriswininger.ollama;
+
+/**
+ * Ollama answered with a status other than 200. A 5xx is the server failing (out of memory,
+ * model failed to load) and worth retrying; a 4xx is the request and is not.
+ */
+public class OllamaHttpException extends RuntimeException {
+
+    private final int statusCode;
+
+    public OllamaHttpException(final int statusCode, final String body) {
+        super("Ollama returned HTTP " + statusCode + ": " + body);
+        this.statusCode = statusCode;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public boolean serverError() {
+        return statusCode >= 500;
+    }
+}
@@ -0,0 +1,12 @@
+package com.chriswininger.ollama;
+
+/**
+ * Thrown when a streamed generation grows past the caller's output cap, usually a sign the model
+ * is stuck repeating itself. The generation is aborted when this is raised.
+ */
+public class OllamaOutputLimitException extends RuntimeException {
+
+    public OllamaOutputLimitException(final int maxOutputChars) {
+        super("Ollama output exceeded %d characters, generation aborted".formatted(maxOutputChars));
+    }
+}
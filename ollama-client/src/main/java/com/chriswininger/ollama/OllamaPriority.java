@@ -0,0 +1,38 @@
+package com.chriswininger.ollama;
+
+/**
+ * Whose request it is, for ordering the queue in front of a busy Ollama server.
+ * <p>
+ * When every slot to a host is taken, waiting requests are let through by weighted fair
+ * queueing: over a stretch of contention each class gets slots in proportion to its weight, so
+ * a query someone is waiting on overtakes a book import without the import stopping altogether.
+ * A request that has waited past the starvation threshold goes next whatever its class. Weights
+ * and the threshold are set on {@link OllamaTransport.Builder}.
+ */
+public enum OllamaPriority {
+
+    /**
+     * Someone is waiting on the answer: a query, a chat
+     */
+    INTERACTIVE(8),
+
+    /**
+     * The default, for calls made on demand that nobody is watching in real time
+     */
+    NORMAL(3),
+
+    /**
+     * Throughput work that can wait its turn: ingesting a book
+     */
+    BULK(1);
+
+    private final int defaultWeight;
+
+    OllamaPriority(final int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    public int defaultWeight() {
+        return defaultWeight;
+    }
+}
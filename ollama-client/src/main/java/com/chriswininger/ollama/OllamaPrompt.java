@@ -0,0 +1,230 @@
+package com.chriswininger.ollama;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A prompt made of fragments that are never joined: the chapter text, a heading, the
+ * instructions around them. {@link OllamaApiService} streams it into the request body fragment by
+ * fragment, so a 60K-token chapter is not copied into a new String just to put a line in front of
+ * it. Use it where {@code String.formatted} or {@code +} would otherwise build the whole prompt.
+ * <p>
+ * It is an ordinary {@link CharSequence}; {@link #toString()} does build the full text, for the
+ * places (logging, tests) that really want one.
+ */
+public final class OllamaPrompt implements CharSequence {
+
+    private static final OllamaPrompt EMPTY = new OllamaPrompt(new CharSequence[0], new int[] {0});
+
+    private final CharSequence[] fragments;
+    // starts[i] is where fragment i begins, starts[fragments.length] is the total length
+    private final int[] starts;
+
+    private OllamaPrompt(final CharSequence[] fragments, final int[] starts) {
+        this.fragments = fragments;
+        this.starts = starts;
+    }
+
+    /**
+     * The fragments in order, nothing is copied. Nested prompts are flattened.
+     */
+    public static OllamaPrompt of(final CharSequence... fragments) {
+        return of(Arrays.asList(fragments));
+    }
+
+    public static OllamaPrompt of(final List<? extends CharSequence> fragments) {
+        final List<CharSequence> flat = new ArrayList<>(fragments.size());
+        for (final CharSequence fragment : fragments) {
+            if (fragment instanceof OllamaPrompt prompt) {
+                flat.addAll(Arrays.asList(prompt.fragments));
+            } else if (fragment.length() > 0) {
+                flat.add(fragment);
+            }
+        }
+        if (flat.isEmpty()) {
+            return EMPTY;
+        }
+
+        final int[] starts = new int[flat.size() + 1];
+        for (int i = 0; i < flat.size(); i++) {
+            starts[i + 1] = Math.addExact(starts[i], flat.get(i).length());
+        }
+        return new OllamaPrompt(flat.toArray(CharSequence[]::new), starts);
+    }
+
+    /**
+     * {@code template.formatted(args)} without copying the arguments; only {@code %s},
+     * {@code %n} and {@code %%} are supported
+     *
+     * @throws IllegalArgumentException for any other conversion, or when the number of
+     *                                  {@code %s} and arguments differ
+     */
+    public static OllamaPrompt format(final String template, final CharSequence... args) {
+        final List<CharSequence> fragments = new ArrayList<>(args.length * 2 + 1);
+        final StringBuilder literal = new StringBuilder();
+        int arg = 0;
+
+        for (int i = 0; i < template.length(); i++) {
+            final char c = template.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i + 1 == template.length()) {
+                throw new IllegalArgumentException("Dangling % at the end of the template");
+            }
+
+            final char conversion = template.charAt(++i);
+            switch (conversion) {
+                case '%' -> literal.append('%');
+                case 'n' -> literal.append(System.lineSeparator());
+                case 's' -> {
+                    if (arg == args.length) {
+                        throw new IllegalArgumentException("More %s in the template than arguments");
+                    }
+                    fragments.add(literal.toString());
+                    literal.setLength(0);
+                    fragments.add(Objects.requireNonNullElse(args[arg++], "null"));
+                }
+                default -> throw new IllegalArgumentException("Unsupported conversion %" + conversion);
+            }
+        }
+        if (arg != args.length) {
+            throw new IllegalArgumentException("More arguments than %s in the template");
+        }
+
+        fragments.add(literal.toString());
+        return of(fragments);
+    }
+
+    /**
+     * A view of {@code text} from {@code start} up to {@code end}, nothing is copied
+     */
+    public static CharSequence span(final CharSequence text, final int start, final int end) {
+        return CharBuffer.wrap(text, start, end);
+    }
+
+    @Override
+    public int length() {
+        return starts[fragments.length];
+    }
+
+    @Override
+    public char charAt(final int index) {
+        Objects.checkIndex(index, length());
+        final int fragment = fragmentAt(index);
+        return fragments[fragment].charAt(index - starts[fragment]);
+    }
+
+    @Override
+    public OllamaPrompt subSequence(final int start, final int end) {
+        Objects.checkFromToIndex(start, end, length());
+        if (start == end) {
+            return EMPTY;
+        }
+
+        final int first = fragmentAt(start);
+        final int last = fragmentAt(end - 1);
+        final List<CharSequence> slice = new ArrayList<>(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            final int from = Math.max(start, starts[i]) - starts[i];
+            final int to = Math.min(end, starts[i + 1]) - starts[i];
+            final CharSequence fragment = fragments[i];
+            slice.add(from == 0 && to == fragment.length() ? fragment : span(fragment, from, to));
+        }
+        return of(slice);
+    }
+
+    /**
+     * As {@link String#trim()}, as a view
+     */
+    public OllamaPrompt trim() {
+        int start = 0;
+        int end = length();
+        while (start < end && charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return start == 0 && end == length() ? this : subSequence(start, end);
+    }
+
+    /**
+     * Reads the text through once, copying it in the reader's chunks. A chunk never ends between
+     * the two halves of a surrogate pair, so a JSON writer fed from it never sees a split one.
+     */
+    public Reader reader() {
+        return new Reader() {
+            private int position;
+
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) {
+                Objects.checkFromIndexSize(offset, length, buffer.length);
+                if (position == length()) {
+                    return -1;
+                }
+                if (length == 0) {
+                    return 0;
+                }
+
+                int count = Math.min(length, length() - position);
+                copy(position, position + count, buffer, offset);
+                if (count > 1 && Character.isHighSurrogate(buffer[offset + count - 1])) {
+                    count--;
+                }
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    @Override
+    public String toString() {
+        final char[] text = new char[length()];
+        copy(0, text.length, text, 0);
+        return new String(text);
+    }
+
+    private int fragmentAt(final int index) {
+        final int found = Arrays.binarySearch(starts, 0, fragments.length, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private void copy(final int start, final int end, final char[] destination, final int offset) {
+        int at = offset;
+        for (int i = fragmentAt(start); at - offset < end - start; i++) {
+            final int from = Math.max(start, starts[i]) - starts[i];
+            final int to = Math.min(end, starts[i + 1]) - starts[i];
+            getChars(fragments[i], from, to, destination, at);
+            at += to - from;
+        }
+    }
+
+    private static void getChars(
+            final CharSequence text,
+            final int start,
+            final int end,
+            final char[] destination,
+            final int offset
+    ) {
+        if (text instanceof String string) {
+            string.getChars(start, end, destination, offset);
+        } else if (text instanceof StringBuilder builder) {
+            builder.getChars(start, end, destination, offset);
+        } else if (text instanceof CharBuffer buffer) {
+            buffer.get(buffer.position() + start, destination, offset, end - start);
+        } else {
+            for (int i = start; i < end; i++) {
+                destination[offset + i - start] = text.charAt(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A JSON request body written straight from a {@link JsonGenerator} into pooled buffers, and
+ * published to the http client from those same buffers.
+ * <p>
+ * Building the payload as an {@code ObjectNode}, serializing it to a String and having
+ * {@code BodyPublishers.ofString} encode that again makes several copies of every prompt; here
+ * the text goes through the generator's small encode buffer once. Prompts can be any
+ * {@link CharSequence}, see {@link #writeString} and {@link OllamaPrompt}.
+ * <p>
+ * The buffers go back to the pool on {@link #release()}, which the owner calls once the exchange
+ * is over; the body cannot be published after that.
+ */
+public final class OllamaRequestBody {
+
+    /**
+     * Writes the whole JSON document
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    // surrogate pairs as one UTF-8 sequence, as a String serialized and then encoded has them
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(JsonWriteFeature.COMBINE_UNICODE_SURROGATES_IN_UTF8)
+            .build();
+
+    private final ByteBufferPool pool;
+    private final List<ByteBuffer> buffers;
+    private final long length;
+    private final String cacheKey;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private OllamaRequestBody(
+            final ByteBufferPool pool,
+            final List<ByteBuffer> buffers,
+            final long length,
+            final String cacheKey
+    ) {
+        this.pool = pool;
+        this.buffers = buffers;
+        this.length = length;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * @param cacheKey also hash the bytes as they are written, for {@link #cacheKey()}
+     */
+    public static OllamaRequestBody write(final boolean cacheKey, final Writer writer) throws IOException {
+        return write(ByteBufferPool.shared(), cacheKey, writer);
+    }
+
+    static OllamaRequestBody write(
+            final ByteBufferPool pool,
+            final boolean cacheKey,
+            final Writer writer
+    ) throws IOException {
+        final PooledOutputStream out = new PooledOutputStream(pool, cacheKey ? sha256() : null);
+        try (JsonGenerator generator = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            writer.write(generator);
+        } catch (IOException | RuntimeException e) {
+            out.buffers.forEach(pool::release);
+            throw e;
+        }
+
+        out.buffers.forEach(ByteBuffer::flip);
+        return new OllamaRequestBody(pool, out.buffers, out.length,
+                Objects.isNull(out.digest) ? null : HexFormat.of().formatHex(out.digest.digest()));
+    }
+
+    /**
+     * Writes {@code text} as one JSON string value without joining or copying it first
+     */
+    public static void writeString(final JsonGenerator generator, final CharSequence text) throws IOException {
+        if (text instanceof String string) {
+            // long strings are encoded a chunk at a time already
+            generator.writeString(string);
+            return;
+        }
+
+        final OllamaPrompt prompt = text instanceof OllamaPrompt p ? p : OllamaPrompt.of(text);
+        generator.writeString(prompt.reader(), prompt.length());
+    }
+
+    /**
+     * Writes with {@code writer} without the bytes counting towards the {@link #cacheKey()}, for
+     * values such as {@code num_ctx} that are worked out per process and do not change the reply
+     */
+    public static void writeUnhashed(final JsonGenerator generator, final Writer writer) throws IOException {
+        // whatever the generator still buffers belongs to the hashed part before this
+        generator.flush();
+        final PooledOutputStream out = (PooledOutputStream) generator.getOutputTarget();
+        out.hashing = false;
+        try {
+            writer.write(generator);
+            generator.flush();
+        } finally {
+            out.hashing = true;
+        }
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * The same key {@link OllamaResponseCache#keyFor} gives for this body, or {@code null} if it
+     * was not written with one
+     */
+    public String cacheKey() {
+        return cacheKey;
+    }
+
+    public HttpRequest.BodyPublisher publisher() {
+        return publisher("");
+    }
+
+    /**
+     * Publishes the body with {@code fields} (serialized, starting with a comma) added just
+     * before its closing brace, for request options like {@code keep_alive} that must not change
+     * the {@link #cacheKey()}
+     */
+    public HttpRequest.BodyPublisher publisher(final String fields) {
+        if (released.get()) {
+            throw new IllegalStateException("Request body was already released");
+        }
+
+        final List<ByteBuffer> items = new ArrayList<>(buffers.size() + 1);
+        buffers.forEach(buffer -> items.add(buffer.asReadOnlyBuffer()));
+        if (!fields.isEmpty()) {
+            final ByteBuffer last = items.removeLast();
+            if (last.remaining() > 1) {
+                items.add(last.limit(last.limit() - 1));
+            }
+            items.add(ByteBuffer.wrap((fields + "}").getBytes(StandardCharsets.UTF_8)));
+        }
+        final long contentLength = items.stream().mapToLong(ByteBuffer::remaining).sum();
+
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+                final List<ByteBuffer> copies = items.stream().map(ByteBuffer::duplicate).toList();
+                subscriber.onSubscribe(new BufferSubscription(subscriber, copies));
+            }
+        };
+    }
+
+    /**
+     * Returns the buffers to the pool, calls after the first do nothing
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            buffers.forEach(pool::release);
+        }
+    }
+
+    /**
+     * The body as text, for logging
+     */
+    @Override
+    public String toString() {
+        final byte[] bytes = new byte[Math.toIntExact(length)];
+        int offset = 0;
+        for (final ByteBuffer buffer : buffers) {
+            final int count = buffer.remaining();
+            buffer.get(buffer.position(), bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class PooledOutputStream extends OutputStream {
+        private final ByteBufferPool pool;
+        private final MessageDigest digest;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private ByteBuffer current;
+        private long length;
+        private boolean hashing = true;
+
+        private PooledOutputStream(final ByteBufferPool pool, final MessageDigest digest) {
+            this.pool = pool;
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(final int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int count) {
+            Objects.checkFromIndexSize(offset, count, bytes.length);
+            if (Objects.nonNull(digest) && hashing) {
+                digest.update(bytes, offset, count);
+            }
+
+            int written = 0;
+            while (written < count) {
+                if (Objects.isNull(current) || !current.hasRemaining()) {
+                    current = pool.acquire();
+                    buffers.add(current);
+                }
+                final int chunk = Math.min(count - written, current.remaining());
+                current.put(bytes, offset + written, chunk);
+                written += chunk;
+            }
+            length += count;
+        }
+    }
+
+    /**
+     * Hands the buffers over one per unit of demand
+     */
+    private static final class BufferSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final List<ByteBuffer> items;
+        private int next;
+        private long demand;
+        private boolean emitting;
+        private boolean done;
+
+        private BufferSubscription(final Flow.Subscriber<? super ByteBuffer> subscriber, final List<ByteBuffer> items) {
+            this.subscriber = subscriber;
+            this.items = items;
+        }
+
+        @Override
+        public void request(final long n) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    done = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    if (emitting) {
+                        // the loop below is already running further up this stack or on another thread
+                        return;
+                    }
+                    emitting = true;
+                }
+            }
+            if (n <= 0) {
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+
+            while (true) {
+                final ByteBuffer item;
+                synchronized (this) {
+                    if (done) {
+                        emitting = false;
+                        return;
+                    }
+                    if (next == items.size()) {
+                        done = true;
+                        emitting = false;
+                        break;
+                    }
+                    if (demand == 0) {
+                        emitting = false;
+                        return;
+                    }
+                    demand--;
+                    item = items.get(next++);
+                }
+                subscriber.onNext(item);
+            }
+            subscriber.onComplete();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            done = true;
+        }
+    }
+}
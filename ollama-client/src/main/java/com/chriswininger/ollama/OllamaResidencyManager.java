@@ -0,0 +1,295 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the models an application uses loaded on its Ollama backends.
+ * <p>
+ * Ollama unloads an idle model once its {@code keep_alive} runs out, and on a GPU too small for
+ * both the chat and the embedding model every switch between them is a reload. Models registered
+ * here get a {@code keep_alive} per request class on every call, can be loaded ahead of the first
+ * request with {@link #warmUp}, and can be pinned ({@code keep_alive} of -1, never unloaded) for
+ * the length of a long job.
+ */
+public class OllamaResidencyManager {
+
+    private static final Logger LOG = Logger.getLogger(OllamaResidencyManager.class);
+
+    private static final long FOREVER = -1L;
+    private static final Duration PS_TIMEOUT = Duration.ofSeconds(5);
+
+    public enum RequestClass {
+        CHAT,
+        EMBEDDING
+    }
+
+    /**
+     * Held while a model must stay loaded, closing it lets the model expire normally again
+     */
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+
+        static Pin none() {
+            return () -> {};
+        }
+    }
+
+    private final OllamaBackendPool backends;
+    private final Map<RequestClass, Duration> keepAlive;
+    private final Duration loadTimeout;
+    private final Map<String, RequestClass> models = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param keepAlive   how long Ollama keeps each class of model loaded after its last request, a
+     *                    negative duration keeps it loaded indefinitely; classes without an entry
+     *                    are left to the server's default
+     * @param loadTimeout how long a warm-up may take, loading a large model from disk can be slow
+     */
+    public OllamaResidencyManager(
+            final OllamaBackendPool backends,
+            final Map<RequestClass, Duration> keepAlive,
+            final Duration loadTimeout
+    ) {
+        this.backends = backends;
+        this.keepAlive = keepAlive.isEmpty() ? Map.of() : new EnumMap<>(keepAlive);
+        this.loadTimeout = loadTimeout;
+    }
+
+    /**
+     * A manager with no models registered, every payload goes out untouched
+     */
+    public static OllamaResidencyManager unmanaged() {
+        return new OllamaResidencyManager(null, Map.of(), Duration.ZERO);
+    }
+
+    public OllamaResidencyManager register(final String model, final RequestClass requestClass) {
+        models.put(OllamaBackend.normalizeModel(model), requestClass);
+        return this;
+    }
+
+    /**
+     * The {@code keep_alive} to send with a request for {@code model} in seconds, -1 while it is
+     * pinned, or empty if the model is not registered
+     */
+    public OptionalLong keepAliveSeconds(final String model) {
+        final String key = OllamaBackend.normalizeModel(model);
+        final RequestClass requestClass = models.get(key);
+        if (Objects.isNull(requestClass)) {
+            return OptionalLong.empty();
+        }
+        if (pinned(key)) {
+            return OptionalLong.of(FOREVER);
+        }
+
+        final Duration duration = keepAlive.get(requestClass);
+        if (Objects.isNull(duration)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(duration.isNegative() ? FOREVER : duration.toSeconds());
+    }
+
+    /**
+     * Adds the model's {@code keep_alive} to a serialized request body. It is added to the
+     * finished payload rather than built into it, so pinning a model does not change the request
+     * as seen by the response cache.
+     */
+    public String applyKeepAlive(final String model, final String payload) {
+        final String field = keepAliveField(model);
+        if (field.isEmpty()) {
+            return payload;
+        }
+
+        final int end = payload.lastIndexOf('}');
+        if (end < 0) {
+            throw new IllegalArgumentException("Payload is not a JSON object");
+        }
+        return payload.substring(0, end) + field + payload.substring(end);
+    }
+
+    /**
+     * The model's {@code keep_alive} as a serialized field with a leading comma, or an empty
+     * string, for {@link OllamaRequestBody#publisher(String)}
+     */
+    public String keepAliveField(final String model) {
+        final OptionalLong seconds = keepAliveSeconds(model);
+        return seconds.isEmpty() ? "" : ",\"keep_alive\":" + seconds.getAsLong();
+    }
+
+    /**
+     * Loads {@code model} on every backend that serves it, without generating anything. The
+     * returned future completes once every backend has answered; it fails if any of them failed.
+     */
+    public CompletableFuture<Void> warmUp(final String model) {
+        final String key = OllamaBackend.normalizeModel(model);
+        final RequestClass requestClass = models.get(key);
+        if (Objects.isNull(requestClass)) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Model " + model + " is not registered for residency"));
+        }
+
+        final String payload = applyKeepAlive(model, loadPayload(model, requestClass));
+        final String path = requestClass == RequestClass.EMBEDDING ? "/api/embed" : "/api/generate";
+
+        final List<CompletableFuture<?>> loads = new ArrayList<>();
+        for (final OllamaBackend backend : backends.backends()) {
+            if (!backend.serves(model)) {
+                continue;
+            }
+
+            final long start = System.nanoTime();
+            loads.add(send(backend, path, payload).thenRun(() ->
+                    LOG.infof("(OllamaResidencyManager) %s loaded on %s in %d ms",
+                            model, backend.baseUrl(), (System.nanoTime() - start) / 1_000_000L)));
+        }
+
+        return CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Keeps {@code model} loaded until the returned pin, and every other pin on it, is closed.
+     * The first pin loads the model straight away; the last one to close hands the model back its
+     * normal {@code keep_alive}, so it is not left occupying memory forever.
+     */
+    public Pin pin(final String model) {
+        final String key = OllamaBackend.normalizeModel(model);
+        if (!models.containsKey(key)) {
+            throw new IllegalArgumentException("Model " + model + " is not registered for residency");
+        }
+
+        final boolean first;
+        synchronized (pins) {
+            first = pins.merge(key, 1, Integer::sum) == 1;
+        }
+        if (first) {
+            LOG.infof("(OllamaResidencyManager) pinning %s", model);
+            warmUp(model).exceptionally(e -> logLoadFailure(model, e));
+        }
+
+        final AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (closed.compareAndSet(false, true)) {
+                unpin(model, key);
+            }
+        };
+    }
+
+    /**
+     * Asks every backend which models it has loaded. A backend that does not answer is left out.
+     */
+    public List<OllamaResidentModel> resident() {
+        final List<OllamaResidentModel> resident = new ArrayList<>();
+        for (final OllamaBackend backend : backends.backends()) {
+            try {
+                resident.addAll(ps(backend));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                LOG.warnf("(OllamaResidencyManager) /api/ps on %s failed: %s", backend.baseUrl(), e);
+            }
+        }
+        return resident;
+    }
+
+    private boolean pinned(final String key) {
+        synchronized (pins) {
+            return pins.containsKey(key);
+        }
+    }
+
+    private void unpin(final String model, final String key) {
+        final boolean last;
+        synchronized (pins) {
+            last = Objects.isNull(pins.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null));
+        }
+        if (last) {
+            LOG.infof("(OllamaResidencyManager) unpinning %s", model);
+            // a load request with the normal keep_alive replaces the -1 the model was loaded with
+            warmUp(model).exceptionally(e -> logLoadFailure(model, e));
+        }
+    }
+
+    private Void logLoadFailure(final String model, final Throwable error) {
+        LOG.warnf("(OllamaResidencyManager) could not load %s: %s", model, error);
+        return null;
+    }
+
+    // a request with no prompt (or no input) only loads the model
+    private String loadPayload(final String model, final RequestClass requestClass) {
+        final ObjectNode root = objectMapper.createObjectNode();
+        root.put("model", model);
+        if (requestClass == RequestClass.EMBEDDING) {
+            root.putArray("input");
+        }
+        return root.toString();
+    }
+
+    // straight to the http client, like the backend probe; a load must not queue behind generations
+    private CompletableFuture<Void> send(final OllamaBackend backend, final String path, final String payload) {
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + path))
+                .header("Content-Type", "application/json")
+                .timeout(loadTimeout)
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+
+        return backends.transport().httpClient()
+                .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenAccept(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Ollama returned HTTP " + response.statusCode()
+                                + " loading on " + backend.baseUrl() + ": " + response.body());
+                    }
+                });
+    }
+
+    private List<OllamaResidentModel> ps(final OllamaBackend backend) throws IOException, InterruptedException {
+        final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + "/api/ps"))
+                .timeout(PS_TIMEOUT)
+                .GET()
+                .build();
+
+        final HttpResponse<String> response =
+                backends.transport().httpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Ollama returned HTTP " + response.statusCode() + " for /api/ps");
+        }
+
+        final List<OllamaResidentModel> resident = new ArrayList<>();
+        for (final JsonNode model : objectMapper.readTree(response.body()).path("models")) {
+            final String name = model.path("name").asText();
+            resident.add(new OllamaResidentModel(
+                    backend.baseUrl(),
+                    name,
+                    model.path("size").asLong(),
+                    model.path("size_vram").asLong(),
+                    model.path("expires_at").asText(null),
+                    pinned(OllamaBackend.normalizeModel(name))
+            ));
+        }
+        return resident;
+    }
+}
@@ -0,0 +1,16 @@
+package com.chriswininger.ollama;
+
+/**
+ * A model loaded on one backend, as reported by its {@code /api/ps}
+ *
+ * @param expiresAt when Ollama will unload the model if it stays idle, as reported by the server
+ * @param pinned    whether {@link OllamaResidencyManager} currently holds a pin on the model
+ */
+public record OllamaResidentModel(
+        String baseUrl,
+        String model,
+        long sizeBytes,
+        long vramBytes,
+        String expiresAt,
+        boolean pinned
+) {}
@@ -0,0 +1,135 @@
+package com.chriswininger.ollama;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How {@link OllamaApiService} rides out a flaky backend: how often a failed call is retried and
+ * how long it backs off in between, and whether a slow call is hedged with a second copy on
+ * another backend.
+ * <p>
+ * Retried are dropped connections, 5xx responses and replies whose JSON does not parse, all of
+ * which are worth another try since a chat call has no side effects. Backoff is "full jitter": a
+ * random wait between zero and {@code baseBackoff * 2^retry}, capped at {@code maxBackoff}, so
+ * callers that failed together do not come back together.
+ * <p>
+ * A hedge is sent once a call has been running longer than {@code hedgePercentile} of the
+ * stage's recent calls (but at least {@code minHedgeDelay}); whichever copy answers first wins
+ * and the other is cancelled. That trims the tail a stalled backend adds without doubling the
+ * load, as only the slowest few percent are ever sent twice.
+ */
+public final class OllamaResiliencePolicy {
+
+    private static final OllamaResiliencePolicy NONE = builder().maxAttempts(1).build();
+
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final double hedgePercentile;
+    private final Duration minHedgeDelay;
+
+    private OllamaResiliencePolicy(final Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseBackoff = builder.baseBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.hedgePercentile = builder.hedgePercentile;
+        this.minHedgeDelay = builder.minHedgeDelay;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * One attempt and no hedging, what the client did before it had a policy
+     */
+    public static OllamaResiliencePolicy none() {
+        return NONE;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    public double hedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public boolean hedging() {
+        return hedgePercentile > 0d;
+    }
+
+    public Duration minHedgeDelay() {
+        return minHedgeDelay;
+    }
+
+    /**
+     * The wait before retry number {@code retry} (the first retry is 1)
+     */
+    long backoffNanos(final int retry) {
+        final long base = baseBackoff.toNanos();
+        final long ceiling = Math.min(maxBackoff.toNanos(), base << Math.min(retry - 1, 30));
+        return ceiling <= 0 ? 0L : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "maxAttempts=" + maxAttempts + ", backoff=" + baseBackoff + ".." + maxBackoff
+                + ", hedge=" + (hedging() ? "p" + hedgePercentile + " (min " + minHedgeDelay + ")" : "off");
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private Duration baseBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(10);
+        private double hedgePercentile;
+        private Duration minHedgeDelay = Duration.ofSeconds(1);
+
+        private Builder() {}
+
+        /**
+         * Attempts per call including the first, 1 turns retries off
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder baseBackoff(final Duration baseBackoff) {
+            this.baseBackoff = baseBackoff;
+            return this;
+        }
+
+        public Builder maxBackoff(final Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Latency percentile of the stage's recent calls after which a call is hedged, for
+         * example 95. 0 turns hedging off.
+         */
+        public Builder hedgePercentile(final double hedgePercentile) {
+            if (hedgePercentile < 0d || hedgePercentile >= 100d) {
+                throw new IllegalArgumentException("hedgePercentile must be in [0, 100)");
+            }
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        /**
+         * Never hedge sooner than this, whatever the percentile says
+         */
+        public Builder minHedgeDelay(final Duration minHedgeDelay) {
+            this.minHedgeDelay = minHedgeDelay;
+            return this;
+        }
+
+        public OllamaResiliencePolicy build() {
+            return new OllamaResiliencePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.chriswininger.ollama;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Stores raw Ollama responses keyed by a hash of the exact request payload (model, options,
+ * messages and format schema), so a repeated call with unchanged inputs can skip the server.
+ * <p>
+ * Only meaningful for deterministic use: a hit returns the earlier generation verbatim.
+ */
+public interface OllamaResponseCache extends AutoCloseable {
+
+    default boolean enabled() {
+        return true;
+    }
+
+    Optional<String> get(String key);
+
+    void put(String key, String responseBody);
+
+    OllamaResponseCacheStats stats();
+
+    @Override
+    void close();
+
+    /**
+     * Cache that never hits and stores nothing, for when caching is turned off
+     */
+    static OllamaResponseCache disabled() {
+        return DisabledResponseCache.INSTANCE;
+    }
+
+    /**
+     * SHA-256 of the payload, hex encoded
+     */
+    static String keyFor(final String payload) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    final class DisabledResponseCache implements OllamaResponseCache {
+        private static final DisabledResponseCache INSTANCE = new DisabledResponseCache();
+
+        private DisabledResponseCache() {}
+
+        @Override
+        public boolean enabled() {
+            return false;
+        }
+
+        @Override
+        public Optional<String> get(final String key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void put(final String key, final String responseBody) {}
+
+        @Override
+        public OllamaResponseCacheStats stats() {
+            return new OllamaResponseCacheStats(false, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,15 @@
+package com.chriswininger.ollama;
+
+/**
+ * Point-in-time snapshot of an {@link OllamaResponseCache}
+ */
+public record OllamaResponseCacheStats(
+        boolean enabled,
+        int entries,
+        long liveBytes,
+        long logBytes,
+        long maxBytes,
+        long hits,
+        long misses,
+        long evictions
+) {}
@@ -0,0 +1,32 @@
+package com.chriswininger.ollama;
+
+/**
+ * Totals for the generations of one model made by one calling stage
+ *
+ * @param modelLoads          generations that had to wait for the model to be loaded first
+ * @param singlePassSuccesses single-pass structured calls whose reply validated
+ * @param singlePassFallbacks single-pass structured calls that fell back to the two-pass flow
+ * @param retries             failed attempts that were tried again
+ * @param hedgedRequests      slow calls a second copy was sent for on another backend
+ * @param hedgeWins           hedged calls the second copy answered first
+ * @param deduplicated        calls that shared the reply of an identical call already in flight
+ */
+public record OllamaStageMetrics(
+        String model,
+        String stage,
+        long generations,
+        long promptTokens,
+        long evalTokens,
+        double prefillTokensPerSecond,
+        double decodeTokensPerSecond,
+        long modelLoads,
+        double totalLoadMillis,
+        double maxLoadMillis,
+        double totalMillis,
+        long singlePassSuccesses,
+        long singlePassFallbacks,
+        long retries,
+        long hedgedRequests,
+        long hedgeWins,
+        long deduplicated
+) {}
@@ -0,0 +1,61 @@
+package com.chriswininger.ollama;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Receives a streamed generation as it is produced. Callbacks run on the transport's executor, in
+ * order, one at a time. Throwing from a callback aborts the generation and fails the call with
+ * that exception.
+ */
+public interface OllamaStreamListener {
+
+    default void onThinking(final String delta) {}
+
+    default void onContent(final String delta) {}
+
+    default void onComplete(final OllamaGenerationStats stats) {}
+
+    static OllamaStreamListener noop() {
+        return new OllamaStreamListener() {};
+    }
+
+    /**
+     * Logs how much has been generated roughly every {@code everyChars} characters, so a long
+     * generation shows progress instead of going silent until it finishes.
+     */
+    static OllamaStreamListener progressLogger(final String label, final int everyChars) {
+        final Logger log = Logger.getLogger(OllamaStreamListener.class);
+
+        return new OllamaStreamListener() {
+            private long thinkingChars;
+            private long contentChars;
+            private long nextReport = everyChars;
+
+            @Override
+            public void onThinking(final String delta) {
+                thinkingChars += delta.length();
+                report();
+            }
+
+            @Override
+            public void onContent(final String delta) {
+                contentChars += delta.length();
+                report();
+            }
+
+            @Override
+            public void onComplete(final OllamaGenerationStats stats) {
+                log.infof("(%s) generation complete: %d tokens at %.1f tokens/s",
+                        label, stats.evalCount(), stats.decodeTokensPerSecond());
+            }
+
+            private void report() {
+                if (thinkingChars + contentChars >= nextReport) {
+                    log.infof("(%s) generated %d thinking / %d content characters so far",
+                            label, thinkingChars, contentChars);
+                    nextReport += everyChars;
+                }
+            }
+        };
+    }
+}
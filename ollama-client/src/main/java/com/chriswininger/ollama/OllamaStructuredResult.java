@@ -0,0 +1,10 @@
+package com.chriswininger.ollama;
+
+/**
+ * Parsed structured output of a chat call, together with the server's generation stats
+ */
+public record OllamaStructuredResult<T extends Record>(
+        T value,
+        String thinking,
+        OllamaGenerationStats stats
+) {}
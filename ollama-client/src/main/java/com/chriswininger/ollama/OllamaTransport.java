@@ -0,0 +1,497 @@
+package com.chriswininger.ollama;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One long-lived HTTP transport shared by every {@link OllamaApiService}.
+ * <p>
+ * Owns a single {@link HttpClient} (and therefore a single connection pool and selector thread)
+ * so that consecutive inference calls reuse kept-alive connections instead of paying for a new
+ * client and TCP handshake each time. Concurrent exchanges are capped per host, which for
+ * HTTP/1.1 also caps the number of open connections to each Ollama server. Requests beyond the
+ * cap wait in a bounded FIFO queue; that wait does not count toward the request timeout.
+ * <p>
+ * With adaptive concurrency on, the per-host cap is a ceiling and the cap actually applied moves
+ * between the configured minimum and that ceiling, driven by the latency and throughput reported
+ * through {@link #onGeneration}, see {@link AdaptiveConcurrencyLimit}.
+ * <p>
+ * Queued requests are served by {@link OllamaPriority}, see {@link InFlightLimiter}. That only
+ * has an effect when requests actually queue here, so for priorities to matter the per-host cap
+ * should not be far above the number of requests the server runs in parallel
+ * ({@code OLLAMA_NUM_PARALLEL}); otherwise they queue inside Ollama instead, first come first
+ * served.
+ */
+public class OllamaTransport implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(OllamaTransport.class);
+
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String KEEP_ALIVE_H2_PROPERTY = "jdk.httpclient.keepalive.timeout.h2";
+
+    private static volatile OllamaTransport defaultTransport;
+
+    private final HttpClient httpClient;
+    private final ExecutorService ownedExecutor;
+    private final int maxConnectionsPerHost;
+    private final int maxQueuedRequestsPerHost;
+    private final boolean adaptiveConcurrency;
+    private final int minConnectionsPerHost;
+    private final Map<OllamaPriority, Integer> priorityWeights;
+    private final Duration starvationThreshold;
+    private final Map<String, InFlightLimiter> hosts = new ConcurrentHashMap<>();
+    private final Map<String, AdaptiveConcurrencyLimit> adaptiveLimits = new ConcurrentHashMap<>();
+
+    private final LongAdder totalRequests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder permitWaits = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private OllamaTransport(final Builder builder) {
+        if (Objects.nonNull(builder.keepAlive)) {
+            // the JDK client only reads these once, when its first instance is created
+            setIfAbsent(KEEP_ALIVE_PROPERTY, builder.keepAlive);
+            setIfAbsent(KEEP_ALIVE_H2_PROPERTY, builder.keepAlive);
+        }
+
+        this.ownedExecutor = Objects.isNull(builder.executor)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : null;
+        this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+        this.maxQueuedRequestsPerHost = builder.maxQueuedRequestsPerHost;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.minConnectionsPerHost = Math.min(builder.minConnectionsPerHost, builder.maxConnectionsPerHost);
+        this.priorityWeights = Map.copyOf(builder.priorityWeights);
+        this.starvationThreshold = builder.starvationThreshold;
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(builder.connectTimeout)
+                .version(builder.version)
+                .executor(Objects.nonNull(ownedExecutor) ? ownedExecutor : builder.executor)
+                .build();
+
+        LOG.infof("(OllamaTransport) created: version=%s, connectTimeout=%s, maxConnectionsPerHost=%d, "
+                        + "maxQueuedRequestsPerHost=%d, keepAlive=%s, adaptiveConcurrency=%s (min %d), "
+                        + "priorityWeights=%s, starvationThreshold=%s",
+                builder.version, builder.connectTimeout, maxConnectionsPerHost, maxQueuedRequestsPerHost,
+                builder.keepAlive, adaptiveConcurrency, minConnectionsPerHost, builder.priorityWeights,
+                starvationThreshold);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Process-wide transport used by {@link OllamaApiService} instances that were not handed one
+     * explicitly, so even those share a single connection pool.
+     */
+    public static OllamaTransport defaultTransport() {
+        if (defaultTransport == null) {
+            synchronized (OllamaTransport.class) {
+                if (defaultTransport == null) {
+                    defaultTransport = builder().build();
+                }
+            }
+        }
+        return defaultTransport;
+    }
+
+    public <T> HttpResponse<T> send(
+            final HttpRequest request,
+            final HttpResponse.BodyHandler<T> bodyHandler
+    ) throws IOException, InterruptedException {
+        return send(request, bodyHandler, OllamaPriority.NORMAL);
+    }
+
+    /**
+     * As {@link #send(HttpRequest, HttpResponse.BodyHandler)}, queueing for a slot as
+     * {@code priority}
+     */
+    public <T> HttpResponse<T> send(
+            final HttpRequest request,
+            final HttpResponse.BodyHandler<T> bodyHandler,
+            final OllamaPriority priority
+    ) throws IOException, InterruptedException {
+        final InFlightLimiter limiter = limiterFor(request);
+        acquireBlocking(limiter, priority);
+
+        onStart();
+        try {
+            final HttpResponse<T> response = httpClient.send(request, bodyHandler);
+            checkOverload(request, response, null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            failedRequests.increment();
+            checkOverload(request, null, e);
+            throw e;
+        } finally {
+            onFinish();
+            limiter.release();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #send}. Waiting for a free per-host slot does not hold a
+     * thread, and cancelling (or timing out) the returned future either withdraws the request
+     * from the queue or aborts the exchange in progress.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            final HttpRequest request,
+            final HttpResponse.BodyHandler<T> bodyHandler
+    ) {
+        return sendAsync(request, bodyHandler, OllamaPriority.NORMAL);
+    }
+
+    /**
+     * As {@link #sendAsync(HttpRequest, HttpResponse.BodyHandler)}, queueing for a slot as
+     * {@code priority}
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            final HttpRequest request,
+            final HttpResponse.BodyHandler<T> bodyHandler,
+            final OllamaPriority priority
+    ) {
+        final InFlightLimiter limiter = limiterFor(request);
+        final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        final AtomicReference<CompletableFuture<HttpResponse<T>>> exchange = new AtomicReference<>();
+
+        final CompletableFuture<Void> permit = limiter.acquire(priority);
+        if (!permit.isDone()) {
+            permitWaits.increment();
+        }
+
+        // propagate cancellation / orTimeout of the caller's future down to the queue or socket
+        result.whenComplete((response, error) -> {
+            if (Objects.nonNull(error)) {
+                permit.cancel(false);
+                final var inProgress = exchange.get();
+                if (Objects.nonNull(inProgress)) {
+                    inProgress.cancel(true);
+                }
+            }
+        });
+
+        permit.whenComplete((ignored, permitError) -> {
+            if (Objects.nonNull(permitError)) {
+                result.completeExceptionally(permitError);
+                return;
+            }
+            if (result.isDone()) {
+                limiter.release();
+                return;
+            }
+
+            onStart();
+            final CompletableFuture<HttpResponse<T>> inProgress = httpClient.sendAsync(request, bodyHandler);
+            exchange.set(inProgress);
+            if (result.isDone()) {
+                inProgress.cancel(true);
+            }
+
+            inProgress.whenComplete((response, error) -> {
+                onFinish();
+                limiter.release();
+                checkOverload(request, response, error);
+                if (Objects.nonNull(error)) {
+                    failedRequests.increment();
+                    result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+
+        return result;
+    }
+
+    /**
+     * Reports a finished generation so an adaptive per-host limit can react to it. Does nothing
+     * unless adaptive concurrency is on.
+     *
+     * @param timeToFirstTokenNanos from sending the request to the first token, excluding any
+     *                              wait for a transport slot
+     */
+    public void onGeneration(final URI uri, final long timeToFirstTokenNanos, final OllamaGenerationStats stats) {
+        if (!adaptiveConcurrency || timeToFirstTokenNanos < 0) {
+            return;
+        }
+
+        final String host = uri.getAuthority();
+        final InFlightLimiter limiter = hosts.get(host);
+        final AdaptiveConcurrencyLimit adaptive = adaptiveLimits.get(host);
+        if (Objects.isNull(limiter) || Objects.isNull(adaptive)) {
+            return;
+        }
+
+        final double latencyPerPromptToken = (double) timeToFirstTokenNanos / Math.max(1L, stats.promptEvalCount());
+        // this generation has already given its slot back
+        final int concurrency = limiter.inUse() + 1;
+        applyLimit(host, limiter, adaptive.onSample(latencyPerPromptToken, stats.decodeTokensPerSecond(), concurrency));
+    }
+
+    public HttpClient httpClient() {
+        return httpClient;
+    }
+
+    public int maxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public OllamaTransportStats stats() {
+        final Map<String, OllamaTransportStats.HostStats> hostStats = new TreeMap<>();
+        hosts.forEach((host, limiter) -> hostStats.put(host, new OllamaTransportStats.HostStats(
+                limiter.limit(),
+                limiter.inUse(),
+                limiter.queued(),
+                limiter.completed(),
+                limiter.rejected()
+        )));
+
+        final Map<OllamaPriority, InFlightLimiter.ClassCounters> totals = new EnumMap<>(OllamaPriority.class);
+        hosts.values().forEach(limiter -> limiter.counters().forEach((priority, counters) ->
+                totals.computeIfAbsent(priority, p -> new InFlightLimiter.ClassCounters()).add(counters)));
+        final Map<OllamaPriority, OllamaTransportStats.PriorityStats> priorityStats = new EnumMap<>(OllamaPriority.class);
+        for (final OllamaPriority priority : OllamaPriority.values()) {
+            final InFlightLimiter.ClassCounters counters =
+                    totals.getOrDefault(priority, new InFlightLimiter.ClassCounters());
+            priorityStats.put(priority, new OllamaTransportStats.PriorityStats(
+                    priorityWeights.getOrDefault(priority, priority.defaultWeight()),
+                    counters.waiting,
+                    counters.granted,
+                    counters.starved,
+                    counters.granted > 0 ? counters.waitNanos / 1_000_000d / counters.granted : 0d,
+                    counters.maxWaitNanos / 1_000_000d
+            ));
+        }
+
+        return new OllamaTransportStats(
+                maxConnectionsPerHost,
+                adaptiveConcurrency,
+                totalRequests.sum(),
+                failedRequests.sum(),
+                permitWaits.sum(),
+                inFlight.get(),
+                peakInFlight.get(),
+                hostStats,
+                priorityStats
+        );
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+        if (Objects.nonNull(ownedExecutor)) {
+            ownedExecutor.close();
+        }
+    }
+
+    private InFlightLimiter limiterFor(final HttpRequest request) {
+        final String host = request.uri().getAuthority();
+        return hosts.computeIfAbsent(host, h -> {
+            if (!adaptiveConcurrency) {
+                return newLimiter(maxConnectionsPerHost);
+            }
+
+            // start half way up and let the samples move it
+            final AdaptiveConcurrencyLimit adaptive = new AdaptiveConcurrencyLimit(
+                    minConnectionsPerHost,
+                    maxConnectionsPerHost,
+                    Math.max(minConnectionsPerHost, maxConnectionsPerHost / 2));
+            adaptiveLimits.put(h, adaptive);
+            return newLimiter(adaptive.limit());
+        });
+    }
+
+    private InFlightLimiter newLimiter(final int limit) {
+        return new InFlightLimiter(limit, maxQueuedRequestsPerHost, priorityWeights, starvationThreshold, System::nanoTime);
+    }
+
+    /**
+     * A request timeout or a 503 (Ollama's answer when its own queue is full) means the host is
+     * overloaded, back the adaptive limit off
+     */
+    private void checkOverload(final HttpRequest request, final HttpResponse<?> response, final Throwable error) {
+        if (!adaptiveConcurrency) {
+            return;
+        }
+
+        final Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        final boolean overloaded = (cause instanceof HttpTimeoutException && !(cause instanceof HttpConnectTimeoutException))
+                || (Objects.nonNull(response) && response.statusCode() == 503);
+        if (!overloaded) {
+            return;
+        }
+
+        final String host = request.uri().getAuthority();
+        final AdaptiveConcurrencyLimit adaptive = adaptiveLimits.get(host);
+        if (Objects.nonNull(adaptive)) {
+            applyLimit(host, hosts.get(host), adaptive.onDrop());
+        }
+    }
+
+    private void applyLimit(final String host, final InFlightLimiter limiter, final int newLimit) {
+        final int previous = limiter.limit();
+        if (newLimit != previous) {
+            LOG.debugf("(OllamaTransport) %s concurrency limit %d -> %d", host, previous, newLimit);
+            limiter.setLimit(newLimit);
+        }
+    }
+
+    private void acquireBlocking(final InFlightLimiter limiter, final OllamaPriority priority)
+            throws InterruptedException {
+        // the adaptive limit can sit below maxConnectionsPerHost, a caller waits once the current one is used up
+        if (limiter.inUse() >= limiter.limit()) {
+            permitWaits.increment();
+        }
+        limiter.acquireBlocking(priority);
+    }
+
+    private void onStart() {
+        totalRequests.increment();
+        final int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+    }
+
+    private void onFinish() {
+        inFlight.decrementAndGet();
+    }
+
+    private static void setIfAbsent(final String property, final Duration value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, Long.toString(value.toSeconds()));
+        }
+    }
+
+    public static class Builder {
+        private Duration connectTimeout = Duration.ofSeconds(30);
+        private Duration keepAlive = Duration.ofMinutes(5);
+        private HttpClient.Version version = HttpClient.Version.HTTP_1_1;
+        private Executor executor;
+        private int maxConnectionsPerHost = 8;
+        private int maxQueuedRequestsPerHost = 1024;
+        private boolean adaptiveConcurrency;
+        private int minConnectionsPerHost = 1;
+        private final Map<OllamaPriority, Integer> priorityWeights = new EnumMap<>(OllamaPriority.class);
+        private Duration starvationThreshold = Duration.ofSeconds(60);
+
+        private Builder() {}
+
+        public Builder connectTimeout(final Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * How long idle connections stay in the pool. Applied through the JDK's
+         * {@code jdk.httpclient.keepalive.timeout} properties unless they were already set.
+         */
+        public Builder keepAlive(final Duration keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * {@link HttpClient.Version#HTTP_2} is negotiated over TLS or via h2c upgrade and falls
+         * back to HTTP/1.1 when the server does not support it.
+         */
+        public Builder version(final HttpClient.Version version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Executor for the client's response handling. Defaults to virtual threads; an injected
+         * executor is not shut down by {@link OllamaTransport#close()}.
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder maxConnectionsPerHost(final int maxConnectionsPerHost) {
+            if (maxConnectionsPerHost < 1) {
+                throw new IllegalArgumentException("maxConnectionsPerHost must be at least 1");
+            }
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Requests waiting for a per-host slot beyond this are rejected with a
+         * {@link java.util.concurrent.RejectedExecutionException} instead of queueing without bound.
+         */
+        public Builder maxQueuedRequestsPerHost(final int maxQueuedRequestsPerHost) {
+            if (maxQueuedRequestsPerHost < 0) {
+                throw new IllegalArgumentException("maxQueuedRequestsPerHost must not be negative");
+            }
+            this.maxQueuedRequestsPerHost = maxQueuedRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Let the per-host cap adapt to observed latency and throughput between
+         * {@link #minConnectionsPerHost} and {@link #maxConnectionsPerHost}, instead of holding
+         * it at the maximum.
+         */
+        public Builder adaptiveConcurrency(final boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        public Builder minConnectionsPerHost(final int minConnectionsPerHost) {
+            if (minConnectionsPerHost < 1) {
+                throw new IllegalArgumentException("minConnectionsPerHost must be at least 1");
+            }
+            this.minConnectionsPerHost = minConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Share of the slots {@code priority} gets relative to the other classes while requests
+         * queue, see {@link OllamaPriority}
+         */
+        public Builder priorityWeight(final OllamaPriority priority, final int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight must be at least 1");
+            }
+            this.priorityWeights.put(priority, weight);
+            return this;
+        }
+
+        /**
+         * A request queued longer than this is let through next whatever its priority, so bulk
+         * work keeps moving under a steady stream of interactive calls
+         */
+        public Builder starvationThreshold(final Duration starvationThreshold) {
+            this.starvationThreshold = starvationThreshold;
+            return this;
+        }
+
+        public OllamaTransport build() {
+            return new OllamaTransport(this);
+        }
+    }
+}
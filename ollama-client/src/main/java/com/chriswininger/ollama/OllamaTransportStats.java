@@ -0,0 +1,48 @@
+package com.chriswininger.ollama;
+
+import java.util.Map;
+
+/**
+ * Point-in-time snapshot of {@link OllamaTransport} usage
+ *
+ * @param priorities queueing per {@link OllamaPriority}, summed over hosts
+ */
+public record OllamaTransportStats(
+        int maxConnectionsPerHost,
+        boolean adaptiveConcurrency,
+        long totalRequests,
+        long failedRequests,
+        long permitWaits,
+        int inFlight,
+        int peakInFlight,
+        Map<String, HostStats> hosts,
+        Map<OllamaPriority, PriorityStats> priorities
+) {
+    /**
+     * @param limit   concurrent requests currently allowed to this host
+     * @param waiting requests queued client side for a slot
+     */
+    public record HostStats(
+            int limit,
+            int inFlight,
+            int waiting,
+            long completed,
+            long rejected
+    ) {}
+
+    /**
+     * @param waiting        requests of this class queued client side right now
+     * @param granted        slots handed to this class, queued or not
+     * @param starved        slots handed over only because the request had waited past the
+     *                       starvation threshold
+     * @param meanWaitMillis mean time from asking for a slot to getting one
+     */
+    public record PriorityStats(
+            int weight,
+            int waiting,
+            long granted,
+            long starved,
+            double meanWaitMillis,
+            double maxWaitMillis
+    ) {}
+}
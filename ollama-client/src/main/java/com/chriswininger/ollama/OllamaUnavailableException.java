@@ -0,0 +1,12 @@
+package com.chriswininger.ollama;
+
+/**
+ * No backend that serves the model will take a request right now, every one of them has its
+ * circuit breaker open. Thrown straight away rather than after a timeout.
+ */
+public class OllamaUnavailableException extends IllegalStateException {
+
+    public OllamaUnavailableException(final String model) {
+        super("Every Ollama backend serving " + model + " is failing, not sending the request");
+    }
+}
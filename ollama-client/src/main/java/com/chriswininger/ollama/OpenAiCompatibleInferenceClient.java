@@ -0,0 +1,450 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link InferenceClient} for servers that speak OpenAI's {@code /v1/chat/completions}, such as
+ * llama.cpp's {@code llama-server} or vLLM. Both batch the sequences of concurrent requests into
+ * one forward pass (llama.cpp across its {@code --parallel} slots), so unlike Ollama the
+ * throughput of a backend grows with the number of requests kept in flight; size the transport's
+ * per-host limit to the slot count.
+ * <p>
+ * Backends, circuit breakers and priority queueing come from the same {@link OllamaBackendPool}
+ * and {@link OllamaTransport} the Ollama client uses; give the pool no probe interval, these
+ * servers have no {@code /api/tags}. Structured calls send the record's
+ * {@link InferenceClient#buildFormatBlock} schema as a {@code json_schema} {@code response_format}.
+ * Thinking is switched with {@code chat_template_kwargs.enable_thinking} and read back from
+ * {@code reasoning_content}. Generation stats are filled from {@code usage} and, where the server
+ * reports them, llama.cpp's {@code timings}.
+ * <p>
+ * There is no response cache, context sizing or retry policy here: the server's context is
+ * fixed when it starts, and a failed call fails. Identical calls in flight at the same time are
+ * coalesced into one, as they are by {@link OllamaApiService}.
+ */
+public class OpenAiCompatibleInferenceClient implements InferenceClient {
+
+    private static final Logger LOG = Logger.getLogger(OpenAiCompatibleInferenceClient.class);
+
+    private static final String DEFAULT_STAGE = "default";
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final OllamaBackendPool backends;
+    private final OllamaTransport transport;
+    private final String modelName;
+    private final int timeoutSeconds;
+    private final String apiKey;
+    private final boolean verboseRequestLogging;
+    private final String stage;
+    private final OllamaPriority priority;
+    private final ObjectMapper objectMapper;
+    private final InferenceSchemaRegistry schemas;
+    private final OllamaGenerationMetrics generationMetrics;
+    private final SingleFlight<FlightKey, Object> flights;
+
+    /**
+     * @param apiKey sent as a bearer token, or {@code null} for servers that do not check one
+     */
+    public OpenAiCompatibleInferenceClient(
+            final OllamaBackendPool backends,
+            final String modelName,
+            final int timeoutSeconds,
+            final String apiKey,
+            final boolean verboseRequestLogging
+    ) {
+        this.backends = backends;
+        this.transport = backends.transport();
+        this.modelName = modelName;
+        this.timeoutSeconds = timeoutSeconds;
+        this.apiKey = apiKey;
+        this.verboseRequestLogging = verboseRequestLogging;
+        this.stage = DEFAULT_STAGE;
+        this.priority = OllamaPriority.NORMAL;
+        this.objectMapper = new ObjectMapper();
+        this.schemas = new InferenceSchemaRegistry(objectMapper);
+        this.generationMetrics = new OllamaGenerationMetrics();
+        this.flights = new SingleFlight<>();
+    }
+
+    private OpenAiCompatibleInferenceClient(
+            final OpenAiCompatibleInferenceClient source,
+            final String stage,
+            final OllamaPriority priority
+    ) {
+        this.backends = source.backends;
+        this.transport = source.transport;
+        this.modelName = source.modelName;
+        this.timeoutSeconds = source.timeoutSeconds;
+        this.apiKey = source.apiKey;
+        this.verboseRequestLogging = source.verboseRequestLogging;
+        this.stage = stage;
+        this.priority = priority;
+        this.objectMapper = source.objectMapper;
+        this.schemas = source.schemas;
+        this.generationMetrics = source.generationMetrics;
+        this.flights = source.flights;
+    }
+
+    @Override
+    public OpenAiCompatibleInferenceClient withStage(final String stage) {
+        return new OpenAiCompatibleInferenceClient(this, stage, priority);
+    }
+
+    @Override
+    public OpenAiCompatibleInferenceClient withPriority(final OllamaPriority priority) {
+        return new OpenAiCompatibleInferenceClient(this, stage, priority);
+    }
+
+    @Override
+    public OllamaGenerationMetrics generationMetrics() {
+        return generationMetrics;
+    }
+
+    @Override
+    public CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseWithStatsAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think
+    ) {
+        final OllamaRequestBody body;
+        try {
+            body = buildBody(systemPrompt, userMessage, think, null, false);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchangeAsync(body, String.class, completion -> new OllamaChatResult(
+                completion.content(), completion.thinking(), completion.stats()));
+    }
+
+    /**
+     * The request timeout only covers the wait for the first byte; bound the total time with
+     * {@code orTimeout} on the returned future if needed.
+     */
+    @Override
+    public CompletableFuture<OllamaChatResult> callOllamaPlainTextResponseStreamingAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final int maxOutputChars,
+            final OllamaStreamListener listener
+    ) {
+        final OllamaRequestBody body;
+        final OllamaBackend backend;
+        try {
+            body = buildBody(systemPrompt, userMessage, think, null, true);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            backend = backends.acquire(modelName);
+        } catch (IllegalStateException e) {
+            body.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final long start = System.nanoTime();
+        final OpenAiStreamParser parser = new OpenAiStreamParser(objectMapper, listener, maxOutputChars, start);
+        final HttpResponse.BodyHandler<Void> bodyHandler = responseInfo -> responseInfo.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(parser)
+                : HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        error -> {
+                            throw new OllamaHttpException(responseInfo.statusCode(), error);
+                        });
+
+        final ExchangeTimer timer = new ExchangeTimer();
+        final HttpRequest request = buildRequest(backend, body, timer);
+        final CompletableFuture<HttpResponse<Void>> exchange =
+                transport.sendAsync(request, timer.handler(bodyHandler), priority);
+        exchange.whenComplete((response, error) -> body.release());
+        final CompletableFuture<OllamaChatResult> result = parser.outcome();
+
+        exchange.whenComplete((response, error) -> {
+            if (Objects.nonNull(error)) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        // the parser stops reading on an error or the output cap, closing the exchange ends the generation
+        result.whenComplete((value, error) -> {
+            backends.release(backend, start, error);
+            if (Objects.nonNull(error)) {
+                exchange.cancel(true);
+            } else {
+                recordStats(value.stats());
+                transport.onGeneration(request.uri(), timer.timeToHeadersNanos(), value.stats());
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public <T extends Record> CompletableFuture<OllamaStructuredResult<T>> callOllamaStructuredResponseWithStatsAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass
+    ) {
+        final InferenceSchema<T> schema = schemas.schemaFor(recordClass);
+        final OllamaRequestBody body;
+        try {
+            body = buildBody(systemPrompt, userMessage, think, schema, false);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchangeAsync(body, recordClass, completion -> new OllamaStructuredResult<>(
+                schema.read(completion.content()), completion.thinking(), completion.stats()));
+    }
+
+    @Override
+    public <T extends Record> T callOllamaSinglePass(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass,
+            final Predicate<T> validator,
+            final Fallback<T> fallback
+    ) throws IOException, InterruptedException {
+        return singlePass(recordClass, validator).call(
+                () -> callOllamaStructuredResponse(systemPrompt, userMessage, think, recordClass),
+                fallback);
+    }
+
+    @Override
+    public <T extends Record> CompletableFuture<T> callOllamaSinglePassAsync(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final Class<T> recordClass,
+            final Predicate<T> validator,
+            final Supplier<CompletableFuture<T>> fallback
+    ) {
+        return singlePass(recordClass, validator).callAsync(
+                callOllamaStructuredResponseAsync(systemPrompt, userMessage, think, recordClass),
+                fallback);
+    }
+
+    @Override
+    public <T extends Record> InferenceSchema<T> schemaFor(final Class<T> recordClass) {
+        return schemas.schemaFor(recordClass);
+    }
+
+    private <T extends Record> SinglePassFlow<T> singlePass(final Class<T> recordClass, final Predicate<T> validator) {
+        return new SinglePassFlow<>(schemas.schemaFor(recordClass), validator, generationMetrics, modelName, stage);
+    }
+
+    /**
+     * Shares the reply of an identical call already in flight, see {@link SingleFlight}, or sends
+     * the request. Only calls of the same stage and priority share one, so nothing waits behind a
+     * lower-priority call and each stage's generation stats count its own calls.
+     *
+     * @param resultType what the reply binds to, two calls only share a flight when it matches
+     */
+    @SuppressWarnings("unchecked")
+    private <R> CompletableFuture<R> exchangeAsync(
+            final OllamaRequestBody body,
+            final Class<?> resultType,
+            final CompletionMapper<R> mapper
+    ) {
+        return ((SingleFlight<FlightKey, R>) (SingleFlight<FlightKey, ?>) flights).call(
+                new FlightKey(body.cacheKey(), resultType, stage, priority),
+                () -> exchangeAsync(body, mapper),
+                () -> {
+                    body.release();
+                    generationMetrics.recordDeduplicated(modelName, stage);
+                });
+    }
+
+    /**
+     * One non-streamed exchange. Cancelling or timing out the returned future aborts it.
+     */
+    private <R> CompletableFuture<R> exchangeAsync(final OllamaRequestBody body, final CompletionMapper<R> mapper) {
+        final OllamaBackend backend;
+        try {
+            backend = backends.acquire(modelName);
+        } catch (IllegalStateException e) {
+            body.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final long start = System.nanoTime();
+        final ExchangeTimer timer = new ExchangeTimer();
+        final HttpRequest request = buildRequest(backend, body, timer);
+        final CompletableFuture<HttpResponse<byte[]>> exchange =
+                transport.sendAsync(request, timer.handler(HttpResponse.BodyHandlers.ofByteArray()), priority);
+        exchange.whenComplete((response, error) -> body.release());
+
+        final CompletableFuture<R> result = exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new OllamaHttpException(response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+            }
+            try {
+                final Completion completion = readCompletion(response.body(), System.nanoTime() - start);
+                // recorded even when the content then fails to bind
+                recordStats(completion.stats());
+                final long timeToHeaders = timer.timeToHeadersNanos();
+                if (timeToHeaders >= 0) {
+                    transport.onGeneration(request.uri(),
+                            Math.max(0L, timeToHeaders - completion.stats().evalDuration()), completion.stats());
+                }
+                return mapper.apply(completion);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // a dependent stage does not cancel its source, so hand cancellation/timeouts back explicitly
+        result.whenComplete((value, error) -> {
+            backends.release(backend, start, error);
+            if (Objects.nonNull(error)) {
+                exchange.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    private Completion readCompletion(final byte[] body, final long elapsedNanos) throws IOException {
+        final JsonNode response = objectMapper.readTree(body);
+        if (response.hasNonNull("error")) {
+            throw new IOException("Server returned error: " + response.path("error"));
+        }
+
+        final JsonNode message = response.path("choices").path(0).path("message");
+        if (message.isMissingNode()) {
+            throw new IOException("Response has no choices[0].message");
+        }
+
+        final String thinking = message.path("reasoning_content").asText("");
+        if (!thinking.isEmpty()) {
+            LOG.debugf("""
+                    ===== Thinking ====
+                    %s
+                    ===================
+                    """, thinking);
+        }
+
+        return new Completion(message.path("content").asText(""), thinking,
+                stats(response.get("usage"), response.get("timings"), elapsedNanos));
+    }
+
+    /**
+     * Generation stats in Ollama's shape. Durations only come from llama.cpp's {@code timings};
+     * without them throughput reads as zero, which the adaptive limit treats as no sample.
+     */
+    static OllamaGenerationStats stats(final JsonNode usage, final JsonNode timings, final long elapsedNanos) {
+        final JsonNode u = Objects.isNull(usage) ? MissingNode.getInstance() : usage;
+        final JsonNode t = Objects.isNull(timings) ? MissingNode.getInstance() : timings;
+        return new OllamaGenerationStats(
+                elapsedNanos,
+                0L,
+                u.path("prompt_tokens").asLong(t.path("prompt_n").asLong()),
+                Math.round(t.path("prompt_ms").asDouble() * NANOS_PER_MILLI),
+                u.path("completion_tokens").asLong(t.path("predicted_n").asLong()),
+                Math.round(t.path("predicted_ms").asDouble() * NANOS_PER_MILLI)
+        );
+    }
+
+    private void recordStats(final OllamaGenerationStats stats) {
+        generationMetrics.record(modelName, stage, stats);
+        LOG.debugf("(OpenAiCompatibleInferenceClient) %s/%s: %d prompt tokens at %.1f/s, %d tokens at %.1f/s",
+                modelName, stage, stats.promptEvalCount(), stats.prefillTokensPerSecond(),
+                stats.evalCount(), stats.decodeTokensPerSecond());
+    }
+
+    private HttpRequest buildRequest(final OllamaBackend backend, final OllamaRequestBody body, final ExchangeTimer timer) {
+        final HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(backend.baseUrl() + "/v1/chat/completions"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .POST(timer.publisher(body.publisher()));
+        if (Objects.nonNull(apiKey) && !apiKey.isBlank()) {
+            request.header("Authorization", "Bearer " + apiKey);
+        }
+        return request.build();
+    }
+
+    private OllamaRequestBody buildBody(
+            final CharSequence systemPrompt,
+            final CharSequence userMessage,
+            final boolean think,
+            final InferenceSchema<?> schema,
+            final boolean stream
+    ) throws IOException {
+        // hashed so identical calls in flight can be coalesced
+        final OllamaRequestBody body = OllamaRequestBody.write(true, json -> {
+            json.writeStartObject();
+            json.writeStringField("model", modelName);
+            json.writeBooleanField("stream", stream);
+            if (stream) {
+                json.writeObjectFieldStart("stream_options");
+                json.writeBooleanField("include_usage", true);
+                json.writeEndObject();
+            }
+
+            json.writeObjectFieldStart("chat_template_kwargs");
+            json.writeBooleanField("enable_thinking", think);
+            json.writeEndObject();
+
+            if (Objects.nonNull(schema)) {
+                json.writeObjectFieldStart("response_format");
+                json.writeStringField("type", "json_schema");
+                json.writeObjectFieldStart("json_schema");
+                json.writeStringField("name", schema.recordClass().getSimpleName());
+                json.writeFieldName("schema");
+                json.writeRawValue(schema.formatJson());
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+
+            json.writeArrayFieldStart("messages");
+            writeMessage(json, "system", systemPrompt);
+            writeMessage(json, "user", userMessage);
+            json.writeEndArray();
+
+            json.writeEndObject();
+        });
+
+        if (verboseRequestLogging) {
+            LOG.infof("OPENAI request payload\n\n==========\n%s\n===========", body);
+        }
+        return body;
+    }
+
+    private static void writeMessage(final JsonGenerator json, final String role, final CharSequence content)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("role", role);
+        json.writeFieldName("content");
+        OllamaRequestBody.writeString(json, content);
+        json.writeEndObject();
+    }
+
+    private record Completion(String content, String thinking, OllamaGenerationStats stats) {}
+
+    private record FlightKey(String requestHash, Class<?> resultType, String stage, OllamaPriority priority) {}
+
+    @FunctionalInterface
+    private interface CompletionMapper<R> {
+        R apply(Completion completion) throws JsonProcessingException;
+    }
+}
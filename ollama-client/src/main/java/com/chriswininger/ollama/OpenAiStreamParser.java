@@ -0,0 +1,116 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Consumes an OpenAI-compatible {@code stream: true} server-sent event response line by line,
+ * forwarding {@code reasoning_content} and {@code content} deltas to a listener as they arrive and
+ * completing {@link #outcome()} once {@code data: [DONE]} has been read. The usage chunk requested
+ * with {@code stream_options.include_usage} comes just before it.
+ */
+class OpenAiStreamParser implements Flow.Subscriber<String> {
+
+    private static final String DATA = "data:";
+    private static final String DONE = "[DONE]";
+
+    private final ObjectMapper objectMapper;
+    private final OllamaStreamListener listener;
+    private final int maxOutputChars;
+    private final long startNanos;
+
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder thinking = new StringBuilder();
+    private final CompletableFuture<OllamaChatResult> outcome = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+    private JsonNode usage;
+    private JsonNode timings;
+
+    OpenAiStreamParser(
+            final ObjectMapper objectMapper,
+            final OllamaStreamListener listener,
+            final int maxOutputChars,
+            final long startNanos
+    ) {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        this.maxOutputChars = maxOutputChars;
+        this.startNanos = startNanos;
+    }
+
+    CompletableFuture<OllamaChatResult> outcome() {
+        return outcome;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final String line) {
+        // blank lines separate events, anything else (comments, event names) carries nothing we use
+        if (outcome.isDone() || !line.startsWith(DATA)) {
+            return;
+        }
+
+        final String data = line.substring(DATA.length()).trim();
+        try {
+            if (DONE.equals(data)) {
+                final OllamaGenerationStats stats =
+                        OpenAiCompatibleInferenceClient.stats(usage, timings, System.nanoTime() - startNanos);
+                listener.onComplete(stats);
+                outcome.complete(new OllamaChatResult(content.toString(), thinking.toString(), stats));
+                return;
+            }
+
+            final JsonNode chunk = objectMapper.readTree(data);
+            if (chunk.hasNonNull("error")) {
+                throw new RuntimeException("Server returned error: " + chunk.path("error"));
+            }
+            if (chunk.hasNonNull("usage")) {
+                usage = chunk.get("usage");
+            }
+            if (chunk.hasNonNull("timings")) {
+                timings = chunk.get("timings");
+            }
+
+            final JsonNode delta = chunk.path("choices").path(0).path("delta");
+            final String thinkingDelta = delta.path("reasoning_content").asText("");
+            if (!thinkingDelta.isEmpty()) {
+                thinking.append(thinkingDelta);
+                listener.onThinking(thinkingDelta);
+            }
+
+            final String contentDelta = delta.path("content").asText("");
+            if (!contentDelta.isEmpty()) {
+                content.append(contentDelta);
+                listener.onContent(contentDelta);
+            }
+
+            if (content.length() + thinking.length() > maxOutputChars) {
+                throw new OllamaOutputLimitException(maxOutputChars);
+            }
+        } catch (IOException | RuntimeException e) {
+            // stop reading; the caller cancels the exchange once the outcome fails
+            outcome.completeExceptionally(e);
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        outcome.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        outcome.completeExceptionally(new IOException("Stream ended before data: [DONE]"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.chriswininger.ollama;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical calls that are in flight at the same time: the first one for a key is
+ * sent, the ones that arrive before it finishes get its result instead of sending their own.
+ * Keys are request hashes, see {@link OllamaRequestBody#cacheKey()}; unlike the response cache
+ * nothing is kept once the call completes.
+ * <p>
+ * Every caller gets a future of its own, so one caller cancelling or timing out only drops that
+ * caller. The call itself is cancelled once every caller sharing it has given up.
+ */
+final class SingleFlight<K, V> {
+
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * @param call     starts the call, only run when no identical call is in flight
+     * @param onShared runs for a caller that joined an identical call instead
+     */
+    CompletableFuture<V> call(final K key, final Supplier<CompletableFuture<V>> call, final Runnable onShared) {
+        while (true) {
+            final Flight<V> existing = flights.get(key);
+            if (Objects.nonNull(existing)) {
+                final CompletableFuture<V> joined = existing.join();
+                if (Objects.nonNull(joined)) {
+                    deduplicated.increment();
+                    onShared.run();
+                    return joined;
+                }
+                // everyone sharing it gave up, it is being torn down
+                flights.remove(key, existing);
+                continue;
+            }
+
+            final Flight<V> flight = new Flight<>();
+            final CompletableFuture<V> own = flight.join();
+            if (Objects.nonNull(flights.putIfAbsent(key, flight))) {
+                continue;
+            }
+
+            CompletableFuture<V> source;
+            try {
+                source = call.get();
+            } catch (RuntimeException e) {
+                source = CompletableFuture.failedFuture(e);
+            }
+            flight.start(source, () -> flights.remove(key, flight));
+            return own;
+        }
+    }
+
+    long deduplicated() {
+        return deduplicated.sum();
+    }
+
+    int inFlight() {
+        return flights.size();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+        private CompletableFuture<V> source;
+        private int callers;
+        private boolean abandoned;
+
+        /**
+         * @param onDone runs before anyone sharing the flight sees its result, so a caller that
+         *               calls again from a callback starts a new flight rather than joining this one
+         */
+        void start(final CompletableFuture<V> source, final Runnable onDone) {
+            final boolean cancel;
+            synchronized (this) {
+                this.source = source;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                source.cancel(true);
+            }
+            source.whenComplete((value, error) -> {
+                onDone.run();
+                if (Objects.isNull(error)) {
+                    shared.complete(value);
+                } else {
+                    shared.completeExceptionally(OllamaBackendPool.unwrap(error));
+                }
+            });
+        }
+
+        // null once everyone sharing the flight has given up
+        synchronized CompletableFuture<V> join() {
+            if (abandoned) {
+                return null;
+            }
+            callers++;
+
+            final CompletableFuture<V> own = new CompletableFuture<>();
+            shared.whenComplete((value, error) -> {
+                if (Objects.isNull(error)) {
+                    own.complete(value);
+                } else {
+                    own.completeExceptionally(error);
+                }
+            });
+            // completed before the shared result, so cancelled or timed out by its caller
+            own.whenComplete((value, error) -> {
+                if (!shared.isDone()) {
+                    leave();
+                }
+            });
+            return own;
+        }
+
+        private void leave() {
+            final CompletableFuture<V> toCancel;
+            synchronized (this) {
+                if (--callers > 0 || shared.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                toCancel = source;
+            }
+            if (Objects.nonNull(toCancel)) {
+                toCancel.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The validate-or-fall-back half of {@link InferenceClient#callOllamaSinglePass}, shared by the
+ * implementations, which only differ in how they make the structured call itself
+ */
+final class SinglePassFlow<T extends Record> {
+
+    private static final Logger LOG = Logger.getLogger(SinglePassFlow.class);
+
+    /**
+     * The structured call, without retrying replies that do not parse
+     */
+    @FunctionalInterface
+    interface Attempt<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    private final InferenceSchema<T> schema;
+    private final Predicate<T> validator;
+    private final OllamaGenerationMetrics metrics;
+    private final String model;
+    private final String stage;
+
+    SinglePassFlow(
+            final InferenceSchema<T> schema,
+            final Predicate<T> validator,
+            final OllamaGenerationMetrics metrics,
+            final String model,
+            final String stage
+    ) {
+        this.schema = schema;
+        this.validator = validator;
+        this.metrics = metrics;
+        this.model = model;
+        this.stage = stage;
+    }
+
+    T call(final Attempt<T> attempt, final InferenceClient.Fallback<T> fallback) throws IOException, InterruptedException {
+        final T value;
+        try {
+            value = attempt.call();
+        } catch (JsonProcessingException e) {
+            onRejected(e.getOriginalMessage());
+            return fallback.call();
+        }
+
+        final String rejection = validate(value);
+        if (Objects.nonNull(rejection)) {
+            onRejected(rejection);
+            return fallback.call();
+        }
+
+        metrics.recordSinglePass(model, stage, false);
+        return value;
+    }
+
+    /**
+     * As {@link #call}: the fallback runs at most once, and its own failure, a reply that does not
+     * parse included, is the result. Cancelling the result cancels the attempt or the fallback.
+     */
+    CompletableFuture<T> callAsync(final CompletableFuture<T> attempt, final Supplier<CompletableFuture<T>> fallback) {
+        final CompletableFuture<CompletableFuture<T>> outcome = attempt.handle((value, error) -> {
+            if (Objects.nonNull(error)) {
+                if (OllamaBackendPool.unwrap(error) instanceof JsonProcessingException e) {
+                    onRejected(e.getOriginalMessage());
+                    return fallback.get();
+                }
+                return CompletableFuture.failedFuture(error);
+            }
+
+            final String rejection = validate(value);
+            if (Objects.nonNull(rejection)) {
+                onRejected(rejection);
+                return fallback.get();
+            }
+
+            metrics.recordSinglePass(model, stage, false);
+            return CompletableFuture.completedFuture(value);
+        });
+
+        return OllamaFutures.thenCompose(OllamaFutures.cancelling(outcome, attempt), Function.identity());
+    }
+
+    // null when the value is usable
+    private String validate(final T value) {
+        final List<String> missing = schema.missingFields(value);
+        if (!missing.isEmpty()) {
+            return "missing " + missing;
+        }
+        return validator.test(value) ? null : "rejected by validator";
+    }
+
+    private void onRejected(final String reason) {
+        LOG.infof("(SinglePassFlow) %s single-pass %s did not validate (%s), falling back to two passes",
+                stage, schema.recordClass().getSimpleName(), reason);
+        metrics.recordSinglePass(model, stage, true);
+    }
+}
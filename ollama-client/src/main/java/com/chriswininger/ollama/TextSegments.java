@@ -0,0 +1,71 @@
+package com.chriswininger.ollama;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Writer} that keeps references to the slices written to it instead of copying them,
+ * for reading a parser's text buffer back as a {@link Reader} while the parser is still on the
+ * token. Jackson hands a long string over in the segments it was decoded into; joining them into
+ * one array is the copy this avoids.
+ */
+final class TextSegments extends Writer {
+
+    private record Segment(char[] chars, int offset, int length) {}
+
+    private final List<Segment> segments = new ArrayList<>(4);
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length) {
+        if (length > 0) {
+            segments.add(new Segment(chars, offset, length));
+        }
+    }
+
+    @Override
+    public void write(final String text, final int offset, final int length) {
+        write(text.toCharArray(), offset, length);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    /**
+     * Reads the segments in order; only valid until the parser moves past the token
+     */
+    Reader reader() {
+        return new Reader() {
+            private int segment;
+            private int position;
+
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) {
+                if (length == 0) {
+                    return 0;
+                }
+
+                while (segment < segments.size() && position == segments.get(segment).length()) {
+                    segment++;
+                    position = 0;
+                }
+                if (segment == segments.size()) {
+                    return -1;
+                }
+
+                final Segment current = segments.get(segment);
+                final int count = Math.min(length, current.length() - position);
+                System.arraycopy(current.chars(), current.offset() + position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+}
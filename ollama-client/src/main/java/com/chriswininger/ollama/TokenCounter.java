@@ -0,0 +1,23 @@
+package com.chriswininger.ollama;
+
+/**
+ * Counts the tokens a model will see for a piece of text, used to size {@code num_ctx}
+ */
+public interface TokenCounter {
+
+    long count(String model, CharSequence text);
+
+    /**
+     * Called after a generation with the prompt's length in characters and the number of prompt
+     * tokens Ollama evaluated for it, for counters that learn from the server
+     */
+    default void observe(final String model, final long promptChars, final long promptTokens) {}
+
+    /**
+     * Whether {@link #count} for {@code model} can be trusted to reject a prompt, rather than
+     * being a heuristic guess; true for a real tokenizer
+     */
+    default boolean accurate(final String model) {
+        return true;
+    }
+}
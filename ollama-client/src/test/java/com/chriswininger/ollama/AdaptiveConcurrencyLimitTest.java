@@ -0,0 +1,57 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void onSample_steadyLatencyAtFullUse_grows() {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 16, 4);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000d, 30d, limit.limit());
+        }
+
+        assertTrue(limit.limit() > 4, "limit was " + limit.limit());
+    }
+
+    @Test
+    void onSample_risingLatency_shrinks() {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 16, 8);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000d, 0d, 8);
+        }
+        final int before = limit.limit();
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(5_000_000d, 0d, 8);
+        }
+
+        assertTrue(limit.limit() < before, "limit went from " + before + " to " + limit.limit());
+    }
+
+    @Test
+    void onSample_underused_doesNotGrow() {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 16, 8);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000d, 30d, 1);
+        }
+
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    void onDrop_backsOffButNotBelowMinimum() {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 16, 8);
+
+        assertEquals(6, limit.onDrop());
+        for (int i = 0; i < 10; i++) {
+            limit.onDrop();
+        }
+        assertEquals(2, limit.limit());
+    }
+}
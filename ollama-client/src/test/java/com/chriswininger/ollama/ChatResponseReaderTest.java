@@ -0,0 +1,120 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatResponseReaderTest {
+
+    record Summary(String summary, List<String> characters) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String RESPONSE = """
+            {"model":"gemma3","created_at":"2025-01-01T00:00:00Z",\
+            "message":{"role":"assistant","content":"{\\"summary\\":\\"Ishmael goes to sea \\\\u2014 again.\\",\
+            \\"characters\\":[\\"Ishmael\\",\\"Queequeg\\"]}","thinking":"short"},\
+            "done":true,"total_duration":3000,"load_duration":1000,"prompt_eval_count":120,\
+            "prompt_eval_duration":400,"eval_count":30,"eval_duration":600,"context":[1,2,3]}
+            """;
+
+    @Test
+    void subscriber_bindsContentSplitAcrossChunks() throws Exception {
+        final ChatResponseReader<Summary> reader = feed(RESPONSE, 7, binder(Summary.class), true);
+
+        final ChatResponseReader.ChatResponse<Summary> response = reader.result();
+        assertEquals(new Summary("Ishmael goes to sea — again.", List.of("Ishmael", "Queequeg")), response.content());
+        assertEquals("short", response.thinking());
+        assertEquals(new OllamaGenerationStats(3000, 1000, 120, 400, 30, 600), response.stats());
+        assertEquals(RESPONSE, response.body());
+    }
+
+    @Test
+    void subscriber_matchesBlockingRead() throws Exception {
+        final ChatResponseReader.ChatResponse<String> streamed =
+                feed(RESPONSE, 1, ChatResponseReader.ContentBinder.text(), false).result();
+        final ChatResponseReader.ChatResponse<String> blocking = ChatResponseReader.read(
+                objectMapper.getFactory(), RESPONSE, ChatResponseReader.ContentBinder.text()).result();
+
+        assertEquals(blocking.content(), streamed.content());
+        assertEquals(blocking.stats(), streamed.stats());
+        assertNull(streamed.body());
+    }
+
+    @Test
+    void subscriber_bindsContentLongerThanOneTextSegment() throws Exception {
+        final String summary = "Call me Ishmael. ".repeat(10_000);
+        final String content = objectMapper.writeValueAsString(new Summary(summary, List.of("Ishmael")));
+        final String body = objectMapper.createObjectNode()
+                .put("done", true)
+                .set("message", objectMapper.createObjectNode().put("content", content))
+                .toString();
+
+        final Summary bound = feed(body, 8 * 1024, binder(Summary.class), false).result().content();
+
+        assertEquals(summary, bound.summary());
+        assertEquals(List.of("Ishmael"), bound.characters());
+    }
+
+    @Test
+    void result_surfacesBinderAndServerErrors() throws Exception {
+        final String mismatched = """
+                {"message":{"content":"not json"},"eval_count":5}""";
+        final ChatResponseReader<Summary> reader = feed(mismatched, 4, binder(Summary.class), false);
+        // the generation still counts even though its content is unusable
+        assertEquals(5, reader.stats().evalCount());
+        assertThrows(JsonProcessingException.class, reader::result);
+
+        final ChatResponseReader<String> error =
+                feed("{\"error\":\"model not found\"}", 3, ChatResponseReader.ContentBinder.text(), false);
+        final RuntimeException thrown = assertThrows(RuntimeException.class, error::result);
+        assertTrue(thrown.getMessage().contains("model not found"));
+    }
+
+    private <T extends Record> ChatResponseReader.ContentBinder<T> binder(final Class<T> recordClass) {
+        return ChatResponseReader.ContentBinder.json(objectMapper.readerFor(recordClass));
+    }
+
+    private <T> ChatResponseReader<T> feed(
+            final String body,
+            final int chunkSize,
+            final ChatResponseReader.ContentBinder<T> binder,
+            final boolean retainBody
+    ) throws Exception {
+        final ChatResponseSubscriber<T> subscriber =
+                new ChatResponseSubscriber<>(objectMapper.getFactory(), binder, retainBody);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {}
+
+            @Override
+            public void cancel() {}
+        });
+
+        // chunk boundaries land inside escapes and multi-byte characters
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            chunks.add(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)).slice());
+            if (chunks.size() == 2) {
+                subscriber.onNext(List.copyOf(chunks));
+                chunks.clear();
+            }
+        }
+        subscriber.onNext(chunks);
+        subscriber.onComplete();
+
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatStreamParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void stream_forwardsDeltasAndCollectsFinalStats() throws Exception {
+        final List<String> deltas = new ArrayList<>();
+        final ChatStreamParser parser = new ChatStreamParser(objectMapper, new OllamaStreamListener() {
+            @Override
+            public void onThinking(final String delta) {
+                deltas.add("think:" + delta);
+            }
+
+            @Override
+            public void onContent(final String delta) {
+                deltas.add(delta);
+            }
+        }, 1_000);
+
+        parser.onSubscribe(new NoopSubscription());
+        parser.onNext("{\"message\":{\"role\":\"assistant\",\"content\":\"\",\"thinking\":\"hmm\"},\"done\":false}");
+        parser.onNext("{\"message\":{\"role\":\"assistant\",\"content\":\"Hello\"},\"done\":false}");
+        parser.onNext("{\"message\":{\"role\":\"assistant\",\"content\":\" world\"},\"done\":false}");
+        parser.onNext("{\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,"
+                + "\"total_duration\":3000000000,\"prompt_eval_count\":10,\"prompt_eval_duration\":500000000,"
+                + "\"eval_count\":40,\"eval_duration\":2000000000}");
+        parser.onComplete();
+
+        final OllamaChatResult result = parser.outcome().get();
+        assertEquals(List.of("think:hmm", "Hello", " world"), deltas);
+        assertEquals("Hello world", result.content());
+        assertEquals("hmm", result.thinking());
+        assertEquals(40, result.stats().evalCount());
+        assertEquals(20d, result.stats().decodeTokensPerSecond(), 0.001);
+        assertEquals(20d, result.stats().prefillTokensPerSecond(), 0.001);
+    }
+
+    @Test
+    void stream_pastOutputCap_failsAndCancels() {
+        final ChatStreamParser parser = new ChatStreamParser(objectMapper, OllamaStreamListener.noop(), 8);
+        final NoopSubscription subscription = new NoopSubscription();
+
+        parser.onSubscribe(subscription);
+        parser.onNext("{\"message\":{\"content\":\"again \"},\"done\":false}");
+        parser.onNext("{\"message\":{\"content\":\"again \"},\"done\":false}");
+
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> parser.outcome().get());
+        assertInstanceOf(OllamaOutputLimitException.class, e.getCause());
+        assertTrue(subscription.cancelled.get());
+    }
+
+    @Test
+    void stream_endingWithoutDoneChunk_fails() {
+        final ChatStreamParser parser = new ChatStreamParser(objectMapper, OllamaStreamListener.noop(), 1_000);
+
+        parser.onSubscribe(new NoopSubscription());
+        parser.onNext("{\"message\":{\"content\":\"partial\"},\"done\":false}");
+        parser.onComplete();
+
+        assertTrue(parser.outcome().isCompletedExceptionally());
+    }
+
+    private static class NoopSubscription implements Flow.Subscription {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        public void request(final long n) {}
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+}
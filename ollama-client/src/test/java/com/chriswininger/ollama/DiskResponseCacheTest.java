@@ -0,0 +1,69 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskResponseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void put_survivesReopen() throws Exception {
+        final String key = OllamaResponseCache.keyFor("{\"model\":\"gemma4:e2b\"}");
+
+        try (DiskResponseCache cache = DiskResponseCache.open(directory, 1024 * 1024)) {
+            cache.put(key, "{\"message\":{\"content\":\"hello\"}}");
+            assertEquals(Optional.of("{\"message\":{\"content\":\"hello\"}}"), cache.get(key));
+        }
+
+        try (DiskResponseCache reopened = DiskResponseCache.open(directory, 1024 * 1024)) {
+            assertEquals(Optional.of("{\"message\":{\"content\":\"hello\"}}"), reopened.get(key));
+            assertEquals(1, reopened.stats().hits());
+        }
+    }
+
+    @Test
+    void open_withoutIndex_scansLogAndDropsTornTail() throws Exception {
+        final String key = OllamaResponseCache.keyFor("a");
+
+        try (DiskResponseCache cache = DiskResponseCache.open(directory, 1024 * 1024)) {
+            cache.put(key, "first");
+        }
+        Files.delete(directory.resolve("responses.idx"));
+        Files.write(directory.resolve("responses.log"), new byte[]{0x4F, 0x52, 0x43}, StandardOpenOption.APPEND);
+
+        try (DiskResponseCache reopened = DiskResponseCache.open(directory, 1024 * 1024)) {
+            assertEquals(Optional.of("first"), reopened.get(key));
+            assertEquals(reopened.stats().liveBytes(), reopened.stats().logBytes());
+        }
+    }
+
+    @Test
+    void put_overCap_evictsLeastRecentlyUsed() throws Exception {
+        final String body = "x".repeat(100);
+        final String a = OllamaResponseCache.keyFor("a");
+        final String b = OllamaResponseCache.keyFor("b");
+        final String c = OllamaResponseCache.keyFor("c");
+
+        try (DiskResponseCache cache = DiskResponseCache.open(directory, 160)) {
+            cache.put(a, body);
+            cache.put(b, body);
+            cache.get(a);
+            cache.put(c, body);
+
+            assertTrue(cache.get(a).isPresent());
+            assertTrue(cache.get(b).isEmpty());
+            assertTrue(cache.get(c).isPresent());
+            assertTrue(cache.stats().liveBytes() <= 160);
+        }
+    }
+}
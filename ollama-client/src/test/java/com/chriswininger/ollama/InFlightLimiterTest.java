@@ -0,0 +1,132 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightLimiterTest {
+
+    @Test
+    void acquire_beyondLimit_queuesUntilRelease() {
+        final InFlightLimiter limiter = new InFlightLimiter(1, 10);
+
+        final CompletableFuture<Void> first = limiter.acquire();
+        final CompletableFuture<Void> second = limiter.acquire();
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.queued());
+
+        limiter.release();
+
+        assertTrue(second.isDone());
+        assertEquals(1, limiter.inUse());
+        assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    void acquire_whenQueueFull_rejects() {
+        final InFlightLimiter limiter = new InFlightLimiter(1, 1);
+
+        limiter.acquire();
+        limiter.acquire();
+        final CompletableFuture<Void> rejected = limiter.acquire();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+        assertEquals(1, limiter.rejected());
+    }
+
+    @Test
+    void cancelledWaiter_isSkippedAndPermitPassesOn() {
+        final InFlightLimiter limiter = new InFlightLimiter(1, 10);
+
+        limiter.acquire();
+        final CompletableFuture<Void> cancelled = limiter.acquire();
+        final CompletableFuture<Void> next = limiter.acquire();
+
+        cancelled.cancel(false);
+        limiter.release();
+
+        assertTrue(next.isDone());
+        assertFalse(next.isCompletedExceptionally());
+        assertEquals(1, limiter.inUse());
+    }
+
+    @Test
+    void setLimit_raised_grantsQueuedWaiters() {
+        final InFlightLimiter limiter = new InFlightLimiter(1, 10);
+
+        limiter.acquire();
+        final CompletableFuture<Void> waiting = limiter.acquire();
+
+        limiter.setLimit(2);
+
+        assertTrue(waiting.isDone());
+        assertEquals(2, limiter.inUse());
+    }
+
+    @Test
+    void queuedClasses_shareSlotsByWeight() {
+        final InFlightLimiter limiter = new InFlightLimiter(1, 100,
+                Map.of(OllamaPriority.INTERACTIVE, 3, OllamaPriority.BULK, 1), Duration.ofMinutes(1), System::nanoTime);
+        final List<OllamaPriority> order = new ArrayList<>();
+
+        limiter.acquire(OllamaPriority.BULK);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(OllamaPriority.BULK).thenRun(() -> order.add(OllamaPriority.BULK));
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(OllamaPriority.INTERACTIVE).thenRun(() -> order.add(OllamaPriority.INTERACTIVE));
+        }
+        for (int i = 0; i < 8; i++) {
+            limiter.release();
+        }
+
+        // three interactive slots for every bulk one while both queue, bulk is slowed but never stopped
+        assertEquals(List.of(
+                OllamaPriority.INTERACTIVE, OllamaPriority.BULK, OllamaPriority.INTERACTIVE, OllamaPriority.INTERACTIVE,
+                OllamaPriority.INTERACTIVE, OllamaPriority.BULK, OllamaPriority.BULK, OllamaPriority.BULK), order);
+        assertEquals(5, limiter.counters().get(OllamaPriority.BULK).granted);
+    }
+
+    @Test
+    void waiterPastStarvationThreshold_goesNextWhateverItsClass() {
+        final AtomicLong now = new AtomicLong();
+        final InFlightLimiter limiter = new InFlightLimiter(1, 100,
+                Map.of(OllamaPriority.INTERACTIVE, 100), Duration.ofSeconds(10), now::get);
+
+        limiter.acquire(OllamaPriority.INTERACTIVE);
+        final CompletableFuture<Void> bulk = limiter.acquire(OllamaPriority.BULK);
+        now.addAndGet(Duration.ofSeconds(4).toNanos());
+        final CompletableFuture<Void> interactive = limiter.acquire(OllamaPriority.INTERACTIVE);
+        limiter.acquire(OllamaPriority.INTERACTIVE);
+
+        // bulk has waited 4s: interactive overtakes it
+        limiter.release();
+        assertTrue(interactive.isDone());
+        assertFalse(bulk.isDone());
+
+        now.addAndGet(Duration.ofSeconds(6).toNanos());
+        limiter.release();
+        assertTrue(bulk.isDone());
+
+        final InFlightLimiter.ClassCounters counters = limiter.counters().get(OllamaPriority.BULK);
+        assertEquals(1, counters.starved);
+        assertEquals(Duration.ofSeconds(10).toNanos(), counters.maxWaitNanos);
+        assertEquals(1, limiter.counters().get(OllamaPriority.INTERACTIVE).waiting);
+    }
+}
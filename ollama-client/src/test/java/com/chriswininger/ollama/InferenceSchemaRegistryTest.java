@@ -0,0 +1,52 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InferenceSchemaRegistryTest {
+
+    record Sample(
+            @InferenceDescription("A short summary.")
+            String summary,
+            List<String> characters,
+            Long yearPublished
+    ) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void schemaFor_compilesOncePerClass() {
+        final InferenceSchemaRegistry registry = new InferenceSchemaRegistry(objectMapper);
+
+        assertSame(registry.schemaFor(Sample.class), registry.schemaFor(Sample.class));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void formatRawValue_splicesSameJsonAsTree() throws Exception {
+        final InferenceSchema<Sample> schema = new InferenceSchemaRegistry(objectMapper).schemaFor(Sample.class);
+
+        final ObjectNode spliced = objectMapper.createObjectNode();
+        spliced.putRawValue("format", schema.formatRawValue());
+        final ObjectNode tree = objectMapper.createObjectNode();
+        tree.set("format", schema.format());
+
+        assertEquals(objectMapper.writeValueAsString(tree), objectMapper.writeValueAsString(spliced));
+        assertEquals("A short summary.", schema.format().path("properties").path("summary").path("description").asText());
+    }
+
+    @Test
+    void read_usesPrebuiltReader() throws Exception {
+        final InferenceSchema<Sample> schema = new InferenceSchemaRegistry(objectMapper).schemaFor(Sample.class);
+
+        final Sample sample = schema.read("{\"summary\":\"s\",\"characters\":[\"a\"],\"yearPublished\":1851}");
+
+        assertEquals(new Sample("s", List.of("a"), 1851L), sample);
+    }
+}
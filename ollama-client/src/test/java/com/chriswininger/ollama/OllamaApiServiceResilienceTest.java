@@ -0,0 +1,178 @@
+package com.chriswininger.ollama;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OllamaApiServiceResilienceTest {
+
+    private static final String REPLY =
+            "{\"message\":{\"role\":\"assistant\",\"content\":\"It was a dark night\"},\"done\":true,\"eval_count\":10}";
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final OllamaTransport transport = OllamaTransport.builder().build();
+    private OllamaBackendPool pool;
+
+    @AfterEach
+    void stop() {
+        pool.close();
+        transport.close();
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void serverErrorIsRetried_clientErrorIsNot() throws Exception {
+        final AtomicInteger status = new AtomicInteger(500);
+        final OllamaApiService service = service(
+                OllamaResiliencePolicy.builder().maxAttempts(3).baseBackoff(Duration.ofMillis(10)).build(),
+                exchange -> respond(exchange, status.getAndSet(200), status.get() == 200 ? REPLY : "{}"));
+
+        assertEquals("It was a dark night", service.callOllamaPlainTextResponse("system", "user", false));
+        assertEquals(1, metrics(service).retries());
+
+        status.set(400);
+        final OllamaHttpException error = assertThrows(OllamaHttpException.class,
+                () -> service.callOllamaPlainTextResponse("system", "user", false));
+        assertEquals(400, error.statusCode());
+        assertEquals(1, metrics(service).retries());
+    }
+
+    @Test
+    void slowCallIsHedgedOnTheOtherBackend() throws Exception {
+        final AtomicBoolean stallNext = new AtomicBoolean();
+        final OllamaApiService service = service(
+                OllamaResiliencePolicy.builder().hedgePercentile(95).minHedgeDelay(Duration.ofMillis(100)).build(),
+                exchange -> {
+                    if (stallNext.compareAndSet(true, false)) {
+                        sleep(Duration.ofSeconds(5));
+                    }
+                    respond(exchange, 200, REPLY);
+                });
+
+        // enough calls for the stage to know what its p95 is
+        for (int i = 0; i < 20; i++) {
+            service.callOllamaPlainTextResponse("system", "user", false);
+        }
+
+        stallNext.set(true);
+        final long start = System.nanoTime();
+        assertEquals("It was a dark night", service.callOllamaPlainTextResponse("system", "user", false));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(3).toNanos());
+
+        assertEquals(1, metrics(service).hedgedRequests());
+        assertEquals(1, metrics(service).hedgeWins());
+    }
+
+    @Test
+    void identicalConcurrentCalls_shareAFlightOnlyWithinAStageAndPriority() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        final OllamaApiService service = service(OllamaResiliencePolicy.none(), exchange -> {
+            requests.incrementAndGet();
+            sleep(Duration.ofMillis(300));
+            respond(exchange, 200, REPLY);
+        });
+        final OllamaApiService bulk = service.withPriority(OllamaPriority.BULK);
+
+        final List<CompletableFuture<String>> calls = List.of(
+                bulk.callOllamaPlainTextResponseAsync("system", "user", false),
+                bulk.callOllamaPlainTextResponseAsync("system", "user", false),
+                service.withPriority(OllamaPriority.INTERACTIVE).callOllamaPlainTextResponseAsync("system", "user", false),
+                bulk.withStage("other").callOllamaPlainTextResponseAsync("system", "user", false));
+
+        calls.forEach(call -> assertEquals("It was a dark night", call.join()));
+        assertEquals(3, requests.get());
+        final OllamaStageMetrics test = service.generationMetrics().snapshot().stream()
+                .filter(stage -> stage.stage().equals("test"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(1, test.deduplicated());
+        assertEquals(2, test.generations());
+    }
+
+    @Test
+    void cancellingAConvenienceFuture_abortsTheExchange() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch reply = new CountDownLatch(1);
+        final OllamaApiService service = service(OllamaResiliencePolicy.none(), exchange -> {
+            received.countDown();
+            try {
+                reply.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, REPLY);
+        });
+
+        final CompletableFuture<String> call = service.callOllamaPlainTextResponseAsync("system", "user", false);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.stats().inFlight());
+
+        call.cancel(true);
+
+        final long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (transport.stats().inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, transport.stats().inFlight());
+        reply.countDown();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private OllamaApiService service(final OllamaResiliencePolicy policy, final Handler handler) throws IOException {
+        final List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/chat", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                handler.handle(exchange);
+            });
+            server.start();
+            servers.add(server);
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+
+        pool = new OllamaBackendPool(transport, urls, null);
+        return new OllamaApiService(pool, "gemma4:e2b", OllamaContextSizer.upTo(16384), 30, false,
+                OllamaResponseCache.disabled(), OllamaResidencyManager.unmanaged(), policy)
+                .withStage("test");
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(final Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OllamaStageMetrics metrics(final OllamaApiService service) {
+        return service.generationMetrics().snapshot().getFirst();
+    }
+}
@@ -0,0 +1,105 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OllamaApiServiceSinglePassTest {
+
+    record Summary(String summary, List<String> characters) {}
+
+    private final AtomicReference<String> content = new AtomicReference<>();
+    private HttpServer server;
+    private OllamaTransport transport;
+    private OllamaApiService service;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/chat", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            final String body = "{\"message\":{\"role\":\"assistant\",\"content\":%s},\"done\":true,\"eval_count\":10}"
+                    .formatted(new ObjectMapper().writeValueAsString(content.get()));
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+
+        transport = OllamaTransport.builder().build();
+        service = new OllamaApiService(
+                transport, "http://127.0.0.1:" + server.getAddress().getPort(), "gemma4:e2b", 16384, 5, false)
+                .withStage("test");
+    }
+
+    @AfterEach
+    void stop() {
+        transport.close();
+        server.stop(0);
+    }
+
+    @Test
+    void callOllamaSinglePass_validReply_noFallback() throws Exception {
+        content.set("{\"summary\":\"A storm\",\"characters\":[\"Jack Aubrey\"]}");
+
+        final Summary result = service.callOllamaSinglePass("system", "user", false, Summary.class,
+                s -> !s.summary().isBlank(), () -> new Summary("fallback", List.of()));
+
+        assertEquals("A storm", result.summary());
+        assertEquals(1, metrics().singlePassSuccesses());
+        assertEquals(0, metrics().singlePassFallbacks());
+    }
+
+    @Test
+    void callOllamaSinglePass_missingFieldOrBadJson_fallsBack() throws Exception {
+        content.set("{\"summary\":\"A storm\"}");
+        assertEquals("fallback", service.callOllamaSinglePass("system", "user", false, Summary.class,
+                s -> true, () -> new Summary("fallback", List.of())).summary());
+
+        content.set("{\"summary\": \"A sto");
+        assertEquals("fallback", service.callOllamaSinglePassAsync("system", "user", false, Summary.class,
+                s -> true, () -> CompletableFuture.completedFuture(new Summary("fallback", List.of()))).join().summary());
+
+        assertEquals(0, metrics().singlePassSuccesses());
+        assertEquals(2, metrics().singlePassFallbacks());
+    }
+
+    @Test
+    void callOllamaSinglePassAsync_rejectedThenMalformedFallbackReply_failsWithoutFallingBackAgain() {
+        final AtomicInteger fallbacks = new AtomicInteger();
+        content.set("{\"summary\":\"\",\"characters\":[]}");
+
+        final CompletableFuture<Summary> result = service.callOllamaSinglePassAsync("system", "user", false,
+                Summary.class, s -> !s.summary().isBlank(), () -> {
+                    fallbacks.incrementAndGet();
+                    content.set("{\"summary\": \"A sto");
+                    return service.callOllamaStructuredResponseAsync("system", "user", false, Summary.class);
+                });
+
+        final CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(JsonProcessingException.class, OllamaBackendPool.unwrap(error));
+        assertEquals(1, fallbacks.get());
+        assertEquals(1, metrics().singlePassFallbacks());
+    }
+
+    private OllamaStageMetrics metrics() {
+        return service.generationMetrics().snapshot().getFirst();
+    }
+}
@@ -0,0 +1,90 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OllamaBackendPoolTest {
+
+    private final OllamaTransport transport = OllamaTransport.builder().build();
+    private final OllamaBackendPool pool = new OllamaBackendPool(
+            transport, List.of("http://a:11434", "http://b:11434"), null);
+
+    @AfterEach
+    void close() {
+        pool.close();
+        transport.close();
+    }
+
+    @Test
+    void acquire_routesToLeastOutstanding() {
+        final OllamaBackend first = pool.acquire("gemma4:e2b");
+        final OllamaBackend second = pool.acquire("gemma4:e2b");
+
+        assertEquals(Set.of("http://a:11434", "http://b:11434"), Set.of(first.baseUrl(), second.baseUrl()));
+
+        pool.release(first, System.nanoTime(), null);
+        assertEquals(first.baseUrl(), pool.acquire("gemma4:e2b").baseUrl());
+    }
+
+    @Test
+    void acquire_onlyConsidersBackendsWithModel() {
+        final OllamaBackend a = pool.acquire("gemma4:e2b");
+        final OllamaBackend b = pool.acquire("gemma4:e2b");
+        a.onProbe(Set.of("gemma4:e2b"));
+        b.onProbe(Set.of("bge-m3:latest"));
+
+        assertEquals("http://a:11434", pool.acquire("gemma4:e2b").baseUrl());
+        assertEquals("http://b:11434", pool.acquire("bge-m3").baseUrl());
+        assertThrows(IllegalStateException.class, () -> pool.acquire("llama3"));
+    }
+
+    @Test
+    void release_connectionFailureMarksUnhealthy_requestTimeoutDoesNot() {
+        final OllamaBackend backend = pool.acquire("gemma4:e2b");
+        pool.release(backend, System.nanoTime(), new HttpTimeoutException("request timed out"));
+        assertTrue(backend.healthy());
+
+        pool.acquire("gemma4:e2b");
+        final OllamaBackend other = pool.acquire("gemma4:e2b");
+        pool.release(other, System.nanoTime(), new ConnectException("Connection refused"));
+        assertFalse(other.healthy());
+
+        // the unhealthy backend is avoided even when it is the less loaded one
+        assertTrue(pool.acquire("gemma4:e2b").healthy());
+    }
+
+    @Test
+    void release_serverErrorsOpenTheBreaker_acquireFailsFastOnceAllAreOpen() {
+        final OllamaBackendPool breaking = new OllamaBackendPool(
+                transport, List.of("http://a:11434", "http://b:11434"), null, 2, Duration.ofMinutes(1));
+        try {
+            for (int i = 0; i < 4; i++) {
+                final OllamaBackend backend = breaking.acquire("gemma4:e2b");
+                breaking.release(backend, System.nanoTime(), new OllamaHttpException(500, "model failed to load"));
+            }
+            assertThrows(OllamaUnavailableException.class, () -> breaking.acquire("gemma4:e2b"));
+            assertTrue(breaking.stats().stream().allMatch(stats -> stats.circuit().equals("OPEN")));
+
+            // a 4xx is the request's fault and leaves the breaker alone
+            final OllamaBackend backend = pool.acquire("gemma4:e2b");
+            for (int i = 0; i < 6; i++) {
+                pool.release(backend, System.nanoTime(), new OllamaHttpException(400, "bad request"));
+                backend.onStart();
+            }
+            assertEquals(OllamaCircuitBreaker.State.CLOSED, backend.circuitBreaker().state());
+        } finally {
+            breaking.close();
+        }
+    }
+}
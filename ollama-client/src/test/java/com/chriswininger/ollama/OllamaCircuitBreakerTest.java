@@ -0,0 +1,60 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OllamaCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final OllamaCircuitBreaker breaker = new OllamaCircuitBreaker(3, Duration.ofSeconds(30), now::get);
+
+    @Test
+    void opensAfterThresholdAndLetsOneTrialThroughOnceExpired() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(OllamaCircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.onFailure();
+        assertEquals(OllamaCircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allows());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        // a failed trial opens it again for another full period
+        breaker.onFailure();
+        assertEquals(OllamaCircuitBreaker.State.OPEN, breaker.state());
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(OllamaCircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void neutralOutcomeGivesTheTrialBack() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onNeutral();
+        assertEquals(OllamaCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+}
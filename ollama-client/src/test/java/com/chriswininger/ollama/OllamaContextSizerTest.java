@@ -0,0 +1,55 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OllamaContextSizerTest {
+
+    @Test
+    void numCtxFor_roundsUpToBucket() {
+        final OllamaContextSizer sizer = new OllamaContextSizer((model, text) -> text.length(), 4096, 65536, 1024);
+
+        assertEquals(4096, sizer.numCtxFor("gemma4:e2b", "a".repeat(100), "b".repeat(1_000)));
+        assertEquals(16384, sizer.numCtxFor("gemma4:e2b", "a".repeat(100), "b".repeat(9_000)));
+        assertEquals(65536, sizer.numCtxFor("gemma4:e2b", "a".repeat(100), "b".repeat(50_000)));
+    }
+
+    @Test
+    void numCtxFor_promptTooLarge_failsFast() {
+        final OllamaContextSizer sizer = new OllamaContextSizer((model, text) -> text.length(), 4096, 16384, 1024);
+
+        final OllamaContextOverflowException e = assertThrows(OllamaContextOverflowException.class,
+                () -> sizer.numCtxFor("gemma4:e2b", "system", "x".repeat(20_000)));
+        assertEquals(16384, e.maxNumCtx());
+    }
+
+    @Test
+    void numCtxFor_uncalibratedEstimateOverTheMaximum_clampsInsteadOfFailing() {
+        final CalibratedTokenCounter counter = new CalibratedTokenCounter();
+        final OllamaContextSizer sizer = new OllamaContextSizer(counter, 4096, 65536, 8192);
+        // about 55K tokens at the default ratio, plus margin and the output reservation
+        final String chapter = "x".repeat(165_000);
+
+        assertEquals(65536, sizer.numCtxFor("gemma4:e2b", "system", chapter));
+
+        counter.observe("gemma4:e2b", 30_000, 10_000);
+        assertThrows(OllamaContextOverflowException.class, () -> sizer.numCtxFor("gemma4:e2b", "system", chapter));
+    }
+
+    @Test
+    void calibratedCounter_keepsDensestObservedRatio() {
+        final CalibratedTokenCounter counter = new CalibratedTokenCounter();
+        assertEquals(CalibratedTokenCounter.DEFAULT_CHARS_PER_TOKEN, counter.charsPerToken("gemma4:e2b"));
+
+        counter.observe("gemma4:e2b", 40_000, 10_000);
+        // part of this prompt came from Ollama's prompt cache, so it under-reports
+        counter.observe("gemma4:e2b", 40_000, 2_000);
+        // too small to say anything
+        counter.observe("gemma4:e2b", 100, 90);
+
+        assertEquals(4.0, counter.charsPerToken("gemma4:e2b"));
+        assertEquals(250, counter.count("gemma4:e2b", "x".repeat(1_000)));
+    }
+}
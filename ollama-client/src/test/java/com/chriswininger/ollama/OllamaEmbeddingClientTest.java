@@ -0,0 +1,95 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OllamaEmbeddingClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private OllamaTransport transport;
+    private OllamaBackendPool pool;
+
+    @BeforeEach
+    void start() throws IOException {
+        // each input's vector is [its length, 0.5]
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/embed", exchange -> {
+            requests.incrementAndGet();
+            final JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            final ObjectNode response = objectMapper.createObjectNode().put("model", request.path("model").asText());
+            final ArrayNode embeddings = response.putArray("embeddings");
+            request.path("input").forEach(input -> embeddings.addArray().add(input.asText().length()).add(0.5));
+            response.put("prompt_eval_count", 7);
+
+            final byte[] bytes = objectMapper.writeValueAsBytes(response);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+
+        transport = OllamaTransport.builder().build();
+        pool = OllamaBackendPool.single(transport, "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stop() {
+        pool.close();
+        transport.close();
+        server.stop(0);
+    }
+
+    @Test
+    void embedAll_splitsIntoBatchesAndKeepsInputOrder() throws Exception {
+        final OllamaEmbeddingClient client = new OllamaEmbeddingClient(pool, "bge-m3", 30,
+                OllamaResidencyManager.unmanaged(), (model, text) -> text.length(), 10, 3);
+
+        // 4 + 4 fit a 10 token batch and the 5 starts the next, which the 3 input limit closes after "o"
+        final List<String> inputs = List.of("abcd", "efgh", "ijklm", "n", "o", "p", "q");
+        final OllamaEmbeddings embeddings = client.embedAll(inputs);
+
+        assertEquals(3, requests.get());
+        assertEquals(7, embeddings.count());
+        assertEquals(2, embeddings.dimension());
+        assertEquals(21, embeddings.promptTokens());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertArrayEquals(new float[] {inputs.get(i).length(), 0.5f}, embeddings.vector(i));
+        }
+
+        assertEquals(0, client.embedAll(List.of()).count());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void read_parsesVectorsWithoutATreeAndChecksTheirShape() throws Exception {
+        final String body = "{\"model\":\"bge-m3\",\"embeddings\":[[0.25,-1.5e-3,3],[1,2,3]],"
+                + "\"total_duration\":12,\"prompt_eval_count\":9}";
+        final OllamaEmbeddings embeddings =
+                OllamaEmbeddings.read(objectMapper.getFactory(), body.getBytes(StandardCharsets.UTF_8), 2);
+
+        assertArrayEquals(new float[] {0.25f, -0.0015f, 3f}, embeddings.vector(0));
+        assertEquals(9, embeddings.promptTokens());
+
+        final String ragged = "{\"embeddings\":[[1,2,3],[1,2]]}";
+        assertThrows(IOException.class, () ->
+                OllamaEmbeddings.read(objectMapper.getFactory(), ragged.getBytes(StandardCharsets.UTF_8), 2));
+    }
+}
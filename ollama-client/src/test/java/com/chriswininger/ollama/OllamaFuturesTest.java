@@ -0,0 +1,41 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OllamaFuturesTest {
+
+    @Test
+    void thenApply_cancelled_cancelsTheSource() {
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        OllamaFutures.thenApply(source, String::length).cancel(true);
+
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    void thenCompose_cancelled_cancelsWhicheverStageIsRunning() {
+        final CompletableFuture<String> first = new CompletableFuture<>();
+        final CompletableFuture<Integer> second = new CompletableFuture<>();
+
+        final CompletableFuture<Integer> composed = OllamaFutures.thenCompose(first, value -> second);
+        first.complete("first pass");
+        composed.cancel(true);
+
+        assertTrue(second.isCancelled());
+    }
+
+    @Test
+    void thenCompose_completes_withTheSecondStagesValue() {
+        final CompletableFuture<Integer> composed = OllamaFutures.thenCompose(
+                CompletableFuture.completedFuture("first pass"),
+                value -> CompletableFuture.completedFuture(value.length()));
+
+        assertEquals(10, composed.join());
+    }
+}
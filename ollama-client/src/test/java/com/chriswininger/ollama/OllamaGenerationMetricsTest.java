@@ -0,0 +1,36 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OllamaGenerationMetricsTest {
+
+    @Test
+    void snapshot_aggregatesPerModelAndStage() {
+        final OllamaGenerationMetrics metrics = new OllamaGenerationMetrics();
+
+        // 100 prompt tokens in 0.5s, 50 eval tokens in 1s, cold load of 2s
+        metrics.record("llama3", "chapter-summary",
+                new OllamaGenerationStats(3_600_000_000L, 2_000_000_000L, 100, 500_000_000L, 50, 1_000_000_000L));
+        // same shape, model already resident
+        metrics.record("llama3", "chapter-summary",
+                new OllamaGenerationStats(1_600_000_000L, 5_000_000L, 100, 500_000_000L, 50, 1_000_000_000L));
+        metrics.record("llama3", "book-summary",
+                new OllamaGenerationStats(1_000_000_000L, 0L, 10, 100_000_000L, 10, 500_000_000L));
+
+        final List<OllamaStageMetrics> snapshot = metrics.snapshot();
+
+        assertEquals(List.of("book-summary", "chapter-summary"),
+                snapshot.stream().map(OllamaStageMetrics::stage).toList());
+        final OllamaStageMetrics chapter = snapshot.get(1);
+        assertEquals(2, chapter.generations());
+        assertEquals(200, chapter.promptTokens());
+        assertEquals(200d, chapter.prefillTokensPerSecond(), 0.001);
+        assertEquals(50d, chapter.decodeTokensPerSecond(), 0.001);
+        assertEquals(1, chapter.modelLoads());
+        assertEquals(2_000d, chapter.maxLoadMillis(), 0.001);
+    }
+}
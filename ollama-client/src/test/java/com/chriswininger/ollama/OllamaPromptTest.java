@@ -0,0 +1,52 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OllamaPromptTest {
+
+    @Test
+    void format_readsLikeStringFormatted() {
+        final String template = """
+
+                Chapter heading: %s
+
+                Chapter text:
+                %s
+                100%% of it
+                """;
+        final StringBuilder chapter = new StringBuilder("  It was the best of times.  ");
+
+        final OllamaPrompt prompt = OllamaPrompt.format(template, "One", chapter).trim();
+        final String expected = template.formatted("One", chapter).trim();
+
+        assertEquals(expected, prompt.toString());
+        assertEquals(expected.length(), prompt.length());
+        assertEquals(expected.charAt(40), prompt.charAt(40));
+        assertEquals(expected.substring(20, 50), prompt.subSequence(20, 50).toString());
+        assertEquals(expected, OllamaPrompt.of(prompt.subSequence(0, 10), OllamaPrompt.span(expected, 10, expected.length())).toString());
+
+        assertThrows(IllegalArgumentException.class, () -> OllamaPrompt.format("Chapter %d", "1"));
+        assertThrows(IllegalArgumentException.class, () -> OllamaPrompt.format("%s and %s", "one"));
+    }
+
+    @Test
+    void reader_neverEndsAChunkInsideASurrogatePair() throws Exception {
+        final OllamaPrompt prompt = OllamaPrompt.of("ab", "🐳", "cd");
+
+        final Reader reader = prompt.reader();
+        final char[] chunk = new char[3];
+        assertEquals(2, reader.read(chunk, 0, 3));
+        assertEquals(3, reader.read(chunk, 0, 3));
+        assertEquals("🐳c", new String(chunk));
+
+        final StringWriter all = new StringWriter();
+        prompt.reader().transferTo(all);
+        assertEquals("ab🐳cd", all.toString());
+    }
+}
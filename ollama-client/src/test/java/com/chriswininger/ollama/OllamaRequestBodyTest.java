@@ -0,0 +1,133 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OllamaRequestBodyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void write_matchesTreeSerializationAndItsCacheKey() throws Exception {
+        // long enough to span several pool buffers and generator chunks, with surrogate pairs and escapes throughout
+        final String chapter = "Call me \"Ishmael\" 🐳\tsome years ago\n".repeat(5_000);
+        final OllamaPrompt userMessage = OllamaPrompt.format("Chapter heading: %s%n%nChapter text:%n%s", "One", chapter);
+
+        final ObjectNode tree = objectMapper.createObjectNode();
+        tree.put("model", "gemma3");
+        tree.putArray("messages").addObject().put("role", "user").put("content", userMessage.toString());
+        final String expected = objectMapper.writeValueAsString(tree);
+
+        final ByteBufferPool pool = new ByteBufferPool(4 * 1024, 8);
+        final OllamaRequestBody body = OllamaRequestBody.write(pool, true, json -> {
+            json.writeStartObject();
+            json.writeStringField("model", "gemma3");
+            json.writeArrayFieldStart("messages");
+            json.writeStartObject();
+            json.writeStringField("role", "user");
+            json.writeFieldName("content");
+            OllamaRequestBody.writeString(json, userMessage);
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+
+        assertEquals(expected, body.toString());
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, body.length());
+        assertEquals(OllamaResponseCache.keyFor(expected), body.cacheKey());
+    }
+
+    @Test
+    void writeUnhashed_leavesTheFieldOutOfTheCacheKey() throws Exception {
+        final OllamaRequestBody small = optionsBody(4096);
+        final OllamaRequestBody large = optionsBody(65536);
+
+        assertEquals("{\"model\":\"gemma3\",\"options\":{\"num_ctx\":4096,\"think\":true}}", small.toString());
+        assertEquals("{\"model\":\"gemma3\",\"options\":{\"num_ctx\":65536,\"think\":true}}", large.toString());
+        assertEquals(small.cacheKey(), large.cacheKey());
+        assertNotEquals(OllamaResponseCache.keyFor(small.toString()), small.cacheKey());
+    }
+
+    @Test
+    void publisher_splicesFieldsBeforeTheClosingBraceAndReleaseReturnsBuffers() throws Exception {
+        final ByteBufferPool pool = new ByteBufferPool(16, 8);
+        final OllamaRequestBody body = OllamaRequestBody.write(pool, false, json -> {
+            json.writeStartObject();
+            json.writeStringField("model", "nomic-embed-text");
+            json.writeEndObject();
+        });
+        assertNull(body.cacheKey());
+
+        final HttpRequest.BodyPublisher publisher = body.publisher(",\"keep_alive\":-1");
+        final String published = collect(publisher);
+        assertEquals("{\"model\":\"nomic-embed-text\",\"keep_alive\":-1}", published);
+        assertEquals(published.length(), publisher.contentLength());
+        // a publisher can be subscribed again, as it is when a request is retried
+        assertEquals(published, collect(publisher));
+
+        body.release();
+        body.release();
+        assertEquals(2, pool.idle());
+        assertThrows(IllegalStateException.class, body::publisher);
+    }
+
+    private static OllamaRequestBody optionsBody(final long numCtx) throws Exception {
+        return OllamaRequestBody.write(new ByteBufferPool(16, 8), true, json -> {
+            json.writeStartObject();
+            json.writeStringField("model", "gemma3");
+            json.writeObjectFieldStart("options");
+            OllamaRequestBody.writeUnhashed(json, options -> options.writeNumberField("num_ctx", numCtx));
+            json.writeBooleanField("think", true);
+            json.writeEndObject();
+            json.writeEndObject();
+        });
+    }
+
+    // requests one buffer at a time, like the http client does
+    private static String collect(final HttpRequest.BodyPublisher publisher) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(final ByteBuffer item) {
+                final byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package com.chriswininger.ollama;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OllamaResidencyManagerTest {
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private OllamaTransport transport;
+    private OllamaBackendPool pool;
+    private OllamaResidencyManager residency;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/", exchange -> {
+            final String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(exchange.getRequestURI().getPath() + " " + body);
+
+            final byte[] response = (exchange.getRequestURI().getPath().equals("/api/ps")
+                    ? "{\"models\":[{\"name\":\"gemma4:e2b\",\"size\":100,\"size_vram\":80,"
+                    + "\"expires_at\":\"2318-01-01T00:00:00Z\"}]}"
+                    : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        transport = OllamaTransport.builder().build();
+        pool = OllamaBackendPool.single(transport, "http://127.0.0.1:" + server.getAddress().getPort());
+        residency = new OllamaResidencyManager(pool, Map.of(
+                OllamaResidencyManager.RequestClass.CHAT, Duration.ofMinutes(30),
+                OllamaResidencyManager.RequestClass.EMBEDDING, Duration.ofMinutes(5)
+        ), Duration.ofSeconds(5))
+                .register("gemma4:e2b", OllamaResidencyManager.RequestClass.CHAT)
+                .register("bge-m3", OllamaResidencyManager.RequestClass.EMBEDDING);
+    }
+
+    @AfterEach
+    void stop() {
+        pool.close();
+        transport.close();
+        server.stop(0);
+    }
+
+    @Test
+    void applyKeepAlive_perRequestClass_unregisteredUntouched() {
+        assertEquals("{\"model\":\"gemma4:e2b\",\"keep_alive\":1800}",
+                residency.applyKeepAlive("gemma4:e2b", "{\"model\":\"gemma4:e2b\"}"));
+        assertEquals(OptionalLong.of(300), residency.keepAliveSeconds("bge-m3:latest"));
+        assertEquals("{\"model\":\"llama3\"}", residency.applyKeepAlive("llama3", "{\"model\":\"llama3\"}"));
+    }
+
+    @Test
+    void pin_keepsModelLoadedUntilLastPinCloses() {
+        final OllamaResidencyManager.Pin first = residency.pin("gemma4:e2b");
+        final OllamaResidencyManager.Pin second = residency.pin("gemma4:e2b");
+        assertEquals(OptionalLong.of(-1), residency.keepAliveSeconds("gemma4:e2b"));
+
+        first.close();
+        first.close();
+        assertEquals(OptionalLong.of(-1), residency.keepAliveSeconds("gemma4:e2b"));
+
+        second.close();
+        assertEquals(OptionalLong.of(1800), residency.keepAliveSeconds("gemma4:e2b"));
+    }
+
+    @Test
+    void warmUp_loadsWithKeepAlive_andPsReportsResidentModels() {
+        residency.warmUp("gemma4:e2b").join();
+        residency.warmUp("bge-m3").join();
+
+        assertTrue(requests.contains("/api/generate {\"model\":\"gemma4:e2b\",\"keep_alive\":1800}"), requests.toString());
+        assertTrue(requests.contains("/api/embed {\"model\":\"bge-m3\",\"input\":[],\"keep_alive\":300}"), requests.toString());
+
+        try (OllamaResidencyManager.Pin pin = residency.pin("gemma4:e2b")) {
+            final List<OllamaResidentModel> resident = residency.resident();
+            assertEquals(1, resident.size());
+            assertEquals(80, resident.getFirst().vramBytes());
+            assertTrue(resident.getFirst().pinned());
+        }
+    }
+}
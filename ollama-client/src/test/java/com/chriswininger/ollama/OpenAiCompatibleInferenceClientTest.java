@@ -0,0 +1,124 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenAiCompatibleInferenceClientTest {
+
+    record Summary(String summary, List<String> characters) {}
+
+    private OpenAiStubServer server;
+    private OllamaTransport transport;
+    private OllamaBackendPool pool;
+    private InferenceClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new OpenAiStubServer();
+        transport = OllamaTransport.builder().maxConnectionsPerHost(4).build();
+        pool = new OllamaBackendPool(transport, List.of(server.baseUrl()), null);
+        client = new OpenAiCompatibleInferenceClient(pool, "qwen3-8b", 10, "secret", false).withStage("test");
+    }
+
+    @AfterEach
+    void stop() {
+        pool.close();
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    void structuredCall_sendsTheFormatBlockAsResponseFormat() throws Exception {
+        server.reply("{\"summary\":\"A storm\",\"characters\":[\"Jack Aubrey\"]}", "");
+
+        final OllamaStructuredResult<Summary> result =
+                client.callOllamaStructuredResponseWithStats("system", "user", true, Summary.class);
+
+        assertEquals(new Summary("A storm", List.of("Jack Aubrey")), result.value());
+        assertEquals(12, result.stats().promptEvalCount());
+        assertEquals(200d, result.stats().decodeTokensPerSecond(), 0.001);
+
+        final JsonNode request = server.requests().getFirst();
+        assertEquals("qwen3-8b", request.path("model").asText());
+        assertTrue(request.path("chat_template_kwargs").path("enable_thinking").asBoolean());
+        final JsonNode format = request.path("response_format");
+        assertEquals("json_schema", format.path("type").asText());
+        assertEquals("Summary", format.path("json_schema").path("name").asText());
+        assertEquals(client.buildFormatBlock(Summary.class), format.path("json_schema").path("schema"));
+
+        final OllamaStageMetrics metrics = client.generationMetrics().snapshot().getFirst();
+        assertEquals("test", metrics.stage());
+        assertEquals(1, metrics.generations());
+    }
+
+    @Test
+    void streamedCall_deliversDeltasAndStopsAtTheOutputCap() throws Exception {
+        server.reply("It was a dark and stormy night", "thinking about weather");
+        final StringBuilder streamed = new StringBuilder();
+
+        final OllamaChatResult result = client.callOllamaPlainTextResponseStreaming("system", "user", true, 1_000,
+                new OllamaStreamListener() {
+                    @Override
+                    public void onContent(final String delta) {
+                        streamed.append(delta);
+                    }
+                });
+
+        assertEquals("It was a dark and stormy night", result.content());
+        assertEquals(result.content(), streamed.toString());
+        assertEquals("thinking about weather", result.thinking());
+        assertEquals(8, result.stats().evalCount());
+
+        assertThrows(OllamaOutputLimitException.class, () -> client.callOllamaPlainTextResponseStreaming(
+                "system", "user", true, 20, OllamaStreamListener.noop()));
+    }
+
+    @Test
+    void concurrentCalls_occupySeveralSlotsAtOnce() {
+        server.reply("done", "").latency(Duration.ofMillis(200));
+
+        final List<CompletableFuture<String>> calls = IntStream.range(0, 4)
+                .mapToObj(i -> client.withPriority(OllamaPriority.BULK).callOllamaPlainTextResponseAsync("system", "user " + i, false))
+                .toList();
+
+        calls.forEach(call -> assertEquals("done", call.join()));
+        assertEquals(4, server.peakInFlight());
+    }
+
+    @Test
+    void identicalConcurrentCalls_areSentOnce() {
+        server.reply("done", "").latency(Duration.ofMillis(200));
+
+        final List<CompletableFuture<String>> calls = IntStream.range(0, 3)
+                .mapToObj(i -> client.callOllamaPlainTextResponseAsync("system", "same question", false))
+                .toList();
+
+        calls.forEach(call -> assertEquals("done", call.join()));
+        assertEquals(1, server.requests().size());
+        assertEquals(2, client.generationMetrics().snapshot().getFirst().deduplicated());
+    }
+
+    @Test
+    void identicalConcurrentCalls_ofAnotherPriorityOrStage_areSentSeparately() {
+        server.reply("done", "").latency(Duration.ofMillis(200));
+
+        final List<CompletableFuture<String>> calls = List.of(
+                client.withPriority(OllamaPriority.BULK).callOllamaPlainTextResponseAsync("system", "same question", false),
+                client.withPriority(OllamaPriority.INTERACTIVE).callOllamaPlainTextResponseAsync("system", "same question", false),
+                client.withStage("other").callOllamaPlainTextResponseAsync("system", "same question", false));
+
+        calls.forEach(call -> assertEquals("done", call.join()));
+        assertEquals(3, server.requests().size());
+    }
+}
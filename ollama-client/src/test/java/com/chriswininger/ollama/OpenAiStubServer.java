@@ -0,0 +1,145 @@
+package com.chriswininger.ollama;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A local stand-in for an OpenAI-compatible server (llama.cpp's {@code llama-server}, vLLM) that
+ * answers {@code /v1/chat/completions} with a fixed reply, streamed as server-sent events when the
+ * request asks for it. Requests are served concurrently, like a server with several slots, and
+ * the peak number in flight is kept.
+ */
+final class OpenAiStubServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    private final AtomicReference<String> content = new AtomicReference<>("");
+    private final AtomicReference<String> reasoning = new AtomicReference<>("");
+    private final AtomicReference<Duration> latency = new AtomicReference<>(Duration.ZERO);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    OpenAiStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    OpenAiStubServer reply(final String content, final String reasoning) {
+        this.content.set(content);
+        this.reasoning.set(reasoning);
+        return this;
+    }
+
+    OpenAiStubServer latency(final Duration latency) {
+        this.latency.set(latency);
+        return this;
+    }
+
+    List<JsonNode> requests() {
+        return requests;
+    }
+
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            final JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            requests.add(request);
+            Thread.sleep(latency.get());
+
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange);
+            } else {
+                final ObjectNode response = objectMapper.createObjectNode();
+                final ObjectNode message = response.putArray("choices").addObject().putObject("message");
+                message.put("role", "assistant");
+                message.put("content", content.get());
+                message.put("reasoning_content", reasoning.get());
+                usage(response);
+                respond(exchange, 200, response.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    // a reasoning delta, then the content a word at a time, then usage and [DONE]
+    private void stream(final HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        final OutputStream out = exchange.getResponseBody();
+
+        if (!reasoning.get().isEmpty()) {
+            event(out, delta("reasoning_content", reasoning.get()));
+        }
+        for (final String word : content.get().split("(?<= )")) {
+            event(out, delta("content", word));
+        }
+        final ObjectNode last = objectMapper.createObjectNode();
+        last.putArray("choices");
+        usage(last);
+        event(out, last.toString());
+        event(out, "[DONE]");
+    }
+
+    private String delta(final String field, final String text) {
+        final ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.putArray("choices").addObject().putObject("delta").put(field, text);
+        return chunk.toString();
+    }
+
+    private void usage(final ObjectNode response) {
+        response.putObject("usage")
+                .put("prompt_tokens", 12)
+                .put("completion_tokens", 8);
+        response.putObject("timings")
+                .put("prompt_ms", 6.0)
+                .put("predicted_ms", 40.0);
+    }
+
+    private static void event(final OutputStream out, final String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
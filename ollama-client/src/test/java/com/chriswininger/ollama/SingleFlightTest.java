@@ -0,0 +1,64 @@
+package com.chriswininger.ollama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger shared = new AtomicInteger();
+
+    @Test
+    void identicalCallsInFlightShareOneCall_laterCallsStartAfresh() {
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = call("a", source);
+        final CompletableFuture<String> second = call("a", new CompletableFuture<>());
+        final CompletableFuture<String> other = call("b", CompletableFuture.completedFuture("other"));
+
+        assertEquals(2, started.get());
+        assertEquals(1, shared.get());
+        assertEquals(1, flights.deduplicated());
+
+        source.complete("reply");
+        assertEquals("reply", first.join());
+        assertEquals("reply", second.join());
+        assertEquals("other", other.join());
+        assertEquals(0, flights.inFlight());
+
+        call("a", CompletableFuture.completedFuture("again")).join();
+        assertEquals(3, started.get());
+    }
+
+    @Test
+    void callIsCancelledOnlyOnceEveryCallerHasGivenUp() {
+        final CompletableFuture<String> source = new CompletableFuture<>();
+        final CompletableFuture<String> first = call("a", source);
+        final CompletableFuture<String> second = call("a", new CompletableFuture<>());
+
+        first.cancel(true);
+        assertFalse(source.isDone());
+
+        second.cancel(true);
+        assertTrue(source.isCancelled());
+        assertEquals(0, flights.inFlight());
+
+        // the abandoned flight is not joined
+        final CompletableFuture<String> next = call("a", CompletableFuture.completedFuture("fresh"));
+        assertEquals("fresh", next.join());
+    }
+
+    private CompletableFuture<String> call(final String key, final CompletableFuture<String> source) {
+        return flights.call(key, () -> {
+            started.incrementAndGet();
+            return source;
+        }, shared::incrementAndGet);
+    }
+}